@@ -6,16 +6,38 @@ interface ChatMessage {
     type: 'user' | 'ai';
     content: string;
     timestamp: Date;
-    sources?: SearchResult[];
+    sources?: string[];
 }
 
-interface SearchResult {
-    content: string;
-    fileName: string;
-    relevance: number;
-    context: string;
+interface StreamEvent {
+    event: string;
+    data: any;
 }
 
+// Reads a text/event-stream response, calling onEvent for each event as it arrives
+const readEventStream = async (response: Response, onEvent: (event: StreamEvent) => void) => {
+    const reader = response.body!.getReader();
+    const decoder = new TextDecoder();
+    let buffer = '';
+    for (;;) {
+        const { done, value } = await reader.read();
+        if (done) break;
+        buffer += decoder.decode(value, { stream: true });
+        let boundary;
+        while ((boundary = buffer.indexOf('\n\n')) >= 0) {
+            const block = buffer.slice(0, boundary);
+            buffer = buffer.slice(boundary + 2);
+            let event = 'message';
+            const data: string[] = [];
+            block.split('\n').forEach(line => {
+                if (line.startsWith('event:')) event = line.slice(6).trim();
+                else if (line.startsWith('data:')) data.push(line.slice(5));
+            });
+            if (data.length > 0) onEvent({ event, data: JSON.parse(data.join('\n')) });
+        }
+    }
+};
+
 interface Project {
     id: number;
     title: string;
@@ -72,27 +94,34 @@ const RAGChat: React.FC = () => {
         setIsLoading(true);
         setIsTyping(true);
 
+        // The answer appears with its first event and fills in as its sections arrive
+        const aiMessageId = (Date.now() + 1).toString();
+        const updateAiMessage = (update: (message: ChatMessage) => ChatMessage) =>
+            setMessages(prev => prev.some(message => message.id === aiMessageId)
+                ? prev.map(message => message.id === aiMessageId ? update(message) : message)
+                : [...prev, update({ id: aiMessageId, type: 'ai', content: '', timestamp: new Date() })]);
+
         try {
-            const response = await axios.post('http://localhost:8080/api/rag/search', null, {
-                params: {
-                    query: inputMessage,
-                    projectId: selectedProject
+            const params = new URLSearchParams({ query: inputMessage, projectId: String(selectedProject) });
+            const response = await fetch(`http://localhost:8080/api/rag/search/stream?${params}`, { method: 'POST' });
+            if (!response.ok || !response.body) {
+                throw new Error(response.status === 429 ? 'The assistant is busy' : 'Search failed');
+            }
+
+            await readEventStream(response, ({ event, data }) => {
+                if (event === 'sources') {
+                    setIsTyping(false);
+                    updateAiMessage(message => ({ ...message, sources: data }));
+                } else if (event === 'section') {
+                    setIsTyping(false);
+                    updateAiMessage(message => ({ ...message, content: message.content + data.text }));
+                } else if (event === 'error') {
+                    throw new Error(data.message);
                 }
             });
-
-            const aiMessage: ChatMessage = {
-                id: (Date.now() + 1).toString(),
-                type: 'ai',
-                content: response.data.answer,
-                timestamp: new Date(),
-                sources: response.data.sources
-            };
-
-            setMessages(prev => [...prev, aiMessage]);
-            
         } catch (error) {
             const errorMessage: ChatMessage = {
-                id: (Date.now() + 1).toString(),
+                id: aiMessageId + '_error',
                 type: 'ai',
                 content: 'I apologize, but I encountered an error processing your request. Please try again.',
                 timestamp: new Date()
@@ -190,7 +219,7 @@ const RAGChat: React.FC = () => {
                                     messages.map(message => (
                                         <div key={message.id} className={`flex ${message.type === 'user' ? 'justify-end' : 'justify-start'}`}>
                                             <div className={`max-w-3xl ${message.type === 'user' ? 'bg-blue-500 text-white' : 'bg-gray-100'} rounded-2xl px-4 py-3`}>
-                                                <p className="text-sm">{message.content}</p>
+                                                <p className="text-sm whitespace-pre-line">{message.content}</p>
                                                 <p className="text-xs opacity-70 mt-1">
                                                     {formatTimestamp(message.timestamp)}
                                                 </p>
@@ -200,7 +229,7 @@ const RAGChat: React.FC = () => {
                                                         <p className="text-xs font-semibold mb-2">Sources:</p>
                                                         {message.sources.map((source, index) => (
                                                             <div key={index} className="text-xs bg-blue-100 text-blue-800 rounded px-2 py-1 inline-block mr-2 mb-1">
-                                                                {source.fileName}
+                                                                {source}
                                                             </div>
                                                         ))}
                                                     </div>
@@ -11,7 +11,7 @@ interface Document {
   version: number;
   projectId: number;
   uploadedBy: string;
-  status?: 'DRAFT' | 'REVIEW' | 'APPROVED' | 'ARCHIVED';
+  status?: 'DRAFT' | 'REVIEW' | 'APPROVED' | 'ARCHIVED' | 'UPLOADED' | 'QUEUED' | 'PROCESSING' | 'PROCESSED' | 'FAILED';
   description?: string;
 }
 
@@ -61,15 +61,17 @@ const DocumentManagement: React.FC = () => {
         body: formData,
       });
 
+      if (uploadResponse.status === 429) {
+        // The ingestion queue is full; nothing was stored
+        throw new Error(`Server busy, retry in ${uploadResponse.headers.get('Retry-After') || 'a few'} seconds`);
+      }
       if (!uploadResponse.ok) {
         throw new Error('Upload failed');
       }
 
-      const uploadedDoc = await uploadResponse.json();
-      
-      // Process document for RAG
-      await processForRAG(uploadedDoc);
-      
+      // The server queues the upload for RAG processing; its status moves from QUEUED to PROCESSED
+      await uploadResponse.json();
+
       setUploadStatus('success');
       fetchDocuments();
       setShowUploadModal(false);
@@ -82,30 +84,6 @@ const DocumentManagement: React.FC = () => {
     }
   };
 
-  const processForRAG = async (document: any) => {
-    try {
-      // Send document to RAG processing
-      const ragResponse = await fetch('http://localhost:8080/api/rag/process-document', {
-        method: 'POST',
-        headers: {
-          'Content-Type': 'application/json',
-        },
-        body: JSON.stringify({
-          documentId: document.id,
-          fileName: document.name,
-          filePath: document.filePath,
-          fileType: document.type
-        }),
-      });
-
-      if (ragResponse.ok) {
-        console.log('Document processed for RAG successfully');
-      }
-    } catch (error) {
-      console.error('Error processing document for RAG:', error);
-    }
-  };
-
   const handleFileSelect = (event: React.ChangeEvent<HTMLInputElement>) => {
     const file = event.target.files?.[0];
     if (file) {
@@ -128,7 +128,10 @@ const SearchResults: React.FC = () => {
                       <h3 className="text-lg font-medium text-gray-900">{result.title}</h3>
                     </div>
                     <p className="mt-1 text-sm text-gray-500">{result.description}</p>
-                    <p className="mt-2 text-sm text-gray-600">{result.contentPreview}</p>
+                    {!result.highlight && (
+                      <p className="mt-2 text-sm text-gray-600">{result.contentPreview}</p>
+                    )}
+                    {/* The server escapes the excerpt and only adds <mark> tags around the matches */}
                     {result.highlight && (
                       <div className="mt-2 text-sm">
                         <span className="font-medium">Relevant excerpt:</span>
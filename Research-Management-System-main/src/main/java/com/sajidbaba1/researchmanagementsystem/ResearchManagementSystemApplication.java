@@ -1,11 +1,18 @@
 package com.sajidbaba1.researchmanagementsystem;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 @SpringBootApplication
+@EnableScheduling
 public class ResearchManagementSystemApplication {
 
     public static void main(String[] args) {
@@ -13,7 +20,14 @@ public class ResearchManagementSystemApplication {
     }
 
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(@Value("${http.client.connect-timeout-ms:2000}") long connectTimeoutMs,
+                                     @Value("${http.client.read-timeout-ms:30000}") long readTimeoutMs) {
+        // One JDK client for every call: it keeps connections to each host open and reuses them
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(client);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+        return new RestTemplate(requestFactory);
     }
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.sajidbaba1.researchmanagementsystem.config;
+
+import com.sajidbaba1.researchmanagementsystem.llm.GatewayEmbedder;
+import com.sajidbaba1.researchmanagementsystem.search.Embedder;
+import com.sajidbaba1.researchmanagementsystem.search.HashingEmbedder;
+import com.sajidbaba1.researchmanagementsystem.service.LlmGateway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Chooses the {@link Embedder} behind RAG retrieval with {@code rag.embedder}:
+ * the in-process {@code hashing} embedder (the default), or {@code gateway}
+ * to embed through the LLM gateway's backend.
+ */
+@Configuration
+public class EmbeddingConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "rag.embedder", havingValue = "hashing", matchIfMissing = true)
+    public Embedder hashingEmbedder(@Value("${rag.embedding.dimensions:384}") int dimensions) {
+        return new HashingEmbedder(dimensions);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "rag.embedder", havingValue = "gateway")
+    public Embedder gatewayEmbedder(LlmGateway gateway, @Value("${rag.embedding.dimensions:384}") int dimensions) {
+        return new GatewayEmbedder(gateway, dimensions);
+    }
+}
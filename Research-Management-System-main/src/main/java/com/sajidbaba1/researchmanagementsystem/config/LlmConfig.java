@@ -0,0 +1,37 @@
+package com.sajidbaba1.researchmanagementsystem.config;
+
+import com.sajidbaba1.researchmanagementsystem.llm.LlmBackend;
+import com.sajidbaba1.researchmanagementsystem.llm.OpenAiCompatibleBackend;
+import com.sajidbaba1.researchmanagementsystem.llm.StubLlmBackend;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Chooses the model provider behind the LLM gateway with
+ * {@code rag.llm.backend}: the offline {@code stub} (the default) or
+ * {@code openai} for any OpenAI-compatible endpoint.
+ */
+@Configuration
+public class LlmConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "rag.llm.backend", havingValue = "stub", matchIfMissing = true)
+    public LlmBackend stubLlmBackend(@Value("${rag.embedding.dimensions:384}") int dimensions,
+                                     @Value("${rag.llm.stub.call-latency-ms:0}") long callLatencyMs,
+                                     @Value("${rag.llm.stub.per-text-latency-us:0}") long perTextLatencyUs) {
+        return new StubLlmBackend(dimensions, callLatencyMs, perTextLatencyUs);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "rag.llm.backend", havingValue = "openai")
+    public LlmBackend openAiCompatibleBackend(RestTemplate restTemplate,
+                                              @Value("${rag.llm.base-url:https://api.groq.com/openai/v1}") String baseUrl,
+                                              @Value("${rag.llm.api-key:${groq.api.key:}}") String apiKey,
+                                              @Value("${rag.llm.chat-model:llama-3.1-8b-instant}") String chatModel,
+                                              @Value("${rag.llm.embedding-model:text-embedding-3-small}") String embeddingModel) {
+        return new OpenAiCompatibleBackend(restTemplate, baseUrl, apiKey, chatModel, embeddingModel);
+    }
+}
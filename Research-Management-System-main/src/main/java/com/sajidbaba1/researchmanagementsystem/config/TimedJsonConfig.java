@@ -0,0 +1,42 @@
+package com.sajidbaba1.researchmanagementsystem.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sajidbaba1.researchmanagementsystem.dto.SearchResponse;
+import com.sajidbaba1.researchmanagementsystem.service.LatencyMetrics;
+import com.sajidbaba1.researchmanagementsystem.service.RAGService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Replaces Spring Boot's JSON converter with one that times how long search
+ * and RAG responses take to serialize, which is the one stage of those
+ * requests that runs after the service has returned.
+ */
+@Configuration
+public class TimedJsonConfig {
+
+    @Bean
+    public MappingJackson2HttpMessageConverter timedJsonConverter(ObjectMapper objectMapper,
+                                                                 LatencyMetrics latencyMetrics) {
+        return new MappingJackson2HttpMessageConverter(objectMapper) {
+            @Override
+            protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+                    throws IOException, HttpMessageNotWritableException {
+                String operation = object instanceof SearchResponse ? LatencyMetrics.SEARCH
+                        : object instanceof RAGService.AIResponse ? LatencyMetrics.RAG
+                        : null;
+                long start = System.nanoTime();
+                super.writeInternal(object, type, outputMessage);
+                if (operation != null) {
+                    latencyMetrics.record(operation, "serialization", System.nanoTime() - start);
+                }
+            }
+        };
+    }
+}
@@ -2,10 +2,15 @@ package com.sajidbaba1.researchmanagementsystem.controller;
 
 import com.sajidbaba1.researchmanagementsystem.dto.ChatbotRequest;
 import com.sajidbaba1.researchmanagementsystem.dto.ChatbotResponse;
+import com.sajidbaba1.researchmanagementsystem.service.AnswerStreamingService;
 import com.sajidbaba1.researchmanagementsystem.service.ChatbotService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/chatbot")
@@ -15,6 +20,9 @@ public class ChatbotController {
     @Autowired
     private ChatbotService chatbotService;
 
+    @Autowired
+    private AnswerStreamingService answerStreamingService;
+
     @PostMapping("/ask")
     public ResponseEntity<ChatbotResponse> askQuestion(@RequestBody ChatbotRequest request) {
         try {
@@ -29,6 +37,17 @@ public class ChatbotController {
         }
     }
 
+    // Same answer as /ask, as server-sent events, a line or block at a time
+    @PostMapping(value = "/ask/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> askQuestionStream(@RequestBody ChatbotRequest request) {
+        SseEmitter emitter = answerStreamingService.stream(
+                sink -> chatbotService.processQuery(request.getQuestion(), sink));
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
     @GetMapping("/health")
     public ResponseEntity<String> healthCheck() {
         return ResponseEntity.ok("Chatbot service is running");
@@ -2,6 +2,7 @@ package com.sajidbaba1.researchmanagementsystem.controller;
 
 import com.sajidbaba1.researchmanagementsystem.entity.ProjectDocument;
 import com.sajidbaba1.researchmanagementsystem.entity.ResearchProject;
+import com.sajidbaba1.researchmanagementsystem.service.IngestionService;
 import com.sajidbaba1.researchmanagementsystem.service.ProjectDocumentService;
 import com.sajidbaba1.researchmanagementsystem.service.ResearchProjectService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,6 +10,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -31,6 +33,9 @@ public class ProjectDocumentController {
     @Autowired
     private ResearchProjectService researchProjectService;
 
+    @Autowired
+    private IngestionService ingestionService;
+
     @Value("${file.upload-dir:uploads}")
     private String uploadDir;
 
@@ -57,8 +62,15 @@ public class ProjectDocumentController {
     }
 
     @PostMapping
-    public ProjectDocument createDocument(@RequestBody ProjectDocument document) {
-        return projectDocumentService.saveDocument(document);
+    public ResponseEntity<ProjectDocument> createDocument(@RequestBody ProjectDocument document) {
+        boolean created = document.getId() == null;
+        ProjectDocumentService.SavedDocument saved = projectDocumentService.saveDocument(document);
+        if (saved.getProcessing() == ProjectDocumentService.Processing.REJECTED && created) {
+            // Not kept, so that retrying does not create it twice
+            projectDocumentService.deleteDocument(saved.getDocument().getId());
+            return tooManyRequests();
+        }
+        return savedResponse(saved);
     }
 
     @PostMapping("/upload")
@@ -67,7 +79,12 @@ public class ProjectDocumentController {
             @RequestParam("projectId") Long projectId,
             @RequestParam("description") String description,
             @RequestParam("uploadedBy") String uploadedBy) {
-        
+
+        // Refuse before storing anything rather than store an upload that cannot be processed
+        if (!ingestionService.hasCapacity()) {
+            return tooManyRequests();
+        }
+
         try {
             // Create upload directory if it doesn't exist
             Path uploadPath = Paths.get(uploadDir);
@@ -96,9 +113,17 @@ public class ProjectDocumentController {
             document.setUploadedBy(uploadedBy);
             document.setProjectId(projectId);
             document.setFileSize(file.getSize());
-
-            ProjectDocument savedDocument = projectDocumentService.saveDocument(document);
-            return ResponseEntity.ok(savedDocument);
+            document.setStatus("UPLOADED");
+
+            // Queued for ingestion, which reads the file. Another upload may have taken the last slot
+            // since the check above; nothing is kept then, so that retrying does not store the file twice
+            ProjectDocumentService.SavedDocument saved = projectDocumentService.saveDocument(document);
+            if (saved.getProcessing() == ProjectDocumentService.Processing.REJECTED) {
+                projectDocumentService.deleteDocument(saved.getDocument().getId());
+                Files.deleteIfExists(filePath);
+                return tooManyRequests();
+            }
+            return savedResponse(saved);
 
         } catch (IOException e) {
             return ResponseEntity.internalServerError().build();
@@ -110,7 +135,10 @@ public class ProjectDocumentController {
         Optional<ProjectDocument> existingDocument = projectDocumentService.getDocumentById(id);
         if (existingDocument.isPresent()) {
             document.setId(id);
-            return ResponseEntity.ok(projectDocumentService.saveDocument(document));
+            if (projectDocumentService.needsProcessing(document) && !ingestionService.hasCapacity()) {
+                return tooManyRequests();
+            }
+            return savedResponse(projectDocumentService.saveDocument(document));
         }
         return ResponseEntity.notFound().build();
     }
@@ -121,6 +149,30 @@ public class ProjectDocumentController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * 202 while the document waits to be processed, 200 when there was
+     * nothing to process, 429 when the queue was full: the edit is saved but
+     * not processed, and repeating the request queues it.
+     */
+    private ResponseEntity<ProjectDocument> savedResponse(ProjectDocumentService.SavedDocument saved) {
+        switch (saved.getProcessing()) {
+            case QUEUED:
+                return ResponseEntity.accepted().body(saved.getDocument());
+            case REJECTED:
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(ingestionService.retryAfterSeconds()))
+                        .body(saved.getDocument());
+            default:
+                return ResponseEntity.ok(saved.getDocument());
+        }
+    }
+
+    private ResponseEntity<ProjectDocument> tooManyRequests() {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ingestionService.retryAfterSeconds()))
+                .build();
+    }
+
     @GetMapping("/download/{id}")
     public ResponseEntity<Resource> downloadFile(@PathVariable Long id) {
         Optional<ProjectDocument> documentOptional = projectDocumentService.getDocumentById(id);
@@ -1,11 +1,20 @@
 package com.sajidbaba1.researchmanagementsystem.controller;
 
+import com.sajidbaba1.researchmanagementsystem.search.HnswIndex;
+import com.sajidbaba1.researchmanagementsystem.service.AnswerStreamingService;
+import com.sajidbaba1.researchmanagementsystem.service.IngestionService;
 import com.sajidbaba1.researchmanagementsystem.service.RAGService;
+import com.sajidbaba1.researchmanagementsystem.service.ReindexService;
+import com.sajidbaba1.researchmanagementsystem.service.VectorIndexService;
 import com.sajidbaba1.researchmanagementsystem.entity.ProjectDocument;
 import com.sajidbaba1.researchmanagementsystem.repository.ProjectDocumentRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.Map;
 import java.util.HashMap;
@@ -18,13 +27,30 @@ public class RAGController {
     @Autowired
     private RAGService ragService;
 
+    @Autowired
+    private IngestionService ingestionService;
+
     @Autowired
     private ProjectDocumentRepository documentRepository;
 
+    @Autowired
+    private VectorIndexService vectorIndexService;
+
+    @Autowired
+    private AnswerStreamingService answerStreamingService;
+
+    @Autowired
+    private ReindexService reindexService;
+
+    // Answers from one project's data; global=true answers from every project instead
     @PostMapping("/search")
     public ResponseEntity<RAGService.AIResponse> searchAndAnswer(
             @RequestParam String query,
-            @RequestParam Long projectId) {
+            @RequestParam(required = false) Long projectId,
+            @RequestParam(defaultValue = "false") boolean global) {
+        if (global == (projectId != null)) {
+            return ResponseEntity.badRequest().build();
+        }
         try {
             RAGService.AIResponse response = ragService.searchAndAnswer(query, projectId);
             return ResponseEntity.ok(response);
@@ -33,6 +59,22 @@ public class RAGController {
         }
     }
 
+    // Same answer as /search, as server-sent events: sources first, then the answer section by section
+    @PostMapping(value = "/search/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamAnswer(
+            @RequestParam String query,
+            @RequestParam(required = false) Long projectId,
+            @RequestParam(defaultValue = "false") boolean global) {
+        if (global == (projectId != null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        SseEmitter emitter = answerStreamingService.stream(sink -> ragService.streamAnswer(query, projectId, sink));
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
     @GetMapping("/insights/{projectId}")
     public ResponseEntity<Map<String, Object>> getProjectInsights(@PathVariable Long projectId) {
         try {
@@ -48,39 +90,72 @@ public class RAGController {
             @RequestParam Long documentId,
             @RequestParam String query) {
         try {
-            // This would integrate with document summarization
-            RAGService.AIResponse response = new RAGService.AIResponse(
-                    "Document summarization feature coming soon",
-                    java.util.Collections.emptyList(),
-                    query
-            );
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ragService.summarizeDocument(documentId, query));
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    // Benchmarks a project's quantized vector index (by default the largest) on its own data:
+    // recall@k against an exact scan, and memory saved
+    @GetMapping("/vector-index/recall")
+    public ResponseEntity<HnswIndex.RecallReport> measureRecall(
+            @RequestParam(defaultValue = "100") int queries,
+            @RequestParam(defaultValue = "10") int k,
+            @RequestParam(required = false) Long projectId) {
+        if (queries < 1 || queries > 1000 || k < 1 || k > 100) {
+            return ResponseEntity.badRequest().build();
+        }
+        HnswIndex.RecallReport report = vectorIndexService.measureRecall(queries, k, projectId);
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.notFound().build();
+    }
+
+    // Admin: reprocesses every document in the background, resuming a paused run unless restart=true.
+    // 409 while a pause is still waiting for its workers to finish their document
+    @PostMapping("/reindex")
+    public ResponseEntity<ReindexService.Progress> startReindex(
+            @RequestParam(defaultValue = "false") boolean restart) throws InterruptedException {
+        ReindexService.Progress progress = reindexService.start(restart);
+        if (ReindexService.PAUSING.equals(progress.getState())) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(progress);
+        }
+        return ResponseEntity.accepted().body(progress);
+    }
+
+    @GetMapping("/reindex")
+    public ResponseEntity<ReindexService.Progress> getReindexProgress() {
+        return ResponseEntity.ok(reindexService.getProgress());
+    }
+
+    @DeleteMapping("/reindex")
+    public ResponseEntity<ReindexService.Progress> pauseReindex() {
+        return ResponseEntity.ok(reindexService.pause());
+    }
+
     @PostMapping("/process-document")
     public ResponseEntity<Map<String, Object>> processDocumentForRAG(@RequestBody Map<String, Object> request) {
         try {
             Long documentId = Long.valueOf(request.get("documentId").toString());
-            String fileName = request.get("fileName").toString();
-            String filePath = request.get("filePath").toString();
-            String fileType = request.get("fileType").toString();
 
             // Get the document
             ProjectDocument document = documentRepository.findById(documentId)
                     .orElseThrow(() -> new RuntimeException("Document not found"));
 
-            // Process document for RAG
-            boolean processed = ragService.processDocumentForRAG(document);
-
+            // Queue the document for RAG processing; its status shows the progress
             Map<String, Object> response = new HashMap<>();
-            response.put("success", processed);
-            response.put("message", processed ? "Document processed for RAG successfully" : "Failed to process document");
             response.put("documentId", documentId);
-
-            return ResponseEntity.ok(response);
+            if (!ingestionService.enqueue(document)) {
+                long retryAfter = ingestionService.retryAfterSeconds();
+                response.put("success", false);
+                response.put("error", "Ingestion queue is full, retry in " + retryAfter + " s");
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                        .body(response);
+            }
+            response.put("success", true);
+            response.put("message", "Document queued for RAG processing");
+            response.put("status", document.getStatus());
+            return ResponseEntity.accepted().body(response);
         } catch (Exception e) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
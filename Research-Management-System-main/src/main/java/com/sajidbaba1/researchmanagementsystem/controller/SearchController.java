@@ -4,9 +4,11 @@ import com.sajidbaba1.researchmanagementsystem.dto.SearchRequest;
 import com.sajidbaba1.researchmanagementsystem.dto.SearchResponse;
 import com.sajidbaba1.researchmanagementsystem.service.SearchService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -24,7 +26,15 @@ public class SearchController {
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(required = false) String type,
             @RequestParam(required = false) String department,
-            @RequestParam(required = false) String status) {
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) List<String> fileTypes,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(required = false) String sortOrder,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Long projectId,
+            @RequestParam(defaultValue = "false") boolean debugTiming) {
         
         SearchRequest request = new SearchRequest();
         request.setQuery(query);
@@ -33,6 +43,14 @@ public class SearchController {
         request.setType(type);
         request.setDepartment(department);
         request.setStatus(status);
+        request.setFileTypes(fileTypes);
+        request.setStartDate(startDate);
+        request.setEndDate(endDate);
+        request.setSortBy(sortBy);
+        request.setSortOrder(sortOrder);
+        request.setCursor(cursor);
+        request.setProjectId(projectId);
+        request.setDebugTiming(debugTiming);
         
         SearchResponse response = searchService.universalSearch(request);
         return ResponseEntity.ok(response);
@@ -50,6 +68,12 @@ public class SearchController {
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping("/projects")
+    public ResponseEntity<SearchResponse> searchProjects(@RequestBody SearchRequest request) {
+        SearchResponse response = searchService.searchProjects(request);
+        return ResponseEntity.ok(response);
+    }
+
     @PostMapping("/universal")
     public ResponseEntity<SearchResponse> universalSearch(@RequestBody SearchRequest request) {
         SearchResponse response = searchService.universalSearch(request);
@@ -61,4 +85,9 @@ public class SearchController {
         List<String> suggestions = searchService.getSearchSuggestions(query);
         return ResponseEntity.ok(suggestions);
     }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleInvalidRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
 }
@@ -1,6 +1,7 @@
 package com.sajidbaba1.researchmanagementsystem.dto;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class SearchFacet {
     private String name;
@@ -13,6 +14,13 @@ public class SearchFacet {
         this.values = values;
     }
 
+    public SearchFacet(SearchFacet other) {
+        this.name = other.name;
+        this.values = other.values == null ? null : other.values.stream()
+                .map(value -> new FacetValue(value.getValue(), value.getCount()))
+                .collect(Collectors.toList());
+    }
+
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
 
@@ -16,6 +16,9 @@ public class SearchRequest {
     private String department;
     private String status;
     private List<String> fileTypes;
+    private String cursor; // opaque keyset position returned as nextCursor
+    private Long projectId; // search only this project's shard
+    private boolean debugTiming; // return the per-stage timing breakdown
 
     // Constructors
     public SearchRequest() {}
@@ -62,4 +65,13 @@ public class SearchRequest {
 
     public List<String> getFileTypes() { return fileTypes; }
     public void setFileTypes(List<String> fileTypes) { this.fileTypes = fileTypes; }
+
+    public String getCursor() { return cursor; }
+    public void setCursor(String cursor) { this.cursor = cursor; }
+
+    public Long getProjectId() { return projectId; }
+    public void setProjectId(Long projectId) { this.projectId = projectId; }
+
+    public boolean isDebugTiming() { return debugTiming; }
+    public void setDebugTiming(boolean debugTiming) { this.debugTiming = debugTiming; }
 }
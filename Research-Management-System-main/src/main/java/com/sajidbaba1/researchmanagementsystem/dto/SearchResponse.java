@@ -1,6 +1,10 @@
 package com.sajidbaba1.researchmanagementsystem.dto;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 public class SearchResponse {
     private List<SearchResult> results;
@@ -12,6 +16,11 @@ public class SearchResponse {
     private boolean hasPrevious;
     private long searchTimeMs;
     private List<SearchFacet> facets;
+    private String nextCursor;
+    private boolean totalExact = true;
+    private boolean partial;
+    private List<String> incompleteSources;
+    private Map<String, Long> debugTiming; // nanoseconds per stage, only when requested
 
     // Constructors
     public SearchResponse() {}
@@ -28,6 +37,26 @@ public class SearchResponse {
         this.hasPrevious = currentPage > 0;
     }
 
+    /** A copy with its own result and facet objects, which the original's changes do not reach. */
+    public SearchResponse(SearchResponse other) {
+        this.results = other.results == null ? null
+                : other.results.stream().map(SearchResult::new).collect(Collectors.toList());
+        this.totalElements = other.totalElements;
+        this.totalPages = other.totalPages;
+        this.currentPage = other.currentPage;
+        this.pageSize = other.pageSize;
+        this.hasNext = other.hasNext;
+        this.hasPrevious = other.hasPrevious;
+        this.searchTimeMs = other.searchTimeMs;
+        this.facets = other.facets == null ? null
+                : other.facets.stream().map(SearchFacet::new).collect(Collectors.toList());
+        this.nextCursor = other.nextCursor;
+        this.totalExact = other.totalExact;
+        this.partial = other.partial;
+        this.incompleteSources = other.incompleteSources == null ? null : new ArrayList<>(other.incompleteSources);
+        this.debugTiming = other.debugTiming == null ? null : new LinkedHashMap<>(other.debugTiming);
+    }
+
     // Getters and Setters
     public List<SearchResult> getResults() { return results; }
     public void setResults(List<SearchResult> results) { this.results = results; }
@@ -55,4 +84,19 @@ public class SearchResponse {
 
     public List<SearchFacet> getFacets() { return facets; }
     public void setFacets(List<SearchFacet> facets) { this.facets = facets; }
+
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+
+    public boolean isTotalExact() { return totalExact; }
+    public void setTotalExact(boolean totalExact) { this.totalExact = totalExact; }
+
+    public boolean isPartial() { return partial; }
+    public void setPartial(boolean partial) { this.partial = partial; }
+
+    public List<String> getIncompleteSources() { return incompleteSources; }
+    public void setIncompleteSources(List<String> incompleteSources) { this.incompleteSources = incompleteSources; }
+
+    public Map<String, Long> getDebugTiming() { return debugTiming; }
+    public void setDebugTiming(Map<String, Long> debugTiming) { this.debugTiming = debugTiming; }
 }
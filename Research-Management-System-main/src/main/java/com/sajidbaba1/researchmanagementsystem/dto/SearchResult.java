@@ -24,6 +24,19 @@ public class SearchResult {
         this.score = score;
     }
 
+    /** A copy sharing the metadata object. */
+    public SearchResult(SearchResult other) {
+        this.id = other.id;
+        this.type = other.type;
+        this.title = other.title;
+        this.description = other.description;
+        this.contentPreview = other.contentPreview;
+        this.score = other.score;
+        this.url = other.url;
+        this.metadata = other.metadata;
+        this.highlight = other.highlight;
+    }
+
     // Getters and Setters
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
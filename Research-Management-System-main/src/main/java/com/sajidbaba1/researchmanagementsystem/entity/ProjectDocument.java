@@ -4,7 +4,12 @@ import jakarta.persistence.*;
 import java.util.Date;
 
 @Entity
-@Table(name = "project_documents")
+@Table(name = "project_documents", indexes = {
+        @Index(name = "idx_project_documents_project_id", columnList = "project_id"),
+        @Index(name = "idx_project_documents_file_type", columnList = "fileType"),
+        @Index(name = "idx_project_documents_status", columnList = "status"),
+        @Index(name = "idx_project_documents_created_at", columnList = "created_at")
+})
 public class ProjectDocument {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
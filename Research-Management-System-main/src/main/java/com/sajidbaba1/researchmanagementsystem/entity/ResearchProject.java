@@ -5,7 +5,10 @@ import java.time.LocalDate;
 import java.util.Date;
 
 @Entity
-@Table(name = "research_projects")
+@Table(name = "research_projects", indexes = {
+        @Index(name = "idx_research_projects_status", columnList = "status"),
+        @Index(name = "idx_research_projects_created_at", columnList = "created_at")
+})
 public class ResearchProject {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
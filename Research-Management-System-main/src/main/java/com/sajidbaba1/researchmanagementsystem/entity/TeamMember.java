@@ -4,6 +4,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.Table;
@@ -16,7 +17,12 @@ import lombok.Data;
 import java.util.Date;
 
 @Entity
-@Table(name = "team_members")
+@Table(name = "team_members", indexes = {
+        @Index(name = "idx_team_members_project_id", columnList = "project_id"),
+        @Index(name = "idx_team_members_department", columnList = "department"),
+        @Index(name = "idx_team_members_role", columnList = "role"),
+        @Index(name = "idx_team_members_created_at", columnList = "created_at")
+})
 @Data
 public class TeamMember {
     @Id
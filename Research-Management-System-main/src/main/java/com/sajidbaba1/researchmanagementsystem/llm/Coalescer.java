@@ -0,0 +1,54 @@
+package com.sajidbaba1.researchmanagementsystem.llm;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Shares one in-flight call between all callers asking for the same key:
+ * a caller arriving while the call runs gets the same future instead of
+ * starting another. Once the call completes the key is forgotten, so
+ * nothing is cached beyond the call itself.
+ */
+public class Coalescer<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the in-flight future for {@code key}, or starts one with
+     * {@code call}.
+     *
+     * @param joined run when the caller joins a call that was already in flight
+     */
+    public CompletableFuture<V> get(K key, Supplier<CompletableFuture<V>> call, Runnable joined) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            joined.run();
+            return existing;
+        }
+        CompletableFuture<V> started;
+        try {
+            started = call.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(e);
+            return mine;
+        }
+        // Forget the key before completing, so a caller woken by the result starts a fresh call
+        started.whenComplete((value, error) -> {
+            inFlight.remove(key, mine);
+            if (error != null) {
+                mine.completeExceptionally(error);
+            } else {
+                mine.complete(value);
+            }
+        });
+        return mine;
+    }
+
+    public int size() {
+        return inFlight.size();
+    }
+}
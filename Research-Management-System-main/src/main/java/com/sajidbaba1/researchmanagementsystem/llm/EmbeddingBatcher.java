@@ -0,0 +1,128 @@
+package com.sajidbaba1.researchmanagementsystem.llm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.IntConsumer;
+
+/**
+ * Groups single embedding requests into batch calls. A batch is sent as
+ * soon as it holds {@code maxBatchSize} texts or its oldest text has
+ * waited {@code maxDelayNanos}, whichever comes first, so a lone request
+ * pays at most the delay and a burst is sent in few calls. Batches run on
+ * {@code executor}, whose size bounds the calls in flight.
+ */
+public class EmbeddingBatcher implements AutoCloseable {
+
+    private static class Request {
+        final String text;
+        final long enqueued = System.nanoTime();
+        final CompletableFuture<float[]> result = new CompletableFuture<>();
+
+        Request(String text) {
+            this.text = text;
+        }
+    }
+
+    private final LlmBackend backend;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final Executor executor;
+    private final IntConsumer batchSizes;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    /**
+     * @param batchSizes told the size of every batch sent, for metrics
+     */
+    public EmbeddingBatcher(LlmBackend backend, int maxBatchSize, long maxDelayNanos, Executor executor,
+                            IntConsumer batchSizes) {
+        this.backend = backend;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxDelayNanos = Math.max(0, maxDelayNanos);
+        this.executor = executor;
+        this.batchSizes = batchSizes;
+        this.dispatcher = new Thread(this::dispatch, "embedding-batcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    public CompletableFuture<float[]> submit(String text) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new LlmException("Embedding batcher is closed"));
+        }
+        Request request = new Request(text);
+        queue.add(request);
+        // Closed meanwhile: the dispatcher may have drained the queue already, so fail it here
+        if (closed && queue.remove(request)) {
+            request.result.completeExceptionally(new LlmException("Embedding batcher is closed"));
+        }
+        return request.result;
+    }
+
+    private void dispatch() {
+        while (!closed) {
+            List<Request> batch = new ArrayList<>(maxBatchSize);
+            try {
+                Request first = queue.take();
+                batch.add(first);
+                long deadline = first.enqueued + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    // Whatever is already waiting joins without waiting for the deadline
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    Request next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                fail(batch, new LlmException("Embedding batcher stopped"));
+                break;
+            }
+            try {
+                executor.execute(() -> send(batch));
+            } catch (RejectedExecutionException e) {
+                fail(batch, new LlmException("Embedding executor rejected a batch", e));
+            }
+        }
+        List<Request> left = new ArrayList<>();
+        queue.drainTo(left);
+        fail(left, new LlmException("Embedding batcher is closed"));
+    }
+
+    private void send(List<Request> batch) {
+        batchSizes.accept(batch.size());
+        try {
+            List<String> texts = new ArrayList<>(batch.size());
+            for (Request request : batch) {
+                texts.add(request.text);
+            }
+            List<float[]> vectors = backend.embed(texts);
+            if (vectors.size() != batch.size()) {
+                throw new LlmException("Backend returned " + vectors.size() + " vectors for " + batch.size() + " texts");
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(vectors.get(i));
+            }
+        } catch (RuntimeException e) {
+            fail(batch, e);
+        }
+    }
+
+    private static void fail(List<Request> batch, RuntimeException error) {
+        for (Request request : batch) {
+            request.result.completeExceptionally(error);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+    }
+}
@@ -0,0 +1,38 @@
+package com.sajidbaba1.researchmanagementsystem.llm;
+
+import com.sajidbaba1.researchmanagementsystem.search.Embedder;
+import com.sajidbaba1.researchmanagementsystem.service.LlmGateway;
+
+import java.util.List;
+
+/** Embeds through the {@link LlmGateway}, so chunks and queries share its batches. */
+public class GatewayEmbedder implements Embedder {
+
+    private final LlmGateway gateway;
+    private final int dimensions;
+
+    public GatewayEmbedder(LlmGateway gateway, int dimensions) {
+        this.gateway = gateway;
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        return gateway.embed(text);
+    }
+
+    @Override
+    public List<float[]> embedAll(List<String> texts) {
+        return gateway.embedAll(texts);
+    }
+
+    @Override
+    public String name() {
+        return "gateway-" + gateway.getBackendName() + "-" + dimensions;
+    }
+}
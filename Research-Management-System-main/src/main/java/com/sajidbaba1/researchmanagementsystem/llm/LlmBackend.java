@@ -0,0 +1,19 @@
+package com.sajidbaba1.researchmanagementsystem.llm;
+
+import java.util.List;
+
+/**
+ * A model provider behind the {@code LlmGateway}. Calls block and may be
+ * slow; batching, coalescing and timeouts are the gateway's job.
+ */
+public interface LlmBackend {
+
+    /** Short identifier, part of the name of the vectors this backend produces. */
+    String name();
+
+    /** Embeds every text, in order, as unit-length vectors. */
+    List<float[]> embed(List<String> texts);
+
+    /** Completes a prompt. */
+    String complete(String prompt);
+}
@@ -0,0 +1,15 @@
+package com.sajidbaba1.researchmanagementsystem.llm;
+
+/** A model call failed or did not finish in time. */
+public class LlmException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public LlmException(String message) {
+        super(message);
+    }
+
+    public LlmException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,102 @@
+package com.sajidbaba1.researchmanagementsystem.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Talks to any provider exposing the OpenAI {@code /embeddings} and
+ * {@code /chat/completions} endpoints (Groq, OpenAI, a local vLLM or
+ * Ollama server). The {@link RestTemplate} supplies the pooled connections
+ * and the connect and read timeouts.
+ */
+public class OpenAiCompatibleBackend implements LlmBackend {
+
+    private final RestTemplate restTemplate;
+    private final String baseUrl;
+    private final String apiKey;
+    private final String chatModel;
+    private final String embeddingModel;
+
+    public OpenAiCompatibleBackend(RestTemplate restTemplate, String baseUrl, String apiKey,
+                                   String chatModel, String embeddingModel) {
+        this.restTemplate = restTemplate;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.apiKey = apiKey;
+        this.chatModel = chatModel;
+        this.embeddingModel = embeddingModel;
+        if (apiKey == null || apiKey.trim().isEmpty()) {
+            System.err.println("⚠️  WARNING: no API key configured for " + this.baseUrl + ", model calls will fail.");
+        }
+    }
+
+    @Override
+    public String name() {
+        return "openai-" + embeddingModel;
+    }
+
+    @Override
+    public List<float[]> embed(List<String> texts) {
+        JsonNode response = post("/embeddings", Map.of("model", embeddingModel, "input", texts));
+        float[][] vectors = new float[texts.size()][];
+        for (JsonNode item : response.path("data")) {
+            JsonNode embedding = item.path("embedding");
+            float[] vector = new float[embedding.size()];
+            double norm = 0;
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = (float) embedding.get(i).asDouble();
+                norm += vector[i] * vector[i];
+            }
+            // Providers mostly return unit vectors already; the index relies on it
+            if (norm > 0) {
+                float scale = (float) (1 / Math.sqrt(norm));
+                for (int i = 0; i < vector.length; i++) {
+                    vector[i] *= scale;
+                }
+            }
+            vectors[item.path("index").asInt()] = vector;
+        }
+        List<float[]> result = new ArrayList<>(texts.size());
+        for (float[] vector : vectors) {
+            if (vector == null) {
+                throw new LlmException("Embedding response is missing vectors");
+            }
+            result.add(vector);
+        }
+        return result;
+    }
+
+    @Override
+    public String complete(String prompt) {
+        JsonNode response = post("/chat/completions", Map.of(
+                "model", chatModel,
+                "messages", List.of(Map.of("role", "user", "content", prompt))));
+        JsonNode content = response.path("choices").path(0).path("message").path("content");
+        if (content.isMissingNode()) {
+            throw new LlmException("Completion response has no content");
+        }
+        return content.asText();
+    }
+
+    private JsonNode post(String path, Map<String, Object> body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBearerAuth(apiKey == null ? "" : apiKey);
+        try {
+            JsonNode response = restTemplate.postForObject(baseUrl + path, new HttpEntity<>(body, headers), JsonNode.class);
+            if (response == null) {
+                throw new LlmException("Empty response from " + baseUrl + path);
+            }
+            return response;
+        } catch (RestClientException e) {
+            throw new LlmException("Call to " + baseUrl + path + " failed: " + e.getMessage(), e);
+        }
+    }
+}
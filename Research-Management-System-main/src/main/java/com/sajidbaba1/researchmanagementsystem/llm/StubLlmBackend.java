@@ -0,0 +1,90 @@
+package com.sajidbaba1.researchmanagementsystem.llm;
+
+import com.sajidbaba1.researchmanagementsystem.search.HashingEmbedder;
+import com.sajidbaba1.researchmanagementsystem.search.Tokenizer;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A local, deterministic stand-in for a model provider, so the gateway can
+ * be run and load-tested offline. Embeddings come from a
+ * {@link HashingEmbedder}. A completion is extractive: the sentences of
+ * the prompt sharing the most terms with its first line (the
+ * instruction), in their original order. Every call can be made to take a
+ * fixed time per call plus per text, to imitate a remote service.
+ */
+public class StubLlmBackend implements LlmBackend {
+
+    private static final int ANSWER_SENTENCES = 3;
+
+    private final HashingEmbedder embedder;
+    private final long callLatencyNanos;
+    private final long perTextLatencyNanos;
+
+    public StubLlmBackend(int dimensions, long callLatencyMillis, long perTextLatencyMicros) {
+        this.embedder = new HashingEmbedder(dimensions);
+        this.callLatencyNanos = TimeUnit.MILLISECONDS.toNanos(callLatencyMillis);
+        this.perTextLatencyNanos = TimeUnit.MICROSECONDS.toNanos(perTextLatencyMicros);
+    }
+
+    @Override
+    public String name() {
+        return "stub";
+    }
+
+    @Override
+    public List<float[]> embed(List<String> texts) {
+        simulateLatency(texts.size());
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            vectors.add(embedder.embed(text));
+        }
+        return vectors;
+    }
+
+    @Override
+    public String complete(String prompt) {
+        simulateLatency(1);
+        String[] lines = prompt.split("\n", 2);
+        Set<String> instruction = new HashSet<>(Tokenizer.tokenize(lines[0]));
+        String body = lines.length > 1 ? lines[1] : lines[0];
+        String[] sentences = body.split("(?<=[.!?])\\s+|\n+");
+
+        Integer[] order = new Integer[sentences.length];
+        int[] overlap = new int[sentences.length];
+        for (int i = 0; i < sentences.length; i++) {
+            order[i] = i;
+            for (String term : new HashSet<>(Tokenizer.tokenize(sentences[i]))) {
+                if (instruction.contains(term)) {
+                    overlap[i]++;
+                }
+            }
+        }
+        Arrays.sort(order, (a, b) -> overlap[a] != overlap[b] ? overlap[b] - overlap[a] : a - b);
+        List<Integer> chosen = new ArrayList<>();
+        for (int i = 0; i < order.length && chosen.size() < ANSWER_SENTENCES; i++) {
+            if (!sentences[order[i]].isBlank()) {
+                chosen.add(order[i]);
+            }
+        }
+        Collections.sort(chosen);
+        StringJoiner answer = new StringJoiner(" ");
+        for (int i : chosen) {
+            answer.add(sentences[i].trim());
+        }
+        return answer.toString();
+    }
+
+    private void simulateLatency(int texts) {
+        long nanos = callLatencyNanos + perTextLatencyNanos * texts;
+        if (nanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LlmException("Interrupted");
+            }
+        }
+    }
+}
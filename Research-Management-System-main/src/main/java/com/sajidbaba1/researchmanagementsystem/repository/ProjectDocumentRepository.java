@@ -2,11 +2,35 @@ package com.sajidbaba1.researchmanagementsystem.repository;
 
 import com.sajidbaba1.researchmanagementsystem.entity.ProjectDocument;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
-public interface ProjectDocumentRepository extends JpaRepository<ProjectDocument, Long> {
+public interface ProjectDocumentRepository extends JpaRepository<ProjectDocument, Long>, JpaSpecificationExecutor<ProjectDocument> {
     List<ProjectDocument> findByProjectId(Long projectId);
     List<ProjectDocument> findByFileType(String fileType);
     List<ProjectDocument> findByUploadedBy(String uploadedBy);
+
+    @Query("SELECT d.id FROM ProjectDocument d WHERE d.id >= :fromId AND d.id < :toId ORDER BY d.id")
+    List<Long> findIdsInRange(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    /** Sets the status column alone, leaving fields edited since the document was read untouched. */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ProjectDocument d SET d.status = :status WHERE d.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") String status);
+
+    @Query("SELECT d.id FROM ProjectDocument d WHERE d.status IN :statuses ORDER BY d.id")
+    List<Long> findIdsByStatusIn(@Param("statuses") Collection<String> statuses);
+
+    @Query("SELECT MIN(d.id) FROM ProjectDocument d")
+    Long findMinId();
+
+    @Query("SELECT MAX(d.id) FROM ProjectDocument d")
+    Long findMaxId();
 }
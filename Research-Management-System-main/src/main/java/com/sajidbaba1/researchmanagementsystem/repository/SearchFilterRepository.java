@@ -0,0 +1,129 @@
+package com.sajidbaba1.researchmanagementsystem.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Repository;
+
+import java.util.*;
+
+/**
+ * Evaluates search filters in the database while selecting only primary
+ * keys, so that filtering a set of full-text candidates never loads the
+ * candidate rows themselves.
+ */
+@Repository
+public class SearchFilterRepository {
+
+    // Keeps each IN list well below the bind parameter limits of the driver
+    private static final int CHUNK_SIZE = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public <T> Set<Long> findMatchingIds(Class<T> entityType, Specification<T> filters) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<T> root = query.from(entityType);
+        query.select(root.get("id")).where(filters.toPredicate(root, query, cb));
+        return new HashSet<>(entityManager.createQuery(query).getResultList());
+    }
+
+    public <T> Set<Long> findMatchingIds(Class<T> entityType, Specification<T> filters, Collection<Long> candidateIds) {
+        Set<Long> matching = new HashSet<>();
+        List<Long> ids = new ArrayList<>(candidateIds);
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + CHUNK_SIZE, ids.size()));
+            CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+            CriteriaQuery<Long> query = cb.createQuery(Long.class);
+            Root<T> root = query.from(entityType);
+            Specification<T> spec = filters.and(SearchSpecifications.idIn(chunk));
+            query.select(root.get("id")).where(spec.toPredicate(root, query, cb));
+            matching.addAll(entityManager.createQuery(query).getResultList());
+        }
+        return matching;
+    }
+
+    /**
+     * Ids of the rows matching the filters, with their values of the sort
+     * field, in the order of {@code sort}: rows {@code firstResult} to
+     * {@code firstResult + maxResults} of that order.
+     */
+    public <T> List<SortedId> findSortedIds(Class<T> entityType, Specification<T> filters, Sort sort,
+                                            int firstResult, int maxResults) {
+        return sortedIdQuery(entityType, filters, sort, firstResult, maxResults);
+    }
+
+    /**
+     * The first {@code maxResults} candidates in the order of {@code sort}.
+     * Each chunk of candidates is sorted and cut by the database and the
+     * chunks are merged here, so no query binds more than a chunk of ids.
+     */
+    public <T> List<SortedId> findSortedIds(Class<T> entityType, Collection<Long> candidateIds, Sort sort,
+                                            int maxResults) {
+        List<SortedId> sorted = new ArrayList<>();
+        List<Long> ids = new ArrayList<>(candidateIds);
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + CHUNK_SIZE, ids.size()));
+            sorted.addAll(sortedIdQuery(entityType, SearchSpecifications.idIn(chunk), sort, 0, maxResults));
+        }
+        if (ids.size() > CHUNK_SIZE) {
+            sorted.sort(SortedId.order(sort.iterator().next()));
+        }
+        return sorted.size() > maxResults ? new ArrayList<>(sorted.subList(0, maxResults)) : sorted;
+    }
+
+    private <T> List<SortedId> sortedIdQuery(Class<T> entityType, Specification<T> filters, Sort sort,
+                                             int firstResult, int maxResults) {
+        Sort.Order order = sort.iterator().next();
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+        Root<T> root = query.from(entityType);
+        query.multiselect(root.get("id"), root.get(order.getProperty()))
+                .where(filters.toPredicate(root, query, cb))
+                .orderBy(order.isDescending() ? cb.desc(root.get(order.getProperty())) : cb.asc(root.get(order.getProperty())),
+                        cb.asc(root.get("id")));
+        List<SortedId> sorted = new ArrayList<>();
+        for (Object[] row : entityManager.createQuery(query).setFirstResult(firstResult).setMaxResults(maxResults)
+                .getResultList()) {
+            sorted.add(new SortedId((Long) row[0], row[1]));
+        }
+        return sorted;
+    }
+
+    /** A row id with its value of the field the rows are sorted on. */
+    public static class SortedId {
+        private final Long id;
+        private final Object key;
+
+        public SortedId(Long id, Object key) {
+            this.id = id;
+            this.key = key;
+        }
+
+        public Long getId() { return id; }
+        public Object getKey() { return key; }
+
+        /** The database order: the key, then the id; null keys come first when ascending, as in MySQL. */
+        public static Comparator<SortedId> order(Sort.Order order) {
+            Comparator<SortedId> byKey = (a, b) -> compareKeys(a.key, b.key);
+            return (order.isDescending() ? byKey.reversed() : byKey).thenComparing(SortedId::getId);
+        }
+
+        /** Compares values of one field the way the default case-insensitive collation does. */
+        @SuppressWarnings("unchecked")
+        public static int compareKeys(Object a, Object b) {
+            if (a == null || b == null) {
+                return a == null ? (b == null ? 0 : -1) : 1;
+            }
+            if (a instanceof String && b instanceof String) {
+                return String.CASE_INSENSITIVE_ORDER.compare((String) a, (String) b);
+            }
+            return ((Comparable<Object>) a).compareTo(b);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.sajidbaba1.researchmanagementsystem.repository;
+
+import com.sajidbaba1.researchmanagementsystem.dto.SearchRequest;
+import com.sajidbaba1.researchmanagementsystem.entity.ProjectDocument;
+import com.sajidbaba1.researchmanagementsystem.entity.ResearchProject;
+import com.sajidbaba1.researchmanagementsystem.entity.TeamMember;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Translates the structured filters of a {@link SearchRequest} into JPA
+ * Specifications so that they are evaluated by the database against the
+ * indexed columns. A filter on an attribute an entity does not have (for
+ * example a department filter on documents) matches no rows of that entity.
+ */
+public final class SearchSpecifications {
+
+    private static final Set<String> DOCUMENT_SORT_FIELDS =
+            Set.of("fileName", "fileType", "fileSize", "status", "createdAt");
+
+    private static final Set<String> TEAM_MEMBER_SORT_FIELDS =
+            Set.of("name", "role", "department", "createdAt");
+
+    private static final Set<String> PROJECT_SORT_FIELDS =
+            Set.of("title", "status", "budget", "startDate", "endDate", "createdAt");
+
+    private SearchSpecifications() {}
+
+    public static boolean hasFilters(SearchRequest request) {
+        return !isBlank(request.getDepartment())
+                || !isBlank(request.getStatus())
+                || (request.getFileTypes() != null && !request.getFileTypes().isEmpty())
+                || request.getStartDate() != null
+                || request.getEndDate() != null;
+    }
+
+    public static Specification<ProjectDocument> documentFilters(SearchRequest request) {
+        Specification<ProjectDocument> spec = createdBetween(request);
+        if (request.getProjectId() != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("projectId"), request.getProjectId()));
+        }
+        if (!isBlank(request.getDepartment())) {
+            spec = spec.and(none());
+        }
+        if (!isBlank(request.getStatus())) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("status"), request.getStatus()));
+        }
+        List<String> fileTypes = request.getFileTypes();
+        if (fileTypes != null && !fileTypes.isEmpty()) {
+            spec = spec.and((root, query, cb) -> root.get("fileType").in(fileTypes));
+        }
+        return spec;
+    }
+
+    public static Specification<TeamMember> teamMemberFilters(SearchRequest request) {
+        Specification<TeamMember> spec = createdBetween(request);
+        if (request.getProjectId() != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("projectId"), request.getProjectId()));
+        }
+        if (!isBlank(request.getDepartment())) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("department"), request.getDepartment()));
+        }
+        if (!isBlank(request.getStatus())
+                || (request.getFileTypes() != null && !request.getFileTypes().isEmpty())) {
+            spec = spec.and(none());
+        }
+        return spec;
+    }
+
+    public static Specification<ResearchProject> projectFilters(SearchRequest request) {
+        Specification<ResearchProject> spec = createdBetween(request);
+        if (request.getProjectId() != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("id"), request.getProjectId()));
+        }
+        if (!isBlank(request.getStatus())) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("status"), request.getStatus()));
+        }
+        if (!isBlank(request.getDepartment())
+                || (request.getFileTypes() != null && !request.getFileTypes().isEmpty())) {
+            spec = spec.and(none());
+        }
+        return spec;
+    }
+
+    public static <T> Specification<T> idIn(Collection<Long> ids) {
+        return (root, query, cb) -> root.get("id").in(ids);
+    }
+
+    /**
+     * Returns the requested database sort, or {@code null} when the results
+     * should be ordered by relevance.
+     */
+    public static Sort documentSort(SearchRequest request) {
+        return sort(request, DOCUMENT_SORT_FIELDS);
+    }
+
+    public static Sort teamMemberSort(SearchRequest request) {
+        return sort(request, TEAM_MEMBER_SORT_FIELDS);
+    }
+
+    public static Sort projectSort(SearchRequest request) {
+        return sort(request, PROJECT_SORT_FIELDS);
+    }
+
+    private static Sort sort(SearchRequest request, Set<String> allowedFields) {
+        String sortBy = request.getSortBy();
+        if (isBlank(sortBy) || !allowedFields.contains(sortBy)) {
+            return null;
+        }
+        Sort.Direction direction = "desc".equalsIgnoreCase(request.getSortOrder())
+                ? Sort.Direction.DESC
+                : Sort.Direction.ASC;
+        return Sort.by(direction, sortBy).and(Sort.by("id"));
+    }
+
+    private static <T> Specification<T> createdBetween(SearchRequest request) {
+        Specification<T> spec = Specification.where(null);
+        if (request.getStartDate() != null) {
+            Timestamp start = Timestamp.valueOf(request.getStartDate());
+            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.<Date>get("createdAt"), start));
+        }
+        if (request.getEndDate() != null) {
+            Timestamp end = Timestamp.valueOf(request.getEndDate());
+            spec = spec.and((root, query, cb) -> cb.lessThanOrEqualTo(root.<Date>get("createdAt"), end));
+        }
+        return spec;
+    }
+
+    private static <T> Specification<T> none() {
+        return (root, query, cb) -> cb.disjunction();
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
@@ -2,10 +2,11 @@ package com.sajidbaba1.researchmanagementsystem.repository;
 
 import com.sajidbaba1.researchmanagementsystem.entity.TeamMember;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 
 import java.util.List;
 
-public interface TeamMemberRepository extends JpaRepository<TeamMember, Long> {
+public interface TeamMemberRepository extends JpaRepository<TeamMember, Long>, JpaSpecificationExecutor<TeamMember> {
     List<TeamMember> findByProjectId(Long projectId);
     List<TeamMember> findByEmail(String email);
     List<TeamMember> findByRole(String role);
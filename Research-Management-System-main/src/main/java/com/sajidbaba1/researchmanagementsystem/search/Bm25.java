@@ -0,0 +1,33 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+/**
+ * Field-weighted BM25 (BM25F). Per-field term frequencies are length
+ * normalised, weighted and summed before the usual saturation is applied.
+ */
+public final class Bm25 {
+
+    public static final double K1 = 1.2;
+    public static final double B = 0.75;
+
+    private Bm25() {}
+
+    public static double idf(long docCount, long docFreq) {
+        return Math.log(1.0 + (docCount - docFreq + 0.5) / (docFreq + 0.5));
+    }
+
+    public static double score(double idf, PostingList postings, int index, int[] fieldLengths,
+                               double[] avgFieldLengths, double[] fieldWeights) {
+        double tf = 0.0;
+        for (int field = 0; field < fieldWeights.length; field++) {
+            int freq = postings.freq(index, field);
+            if (freq == 0) {
+                continue;
+            }
+            double norm = avgFieldLengths[field] > 0
+                    ? 1.0 - B + B * fieldLengths[field] / avgFieldLengths[field]
+                    : 1.0;
+            tf += fieldWeights[field] * freq / norm;
+        }
+        return idf * tf / (K1 + tf);
+    }
+}
@@ -0,0 +1,43 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+/**
+ * A passage of a document that is embedded and retrieved on its own.
+ */
+public class Chunk {
+
+    private final long key;
+    private final long documentId;
+    private final Long projectId;
+    private final int ordinal;
+    private final String text;
+    private final long startOffset;
+    private final long endOffset;
+
+    public Chunk(long key, long documentId, Long projectId, int ordinal, String text,
+                 long startOffset, long endOffset) {
+        this.key = key;
+        this.documentId = documentId;
+        this.projectId = projectId;
+        this.ordinal = ordinal;
+        this.text = text;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+    }
+
+    /** Identifies the chunk in the vector index. */
+    public long getKey() { return key; }
+
+    public long getDocumentId() { return documentId; }
+
+    public Long getProjectId() { return projectId; }
+
+    /** Position of the chunk within its document, from 0. */
+    public int getOrdinal() { return ordinal; }
+
+    public String getText() { return text; }
+
+    /** Byte range of the chunk in the document's file (see {@link Chunker}), or -1 for text not from the file. */
+    public long getStartOffset() { return startOffset; }
+
+    public long getEndOffset() { return endOffset; }
+}
@@ -0,0 +1,194 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.io.Writer;
+import java.util.function.Consumer;
+
+/**
+ * Splits a stream of text into overlapping chunks of a fixed number of
+ * words as it is written, the way {@link TermCounter} counts terms: only
+ * the chunk being filled is held in memory, whatever the size of the text.
+ * Words follow the {@link Tokenizer} rules; runs of whitespace in a chunk
+ * are collapsed to one space.
+ *
+ * Every chunk carries the offsets of its first and last word in the UTF-8
+ * encoding of the text, which for a UTF-8 text file are its byte offsets
+ * in the file.
+ */
+public class Chunker extends Writer {
+
+    /** One emitted chunk: its text and UTF-8 byte range. */
+    public static class Span {
+        private final int ordinal;
+        private final String text;
+        private final long startOffset;
+        private final long endOffset;
+
+        Span(int ordinal, String text, long startOffset, long endOffset) {
+            this.ordinal = ordinal;
+            this.text = text;
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+        }
+
+        public int getOrdinal() { return ordinal; }
+        public String getText() { return text; }
+        /** Offset of the first byte of the chunk's first word. */
+        public long getStartOffset() { return startOffset; }
+        /** Offset just past the chunk's last word. */
+        public long getEndOffset() { return endOffset; }
+    }
+
+    // A chunk whose words are this many chars apiece on average is cut early
+    private static final int MAX_CHARS_PER_WORD = 32;
+
+    private final int chunkWords;
+    private final int overlapWords;
+    private final int maxChunks;
+    private final int maxChars;
+    private final Consumer<Span> sink;
+
+    private final StringBuilder window = new StringBuilder();
+    // Char index in the window and byte offset where each word of the window starts, and where the last one ended
+    private final int[] wordStarts;
+    private final long[] wordStartOffsets;
+    private int words;
+    private int lastWordEnd;
+    private long lastWordEndOffset;
+    // Words added since the last chunk was emitted; the others were carried over as overlap
+    private int newWords;
+    private boolean inWord;
+    private boolean pendingSpace;
+
+    private long offset;
+    private int emitted;
+
+    public Chunker(int chunkWords, int overlapWords, int maxChunks, Consumer<Span> sink) {
+        this.chunkWords = Math.max(1, chunkWords);
+        this.overlapWords = Math.max(0, Math.min(overlapWords, this.chunkWords - 1));
+        this.maxChunks = maxChunks;
+        this.maxChars = this.chunkWords * MAX_CHARS_PER_WORD;
+        this.sink = sink;
+        this.wordStarts = new int[this.chunkWords];
+        this.wordStartOffsets = new long[this.chunkWords];
+    }
+
+    @Override
+    public void write(char[] buffer, int off, int len) {
+        for (int i = off; i < off + len && !isFull(); i++) {
+            accept(buffer[i]);
+        }
+    }
+
+    /** Whether the chunk limit was reached; the rest of the text is ignored. */
+    public boolean isFull() {
+        return emitted >= maxChunks;
+    }
+
+    /** Number of chunks emitted so far. */
+    public int getChunkCount() {
+        return emitted;
+    }
+
+    /** UTF-8 bytes of text written so far. */
+    public long getOffset() {
+        return offset;
+    }
+
+    private void accept(char c) {
+        if (Character.isLetterOrDigit(c)) {
+            if (!inWord) {
+                if (words == chunkWords) {
+                    emit();
+                }
+                if (pendingSpace && window.length() > 0) {
+                    window.append(' ');
+                }
+                pendingSpace = false;
+                wordStarts[words] = window.length();
+                wordStartOffsets[words] = offset;
+                words++;
+                newWords++;
+                inWord = true;
+            }
+            window.append(c);
+        } else {
+            if (inWord) {
+                endWord();
+            }
+            if (Character.isWhitespace(c) || Character.isISOControl(c)) {
+                pendingSpace = true;
+            } else if (words > 0) {
+                if (pendingSpace) {
+                    window.append(' ');
+                    pendingSpace = false;
+                }
+                window.append(c);
+            }
+        }
+        offset += utf8Length(c);
+        // A pathological run without word breaks must not grow the window without bound
+        if (window.length() >= maxChars) {
+            if (inWord) {
+                endWord();
+            }
+            if (newWords > 0) {
+                emit();
+            } else {
+                // Only overlap words followed by noise: nothing new to emit, so drop it all
+                window.setLength(0);
+                words = 0;
+                lastWordEnd = 0;
+            }
+        }
+    }
+
+    private void endWord() {
+        inWord = false;
+        lastWordEnd = window.length();
+        lastWordEndOffset = offset;
+    }
+
+    /** Emits the words in the window as a chunk and keeps the last {@code overlapWords} for the next one. */
+    private void emit() {
+        if (newWords == 0 || isFull()) {
+            return;
+        }
+        sink.accept(new Span(emitted++, window.substring(0, lastWordEnd), wordStartOffsets[0], lastWordEndOffset));
+        int keep = words == chunkWords ? overlapWords : 0;
+        int first = words - keep;
+        int cut = keep > 0 ? wordStarts[first] : window.length();
+        window.delete(0, cut);
+        for (int i = 0; i < keep; i++) {
+            wordStarts[i] = wordStarts[first + i] - cut;
+            wordStartOffsets[i] = wordStartOffsets[first + i];
+        }
+        lastWordEnd -= Math.min(lastWordEnd, cut);
+        words = keep;
+        newWords = 0;
+        pendingSpace = keep > 0 && pendingSpace;
+    }
+
+    private static int utf8Length(char c) {
+        if (c < 0x80) {
+            return 1;
+        }
+        if (c < 0x800) {
+            return 2;
+        }
+        // Each half of a surrogate pair counts for half of the pair's four bytes
+        return Character.isSurrogate(c) ? 2 : 3;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    /** Emits the last, possibly shorter, chunk. */
+    @Override
+    public void close() {
+        if (inWord) {
+            endWord();
+        }
+        emit();
+    }
+}
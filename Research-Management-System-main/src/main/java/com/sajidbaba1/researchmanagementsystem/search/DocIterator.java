@@ -0,0 +1,393 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Iterates the ordinals matching part of a query in ascending order. Every
+ * iterator can also {@link #advance} to a target ordinal, which is what lets
+ * a conjunction skip: it is driven by its rarest clause and only asks the
+ * others whether they contain that clause's next candidate, so the more
+ * selective a query is, the less of each posting list is read.
+ */
+abstract class DocIterator {
+
+    static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    /** Scores the posting at an index of a posting list. */
+    interface PostingScorer {
+        double score(PostingList postings, int index);
+    }
+
+    /** The current ordinal: -1 before the first call, {@link #NO_MORE_DOCS} once exhausted. */
+    abstract int docID();
+
+    abstract int nextDoc();
+
+    /** Moves to the first ordinal at or after {@code target} (which must be past the current one). */
+    abstract int advance(int target);
+
+    /** Score of the current ordinal. */
+    abstract double score();
+
+    /** Upper bound on the number of ordinals this iterator can return. */
+    abstract long cost();
+
+    static DocIterator empty() {
+        return new Bitmap(new RoaringBitmap());
+    }
+
+    /** One posting list, optionally restricted to the postings with hits in one field. */
+    static class Postings extends DocIterator {
+        private final PostingList postings;
+        private final int field;
+        private final PostingScorer scorer;
+        private int index = -1;
+        private int doc = -1;
+
+        /** @param field field the term must occur in, or -1 for any */
+        Postings(PostingList postings, int field, PostingScorer scorer) {
+            this.postings = postings;
+            this.field = field;
+            this.scorer = scorer;
+        }
+
+        @Override
+        int docID() {
+            return doc;
+        }
+
+        @Override
+        int nextDoc() {
+            return moveTo(index + 1);
+        }
+
+        @Override
+        int advance(int target) {
+            return moveTo(postings.advance(index + 1, target));
+        }
+
+        private int moveTo(int from) {
+            index = from;
+            while (index < postings.size() && field >= 0 && postings.freq(index, field) == 0) {
+                index++;
+            }
+            doc = index < postings.size() ? postings.doc(index) : NO_MORE_DOCS;
+            return doc;
+        }
+
+        @Override
+        double score() {
+            return scorer.score(postings, index);
+        }
+
+        @Override
+        long cost() {
+            return postings.size();
+        }
+
+        int[] positions() {
+            return postings.positions(index);
+        }
+    }
+
+    /** The ordinals of a bitmap, all scoring zero; used for facet clauses and for "everything". */
+    static class Bitmap extends DocIterator {
+        private final PeekableIntIterator iterator;
+        private final long cardinality;
+        private int doc = -1;
+
+        Bitmap(RoaringBitmap bitmap) {
+            this.iterator = bitmap.getIntIterator();
+            this.cardinality = bitmap.getLongCardinality();
+        }
+
+        @Override
+        int docID() {
+            return doc;
+        }
+
+        @Override
+        int nextDoc() {
+            doc = iterator.hasNext() ? iterator.next() : NO_MORE_DOCS;
+            return doc;
+        }
+
+        @Override
+        int advance(int target) {
+            iterator.advanceIfNeeded(target);
+            return nextDoc();
+        }
+
+        @Override
+        double score() {
+            return 0.0;
+        }
+
+        @Override
+        long cost() {
+            return cardinality;
+        }
+    }
+
+    /** Ordinals matched by at least one child, scored by the sum or the best of their scores. */
+    static class Union extends DocIterator {
+        private final PriorityQueue<DocIterator> queue =
+                new PriorityQueue<>(Comparator.comparingInt(DocIterator::docID));
+        private final List<DocIterator> children;
+        private final List<DocIterator> current = new ArrayList<>();
+        private final boolean sumScores;
+        private final long cost;
+        private int doc = -1;
+
+        Union(List<DocIterator> children, boolean sumScores) {
+            this.children = children;
+            this.sumScores = sumScores;
+            this.current.addAll(children);
+            this.cost = children.stream().mapToLong(DocIterator::cost).sum();
+        }
+
+        @Override
+        int docID() {
+            return doc;
+        }
+
+        @Override
+        int nextDoc() {
+            for (DocIterator child : current) {
+                if (child.nextDoc() != NO_MORE_DOCS) {
+                    queue.add(child);
+                }
+            }
+            return collect();
+        }
+
+        @Override
+        int advance(int target) {
+            for (DocIterator child : current) {
+                if (child.advance(target) != NO_MORE_DOCS) {
+                    queue.add(child);
+                }
+            }
+            while (!queue.isEmpty() && queue.peek().docID() < target) {
+                DocIterator child = queue.poll();
+                if (child.advance(target) != NO_MORE_DOCS) {
+                    queue.add(child);
+                }
+            }
+            return collect();
+        }
+
+        /** Takes every child positioned on the smallest ordinal off the queue. */
+        private int collect() {
+            current.clear();
+            if (queue.isEmpty()) {
+                doc = NO_MORE_DOCS;
+                return doc;
+            }
+            doc = queue.peek().docID();
+            while (!queue.isEmpty() && queue.peek().docID() == doc) {
+                current.add(queue.poll());
+            }
+            return doc;
+        }
+
+        @Override
+        double score() {
+            // In clause order rather than queue order, so a sum does not depend on how the union was
+            // advanced: a query split across shards scores to the last bit as it does unsplit
+            double score = 0.0;
+            for (DocIterator child : children) {
+                if (child.docID() == doc) {
+                    score = sumScores ? score + child.score() : Math.max(score, child.score());
+                }
+            }
+            return score;
+        }
+
+        @Override
+        long cost() {
+            return cost;
+        }
+    }
+
+    /** Ordinals matched by every child, scored by the sum of their scores. */
+    static class Conjunction extends DocIterator {
+        private final DocIterator lead;
+        private final List<DocIterator> others;
+        private int doc = -1;
+
+        Conjunction(List<DocIterator> children) {
+            List<DocIterator> byCost = new ArrayList<>(children);
+            byCost.sort(Comparator.comparingLong(DocIterator::cost));
+            this.lead = byCost.get(0);
+            this.others = byCost.subList(1, byCost.size());
+        }
+
+        @Override
+        int docID() {
+            return doc;
+        }
+
+        @Override
+        int nextDoc() {
+            return align(lead.nextDoc());
+        }
+
+        @Override
+        int advance(int target) {
+            return align(lead.advance(target));
+        }
+
+        /** Leapfrogs the children until they agree on a candidate of the lead. */
+        private int align(int candidate) {
+            outer:
+            while (candidate != NO_MORE_DOCS) {
+                for (DocIterator other : others) {
+                    int otherDoc = other.docID() < candidate ? other.advance(candidate) : other.docID();
+                    if (otherDoc > candidate) {
+                        candidate = lead.advance(otherDoc);
+                        continue outer;
+                    }
+                }
+                break;
+            }
+            doc = candidate;
+            return doc;
+        }
+
+        @Override
+        double score() {
+            double score = lead.score();
+            for (DocIterator other : others) {
+                score += other.score();
+            }
+            return score;
+        }
+
+        @Override
+        long cost() {
+            return lead.cost();
+        }
+    }
+
+    /** Ordinals of {@code required} that {@code excluded} does not match. */
+    static class Exclusion extends DocIterator {
+        private final DocIterator required;
+        private final DocIterator excluded;
+
+        Exclusion(DocIterator required, DocIterator excluded) {
+            this.required = required;
+            this.excluded = excluded;
+        }
+
+        @Override
+        int docID() {
+            return required.docID();
+        }
+
+        @Override
+        int nextDoc() {
+            return skipExcluded(required.nextDoc());
+        }
+
+        @Override
+        int advance(int target) {
+            return skipExcluded(required.advance(target));
+        }
+
+        private int skipExcluded(int doc) {
+            while (doc != NO_MORE_DOCS) {
+                int excludedDoc = excluded.docID() < doc ? excluded.advance(doc) : excluded.docID();
+                if (excludedDoc != doc) {
+                    break;
+                }
+                doc = required.nextDoc();
+            }
+            return doc;
+        }
+
+        @Override
+        double score() {
+            return required.score();
+        }
+
+        @Override
+        long cost() {
+            return required.cost();
+        }
+    }
+
+    /**
+     * Ordinals where the terms occur at consecutive positions. Candidates
+     * come from the conjunction of the terms; positions are only compared
+     * for those.
+     */
+    static class Phrase extends DocIterator {
+        private final Conjunction conjunction;
+        private final List<Postings> terms;
+        private final IntPredicate acceptStart;
+
+        /**
+         * @param acceptStart tells whether a phrase may start at a position of
+         *                    the current ordinal, e.g. whether it is in the
+         *                    requested field
+         */
+        Phrase(List<Postings> terms, IntPredicate acceptStart) {
+            this.conjunction = new Conjunction(new ArrayList<>(terms));
+            this.terms = terms;
+            this.acceptStart = acceptStart;
+        }
+
+        @Override
+        int docID() {
+            return conjunction.docID();
+        }
+
+        @Override
+        int nextDoc() {
+            return matchPositions(conjunction.nextDoc());
+        }
+
+        @Override
+        int advance(int target) {
+            return matchPositions(conjunction.advance(target));
+        }
+
+        private int matchPositions(int doc) {
+            while (doc != NO_MORE_DOCS && !hasPhrase()) {
+                doc = conjunction.nextDoc();
+            }
+            return doc;
+        }
+
+        private boolean hasPhrase() {
+            for (int start : terms.get(0).positions()) {
+                if (!acceptStart.test(start)) {
+                    continue;
+                }
+                boolean matched = true;
+                for (int i = 1; i < terms.size() && matched; i++) {
+                    matched = Arrays.binarySearch(terms.get(i).positions(), start + i) >= 0;
+                }
+                if (matched) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        double score() {
+            return conjunction.score();
+        }
+
+        @Override
+        long cost() {
+            return conjunction.cost();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns text into a fixed-length unit vector, so that texts about the same
+ * thing end up with a high dot product. Implementations must be
+ * deterministic: stored vectors are only comparable with query vectors
+ * produced by the same embedder with the same configuration.
+ */
+public interface Embedder {
+
+    int dimensions();
+
+    /** A unit-length vector of {@link #dimensions()} values; all zeros for text without terms. */
+    float[] embed(String text);
+
+    /** Embeds every text, in order; embedders that batch calls override this. */
+    default List<float[]> embedAll(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            vectors.add(embed(text));
+        }
+        return vectors;
+    }
+
+    /**
+     * Identifies the embedder and its configuration. Persisted vectors made
+     * under a different name are discarded and computed again.
+     */
+    String name();
+}
@@ -0,0 +1,97 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Embeds text without a model by feature hashing: every term, every pair
+ * of adjacent terms and every character trigram of a term is hashed to a
+ * dimension and a sign, and the counts are dampened and normalized. Texts
+ * sharing vocabulary, phrasing or word stems come out close; there is no
+ * notion of synonyms. Runs offline and gives the same vector on every
+ * machine, which makes it the default until a model-backed embedder is
+ * plugged in.
+ */
+public class HashingEmbedder implements Embedder {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "has", "have", "in", "is", "it",
+            "its", "of", "on", "or", "that", "the", "this", "to", "was", "were", "what", "which", "with");
+
+    private static final float TERM_WEIGHT = 1.0f;
+    private static final float BIGRAM_WEIGHT = 0.7f;
+    private static final float TRIGRAM_WEIGHT = 0.3f;
+
+    private final int dimensions;
+
+    public HashingEmbedder(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public String name() {
+        return "hashing-" + dimensions;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] vector = new float[dimensions];
+        List<String> tokens = Tokenizer.tokenize(text);
+        String previous = null;
+        for (String token : tokens) {
+            if (STOP_WORDS.contains(token)) {
+                previous = null;
+                continue;
+            }
+            add(vector, hash(token, 0), TERM_WEIGHT);
+            if (previous != null) {
+                add(vector, hash(token, hash(previous, 1)), BIGRAM_WEIGHT);
+            }
+            if (token.length() > 3) {
+                String padded = "#" + token + "#";
+                for (int i = 0; i + 3 <= padded.length(); i++) {
+                    add(vector, hash(padded.substring(i, i + 3), 2), TRIGRAM_WEIGHT);
+                }
+            }
+            previous = token;
+        }
+        // Dampen repeated features so one frequent term cannot dominate, then normalize
+        double norm = 0;
+        for (int i = 0; i < dimensions; i++) {
+            float value = vector[i];
+            value = (float) (Math.signum(value) * Math.log1p(Math.abs(value)));
+            vector[i] = value;
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < dimensions; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    private void add(float[] vector, long hash, float weight) {
+        int dimension = (int) ((hash >>> 1) % dimensions);
+        vector[dimension] += (hash & 1) == 0 ? weight : -weight;
+    }
+
+    /** 64-bit FNV-1a with a seed, finished with a murmur mix so low bits are usable. */
+    private static long hash(String feature, long seed) {
+        long h = 0xcbf29ce484222325L ^ seed;
+        for (int i = 0; i < feature.length(); i++) {
+            h ^= feature.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,723 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Approximate nearest neighbour index over unit-length vectors, using a
+ * hierarchical navigable small world graph (Malkov and Yashunin). Every
+ * vector is a node linked to up to {@code m} neighbours on each layer it
+ * reaches ({@code 2m} on the bottom layer); the layer of a node is drawn
+ * from an exponential distribution, so upper layers are sparse express
+ * lanes. A search descends greedily from the top and then runs a beam of
+ * width {@code ef} over the bottom layer.
+ *
+ * Similarity is the dot product, which is the cosine for the unit vectors
+ * an {@link Embedder} produces. Removed keys stay in the graph as
+ * tombstones that are still walked through but never returned; once they
+ * outnumber the live nodes the owner should {@link #compact} the index.
+ * The compacted graph is built while searches and writes go on, and only
+ * swapped in under the lock.
+ *
+ * Only int8 codes of the vectors are kept in memory, off the heap: each
+ * component is scaled by the vector's largest magnitude to [-127, 127], a
+ * quarter of the size of the floats. The graph is built and walked with
+ * them; the best candidates of a search are then re-scored with the
+ * full-precision vectors, which live in a {@link VectorFile}.
+ */
+public class HnswIndex {
+
+    private static final int FORMAT = 2;
+    // Candidates re-scored at full precision per result asked for
+    private static final int RERANK_FACTOR = 4;
+
+    private final int dimensions;
+    private final int m;
+    private final int efConstruction;
+    private final double levelFactor;
+    private final Random random = new Random(42);
+
+    private final VectorFile fullVectors;
+    // dimensions codes per node, off the heap; component i of a node is about codes[i] * scales[node]
+    private ByteBuffer codes;
+    private float[] scales = new float[16];
+    private long[] keys = new long[16];
+    // links[node][level] holds the neighbours of the node on that layer
+    private int[][][] links = new int[16][][];
+    private int count;
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+    private final Map<Long, Integer> nodesByKey = new HashMap<>();
+
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    /** An empty index that appends the full-precision vectors to {@code fullVectors}, which must be empty. */
+    public HnswIndex(int dimensions, int m, int efConstruction, VectorFile fullVectors) {
+        if (fullVectors.getDimensions() != dimensions) {
+            throw new IllegalArgumentException("Vector file has " + fullVectors.getDimensions() + " dimensions, not " + dimensions);
+        }
+        this.dimensions = dimensions;
+        this.m = Math.max(2, m);
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.levelFactor = 1 / Math.log(this.m);
+        this.fullVectors = fullVectors;
+        this.codes = ByteBuffer.allocateDirect(16 * dimensions);
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /** Number of live vectors. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Bytes of the in-memory codes, against {@code 4 * dimensions} per vector for floats. */
+    public long getQuantizedBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) count * (dimensions + Float.BYTES);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(long key) {
+        lock.readLock().lock();
+        try {
+            return nodesByKey.containsKey(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Adds a unit vector under {@code key}, replacing any vector the key had. */
+    public void add(long key, float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+            insert(key, vector, true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long key) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Whether tombstones, which slow every search down, have become the majority of the nodes. */
+    public boolean needsCompaction() {
+        lock.readLock().lock();
+        try {
+            return deletedCount > 64 && deletedCount * 2 > count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Rebuilds the graph and the vector file from the live vectors only, dropping every tombstone. */
+    public void compact() {
+        Compaction compaction = prepareCompaction();
+        if (compaction != null) {
+            finishCompaction(compaction);
+        }
+    }
+
+    /**
+     * Builds a graph of the vectors live right now, and writes them to the
+     * next generation of the vector file, without holding the lock. The
+     * index stays in use meanwhile; {@link #finishCompaction} brings the
+     * new graph up to date and swaps it in.
+     *
+     * @return null if another compaction is in progress
+     */
+    public Compaction prepareCompaction() {
+        if (!compacting.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            Compaction compaction = new Compaction();
+            lock.readLock().lock();
+            try {
+                compaction.count = count;
+                compaction.live = new int[count - deletedCount];
+                compaction.keys = new long[compaction.live.length];
+                for (int node = 0, i = 0; node < count; node++) {
+                    if (!deleted.get(node)) {
+                        compaction.live[i] = node;
+                        compaction.keys[i++] = keys[node];
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            // Slots below the snapshot's count are never written again, so they can be read without the lock
+            compaction.rewrite = fullVectors.startRewrite(compaction.live);
+            compaction.graph = new HnswIndex(dimensions, m, efConstruction, fullVectors);
+            try {
+                // Slot i of the next file holds the vector of the i-th live node, which becomes node i again
+                for (int i = 0; i < compaction.live.length; i++) {
+                    compaction.graph.insert(compaction.keys[i], fullVectors.read(compaction.live[i]), false);
+                }
+            } catch (RuntimeException e) {
+                compaction.rewrite.discard();
+                throw e;
+            }
+            return compaction;
+        } catch (RuntimeException e) {
+            compacting.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Applies the removals and additions made since the compaction was
+     * prepared to its graph, moves the vector file to the new generation
+     * and replaces the graph, under the write lock.
+     */
+    public void finishCompaction(Compaction compaction) {
+        lock.writeLock().lock();
+        try {
+            HnswIndex graph = compaction.graph;
+            for (int i = 0; i < compaction.live.length; i++) {
+                if (deleted.get(compaction.live[i])) {
+                    graph.removeLocked(compaction.keys[i]);
+                }
+            }
+            int[] added = new int[count - compaction.count];
+            int addedCount = 0;
+            for (int node = compaction.count; node < count; node++) {
+                if (!deleted.get(node)) {
+                    added[addedCount++] = node;
+                }
+            }
+            added = Arrays.copyOf(added, addedCount);
+            fullVectors.finishRewrite(compaction.rewrite, added);
+            for (int i = 0; i < added.length; i++) {
+                graph.insert(keys[added[i]], fullVectors.read(compaction.live.length + i), false);
+            }
+
+            codes = graph.codes;
+            scales = graph.scales;
+            keys = graph.keys;
+            links = graph.links;
+            count = graph.count;
+            deleted.clear();
+            deleted.or(graph.deleted);
+            deletedCount = graph.deletedCount;
+            nodesByKey.clear();
+            nodesByKey.putAll(graph.nodesByKey);
+            entryPoint = graph.entryPoint;
+            maxLevel = graph.maxLevel;
+        } finally {
+            lock.writeLock().unlock();
+            compacting.set(false);
+        }
+    }
+
+    /** Gives up on a prepared compaction, for an index that is being dropped. */
+    public void abandonCompaction(Compaction compaction) {
+        compaction.rewrite.discard();
+        compacting.set(false);
+    }
+
+    /**
+     * Returns the (at most) {@code k} live keys most similar to
+     * {@code query}, best first, scored by cosine similarity.
+     *
+     * @param ef beam width of the bottom layer search; larger is slower
+     *           and more accurate, and is raised to {@code k} if lower
+     */
+    public List<ScoredDoc> search(float[] query, int k, int ef) {
+        return search(query, k, ef, true);
+    }
+
+    /**
+     * @param rerank whether to re-score the best candidates with the
+     *               full-precision vectors; without it, ranks and scores
+     *               come from the codes alone
+     */
+    public List<ScoredDoc> search(float[] query, int k, int ef, boolean rerank) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0) {
+                return Collections.emptyList();
+            }
+            int current = entryPoint;
+            for (int level = maxLevel; level > 0; level--) {
+                current = greedyClosest(query, current, level);
+            }
+            // Tombstones take up beam slots, so widen the beam by their share of the graph
+            int width = Math.max(ef, k);
+            if (deletedCount > 0) {
+                width += (int) ((long) width * deletedCount / Math.max(1, count - deletedCount));
+            }
+            PriorityQueue<Candidate> found = searchLayer(query, current, width, 0);
+            List<Candidate> best = new ArrayList<>(found);
+            best.sort(Candidate.BEST_FIRST);
+            int depth = rerank ? k * RERANK_FACTOR : k;
+            TopK<ScoredDoc> hits = new TopK<>(k, ScoredDoc.BEST_FIRST);
+            int taken = 0;
+            for (Candidate candidate : best) {
+                if (taken == depth) {
+                    break;
+                }
+                if (!deleted.get(candidate.node)) {
+                    double similarity = rerank ? similarity(query, fullVectors.read(candidate.node)) : candidate.similarity;
+                    hits.offer(new ScoredDoc(keys[candidate.node], similarity));
+                    taken++;
+                }
+            }
+            return hits.toSortedList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Measures recall@k: the share of the exact {@code k} nearest
+     * neighbours, found by scanning every full-precision vector, that
+     * {@link #search} returns, with and without re-ranking. Each query is
+     * the normalised sum of two random live vectors, so that it lies among
+     * the data without being one of its points.
+     */
+    public RecallReport measureRecall(int queries, int k, int ef, long seed) {
+        Random sampler = new Random(seed);
+        List<float[]> sample = new ArrayList<>();
+        List<TopK<ScoredDoc>> exact = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            int[] live = new int[count - deletedCount];
+            for (int node = 0, i = 0; node < count; node++) {
+                if (!deleted.get(node)) {
+                    live[i++] = node;
+                }
+            }
+            if (live.length == 0) {
+                return new RecallReport(0, k, ef, 0, 0, 0, 0, 0, 0);
+            }
+            for (int q = 0; q < queries; q++) {
+                float[] a = fullVectors.read(live[sampler.nextInt(live.length)]);
+                float[] b = fullVectors.read(live[sampler.nextInt(live.length)]);
+                float[] query = new float[dimensions];
+                double norm = 0;
+                for (int i = 0; i < dimensions; i++) {
+                    query[i] = a[i] + b[i];
+                    norm += query[i] * query[i];
+                }
+                for (int i = 0; i < dimensions && norm > 0; i++) {
+                    query[i] /= (float) Math.sqrt(norm);
+                }
+                sample.add(query);
+                exact.add(new TopK<>(k, ScoredDoc.BEST_FIRST));
+            }
+            // One pass over the file, scoring each vector against every query
+            for (int node : live) {
+                float[] vector = fullVectors.read(node);
+                for (int q = 0; q < queries; q++) {
+                    exact.get(q).offer(new ScoredDoc(keys[node], similarity(sample.get(q), vector)));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        long found = 0;
+        long foundApproximate = 0;
+        long expected = 0;
+        long nanos = 0;
+        long nanosApproximate = 0;
+        for (int q = 0; q < queries; q++) {
+            Set<Long> truth = new HashSet<>();
+            exact.get(q).toSortedList().forEach(hit -> truth.add(hit.getId()));
+            expected += truth.size();
+            long start = System.nanoTime();
+            List<ScoredDoc> approximate = search(sample.get(q), k, ef, false);
+            nanosApproximate += System.nanoTime() - start;
+            start = System.nanoTime();
+            List<ScoredDoc> reranked = search(sample.get(q), k, ef, true);
+            nanos += System.nanoTime() - start;
+            foundApproximate += approximate.stream().filter(hit -> truth.contains(hit.getId())).count();
+            found += reranked.stream().filter(hit -> truth.contains(hit.getId())).count();
+        }
+        return new RecallReport(queries, k, ef, (double) found / Math.max(1, expected),
+                (double) foundApproximate / Math.max(1, expected), nanos / 1000.0 / queries,
+                nanosApproximate / 1000.0 / queries, getQuantizedBytes(), fullVectors.sizeInBytes());
+    }
+
+    /** The outcome of {@link #measureRecall}. */
+    public static class RecallReport {
+        private final int queries;
+        private final int k;
+        private final int ef;
+        private final double recall;
+        private final double recallWithoutRerank;
+        private final double meanMicros;
+        private final double meanMicrosWithoutRerank;
+        private final long quantizedBytes;
+        private final long fullPrecisionBytes;
+
+        RecallReport(int queries, int k, int ef, double recall, double recallWithoutRerank, double meanMicros,
+                     double meanMicrosWithoutRerank, long quantizedBytes, long fullPrecisionBytes) {
+            this.queries = queries;
+            this.k = k;
+            this.ef = ef;
+            this.recall = recall;
+            this.recallWithoutRerank = recallWithoutRerank;
+            this.meanMicros = meanMicros;
+            this.meanMicrosWithoutRerank = meanMicrosWithoutRerank;
+            this.quantizedBytes = quantizedBytes;
+            this.fullPrecisionBytes = fullPrecisionBytes;
+        }
+
+        public int getQueries() { return queries; }
+        public int getK() { return k; }
+        public int getEf() { return ef; }
+        public double getRecall() { return recall; }
+        public double getRecallWithoutRerank() { return recallWithoutRerank; }
+        public double getMeanMicros() { return meanMicros; }
+        public double getMeanMicrosWithoutRerank() { return meanMicrosWithoutRerank; }
+        /** Heap and off-heap bytes held for the vectors. */
+        public long getQuantizedBytes() { return quantizedBytes; }
+        /** What the same vectors would take as floats. */
+        public long getFullPrecisionBytes() { return fullPrecisionBytes; }
+    }
+
+    /**
+     * Writes the graph and the codes. The full-precision vectors stay in
+     * the {@link VectorFile}; {@link VectorFile#force} it first.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        lock.readLock().lock();
+        try {
+            byte[] code = new byte[dimensions];
+            out.writeInt(FORMAT);
+            out.writeInt(dimensions);
+            out.writeInt(m);
+            out.writeInt(efConstruction);
+            out.writeInt(count);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            for (int node = 0; node < count; node++) {
+                out.writeLong(keys[node]);
+                out.writeBoolean(deleted.get(node));
+                out.writeFloat(scales[node]);
+                codes.get(node * dimensions, code);
+                out.write(code);
+                out.writeInt(links[node].length);
+                for (int[] neighbours : links[node]) {
+                    out.writeInt(neighbours.length);
+                    for (int neighbour : neighbours) {
+                        out.writeInt(neighbour);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #writeTo}, over the vector file
+     * that was current when it was written. Vectors appended to the file
+     * after that are dropped.
+     */
+    public static HnswIndex readFrom(DataInput in, VectorFile fullVectors) throws IOException {
+        if (in.readInt() != FORMAT) {
+            throw new IOException("Unsupported vector index format");
+        }
+        int dimensions = in.readInt();
+        int m = in.readInt();
+        int efConstruction = in.readInt();
+        int count = in.readInt();
+        fullVectors.truncate(count);
+        HnswIndex index = new HnswIndex(dimensions, m, efConstruction, fullVectors);
+        byte[] code = new byte[dimensions];
+        index.entryPoint = in.readInt();
+        index.maxLevel = in.readInt();
+        index.grow(count);
+        for (int node = 0; node < count; node++) {
+            index.keys[node] = in.readLong();
+            if (in.readBoolean()) {
+                index.deleted.set(node);
+                index.deletedCount++;
+            } else {
+                index.nodesByKey.put(index.keys[node], node);
+            }
+            index.scales[node] = in.readFloat();
+            in.readFully(code);
+            index.codes.put(node * dimensions, code);
+            int[][] levels = new int[in.readInt()][];
+            for (int level = 0; level < levels.length; level++) {
+                int[] neighbours = new int[in.readInt()];
+                for (int i = 0; i < neighbours.length; i++) {
+                    neighbours[i] = in.readInt();
+                }
+                levels[level] = neighbours;
+            }
+            index.links[node] = levels;
+        }
+        index.count = count;
+        return index;
+    }
+
+    private void removeLocked(long key) {
+        Integer node = nodesByKey.remove(key);
+        if (node != null) {
+            deleted.set(node);
+            deletedCount++;
+        }
+    }
+
+    /**
+     * @param append whether to append the vector to the vector file; when
+     *               not, it must already be in the node's slot
+     */
+    private void insert(long key, float[] vector, boolean append) {
+        int node = count;
+        grow(node + 1);
+        if (append && fullVectors.append(vector) != node) {
+            throw new IllegalStateException("Vector file is out of step with the graph");
+        }
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelFactor);
+        quantize(node, vector);
+        keys[node] = key;
+        links[node] = new int[level + 1][];
+        Arrays.fill(links[node], new int[0]);
+        count++;
+        nodesByKey.put(key, node);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(vector, current, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            PriorityQueue<Candidate> found = searchLayer(vector, current, efConstruction, l);
+            List<Candidate> candidates = new ArrayList<>(found);
+            candidates.sort(Candidate.BEST_FIRST);
+            int[] neighbours = selectNeighbours(candidates, m);
+            links[node][l] = neighbours;
+            for (int neighbour : neighbours) {
+                connect(neighbour, node, l);
+            }
+            current = candidates.get(0).node;
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /** Links {@code from} to {@code to}, pruning the neighbours of {@code from} if it has too many. */
+    private void connect(int from, int to, int level) {
+        int[] current = links[from][level];
+        int limit = level == 0 ? 2 * m : m;
+        if (current.length < limit) {
+            int[] extended = Arrays.copyOf(current, current.length + 1);
+            extended[current.length] = to;
+            links[from][level] = extended;
+            return;
+        }
+        List<Candidate> candidates = new ArrayList<>(current.length + 1);
+        for (int neighbour : current) {
+            candidates.add(new Candidate(neighbour, similarity(from, neighbour)));
+        }
+        candidates.add(new Candidate(to, similarity(from, to)));
+        candidates.sort(Candidate.BEST_FIRST);
+        links[from][level] = selectNeighbours(candidates, limit);
+    }
+
+    /**
+     * The neighbour selection heuristic: a candidate is kept only if it is
+     * closer to the base node than to every neighbour kept so far, which
+     * spreads links across directions instead of into one dense cluster.
+     * Remaining slots are filled with the closest skipped candidates.
+     */
+    private int[] selectNeighbours(List<Candidate> bestFirst, int limit) {
+        int[] selected = new int[Math.min(limit, bestFirst.size())];
+        int size = 0;
+        List<Candidate> skipped = new ArrayList<>();
+        for (Candidate candidate : bestFirst) {
+            if (size == selected.length) {
+                break;
+            }
+            boolean diverse = true;
+            for (int i = 0; i < size && diverse; i++) {
+                diverse = similarity(candidate.node, selected[i]) < candidate.similarity;
+            }
+            if (diverse) {
+                selected[size++] = candidate.node;
+            } else {
+                skipped.add(candidate);
+            }
+        }
+        for (int i = 0; size < selected.length && i < skipped.size(); i++) {
+            selected[size++] = skipped.get(i).node;
+        }
+        return size == selected.length ? selected : Arrays.copyOf(selected, size);
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        double best = similarity(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbour : neighbours(current, level)) {
+                double similarity = similarity(query, neighbour);
+                if (similarity > best) {
+                    best = similarity;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /** Beam search of one layer; returns up to {@code ef} nodes in a queue with the worst at its head. */
+    private PriorityQueue<Candidate> searchLayer(float[] query, int entry, int ef, int level) {
+        BitSet visited = new BitSet(count);
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>(Candidate.BEST_FIRST);
+        PriorityQueue<Candidate> found = new PriorityQueue<>(Candidate.BEST_FIRST.reversed());
+        Candidate start = new Candidate(entry, similarity(query, entry));
+        visited.set(entry);
+        frontier.add(start);
+        found.add(start);
+        while (!frontier.isEmpty()) {
+            Candidate closest = frontier.poll();
+            if (found.size() >= ef && closest.similarity < found.peek().similarity) {
+                break;
+            }
+            for (int neighbour : neighbours(closest.node, level)) {
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                double similarity = similarity(query, neighbour);
+                if (found.size() < ef || similarity > found.peek().similarity) {
+                    Candidate candidate = new Candidate(neighbour, similarity);
+                    frontier.add(candidate);
+                    found.add(candidate);
+                    if (found.size() > ef) {
+                        found.poll();
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private int[] neighbours(int node, int level) {
+        int[][] levels = links[node];
+        return level < levels.length ? levels[level] : new int[0];
+    }
+
+    private void grow(int capacity) {
+        if (capacity > keys.length) {
+            int size = Math.max(capacity, keys.length * 2);
+            ByteBuffer grown = ByteBuffer.allocateDirect(size * dimensions);
+            grown.put(codes.duplicate().clear());
+            codes = grown;
+            scales = Arrays.copyOf(scales, size);
+            keys = Arrays.copyOf(keys, size);
+            links = Arrays.copyOf(links, size);
+        }
+    }
+
+    private void quantize(int node, float[] vector) {
+        float largest = 0;
+        for (float value : vector) {
+            largest = Math.max(largest, Math.abs(value));
+        }
+        float scale = largest / 127;
+        scales[node] = scale;
+        int base = node * dimensions;
+        for (int i = 0; i < dimensions; i++) {
+            codes.put(base + i, scale == 0 ? 0 : (byte) Math.round(vector[i] / scale));
+        }
+    }
+
+    /** Similarity of a full-precision query to a node's codes. */
+    private double similarity(float[] query, int node) {
+        int base = node * dimensions;
+        float sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += query[i] * codes.get(base + i);
+        }
+        return (double) sum * scales[node];
+    }
+
+    /** Similarity of two nodes' codes, in integer arithmetic. */
+    private double similarity(int a, int b) {
+        int baseA = a * dimensions;
+        int baseB = b * dimensions;
+        int sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += codes.get(baseA + i) * codes.get(baseB + i);
+        }
+        return (double) sum * scales[a] * scales[b];
+    }
+
+    static double similarity(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static class Candidate {
+        static final Comparator<Candidate> BEST_FIRST =
+                Comparator.comparingDouble((Candidate c) -> c.similarity).reversed();
+
+        final int node;
+        final double similarity;
+
+        Candidate(int node, double similarity) {
+            this.node = node;
+            this.similarity = similarity;
+        }
+    }
+
+    /** A compacted graph built off the lock, see {@link #prepareCompaction}. */
+    public static class Compaction {
+        // Node count when the compaction started; nodes from here on were added during it
+        private int count;
+        private int[] live;
+        private long[] keys;
+        private VectorFile.Rewrite rewrite;
+        private HnswIndex graph;
+
+        private Compaction() {}
+    }
+}
@@ -0,0 +1,178 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * On-disk home of one {@link InvertedIndex}: a series of immutable segment
+ * generations plus a log of the entity ids changed since the newest one.
+ *
+ * Changes first land in the in-memory index and the log. A flush writes the
+ * whole index as the next generation, drops the log entries it now covers
+ * and deletes older generations. On startup the newest readable generation
+ * is mapped and only the logged changes need to be replayed.
+ *
+ * Log entries name ids, not contents: replaying one means reading the
+ * entity's current state again, so replaying an entry twice is harmless.
+ */
+public class IndexStore {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.seg");
+
+    /** A logged change: the entity was saved (and must be re-read) or deleted. */
+    public static class Change {
+        private final long id;
+        private final boolean removed;
+
+        Change(long id, boolean removed) {
+            this.id = id;
+            this.removed = removed;
+        }
+
+        public long getId() { return id; }
+
+        public boolean isRemoved() { return removed; }
+    }
+
+    private final Path directory;
+    private final Path changeLog;
+    private long generation;
+    private long flushedSequence = -1;
+
+    public IndexStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.changeLog = directory.resolve("changes.log");
+    }
+
+    /**
+     * Loads the newest readable segment into {@code index}.
+     *
+     * @return the sequence the segment contains, or -1 if there is none
+     */
+    public synchronized long load(InvertedIndex index) {
+        for (long candidate : generations(true)) {
+            Path file = segmentPath(candidate);
+            try {
+                long sequence = index.loadSegment(file);
+                generation = Math.max(generation, candidate);
+                flushedSequence = sequence;
+                return sequence;
+            } catch (IOException e) {
+                System.err.println("Skipping unreadable search segment " + file + ": " + e.getMessage());
+            }
+        }
+        generation = generations(true).stream().findFirst().orElse(0L);
+        return -1;
+    }
+
+    public synchronized void recordIndexed(long sequence, long id) {
+        append(sequence + " U " + id);
+    }
+
+    public synchronized void recordRemoved(long sequence, long id) {
+        append(sequence + " D " + id);
+    }
+
+    /**
+     * Returns the logged changes, one per entity id (its latest), in the
+     * order they last happened. Entries already covered by the newest
+     * segment may still be among them; replaying those again is harmless.
+     */
+    public synchronized List<Change> pendingChanges() throws IOException {
+        Map<Long, Change> latest = new LinkedHashMap<>();
+        for (String line : readLog()) {
+            String[] parts = line.split(" ");
+            if (parts.length != 3) {
+                continue;
+            }
+            long id = Long.parseLong(parts[2]);
+            latest.remove(id);
+            latest.put(id, new Change(id, "D".equals(parts[1])));
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    /** Forgets the logged changes, e.g. because the index is being rebuilt from the database. */
+    public synchronized void discardChanges() throws IOException {
+        Files.deleteIfExists(changeLog);
+    }
+
+    /**
+     * Writes {@code index} as a new generation if it changed since the last
+     * one, then prunes the log and the older generations.
+     *
+     * @param pruneUpTo log entries up to this sequence are dropped; callers
+     *                  that persist state next to the index (the suggestion
+     *                  trie) pass the sequence that state was saved at
+     * @return whether a segment was written
+     */
+    public synchronized boolean flush(InvertedIndex index, long pruneUpTo) throws IOException {
+        if (index.getSequence() == flushedSequence) {
+            return false;
+        }
+        long next = generation + 1;
+        long written = index.writeSegment(segmentPath(next));
+        generation = next;
+        flushedSequence = written;
+
+        List<String> pending = readLog().stream()
+                .filter(line -> Long.parseLong(line.substring(0, line.indexOf(' '))) > Math.min(written, pruneUpTo))
+                .collect(Collectors.toList());
+        Path temporary = directory.resolve("changes.log.tmp");
+        Files.write(temporary, pending, StandardCharsets.UTF_8);
+        Files.move(temporary, changeLog, StandardCopyOption.REPLACE_EXISTING);
+
+        for (long old : generations(false)) {
+            if (old < next) {
+                try {
+                    Files.deleteIfExists(segmentPath(old));
+                } catch (IOException e) {
+                    // Still mapped on platforms that lock mapped files; retried on the next flush
+                }
+            }
+        }
+        return true;
+    }
+
+    private void append(String line) {
+        try {
+            Files.writeString(changeLog, line + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Could not log search index change to " + changeLog + ": " + e.getMessage());
+        }
+    }
+
+    private List<String> readLog() throws IOException {
+        if (!Files.exists(changeLog)) {
+            return Collections.emptyList();
+        }
+        return Files.readAllLines(changeLog, StandardCharsets.UTF_8).stream()
+                .filter(line -> !line.isBlank())
+                .collect(Collectors.toList());
+    }
+
+    private List<Long> generations(boolean newestFirst) {
+        try (Stream<Path> files = Files.list(directory)) {
+            Comparator<Long> order = newestFirst ? Comparator.reverseOrder() : Comparator.naturalOrder();
+            return files
+                    .map(file -> SEGMENT_NAME.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted(order)
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private Path segmentPath(long generation) {
+        return directory.resolve("segment-" + generation + ".seg");
+    }
+}
@@ -0,0 +1,1102 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over one entity type. Entities are addressed by
+ * a dense int ordinal assigned on first insert; the term dictionary is kept
+ * sorted so that prefix lookups only visit the matching range of terms.
+ * Keyword attributes used for faceting are kept as one compressed bitmap of
+ * ordinals per distinct value. A trigram index over the vocabulary lets a
+ * misspelt token fall back to the terms within a small edit distance.
+ *
+ * Postings record term positions so that phrases can be matched. Positions
+ * run across all fields of an entity, with a gap between consecutive fields
+ * so that no phrase spans two of them. The leading text of each field is
+ * stored with its token offsets, which is what snippets are cut from.
+ *
+ * The values of a shard facet (the project an entity belongs to) partition
+ * the index into shards: one bitmap of ordinals per value over the shared
+ * dictionary. A query scoped to a shard leads its conjunction with that
+ * bitmap, so it only visits the postings of the shard's entities; a global
+ * query is split by shard across fork-join tasks. Collection statistics
+ * stay global, so a score means the same whichever shard it came from.
+ *
+ * Every change advances a sequence number. {@link #writeSegment} persists
+ * the whole index with the sequence it reached, and {@link #loadSegment}
+ * maps it back in without re-tokenizing anything, so a change log only has
+ * to be replayed from that sequence on.
+ */
+public class InvertedIndex {
+
+    /** Score multiplier for a term that only starts with the query token. */
+    static final double PREFIX_BOOST = 0.7;
+
+    /** Score multiplier for a term one edit away from the query token; halved again per extra edit. */
+    static final double FUZZY_BOOST = 0.5;
+
+    /** Positions skipped between the end of one field and the start of the next. */
+    static final int POSITION_GAP = 1;
+
+    /** Global queries over fewer entities than this are not split across threads. */
+    static final int PARALLEL_GRAIN = 8192;
+
+    /** Matched positions gathered for one snippet at most; enough to find a good window in any field. */
+    static final int MAX_SNIPPET_MATCHES = 4096;
+
+    private final String[] fields;
+    private final NavigableMap<String, PostingList> terms = new TreeMap<>();
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private final Map<Integer, DocEntry> docs = new HashMap<>();
+    private final Map<String, Map<String, RoaringBitmap>> facets = new HashMap<>();
+    private final TrigramIndex vocabulary = new TrigramIndex();
+    private final RoaringBitmap live = new RoaringBitmap();
+    private final Map<String, Integer> fieldNumbers = new HashMap<>();
+    private final long[] totalFieldLengths;
+    private long[] ids = new long[64];
+    private int nextOrdinal;
+    private long sequence;
+    private volatile String shardFacet;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private static class DocEntry {
+        final String[] terms;
+        final int[] fieldLengths;
+        final Map<String, String> facetValues;
+        final StoredFields stored;
+        // What the fields were counted from, see index(long, Map, TermCounter[], String)
+        final String source;
+
+        DocEntry(String[] terms, int[] fieldLengths, Map<String, String> facetValues, StoredFields stored,
+                 String source) {
+            this.terms = terms;
+            this.fieldLengths = fieldLengths;
+            this.facetValues = facetValues;
+            this.stored = stored;
+            this.source = source;
+        }
+
+        /** First position of {@code field}. */
+        int fieldStart(int field) {
+            int start = 0;
+            for (int f = 0; f < field; f++) {
+                start += fieldLengths[f] + POSITION_GAP;
+            }
+            return start;
+        }
+
+        /** Whether a position falls inside {@code field}. */
+        boolean inField(int position, int field) {
+            int start = fieldStart(field);
+            return position >= start && position < start + fieldLengths[field];
+        }
+    }
+
+    public InvertedIndex(String... fields) {
+        this.fields = fields;
+        this.totalFieldLengths = new long[fields.length];
+        for (int field = 0; field < fields.length; field++) {
+            fieldNumbers.put(fields[field], field);
+        }
+    }
+
+    public String[] getFields() {
+        return fields;
+    }
+
+    /** Makes the values of {@code facet} the shards that queries can be scoped to. */
+    public void setShardFacet(String facet) {
+        this.shardFacet = facet;
+    }
+
+    /**
+     * Adds or replaces an entity. Values are given in the same order as the
+     * fields passed to the constructor.
+     */
+    public long index(long id, String... values) {
+        return index(id, Collections.emptyMap(), values);
+    }
+
+    /**
+     * Adds or replaces an entity together with its facet values, keyed by
+     * facet name. Null facet values are not indexed.
+     */
+    public long index(long id, Map<String, String> facetValues, String... values) {
+        TermCounter[] fieldTerms = new TermCounter[values.length];
+        for (int field = 0; field < values.length; field++) {
+            fieldTerms[field] = TermCounter.of(values[field]);
+        }
+        return index(id, facetValues, fieldTerms);
+    }
+
+    /**
+     * Adds or replaces an entity from terms that were already counted, which
+     * is how large field values (such as file content) are indexed without
+     * materialising their text. Null counters leave the field empty.
+     *
+     * @return the sequence number of this change
+     */
+    public long index(long id, Map<String, String> facetValues, TermCounter[] fieldTerms) {
+        return index(id, facetValues, fieldTerms, null);
+    }
+
+    /**
+     * Like {@link #index(long, Map, TermCounter[])}, remembering what the
+     * fields were counted from (a file path and size, say), so a later
+     * change can tell whether {@link #fieldTerms} still holds them.
+     */
+    public long index(long id, Map<String, String> facetValues, TermCounter[] fieldTerms, String source) {
+        Map<String, int[]> termFreqs = new HashMap<>();
+        Map<String, int[]> termPositions = new HashMap<>();
+        int[] fieldLengths = new int[fields.length];
+        int fieldStart = 0;
+        for (int field = 0; field < fields.length; field++) {
+            TermCounter counter = field < fieldTerms.length ? fieldTerms[field] : null;
+            if (counter != null) {
+                for (String term : counter.terms()) {
+                    termFreqs.computeIfAbsent(term, t -> new int[fields.length])[field] = counter.count(term);
+                    termPositions.merge(term, shift(counter.positions(term), fieldStart), InvertedIndex::concat);
+                }
+                fieldLengths[field] = counter.getLength();
+            }
+            fieldStart += fieldLengths[field] + POSITION_GAP;
+        }
+        StoredFields stored = StoredFields.of(fieldTerms, fields.length);
+
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.get(id);
+            if (ordinal == null) {
+                ordinal = nextOrdinal++;
+                ordinals.put(id, ordinal);
+                if (ordinal >= ids.length) {
+                    ids = Arrays.copyOf(ids, ids.length * 2);
+                }
+                ids[ordinal] = id;
+            } else {
+                unlink(ordinal);
+            }
+            for (Map.Entry<String, int[]> entry : termFreqs.entrySet()) {
+                terms.computeIfAbsent(entry.getKey(), term -> {
+                    vocabulary.add(term);
+                    return new PostingList(fields.length);
+                }).put(ordinal, entry.getValue(), termPositions.get(entry.getKey()));
+            }
+            docs.put(ordinal, new DocEntry(termFreqs.keySet().toArray(new String[0]), fieldLengths,
+                    linkFacets(ordinal, facetValues), stored, source));
+            live.add(ordinal.intValue());
+            for (int field = 0; field < fields.length; field++) {
+                totalFieldLengths[field] += fieldLengths[field];
+            }
+            return ++sequence;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the facet values of an indexed entity and keeps its postings,
+     * for changes (such as a status) that touch no text field.
+     *
+     * @return the sequence number of this change, or -1 if the entity is
+     *         not indexed
+     */
+    public long updateFacets(long id, Map<String, String> facetValues) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.get(id);
+            DocEntry previous = ordinal == null ? null : docs.get(ordinal);
+            if (previous == null) {
+                return -1;
+            }
+            unlinkFacets(ordinal, previous.facetValues);
+            docs.put(ordinal, new DocEntry(previous.terms, previous.fieldLengths, linkFacets(ordinal, facetValues),
+                    previous.stored, previous.source));
+            return ++sequence;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** The source the entity was indexed with, or null. */
+    public String getSource(long id) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinals.get(id);
+            DocEntry entry = ordinal == null ? null : docs.get(ordinal);
+            return entry == null ? null : entry.source;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The terms of one field of an indexed entity, read back from its
+     * postings and stored text, to index the entity again without
+     * re-reading that field's source. Returns null if the entity is not
+     * indexed.
+     */
+    public TermCounter fieldTerms(long id, String field) {
+        int number = fieldNumber(field);
+        if (number < 0) {
+            throw new IllegalArgumentException("Unknown field " + field);
+        }
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinals.get(id);
+            DocEntry entry = ordinal == null ? null : docs.get(ordinal);
+            if (entry == null) {
+                return null;
+            }
+            int start = entry.fieldStart(number);
+            Map<String, int[]> positions = new HashMap<>();
+            for (String term : entry.terms) {
+                PostingList postings = terms.get(term);
+                int index = postings.find(ordinal);
+                if (index < 0 || postings.freq(index, number) == 0) {
+                    continue;
+                }
+                int[] local = new int[postings.freq(index, number)];
+                int count = 0;
+                for (int position : postings.positions(index)) {
+                    if (entry.inField(position, number) && count < local.length) {
+                        local[count++] = position - start;
+                    }
+                }
+                positions.put(term, local);
+            }
+            return TermCounter.restored(positions, entry.fieldLengths[number], entry.stored.text(number),
+                    entry.stored.tokenStarts(number));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the sequence number of this change
+     */
+    public long remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.remove(id);
+            if (ordinal != null) {
+                unlink(ordinal);
+            }
+            return ++sequence;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            terms.clear();
+            ordinals.clear();
+            docs.clear();
+            facets.clear();
+            vocabulary.clear();
+            live.clear();
+            Arrays.fill(totalFieldLengths, 0);
+            nextOrdinal = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Sequence number of the latest change. */
+    public long getSequence() {
+        lock.readLock().lock();
+        try {
+            return sequence;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the whole index to {@code file} (through a temporary file that
+     * is then moved into place) and returns the sequence it contains.
+     * Writers wait while the segment is written; searches do not.
+     */
+    public long writeSegment(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(SegmentFile.MAGIC);
+            out.writeInt(SegmentFile.VERSION);
+
+            String[] dictionary = terms.keySet().toArray(new String[0]);
+            Map<String, Integer> termNumbers = new HashMap<>(dictionary.length * 2);
+            long[] offsets = new long[dictionary.length];
+            long offset = SegmentFile.HEADER_BYTES;
+            for (int i = 0; i < dictionary.length; i++) {
+                termNumbers.put(dictionary[i], i);
+                offsets[i] = offset;
+                offset += terms.get(dictionary[i]).writeTo(out);
+            }
+            List<Map.Entry<Integer, DocEntry>> entries = new ArrayList<>(docs.entrySet());
+            long[] storedOffsets = new long[entries.size()];
+            for (int d = 0; d < entries.size(); d++) {
+                storedOffsets[d] = offset;
+                offset += entries.get(d).getValue().stored.writeTo(out);
+            }
+            long metadataOffset = offset;
+
+            out.writeInt(fields.length);
+            for (String field : fields) {
+                out.writeUTF(field);
+            }
+            out.writeLong(sequence);
+            out.writeInt(nextOrdinal);
+            out.writeInt(dictionary.length);
+            for (int i = 0; i < dictionary.length; i++) {
+                out.writeUTF(dictionary[i]);
+                out.writeLong(offsets[i]);
+            }
+            out.writeInt(entries.size());
+            for (int d = 0; d < entries.size(); d++) {
+                Map.Entry<Integer, DocEntry> entry = entries.get(d);
+                DocEntry doc = entry.getValue();
+                out.writeInt(entry.getKey());
+                out.writeLong(ids[entry.getKey()]);
+                out.writeLong(storedOffsets[d]);
+                for (int length : doc.fieldLengths) {
+                    out.writeInt(length);
+                }
+                out.writeInt(doc.facetValues.size());
+                for (Map.Entry<String, String> facet : doc.facetValues.entrySet()) {
+                    out.writeUTF(facet.getKey());
+                    out.writeUTF(facet.getValue());
+                }
+                out.writeBoolean(doc.source != null);
+                if (doc.source != null) {
+                    out.writeUTF(doc.source);
+                }
+                out.writeInt(doc.terms.length);
+                for (String term : doc.terms) {
+                    out.writeInt(termNumbers.get(term));
+                }
+            }
+            out.writeLong(metadataOffset);
+            out.flush();
+            channel.force(true);
+            long written = sequence;
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return written;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the contents of this index with a segment written by
+     * {@link #writeSegment}. Posting lists stay in the mapped file until they
+     * change; only the dictionary and per-entity data are read onto the heap.
+     *
+     * @return the sequence the segment contains
+     * @throws IOException if the file is unreadable or was written for
+     *                     different fields; a file whose header is wrong
+     *                     leaves the index as it was, any later failure
+     *                     leaves it empty
+     */
+    public long loadSegment(Path file) throws IOException {
+        ByteBuffer segment = SegmentFile.map(file);
+        lock.writeLock().lock();
+        try {
+            clear();
+            DataInputStream in = SegmentFile.metadata(segment);
+            int fieldCount = in.readInt();
+            for (int field = 0; field < fieldCount; field++) {
+                String name = in.readUTF();
+                if (fieldCount != fields.length || !name.equals(fields[field])) {
+                    throw new IOException("Segment " + file + " was written for different fields");
+                }
+            }
+            long segmentSequence = in.readLong();
+            int segmentNextOrdinal = in.readInt();
+
+            String[] dictionary = new String[in.readInt()];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = in.readUTF();
+                long offset = in.readLong();
+                terms.put(dictionary[i], PostingList.mapped(fields.length, segment, (int) offset));
+                vocabulary.add(dictionary[i]);
+            }
+
+            int docCount = in.readInt();
+            ids = new long[Math.max(64, segmentNextOrdinal)];
+            for (int d = 0; d < docCount; d++) {
+                int ordinal = in.readInt();
+                long id = in.readLong();
+                StoredFields stored = StoredFields.mapped(fields.length, segment, (int) in.readLong());
+                int[] fieldLengths = new int[fields.length];
+                for (int field = 0; field < fields.length; field++) {
+                    fieldLengths[field] = in.readInt();
+                    totalFieldLengths[field] += fieldLengths[field];
+                }
+                Map<String, String> facetValues = new HashMap<>();
+                int facetCount = in.readInt();
+                for (int f = 0; f < facetCount; f++) {
+                    String name = in.readUTF();
+                    String value = in.readUTF();
+                    facetValues.put(name, value);
+                    facets.computeIfAbsent(name, n -> new HashMap<>())
+                            .computeIfAbsent(value, v -> new RoaringBitmap())
+                            .add(ordinal);
+                }
+                String source = in.readBoolean() ? in.readUTF() : null;
+                String[] docTerms = new String[in.readInt()];
+                for (int t = 0; t < docTerms.length; t++) {
+                    docTerms[t] = dictionary[in.readInt()];
+                }
+                ordinals.put(id, ordinal);
+                ids[ordinal] = id;
+                docs.put(ordinal, new DocEntry(docTerms, fieldLengths, facetValues, stored, source));
+                live.add(ordinal);
+            }
+            nextOrdinal = segmentNextOrdinal;
+            sequence = segmentSequence;
+            return sequence;
+        } catch (IOException | RuntimeException e) {
+            clear();
+            throw e instanceof IOException ? (IOException) e : new IOException("Corrupt segment " + file, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the fields and facets a {@code field:value} clause can name in
+     * this index.
+     */
+    public Set<String> getQueryableFields() {
+        lock.readLock().lock();
+        try {
+            Set<String> names = new HashSet<>(fieldNumbers.keySet());
+            names.addAll(facets.keySet());
+            return names;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks the matches of a query and keeps only the best {@code k}.
+     *
+     * @param fieldWeights BM25F weight per field, in constructor order
+     */
+    public TopDocs search(Query query, double[] fieldWeights, int k) {
+        return search(query, fieldWeights, k, null);
+    }
+
+    /** Like {@link #search(Query, double[], int)}, within one shard when {@code shard} is not null. */
+    public TopDocs search(Query query, double[] fieldWeights, int k, String shard) {
+        return TopDocs.select(scoreAll(query, fieldWeights, shard).getScores(), k, null);
+    }
+
+    /**
+     * Returns the BM25F score of every entity matching the query, keyed by
+     * entity id, along with the matching ordinals. Callers that need to
+     * restrict the matches further (for example by a database filter) select
+     * their top hits from the score map.
+     */
+    public Matches scoreAll(Query query, double[] fieldWeights) {
+        return scoreAll(query, fieldWeights, null);
+    }
+
+    /**
+     * Like {@link #scoreAll(Query, double[])}, but when {@code shard} is not
+     * null only the entities of that shard are matched, and only their
+     * postings are read.
+     */
+    public Matches scoreAll(Query query, double[] fieldWeights, String shard) {
+        lock.readLock().lock();
+        try {
+            Scoring scoring = new Scoring(fieldWeights);
+            if (shard != null) {
+                Map<String, RoaringBitmap> shards = shardFacet == null ? null : facets.get(shardFacet);
+                RoaringBitmap shardDocs = shards == null ? null : shards.get(shard);
+                return shardDocs == null ? Matches.EMPTY : collect(query, scoring, shardDocs);
+            }
+            // invoke() forks into the pool of the calling worker thread, and the common pool otherwise
+            ForkJoinPool pool = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : ForkJoinPool.commonPool();
+            int parallelism = pool.getParallelism();
+            int size = live.getCardinality();
+            if (parallelism < 2 || size < 2 * PARALLEL_GRAIN) {
+                return collect(query, scoring, null);
+            }
+            // A few tasks per core, so a shard with many matches does not hold up the rest
+            int grain = Math.max(PARALLEL_GRAIN, size / (parallelism * 4));
+            // The tasks only read, and the write lock cannot be taken while this thread holds the read lock
+            List<Hits> parts = new ScoreTask(query, scoring, partitions(), grain).invoke();
+            int total = 0;
+            for (Hits part : parts) {
+                total += part.count;
+            }
+            if (total == 0) {
+                return Matches.EMPTY;
+            }
+            Map<Long, Double> byId = new HashMap<>(total * 4 / 3 + 1);
+            RoaringBitmap matched = new RoaringBitmap();
+            for (Hits part : parts) {
+                for (int i = 0; i < part.count; i++) {
+                    byId.put(ids[part.docs[i]], part.scores[i]);
+                }
+                matched.or(part.matched);
+            }
+            return new Matches(byId, matched);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Scores the matches of a query, restricted to the ordinals of {@code within} unless it is null. */
+    private Matches collect(Query query, Scoring scoring, RoaringBitmap within) {
+        DocIterator iterator = restrict(iterator(query, scoring), within);
+        Map<Long, Double> byId = new HashMap<>();
+        RoaringBitmap matched = new RoaringBitmap();
+        for (int doc = iterator.nextDoc(); doc != DocIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+            byId.put(ids[doc], iterator.score());
+            matched.add(doc);
+        }
+        return byId.isEmpty() ? Matches.EMPTY : new Matches(byId, matched);
+    }
+
+    private static DocIterator restrict(DocIterator iterator, RoaringBitmap within) {
+        return within == null ? iterator
+                : new DocIterator.Conjunction(List.of(iterator, new DocIterator.Bitmap(within)));
+    }
+
+    /** The matches of one fork-join task, kept as arrays until all tasks are merged. */
+    private static class Hits {
+        int[] docs = new int[16];
+        double[] scores = new double[16];
+        int count;
+        final RoaringBitmap matched = new RoaringBitmap();
+
+        void add(int doc, double score) {
+            if (count == docs.length) {
+                docs = Arrays.copyOf(docs, count * 2);
+                scores = Arrays.copyOf(scores, count * 2);
+            }
+            docs[count] = doc;
+            scores[count++] = score;
+            matched.add(doc);
+        }
+    }
+
+    /** The shards, plus one partition for the entities outside every shard. */
+    private List<RoaringBitmap> partitions() {
+        Map<String, RoaringBitmap> shards = shardFacet == null ? null : facets.get(shardFacet);
+        if (shards == null || shards.isEmpty()) {
+            return List.of(live);
+        }
+        List<RoaringBitmap> partitions = new ArrayList<>(shards.values());
+        RoaringBitmap unsharded = RoaringBitmap.andNot(live, RoaringBitmap.or(partitions.iterator()));
+        if (!unsharded.isEmpty()) {
+            partitions.add(unsharded);
+        }
+        return partitions;
+    }
+
+    /**
+     * Scores a list of partitions: lists are halved (and a single oversized
+     * partition split at its middle ordinal) until each task covers about
+     * {@code grain} entities, which then run as one pass.
+     */
+    private class ScoreTask extends RecursiveTask<List<Hits>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Query query;
+        private final Scoring scoring;
+        private final List<RoaringBitmap> partitions;
+        private final int grain;
+
+        ScoreTask(Query query, Scoring scoring, List<RoaringBitmap> partitions, int grain) {
+            this.query = query;
+            this.scoring = scoring;
+            this.partitions = partitions;
+            this.grain = grain;
+        }
+
+        @Override
+        protected List<Hits> compute() {
+            long size = 0;
+            for (RoaringBitmap partition : partitions) {
+                size += partition.getLongCardinality();
+            }
+            if (size <= grain) {
+                RoaringBitmap within = partitions.size() == 1
+                        ? partitions.get(0)
+                        : RoaringBitmap.or(partitions.iterator());
+                DocIterator iterator = restrict(iterator(query, scoring), within);
+                Hits hits = new Hits();
+                for (int doc = iterator.nextDoc(); doc != DocIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+                    hits.add(doc, iterator.score());
+                }
+                List<Hits> result = new ArrayList<>();
+                result.add(hits);
+                return result;
+            }
+            ScoreTask first;
+            ScoreTask second;
+            if (partitions.size() == 1) {
+                RoaringBitmap partition = partitions.get(0);
+                long middle = Integer.toUnsignedLong(partition.select((int) (size / 2)));
+                RoaringBitmap lower = partition.clone();
+                lower.remove(middle, 0x1_0000_0000L);
+                RoaringBitmap upper = partition.clone();
+                upper.remove(0L, middle);
+                first = new ScoreTask(query, scoring, List.of(lower), grain);
+                second = new ScoreTask(query, scoring, List.of(upper), grain);
+            } else {
+                // Split where the running size passes half, so both halves do similar work
+                int split = 1;
+                long running = partitions.get(0).getLongCardinality();
+                while (split < partitions.size() - 1 && running < size / 2) {
+                    running += partitions.get(split++).getLongCardinality();
+                }
+                first = new ScoreTask(query, scoring, partitions.subList(0, split), grain);
+                second = new ScoreTask(query, scoring, partitions.subList(split, partitions.size()), grain);
+            }
+            first.fork();
+            List<Hits> secondHits = second.compute();
+            List<Hits> hits = first.join();
+            hits.addAll(secondHits);
+            return hits;
+        }
+    }
+
+    /**
+     * Converts entity ids into a bitmap of ordinals. Unknown ids are skipped.
+     */
+    public RoaringBitmap toOrdinals(Collection<Long> entityIds) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        lock.readLock().lock();
+        try {
+            for (Long id : entityIds) {
+                Integer ordinal = ordinals.get(id);
+                if (ordinal != null) {
+                    bitmap.add(ordinal.intValue());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return bitmap;
+    }
+
+    /**
+     * Counts, for every facet value, how many of the given ordinals carry it.
+     * Each count is a single bitmap intersection cardinality, so the cost
+     * depends on the number of distinct values rather than on the matches.
+     */
+    public Map<String, Map<String, Long>> facetCounts(RoaringBitmap matches) {
+        Map<String, Map<String, Long>> counts = new HashMap<>();
+        if (matches.isEmpty()) {
+            return counts;
+        }
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, Map<String, RoaringBitmap>> facet : facets.entrySet()) {
+                Map<String, Long> valueCounts = new HashMap<>();
+                for (Map.Entry<String, RoaringBitmap> value : facet.getValue().entrySet()) {
+                    long count = RoaringBitmap.andCardinality(value.getValue(), matches);
+                    if (count > 0) {
+                        valueCounts.put(value.getKey(), count);
+                    }
+                }
+                if (!valueCounts.isEmpty()) {
+                    counts.put(facet.getKey(), valueCounts);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return counts;
+    }
+
+    /**
+     * Cuts a snippet for one entity from the stored text of the first of
+     * {@code snippetFields} that shows the most query terms. Matches are
+     * found through the postings of the terms the query tokens expand to
+     * and mapped to text through the stored token offsets; nothing is
+     * tokenized again.
+     *
+     * @param budgetNanos time allowed for collecting prefix and fuzzy
+     *                    matches; when it runs out the snippet is cut from
+     *                    the matches found so far
+     * @return the snippet, or null when no match falls in stored text
+     */
+    public Snippet snippet(long id, Query query, String[] snippetFields, int maxChars, long budgetNanos) {
+        long deadline = System.nanoTime() + budgetNanos;
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinals.get(id);
+            DocEntry doc = ordinal == null ? null : docs.get(ordinal);
+            if (doc == null) {
+                return null;
+            }
+            List<String> tokens = new ArrayList<>();
+            List<Integer> tokenFields = new ArrayList<>();
+            collectHighlightTokens(query, tokens, tokenFields);
+
+            // Matched positions of every snippet field, each tagged with the query token it matched
+            int[] snippetFieldNumbers = new int[snippetFields.length];
+            List<List<int[]>> hits = new ArrayList<>();
+            for (int i = 0; i < snippetFields.length; i++) {
+                snippetFieldNumbers[i] = fieldNumber(snippetFields[i]);
+                hits.add(new ArrayList<>());
+            }
+            // Exact terms first, which costs one lookup per token; completions and near misses
+            // (whose expansion can take longer) only while the budget lasts
+            int collected = 0;
+            collect:
+            for (int pass = 0; pass < 2; pass++) {
+                for (int t = 0; t < tokens.size(); t++) {
+                    String token = tokens.get(t);
+                    Collection<String> matching = pass == 0 ? List.of(token) : expand(token).keySet();
+                    for (String term : matching) {
+                        PostingList postings = terms.get(term);
+                        int index = postings == null || (pass == 1 && term.equals(token)) ? -1 : postings.find(ordinal);
+                        if (index < 0) {
+                            continue;
+                        }
+                        for (int position : postings.positions(index)) {
+                            for (int i = 0; i < snippetFieldNumbers.length; i++) {
+                                int field = snippetFieldNumbers[i];
+                                if (field >= 0 && (tokenFields.get(t) < 0 || tokenFields.get(t) == field)
+                                        && doc.inField(position, field)) {
+                                    hits.get(i).add(new int[]{position - doc.fieldStart(field), t});
+                                    collected++;
+                                }
+                            }
+                        }
+                        if (collected >= MAX_SNIPPET_MATCHES) {
+                            break collect;
+                        }
+                    }
+                    if (pass == 1 && System.nanoTime() > deadline) {
+                        break collect;
+                    }
+                }
+            }
+
+            Snippet best = null;
+            for (int i = 0; i < snippetFieldNumbers.length; i++) {
+                if (hits.get(i).isEmpty()) {
+                    continue;
+                }
+                int[] starts = doc.stored.tokenStarts(snippetFieldNumbers[i]);
+                List<int[]> fieldHits = hits.get(i);
+                fieldHits.removeIf(hit -> hit[0] >= starts.length);
+                fieldHits.sort(Comparator.comparingInt(hit -> hit[0]));
+                int[] positions = new int[fieldHits.size()];
+                int[] tokenIds = new int[fieldHits.size()];
+                for (int h = 0; h < positions.length; h++) {
+                    positions[h] = fieldHits.get(h)[0];
+                    tokenIds[h] = fieldHits.get(h)[1];
+                }
+                Snippet snippet = Snippet.cut(doc.stored.text(snippetFieldNumbers[i]), starts, positions, tokenIds,
+                        tokens.size(), maxChars);
+                if (snippet != null && snippet.betterThan(best)) {
+                    best = snippet;
+                }
+            }
+            return best;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** The tokens a query asks to find, with their field number (-1 for any); exclusions are left out. */
+    private void collectHighlightTokens(Query query, List<String> tokens, List<Integer> tokenFields) {
+        if (query instanceof Query.Term) {
+            Query.Term term = (Query.Term) query;
+            addHighlightToken(term.getToken(), fieldNumber(term.getField()), tokens, tokenFields);
+        } else if (query instanceof Query.Phrase) {
+            Query.Phrase phrase = (Query.Phrase) query;
+            phrase.getTokens().forEach(token ->
+                    addHighlightToken(token, fieldNumber(phrase.getField()), tokens, tokenFields));
+        } else if (query instanceof Query.FieldValue) {
+            Query.FieldValue value = (Query.FieldValue) query;
+            // Facet values are not text, so only field:value clauses on text fields are highlighted
+            int field = fieldNumber(value.getField());
+            if (field >= 0) {
+                value.getTokens().forEach(token -> addHighlightToken(token, field, tokens, tokenFields));
+            }
+        } else if (query instanceof Query.Bool) {
+            Query.Bool bool = (Query.Bool) query;
+            bool.getMust().forEach(clause -> collectHighlightTokens(clause, tokens, tokenFields));
+            bool.getShould().forEach(clause -> collectHighlightTokens(clause, tokens, tokenFields));
+        }
+    }
+
+    private static void addHighlightToken(String token, int field, List<String> tokens, List<Integer> tokenFields) {
+        if (field == -2) {
+            return;
+        }
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.get(i).equals(token) && (tokenFields.get(i) == -1 || tokenFields.get(i) == field)) {
+                return;
+            }
+        }
+        tokens.add(token);
+        tokenFields.add(field);
+    }
+
+    /** Collection statistics and field weights shared by every clause of one query. */
+    private class Scoring {
+        final double[] fieldWeights;
+        final int docCount = ordinals.size();
+        final double[] avgFieldLengths = new double[fields.length];
+
+        Scoring(double[] fieldWeights) {
+            this.fieldWeights = fieldWeights;
+            for (int field = 0; field < fields.length; field++) {
+                avgFieldLengths[field] = docCount == 0 ? 0 : (double) totalFieldLengths[field] / docCount;
+            }
+        }
+
+        /** Scores postings of {@code term}, counting only {@code field} when it is not -1. */
+        DocIterator.PostingScorer scorer(PostingList postings, double boost, int field) {
+            double idf = Bm25.idf(docCount, postings.size());
+            double[] weights = fieldWeights;
+            if (field >= 0) {
+                weights = new double[fieldWeights.length];
+                weights[field] = fieldWeights[field];
+            }
+            double[] effectiveWeights = weights;
+            return (list, index) -> boost * Bm25.score(idf, list, index, docs.get(list.doc(index)).fieldLengths,
+                    avgFieldLengths, effectiveWeights);
+        }
+    }
+
+    private DocIterator iterator(Query query, Scoring scoring) {
+        if (query instanceof Query.Term) {
+            Query.Term term = (Query.Term) query;
+            return termIterator(term.getToken(), fieldNumber(term.getField()), scoring);
+        }
+        if (query instanceof Query.Phrase) {
+            Query.Phrase phrase = (Query.Phrase) query;
+            return phraseIterator(phrase.getTokens(), fieldNumber(phrase.getField()), scoring);
+        }
+        if (query instanceof Query.FieldValue) {
+            return fieldValueIterator((Query.FieldValue) query, scoring);
+        }
+        return boolIterator((Query.Bool) query, scoring);
+    }
+
+    /** A text field's number, -1 for "any field", or -2 for a field this index does not have. */
+    private int fieldNumber(String field) {
+        return field == null ? -1 : fieldNumbers.getOrDefault(field, -2);
+    }
+
+    /** Best score over the terms the token expands to (itself, its completions or its near misses). */
+    private DocIterator termIterator(String token, int field, Scoring scoring) {
+        if (field == -2) {
+            return DocIterator.empty();
+        }
+        List<DocIterator> expansions = new ArrayList<>();
+        for (Map.Entry<String, Double> expansion : expand(token).entrySet()) {
+            PostingList postings = terms.get(expansion.getKey());
+            expansions.add(new DocIterator.Postings(postings, field,
+                    scoring.scorer(postings, expansion.getValue(), field)));
+        }
+        if (expansions.isEmpty()) {
+            return DocIterator.empty();
+        }
+        return expansions.size() == 1 ? expansions.get(0) : new DocIterator.Union(expansions, false);
+    }
+
+    private DocIterator phraseIterator(List<String> tokens, int field, Scoring scoring) {
+        if (field == -2) {
+            return DocIterator.empty();
+        }
+        List<DocIterator.Postings> phraseTerms = new ArrayList<>();
+        for (String token : tokens) {
+            PostingList postings = terms.get(token);
+            if (postings == null) {
+                return DocIterator.empty();
+            }
+            phraseTerms.add(new DocIterator.Postings(postings, field, scoring.scorer(postings, 1.0, field)));
+        }
+        if (field < 0) {
+            return new DocIterator.Phrase(phraseTerms, start -> true);
+        }
+        DocIterator.Postings first = phraseTerms.get(0);
+        return new DocIterator.Phrase(phraseTerms, start -> docs.get(first.docID()).inField(start, field));
+    }
+
+    /**
+     * {@code field:value} matches text in a field of that name, or else the
+     * facet values containing every token of the value ("pdf" matches
+     * "application/pdf").
+     */
+    private DocIterator fieldValueIterator(Query.FieldValue query, Scoring scoring) {
+        int field = fieldNumber(query.getField());
+        if (field >= 0) {
+            return query.getTokens().size() == 1
+                    ? termIterator(query.getTokens().get(0), field, scoring)
+                    : phraseIterator(query.getTokens(), field, scoring);
+        }
+        Map<String, RoaringBitmap> values = facets.get(query.getField());
+        if (values == null) {
+            return DocIterator.empty();
+        }
+        RoaringBitmap matching = new RoaringBitmap();
+        for (Map.Entry<String, RoaringBitmap> value : values.entrySet()) {
+            if (Tokenizer.tokenize(value.getKey()).containsAll(query.getTokens())) {
+                matching.or(value.getValue());
+            }
+        }
+        return new DocIterator.Bitmap(matching);
+    }
+
+    private DocIterator boolIterator(Query.Bool query, Scoring scoring) {
+        List<DocIterator> required = new ArrayList<>();
+        for (Query clause : query.getMust()) {
+            required.add(iterator(clause, scoring));
+        }
+        if (!query.getShould().isEmpty()) {
+            List<DocIterator> optional = new ArrayList<>();
+            for (Query clause : query.getShould()) {
+                optional.add(iterator(clause, scoring));
+            }
+            required.add(optional.size() == 1 ? optional.get(0) : new DocIterator.Union(optional, true));
+        }
+        if (required.isEmpty()) {
+            if (query.getMustNot().isEmpty()) {
+                return DocIterator.empty();
+            }
+            // Only exclusions: everything else matches
+            required.add(new DocIterator.Bitmap(live.clone()));
+        }
+        DocIterator result = required.size() == 1 ? required.get(0) : new DocIterator.Conjunction(required);
+        if (!query.getMustNot().isEmpty()) {
+            List<DocIterator> excluded = new ArrayList<>();
+            for (Query clause : query.getMustNot()) {
+                excluded.add(iterator(clause, scoring));
+            }
+            result = new DocIterator.Exclusion(result,
+                    excluded.size() == 1 ? excluded.get(0) : new DocIterator.Union(excluded, true));
+        }
+        return result;
+    }
+
+    /**
+     * Maps the terms a query token stands for to their score multiplier: the
+     * token itself and the terms it is a prefix of, or failing those, the
+     * terms within {@link #maxEdits} edits of it.
+     */
+    private Map<String, Double> expand(String token) {
+        Map<String, Double> expansions = new HashMap<>();
+        for (String term : prefixRange(token).keySet()) {
+            expansions.put(term, term.equals(token) ? 1.0 : PREFIX_BOOST);
+        }
+        if (expansions.isEmpty()) {
+            vocabulary.near(token, maxEdits(token)).forEach((term, distance) ->
+                    expansions.put(term, FUZZY_BOOST / (1 << (distance - 1))));
+        }
+        return expansions;
+    }
+
+    /** Short tokens must match exactly; longer ones tolerate one typo, long ones two. */
+    static int maxEdits(String token) {
+        return token.length() < 4 ? 0 : token.length() < 8 ? 1 : 2;
+    }
+
+    private SortedMap<String, PostingList> prefixRange(String prefix) {
+        return terms.subMap(prefix, prefix + Character.MAX_VALUE);
+    }
+
+    private void unlink(int ordinal) {
+        DocEntry previous = docs.remove(ordinal);
+        if (previous == null) {
+            return;
+        }
+        live.remove(ordinal);
+        for (String term : previous.terms) {
+            PostingList postings = terms.get(term);
+            if (postings != null && postings.remove(ordinal) && postings.size() == 0) {
+                terms.remove(term);
+                vocabulary.remove(term);
+            }
+        }
+        unlinkFacets(ordinal, previous.facetValues);
+        for (int field = 0; field < fields.length; field++) {
+            totalFieldLengths[field] -= previous.fieldLengths[field];
+        }
+    }
+
+    /** Adds the ordinal to the bitmap of each non-null facet value and returns the values it was added to. */
+    private Map<String, String> linkFacets(int ordinal, Map<String, String> facetValues) {
+        Map<String, String> linked = new HashMap<>();
+        for (Map.Entry<String, String> facet : facetValues.entrySet()) {
+            if (facet.getValue() != null) {
+                facets.computeIfAbsent(facet.getKey(), name -> new HashMap<>())
+                        .computeIfAbsent(facet.getValue(), value -> new RoaringBitmap())
+                        .add(ordinal);
+                linked.put(facet.getKey(), facet.getValue());
+            }
+        }
+        return linked;
+    }
+
+    private void unlinkFacets(int ordinal, Map<String, String> facetValues) {
+        for (Map.Entry<String, String> facet : facetValues.entrySet()) {
+            Map<String, RoaringBitmap> values = facets.get(facet.getKey());
+            RoaringBitmap bitmap = values == null ? null : values.get(facet.getValue());
+            if (bitmap != null) {
+                bitmap.remove(ordinal);
+                if (bitmap.isEmpty()) {
+                    values.remove(facet.getValue());
+                }
+            }
+        }
+    }
+
+    private static int[] shift(int[] positions, int offset) {
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] += offset;
+        }
+        return positions;
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        int[] joined = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, joined, first.length, second.length);
+        return joined;
+    }
+}
@@ -0,0 +1,29 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Everything a query matched in one index: the score of each matching
+ * entity id, and the same matches as a bitmap of ordinals for facet counting.
+ */
+public class Matches {
+
+    public static final Matches EMPTY = new Matches(Collections.emptyMap(), new RoaringBitmap());
+
+    private final Map<Long, Double> scores;
+    private final RoaringBitmap ordinals;
+
+    public Matches(Map<Long, Double> scores, RoaringBitmap ordinals) {
+        this.scores = scores;
+        this.ordinals = ordinals;
+    }
+
+    public Map<Long, Double> getScores() { return scores; }
+
+    public RoaringBitmap getOrdinals() { return ordinals; }
+
+    public boolean isEmpty() { return scores.isEmpty(); }
+}
@@ -0,0 +1,225 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Sorted list of document ordinals containing a term, with the term
+ * frequency recorded separately for every indexed field and the positions
+ * of the term within the document.
+ *
+ * A list loaded from a segment file reads straight from the memory-mapped
+ * block until its first change, when it is copied onto the heap; terms that
+ * are never written to again cost no heap at all.
+ */
+public class PostingList {
+
+    private final int fieldCount;
+    private int[] docs;
+    private int[] freqs;
+    private int[][] positions;
+    private int size;
+
+    // Mapped block: size, docs[size], freqs[size * fieldCount], positionStarts[size + 1], positions[...]
+    private IntBuffer mapped;
+    private int freqsStart;
+    private int positionStartsStart;
+    private int positionsStart;
+
+    public PostingList(int fieldCount) {
+        this.fieldCount = fieldCount;
+        this.docs = new int[4];
+        this.freqs = new int[docs.length * fieldCount];
+        this.positions = new int[4][];
+    }
+
+    private PostingList(int fieldCount, IntBuffer mapped) {
+        this.fieldCount = fieldCount;
+        this.mapped = mapped;
+        this.size = mapped.get(0);
+        this.freqsStart = 1 + size;
+        this.positionStartsStart = freqsStart + size * fieldCount;
+        this.positionsStart = positionStartsStart + size + 1;
+    }
+
+    /** Wraps a block written by {@link #writeTo} without copying it. */
+    static PostingList mapped(int fieldCount, ByteBuffer segment, int offset) {
+        ByteBuffer block = segment.duplicate();
+        block.position(offset);
+        return new PostingList(fieldCount, block.slice().asIntBuffer());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int doc(int index) {
+        return mapped != null ? mapped.get(1 + index) : docs[index];
+    }
+
+    public int freq(int index, int field) {
+        return mapped != null
+                ? mapped.get(freqsStart + index * fieldCount + field)
+                : freqs[index * fieldCount + field];
+    }
+
+    /** Ascending positions of the term in the document at {@code index}. */
+    public int[] positions(int index) {
+        if (mapped == null) {
+            return positions[index];
+        }
+        int start = mapped.get(positionStartsStart + index);
+        int end = mapped.get(positionStartsStart + index + 1);
+        int[] result = new int[end - start];
+        mapped.get(positionsStart + start, result);
+        return result;
+    }
+
+    public int find(int doc) {
+        if (mapped == null) {
+            return Arrays.binarySearch(docs, 0, size, doc);
+        }
+        return binarySearch(0, size, doc);
+    }
+
+    /**
+     * Returns the index of the first entry at or after {@code from} whose
+     * doc is at least {@code target}, or {@link #size()} if there is none.
+     * The sorted array acts as its own skip list: strides that double while
+     * they stay below the target skip whole runs of postings, and a binary
+     * search finishes inside the last stride. The cost grows with the log
+     * of the distance skipped, not with the number of postings skipped.
+     */
+    public int advance(int from, int target) {
+        if (from >= size || doc(from) >= target) {
+            return from;
+        }
+        int low = from;
+        int stride = 1;
+        while (low + stride < size && doc(low + stride) < target) {
+            low += stride;
+            stride <<= 1;
+        }
+        int index = binarySearch(low + 1, Math.min(low + stride, size - 1) + 1, target);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    void put(int doc, int[] fieldFreqs, int[] docPositions) {
+        materialise();
+        int index = find(doc);
+        if (index < 0) {
+            index = -index - 1;
+            ensureCapacity(size + 1);
+            System.arraycopy(docs, index, docs, index + 1, size - index);
+            System.arraycopy(freqs, index * fieldCount, freqs, (index + 1) * fieldCount, (size - index) * fieldCount);
+            System.arraycopy(positions, index, positions, index + 1, size - index);
+            docs[index] = doc;
+            size++;
+        }
+        System.arraycopy(fieldFreqs, 0, freqs, index * fieldCount, fieldCount);
+        positions[index] = docPositions;
+    }
+
+    boolean remove(int doc) {
+        int index = find(doc);
+        if (index < 0) {
+            return false;
+        }
+        materialise();
+        System.arraycopy(docs, index + 1, docs, index, size - index - 1);
+        System.arraycopy(freqs, (index + 1) * fieldCount, freqs, index * fieldCount, (size - index - 1) * fieldCount);
+        System.arraycopy(positions, index + 1, positions, index, size - index - 1);
+        size--;
+        positions[size] = null;
+        return true;
+    }
+
+    public int[] docs() {
+        int[] copy = new int[size];
+        for (int i = 0; i < size; i++) {
+            copy[i] = doc(i);
+        }
+        return copy;
+    }
+
+    /**
+     * Writes the list in the block format {@link #mapped} reads and returns
+     * the number of bytes written.
+     */
+    int writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(doc(i));
+        }
+        for (int i = 0; i < size; i++) {
+            for (int field = 0; field < fieldCount; field++) {
+                out.writeInt(freq(i, field));
+            }
+        }
+        int[][] all = new int[size][];
+        int start = 0;
+        for (int i = 0; i < size; i++) {
+            all[i] = positions(i);
+            out.writeInt(start);
+            start += all[i].length;
+        }
+        out.writeInt(start);
+        for (int[] docPositions : all) {
+            for (int position : docPositions) {
+                out.writeInt(position);
+            }
+        }
+        return 4 * (1 + size + size * fieldCount + size + 1 + start);
+    }
+
+    private int binarySearch(int from, int to, int doc) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = doc(mid);
+            if (value < doc) {
+                low = mid + 1;
+            } else if (value > doc) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /** Copies a mapped list onto the heap before its first change. */
+    private void materialise() {
+        if (mapped == null) {
+            return;
+        }
+        int capacity = Math.max(4, size);
+        int[] heapDocs = new int[capacity];
+        int[] heapFreqs = new int[capacity * fieldCount];
+        int[][] heapPositions = new int[capacity][];
+        for (int i = 0; i < size; i++) {
+            heapDocs[i] = doc(i);
+            for (int field = 0; field < fieldCount; field++) {
+                heapFreqs[i * fieldCount + field] = freq(i, field);
+            }
+            heapPositions[i] = positions(i);
+        }
+        docs = heapDocs;
+        freqs = heapFreqs;
+        positions = heapPositions;
+        mapped = null;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > docs.length) {
+            int newLength = Math.max(capacity, docs.length * 2);
+            docs = Arrays.copyOf(docs, newLength);
+            freqs = Arrays.copyOf(freqs, newLength * fieldCount);
+            positions = Arrays.copyOf(positions, newLength);
+        }
+    }
+}
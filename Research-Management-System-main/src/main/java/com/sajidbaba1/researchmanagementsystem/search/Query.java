@@ -0,0 +1,112 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parsed search query. Leaves match terms, phrases or facet values,
+ * optionally restricted to one field; {@link Bool} combines them with
+ * AND/OR/NOT semantics. Field names are resolved per index at search time,
+ * so one query can run against every entity type.
+ */
+public abstract class Query {
+
+    /** A word matched exactly, as a prefix, or failing both, fuzzily. */
+    public static class Term extends Query {
+        private final String field;
+        private final String token;
+
+        public Term(String field, String token) {
+            this.field = field;
+            this.token = token;
+        }
+
+        public String getField() { return field; }
+
+        public String getToken() { return token; }
+    }
+
+    /** Consecutive words, each matched exactly, in one field. */
+    public static class Phrase extends Query {
+        private final String field;
+        private final List<String> tokens;
+
+        public Phrase(String field, List<String> tokens) {
+            this.field = field;
+            this.tokens = tokens;
+        }
+
+        public String getField() { return field; }
+
+        public List<String> getTokens() { return tokens; }
+    }
+
+    /**
+     * {@code field:value} on a field that may be a keyword facet rather
+     * than indexed text. Which one it is depends on the index.
+     */
+    public static class FieldValue extends Query {
+        private final String field;
+        private final List<String> tokens;
+
+        public FieldValue(String field, List<String> tokens) {
+            this.field = field;
+            this.tokens = tokens;
+        }
+
+        public String getField() { return field; }
+
+        public List<String> getTokens() { return tokens; }
+    }
+
+    /**
+     * Matches when every {@code must} clause matches, at least one
+     * {@code should} clause matches (if there are any) and no
+     * {@code mustNot} clause matches.
+     */
+    public static class Bool extends Query {
+        private final List<Query> must = new ArrayList<>();
+        private final List<Query> should = new ArrayList<>();
+        private final List<Query> mustNot = new ArrayList<>();
+
+        public Bool must(Query query) {
+            must.add(query);
+            return this;
+        }
+
+        public Bool should(Query query) {
+            should.add(query);
+            return this;
+        }
+
+        public Bool mustNot(Query query) {
+            mustNot.add(query);
+            return this;
+        }
+
+        public List<Query> getMust() { return Collections.unmodifiableList(must); }
+
+        public List<Query> getShould() { return Collections.unmodifiableList(should); }
+
+        public List<Query> getMustNot() { return Collections.unmodifiableList(mustNot); }
+
+        public boolean isEmpty() {
+            return must.isEmpty() && should.isEmpty() && mustNot.isEmpty();
+        }
+    }
+
+    /** Matches entities containing every token, as {@link Term}s in any field. */
+    public static Query allOf(List<String> tokens) {
+        Bool bool = new Bool();
+        tokens.forEach(token -> bool.must(new Term(null, token)));
+        return bool;
+    }
+
+    /** Matches entities containing any token; those with more of them rank higher. */
+    public static Query anyOf(List<String> tokens) {
+        Bool bool = new Bool();
+        tokens.forEach(token -> bool.should(new Term(null, token)));
+        return bool;
+    }
+}
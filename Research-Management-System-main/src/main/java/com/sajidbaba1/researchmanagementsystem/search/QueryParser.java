@@ -0,0 +1,219 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.util.*;
+
+/**
+ * Parses the search box syntax:
+ * <pre>
+ *   quantum computing            both words (the default operator is AND)
+ *   quantum OR optics            either word
+ *   NOT draft, -draft            excludes a word
+ *   "machine learning"           a phrase
+ *   department:physics           a field or facet value
+ *   fileType:pdf (a OR b)        grouping
+ * </pre>
+ * Operators must be upper case; lower-case "and"/"or"/"not" are ordinary
+ * words. Prefixes before a colon that are not known fields are searched as
+ * text. The parser never rejects input: unbalanced parentheses and quotes
+ * are closed at the end of the query.
+ */
+public final class QueryParser {
+
+    private enum Kind { WORD, PHRASE, OPEN, CLOSE }
+
+    private static class Lexeme {
+        final Kind kind;
+        final String text;
+        final String field;
+
+        Lexeme(Kind kind, String text, String field) {
+            this.kind = kind;
+            this.text = text;
+            this.field = field;
+        }
+
+        boolean isOperator(String operator) {
+            return kind == Kind.WORD && field == null && text.equals(operator);
+        }
+    }
+
+    private final List<Lexeme> lexemes;
+    private int next;
+
+    private QueryParser(List<Lexeme> lexemes) {
+        this.lexemes = lexemes;
+    }
+
+    /**
+     * @param fields field and facet names that may appear before a colon,
+     *               matched case-insensitively
+     */
+    public static Query parse(String text, Collection<String> fields) {
+        Map<String, String> canonical = new HashMap<>();
+        fields.forEach(field -> canonical.put(field.toLowerCase(Locale.ROOT), field));
+        QueryParser parser = new QueryParser(lex(text == null ? "" : text, canonical));
+        Query query = parser.or();
+        // Stray closing parentheses end a group early; keep parsing what follows them
+        while (parser.next < parser.lexemes.size()) {
+            parser.next++;
+            Query rest = parser.or();
+            if (!isEmpty(rest)) {
+                query = isEmpty(query) ? rest : new Query.Bool().must(query).must(rest);
+            }
+        }
+        return query;
+    }
+
+    private Query or() {
+        List<Query> alternatives = new ArrayList<>();
+        alternatives.add(and());
+        while (peek() != null && peek().isOperator("OR")) {
+            next++;
+            alternatives.add(and());
+        }
+        // An OR with nothing on one side, as in "a OR", is dropped
+        if (alternatives.size() > 1) {
+            alternatives.removeIf(QueryParser::isEmpty);
+            if (alternatives.isEmpty()) {
+                return new Query.Bool();
+            }
+        }
+        if (alternatives.size() == 1) {
+            return alternatives.get(0);
+        }
+        Query.Bool bool = new Query.Bool();
+        alternatives.forEach(bool::should);
+        return bool;
+    }
+
+    private Query and() {
+        Query.Bool bool = new Query.Bool();
+        Query single = null;
+        int clauses = 0;
+        while (peek() != null && peek().kind != Kind.CLOSE && !peek().isOperator("OR")) {
+            if (peek().isOperator("AND")) {
+                next++;
+                continue;
+            }
+            boolean negated = false;
+            while (peek() != null && peek().isOperator("NOT")) {
+                next++;
+                negated = !negated;
+            }
+            Lexeme lexeme = peek();
+            if (lexeme == null || lexeme.kind == Kind.CLOSE || lexeme.isOperator("OR")) {
+                break;
+            }
+            if (lexeme.kind == Kind.WORD && lexeme.field == null
+                    && lexeme.text.startsWith("-") && lexeme.text.length() > 1) {
+                negated = !negated;
+            }
+            Query clause = primary();
+            if (clause == null || isEmpty(clause)) {
+                continue;
+            }
+            clauses++;
+            if (negated) {
+                bool.mustNot(clause);
+            } else {
+                bool.must(clause);
+                single = clause;
+            }
+        }
+        return clauses == 1 && single != null ? single : bool;
+    }
+
+    private Query primary() {
+        Lexeme lexeme = lexemes.get(next++);
+        switch (lexeme.kind) {
+            case OPEN: {
+                Query group = or();
+                if (peek() != null && peek().kind == Kind.CLOSE) {
+                    next++;
+                }
+                return group;
+            }
+            case PHRASE: {
+                List<String> tokens = Tokenizer.tokenize(lexeme.text);
+                if (tokens.isEmpty()) {
+                    return null;
+                }
+                if (lexeme.field != null) {
+                    return new Query.FieldValue(lexeme.field, tokens);
+                }
+                return tokens.size() == 1 ? new Query.Term(null, tokens.get(0)) : new Query.Phrase(null, tokens);
+            }
+            case WORD: {
+                List<String> tokens = Tokenizer.tokenize(lexeme.text);
+                if (tokens.isEmpty()) {
+                    return null;
+                }
+                if (lexeme.field != null) {
+                    return new Query.FieldValue(lexeme.field, tokens);
+                }
+                return tokens.size() == 1 ? new Query.Term(null, tokens.get(0)) : Query.allOf(tokens);
+            }
+            default:
+                return null;
+        }
+    }
+
+    private static boolean isEmpty(Query query) {
+        return query instanceof Query.Bool && ((Query.Bool) query).isEmpty();
+    }
+
+    private Lexeme peek() {
+        return next < lexemes.size() ? lexemes.get(next) : null;
+    }
+
+    private static List<Lexeme> lex(String text, Map<String, String> fields) {
+        List<Lexeme> lexemes = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(') {
+                lexemes.add(new Lexeme(Kind.OPEN, "(", null));
+                i++;
+            } else if (c == ')') {
+                lexemes.add(new Lexeme(Kind.CLOSE, ")", null));
+                i++;
+            } else if (c == '"') {
+                int end = closingQuote(text, i + 1);
+                lexemes.add(new Lexeme(Kind.PHRASE, text.substring(i + 1, end), null));
+                i = Math.min(end + 1, text.length());
+            } else {
+                int start = i;
+                while (i < text.length() && !Character.isWhitespace(text.charAt(i))
+                        && text.charAt(i) != '(' && text.charAt(i) != ')' && text.charAt(i) != '"') {
+                    i++;
+                }
+                String word = text.substring(start, i);
+                if (word.equals("-") && i < text.length() && (text.charAt(i) == '"' || text.charAt(i) == '(')) {
+                    // -"phrase" and -(group) exclude what follows, like -word
+                    lexemes.add(new Lexeme(Kind.WORD, "NOT", null));
+                    continue;
+                }
+                int colon = word.indexOf(':');
+                String field = colon > 0 ? fields.get(word.substring(0, colon).toLowerCase(Locale.ROOT)) : null;
+                if (field == null) {
+                    lexemes.add(new Lexeme(Kind.WORD, word, null));
+                } else if (colon == word.length() - 1 && i < text.length() && text.charAt(i) == '"') {
+                    // field:"quoted value"
+                    int end = closingQuote(text, i + 1);
+                    lexemes.add(new Lexeme(Kind.PHRASE, text.substring(i + 1, end), field));
+                    i = Math.min(end + 1, text.length());
+                } else {
+                    lexemes.add(new Lexeme(Kind.WORD, word.substring(colon + 1), field));
+                }
+            }
+        }
+        return lexemes;
+    }
+
+    private static int closingQuote(String text, int from) {
+        int end = text.indexOf('"', from);
+        return end < 0 ? text.length() : end;
+    }
+}
@@ -0,0 +1,66 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reciprocal rank fusion: merges rankings whose scores are not comparable
+ * (BM25 and cosine similarity, say) by rank alone. An item at rank r
+ * (from 1) of a ranking earns 1 / (k + r), summed over every ranking it
+ * appears in, so items that several retrievers agree on rise to the top
+ * while no single retriever's score scale dominates.
+ */
+public final class RankFusion {
+
+    /** The usual rank constant; larger values flatten the difference between the first ranks. */
+    public static final int DEFAULT_K = 60;
+
+    private RankFusion() {}
+
+    public static class Fused<T> {
+        private final T item;
+        private final double score;
+        // Order of first appearance, so that ties do not depend on hashing
+        private final int order;
+
+        Fused(T item, double score, int order) {
+            this.item = item;
+            this.score = score;
+            this.order = order;
+        }
+
+        public T getItem() { return item; }
+        public double getScore() { return score; }
+    }
+
+    /**
+     * The best {@code limit} items of the fused rankings, best first. An
+     * item repeated within one ranking only counts at its first rank.
+     */
+    public static <T> List<Fused<T>> fuse(List<? extends List<T>> rankings, int k, int limit) {
+        Map<T, double[]> scores = new LinkedHashMap<>();
+        for (List<T> ranking : rankings) {
+            Set<T> seen = new HashSet<>();
+            int rank = 0;
+            for (T item : ranking) {
+                if (!seen.add(item)) {
+                    continue;
+                }
+                rank++;
+                scores.computeIfAbsent(item, key -> new double[1])[0] += 1.0 / (k + rank);
+            }
+        }
+        Comparator<Fused<T>> bestFirst = Comparator.<Fused<T>>comparingDouble(Fused::getScore).reversed()
+                .thenComparingInt(fused -> fused.order);
+        TopK<Fused<T>> top = new TopK<>(limit, bestFirst);
+        int order = 0;
+        for (Map.Entry<T, double[]> entry : scores.entrySet()) {
+            top.offer(new Fused<>(entry.getKey(), entry.getValue()[0], order++));
+        }
+        return top.toSortedList();
+    }
+}
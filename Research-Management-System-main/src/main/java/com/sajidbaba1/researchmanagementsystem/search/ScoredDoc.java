@@ -0,0 +1,26 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.util.Comparator;
+
+/**
+ * An entity id together with its relevance score for a query.
+ */
+public class ScoredDoc {
+
+    /** Best first: higher score, then lower id so that ties are stable. */
+    public static final Comparator<ScoredDoc> BEST_FIRST = Comparator
+            .comparingDouble(ScoredDoc::getScore).reversed()
+            .thenComparingLong(ScoredDoc::getId);
+
+    private final long id;
+    private final double score;
+
+    public ScoredDoc(long id, double score) {
+        this.id = id;
+        this.score = score;
+    }
+
+    public long getId() { return id; }
+
+    public double getScore() { return score; }
+}
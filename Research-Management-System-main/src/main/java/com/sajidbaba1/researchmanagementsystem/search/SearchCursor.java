@@ -0,0 +1,59 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset position in a relevance-ordered result list: the score, type
+ * and id of the last hit a client has seen. Hits are ordered by score
+ * descending, then type, then id, so the position is unambiguous even when
+ * scores tie or ids repeat across entity types.
+ */
+public class SearchCursor {
+
+    private final double score;
+    private final String type;
+    private final long id;
+
+    public SearchCursor(double score, String type, long id) {
+        this.score = score;
+        this.type = type;
+        this.id = id;
+    }
+
+    public double getScore() { return score; }
+
+    public String getType() { return type; }
+
+    public long getId() { return id; }
+
+    public String encode() {
+        String raw = type + "|" + Long.toHexString(Double.doubleToLongBits(score)) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SearchCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Malformed search cursor");
+            }
+            double score = Double.longBitsToDouble(Long.parseUnsignedLong(parts[1], 16));
+            return new SearchCursor(score, parts[0], Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid search cursor: " + token, e);
+        }
+    }
+
+    /**
+     * Translates this position into a bound within a single entity type:
+     * hits of {@code sourceType} that rank after the returned doc also rank
+     * after this cursor in the merged order.
+     */
+    public ScoredDoc boundFor(String sourceType) {
+        int order = sourceType.compareTo(type);
+        long boundId = order < 0 ? Long.MAX_VALUE : order > 0 ? Long.MIN_VALUE : id;
+        return new ScoredDoc(boundId, score);
+    }
+}
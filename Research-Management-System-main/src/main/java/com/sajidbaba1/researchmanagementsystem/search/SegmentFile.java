@@ -0,0 +1,78 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Layout of an index segment file:
+ * <pre>
+ *   magic, version                     two ints
+ *   posting blocks                     one per term, see PostingList#writeTo
+ *   stored field blocks                one per entity, see StoredFields#writeTo
+ *   metadata                           fields, sequence, dictionary, entities
+ *   metadata offset                    long, the last eight bytes
+ * </pre>
+ * Posting and stored field blocks are read in place from the mapped file;
+ * only the metadata is decoded onto the heap when a segment is opened.
+ */
+final class SegmentFile {
+
+    static final int MAGIC = 0x524d5349; // "RMSI"
+    // 3: projects carry their own id as the projectId shard facet
+    // 4: entities record the source their fields were counted from
+    static final int VERSION = 4;
+    static final int HEADER_BYTES = 8;
+
+    private SegmentFile() {}
+
+    /**
+     * Maps a whole segment read-only. The mapping stays valid after the
+     * channel is closed and even after the file is deleted.
+     */
+    static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + Long.BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Unsupported segment size " + size + " for " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a version " + VERSION + " segment: " + file);
+            }
+            return buffer;
+        }
+    }
+
+    /** Reads the metadata section of a mapped segment. */
+    static DataInputStream metadata(ByteBuffer segment) throws IOException {
+        long offset = segment.getLong(segment.limit() - Long.BYTES);
+        if (offset < HEADER_BYTES || offset > segment.limit() - Long.BYTES) {
+            throw new IOException("Corrupt segment metadata offset " + offset);
+        }
+        ByteBuffer metadata = segment.duplicate();
+        metadata.position((int) offset);
+        metadata.limit(segment.limit() - Long.BYTES);
+        return new DataInputStream(new InputStream() {
+            @Override
+            public int read() {
+                return metadata.hasRemaining() ? metadata.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                if (!metadata.hasRemaining()) {
+                    return -1;
+                }
+                int count = Math.min(length, metadata.remaining());
+                metadata.get(bytes, offset, count);
+                return count;
+            }
+        });
+    }
+}
@@ -0,0 +1,196 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of answers to questions. Besides an exact lookup by
+ * normalized question, a question can be matched to a cached one whose
+ * embedding is at least {@code similarityThreshold} similar (cosine), so
+ * rephrasings of the same question share an answer; a threshold above 1,
+ * such as {@link #EXACT_ONLY}, turns that off. Lookups are always
+ * confined to one scope, for example one project.
+ *
+ * Entries expire {@code ttlNanos} after they were stored. Like
+ * {@link VersionedCache}, the cache remembers the data versions its
+ * entries were computed from, but the versions are global: the first
+ * lookup or store with different versions drops every entry at once.
+ */
+public class SemanticCache<V> {
+
+    /** A similarity threshold no pair of questions reaches, leaving only exact lookups. */
+    public static final double EXACT_ONLY = 2;
+
+    private static class Entry<V> {
+        final String scope;
+        final float[] embedding;
+        final V value;
+        final long storedAt;
+
+        Entry(String scope, float[] embedding, V value, long storedAt) {
+            this.scope = scope;
+            this.embedding = embedding;
+            this.value = value;
+            this.storedAt = storedAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final double similarityThreshold;
+    private final Map<String, Entry<V>> entries;
+    private long[] versions = new long[0];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder similarHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public SemanticCache(int maxEntries, long ttlNanos, double similarityThreshold) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlNanos;
+        this.similarityThreshold = similarityThreshold;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                if (size() > SemanticCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** The value cached for exactly this question, or {@code null}. */
+    public synchronized V get(String question, String scope, long[] versions) {
+        revalidate(versions);
+        Entry<V> entry = entries.get(key(question, scope));
+        if (entry != null && expired(entry, System.nanoTime())) {
+            entries.remove(key(question, scope));
+            expirations.increment();
+            entry = null;
+        }
+        if (entry == null) {
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * The value cached for the question in {@code scope} most similar to
+     * {@code embedding}, if it clears the threshold, or {@code null}. A
+     * null result is counted as a miss, so call this after {@link #get}.
+     */
+    public synchronized V getSimilar(float[] embedding, String scope, long[] versions) {
+        revalidate(versions);
+        if (similarityThreshold > 1) {
+            misses.increment();
+            return null;
+        }
+        long now = System.nanoTime();
+        Entry<V> best = null;
+        double bestSimilarity = similarityThreshold;
+        for (Iterator<Entry<V>> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry<V> entry = it.next();
+            if (expired(entry, now)) {
+                it.remove();
+                expirations.increment();
+                continue;
+            }
+            if (entry.embedding == null || !entry.scope.equals(scope)) {
+                continue;
+            }
+            double similarity = HnswIndex.similarity(embedding, entry.embedding);
+            if (similarity >= bestSimilarity) {
+                bestSimilarity = similarity;
+                best = entry;
+            }
+        }
+        if (best == null) {
+            misses.increment();
+            return null;
+        }
+        similarHits.increment();
+        return best.value;
+    }
+
+    /**
+     * Caches a value. {@code versions} must be read before the value was
+     * computed, so that a concurrent write leaves the entry stale rather
+     * than mislabelled.
+     *
+     * @param embedding the question's embedding, or null to only allow exact lookups; not kept
+     *                  when similar lookups are off
+     */
+    public synchronized void put(String question, String scope, long[] versions, float[] embedding, V value) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        revalidate(versions);
+        if (!Arrays.equals(this.versions, versions)) {
+            // Computed from data older than what the cache was revalidated against
+            return;
+        }
+        entries.put(key(question, scope), new Entry<>(scope, similarityThreshold > 1 ? null : embedding, value,
+                System.nanoTime()));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() { return hits.sum(); }
+
+    public long getSimilarHits() { return similarHits.sum(); }
+
+    public long getMisses() { return misses.sum(); }
+
+    public long getEvictions() { return evictions.sum(); }
+
+    public long getExpirations() { return expirations.sum(); }
+
+    public long getInvalidations() { return invalidations.sum(); }
+
+    /** Drops everything when the data moved on; ignores versions older than the current ones. */
+    private void revalidate(long[] current) {
+        if (Arrays.equals(versions, current) || !newer(current, versions)) {
+            return;
+        }
+        if (!entries.isEmpty()) {
+            invalidations.add(entries.size());
+            entries.clear();
+        }
+        versions = current.clone();
+    }
+
+    private static boolean newer(long[] candidate, long[] than) {
+        if (candidate.length != than.length) {
+            return true;
+        }
+        for (int i = 0; i < candidate.length; i++) {
+            if (candidate[i] < than[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean expired(Entry<V> entry, long now) {
+        return ttlNanos > 0 && now - entry.storedAt > ttlNanos;
+    }
+
+    private static String key(String question, String scope) {
+        return scope + "\u0000" + question;
+    }
+}
@@ -0,0 +1,205 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A window of stored field text around the densest cluster of query term
+ * matches, with the character ranges of those matches.
+ */
+public class Snippet {
+
+    private static final String ELLIPSIS = "…";
+
+    // How far a window edge may move to land on a word boundary
+    private static final int BOUNDARY_SLACK = 20;
+
+    private final String text;
+    private final List<int[]> highlights;
+    private final int distinctTerms;
+    private final int matches;
+
+    private Snippet(String text, List<int[]> highlights, int distinctTerms, int matches) {
+        this.text = text;
+        this.highlights = highlights;
+        this.distinctTerms = distinctTerms;
+        this.matches = matches;
+    }
+
+    public String getText() { return text; }
+
+    /** Start (inclusive) and end (exclusive) offsets of the matches in {@link #getText()}. */
+    public List<int[]> getHighlights() { return Collections.unmodifiableList(highlights); }
+
+    /** The text HTML-escaped, with every match wrapped in {@code <mark>}. */
+    public String toHtml() {
+        StringBuilder html = new StringBuilder(text.length() + highlights.size() * 13);
+        int at = 0;
+        for (int[] highlight : highlights) {
+            escape(text, at, highlight[0], html);
+            html.append("<mark>");
+            escape(text, highlight[0], highlight[1], html);
+            html.append("</mark>");
+            at = highlight[1];
+        }
+        escape(text, at, text.length(), html);
+        return html.toString();
+    }
+
+    /** Whether this snippet shows more of the query than {@code other}. */
+    boolean betterThan(Snippet other) {
+        if (other == null) {
+            return true;
+        }
+        return distinctTerms != other.distinctTerms ? distinctTerms > other.distinctTerms : matches > other.matches;
+    }
+
+    /**
+     * Picks the window of at most {@code maxChars} characters covering the
+     * most distinct query terms (then the most matches) and cuts it from
+     * {@code text}. Runs in time linear in the number of matches.
+     *
+     * @param starts    token start offsets of the text, by position
+     * @param positions matched positions in ascending order, all below {@code starts.length}
+     * @param termIds   for each matched position, which query term it matched
+     * @return the snippet, or null when there are no matches
+     */
+    static Snippet cut(String text, int[] starts, int[] positions, int[] termIds, int termCount, int maxChars) {
+        int count = positions.length;
+        if (count == 0 || maxChars <= 0) {
+            return null;
+        }
+        int[] matchStarts = new int[count];
+        int[] matchEnds = new int[count];
+        for (int i = 0; i < count; i++) {
+            matchStarts[i] = starts[positions[i]];
+            matchEnds[i] = tokenEnd(text, matchStarts[i]);
+        }
+
+        int[] inWindow = new int[termCount];
+        int distinct = 0;
+        int bestDistinct = 0;
+        int bestFrom = 0;
+        int bestTo = 0;
+        int from = 0;
+        for (int to = 0; to < count; to++) {
+            if (inWindow[termIds[to]]++ == 0) {
+                distinct++;
+            }
+            while (matchEnds[to] - matchStarts[from] > maxChars) {
+                if (--inWindow[termIds[from]] == 0) {
+                    distinct--;
+                }
+                from++;
+            }
+            if (distinct > bestDistinct || (distinct == bestDistinct && to - from > bestTo - bestFrom)) {
+                bestDistinct = distinct;
+                bestFrom = from;
+                bestTo = to;
+            }
+        }
+
+        // Centre the matched span in the window, then move the edges onto word boundaries
+        int spanStart = matchStarts[bestFrom];
+        int spanEnd = matchEnds[bestTo];
+        int windowStart = Math.max(0, spanStart - (maxChars - (spanEnd - spanStart)) / 2);
+        int windowEnd = Math.min(text.length(), windowStart + maxChars);
+        windowStart = Math.max(0, Math.min(windowStart, windowEnd - maxChars));
+        if (windowStart > 0) {
+            int boundary = windowStart;
+            while (boundary < spanStart && boundary - windowStart < BOUNDARY_SLACK
+                    && !Character.isWhitespace(text.charAt(boundary - 1))) {
+                boundary++;
+            }
+            if (boundary <= spanStart && Character.isWhitespace(text.charAt(boundary - 1))) {
+                windowStart = boundary;
+            }
+        }
+        if (windowEnd < text.length()) {
+            int boundary = windowEnd;
+            while (boundary > spanEnd && windowEnd - boundary < BOUNDARY_SLACK
+                    && !Character.isWhitespace(text.charAt(boundary))) {
+                boundary--;
+            }
+            if (boundary >= spanEnd && Character.isWhitespace(text.charAt(boundary))) {
+                windowEnd = boundary;
+            }
+        }
+        // No boundary within reach: at least keep surrogate pairs whole
+        if (windowStart > 0 && Character.isLowSurrogate(text.charAt(windowStart))) {
+            windowStart++;
+        }
+        if (windowEnd < text.length() && Character.isLowSurrogate(text.charAt(windowEnd))) {
+            windowEnd--;
+        }
+
+        // Copy the window with runs of whitespace collapsed, remapping the match offsets as it goes
+        StringBuilder snippet = new StringBuilder(windowEnd - windowStart + 2);
+        if (windowStart > 0) {
+            snippet.append(ELLIPSIS);
+        }
+        int lead = snippet.length();
+        List<int[]> highlights = new ArrayList<>();
+        int next = 0;
+        while (next < count && matchStarts[next] < windowStart) {
+            next++;
+        }
+        int matches = 0;
+        int highlightStart = -1;
+        boolean space = false;
+        for (int i = windowStart; i < windowEnd; i++) {
+            if (next < count && i == matchStarts[next] && matchEnds[next] <= windowEnd) {
+                if (space) {
+                    snippet.append(' ');
+                    space = false;
+                }
+                highlightStart = snippet.length();
+            }
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || Character.isISOControl(c)) {
+                space = snippet.length() > lead;
+            } else {
+                if (space) {
+                    snippet.append(' ');
+                    space = false;
+                }
+                snippet.append(c);
+            }
+            if (highlightStart >= 0 && i + 1 == matchEnds[next]) {
+                highlights.add(new int[]{highlightStart, snippet.length()});
+                highlightStart = -1;
+                matches++;
+            }
+            while (next < count && highlightStart < 0 && matchStarts[next] <= i) {
+                next++;
+            }
+        }
+        if (windowEnd < text.length()) {
+            snippet.append(ELLIPSIS);
+        }
+        return new Snippet(snippet.toString(), highlights, bestDistinct, matches);
+    }
+
+    private static int tokenEnd(String text, int start) {
+        int end = start;
+        while (end < text.length() && Character.isLetterOrDigit(text.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    private static void escape(String text, int from, int to, StringBuilder out) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<': out.append("&lt;"); break;
+                case '>': out.append("&gt;"); break;
+                case '&': out.append("&amp;"); break;
+                case '"': out.append("&quot;"); break;
+                case '\'': out.append("&#39;"); break;
+                default: out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Accumulates the time one request spends in each stage, in nanoseconds.
+ * A stage may be entered several times (once per source of a universal
+ * search, possibly on different threads); its times are summed, so stage
+ * times of parallel work can add up to more than the request's wall time.
+ */
+public class StageTimer {
+
+    private final long started = System.nanoTime();
+    private final Map<String, Long> stages = new LinkedHashMap<>();
+
+    public <T> T time(String stage, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            add(stage, System.nanoTime() - start);
+        }
+    }
+
+    public void time(String stage, Runnable work) {
+        long start = System.nanoTime();
+        try {
+            work.run();
+        } finally {
+            add(stage, System.nanoTime() - start);
+        }
+    }
+
+    public synchronized void add(String stage, long nanos) {
+        stages.merge(stage, nanos, Long::sum);
+    }
+
+    /** Nanoseconds per stage, in the order the stages were first entered. */
+    public synchronized Map<String, Long> getStages() {
+        return new LinkedHashMap<>(stages);
+    }
+
+    /** Nanoseconds since this timer was created. */
+    public long elapsedNanos() {
+        return System.nanoTime() - started;
+    }
+}
@@ -0,0 +1,112 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The stored text of each field of one entity, with the character offset at
+ * which each of its tokens starts. Like {@link PostingList}, an entry loaded
+ * from a segment stays in the mapped file and is only decoded when a snippet
+ * is actually cut from it.
+ */
+final class StoredFields {
+
+    static final StoredFields EMPTY = new StoredFields(new String[0], new int[0][]);
+
+    private final String[] texts;
+    private final int[][] tokenStarts;
+
+    // Mapped block, per field: byte count, UTF-8 bytes, start count, starts
+    private final ByteBuffer mapped;
+    private final int fieldCount;
+
+    StoredFields(String[] texts, int[][] tokenStarts) {
+        this.texts = texts;
+        this.tokenStarts = tokenStarts;
+        this.mapped = null;
+        this.fieldCount = texts.length;
+    }
+
+    private StoredFields(int fieldCount, ByteBuffer mapped) {
+        this.texts = null;
+        this.tokenStarts = null;
+        this.mapped = mapped;
+        this.fieldCount = fieldCount;
+    }
+
+    static StoredFields of(TermCounter[] counters, int fieldCount) {
+        String[] texts = new String[fieldCount];
+        int[][] starts = new int[fieldCount][];
+        for (int field = 0; field < fieldCount; field++) {
+            TermCounter counter = field < counters.length ? counters[field] : null;
+            texts[field] = counter != null ? counter.getStoredText() : "";
+            starts[field] = counter != null ? counter.getTokenStarts() : new int[0];
+        }
+        return new StoredFields(texts, starts);
+    }
+
+    /** Wraps a block written by {@link #writeTo} without copying it. */
+    static StoredFields mapped(int fieldCount, ByteBuffer segment, int offset) {
+        ByteBuffer block = segment.duplicate();
+        block.position(offset);
+        return new StoredFields(fieldCount, block.slice());
+    }
+
+    String text(int field) {
+        if (field >= fieldCount) {
+            return "";
+        }
+        if (mapped == null) {
+            return texts[field];
+        }
+        int at = fieldStart(field);
+        byte[] bytes = new byte[mapped.getInt(at)];
+        mapped.get(at + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Start offsets in {@link #text} of the field's tokens, by field-local position. */
+    int[] tokenStarts(int field) {
+        if (field >= fieldCount) {
+            return new int[0];
+        }
+        if (mapped == null) {
+            return tokenStarts[field];
+        }
+        int at = fieldStart(field);
+        at += Integer.BYTES + mapped.getInt(at);
+        int[] starts = new int[mapped.getInt(at)];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = mapped.getInt(at + Integer.BYTES * (i + 1));
+        }
+        return starts;
+    }
+
+    /** Writes the block format {@link #mapped} reads and returns the number of bytes written. */
+    int writeTo(DataOutput out) throws IOException {
+        int written = 0;
+        for (int field = 0; field < fieldCount; field++) {
+            byte[] bytes = text(field).getBytes(StandardCharsets.UTF_8);
+            int[] starts = tokenStarts(field);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeInt(starts.length);
+            for (int start : starts) {
+                out.writeInt(start);
+            }
+            written += Integer.BYTES * (2 + starts.length) + bytes.length;
+        }
+        return written;
+    }
+
+    private int fieldStart(int field) {
+        int at = 0;
+        for (int f = 0; f < field; f++) {
+            at += Integer.BYTES + mapped.getInt(at);
+            at += Integer.BYTES * (1 + mapped.getInt(at));
+        }
+        return at;
+    }
+}
@@ -0,0 +1,427 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Weighted prefix trie for autocomplete. Every node caches the highest
+ * suggestion weight found below it, so the best completions of a prefix are
+ * found with a best-first walk that only expands the most promising
+ * branches instead of enumerating every completion.
+ *
+ * Suggestions are reachable from the start of their text and from the start
+ * of each later word ("smith" completes "John Smith"). Their weight is the
+ * sum of the weights of the entities that contribute them plus how often the
+ * same text was searched for.
+ */
+public class SuggestionTrie {
+
+    private static final int MAX_WORD_KEYS = 8;
+    static final int MAX_KEY_LENGTH = 64;
+    // Suggestions only searched for, never contributed; past this the least searched one makes room
+    static final int MAX_QUERY_SUGGESTIONS = 10_000;
+
+    private static class Node {
+        final Node parent;
+        final char key;
+        final Map<Character, Node> children = new HashMap<>();
+        final Set<Suggestion> terminals = new HashSet<>();
+        double maxWeight;
+
+        Node(Node parent, char key) {
+            this.parent = parent;
+            this.key = key;
+        }
+    }
+
+    private static class Suggestion {
+        final String text;
+        final String normalized;
+        final List<String> keys;
+        final long serial;
+        final Map<String, Double> sources = new HashMap<>();
+        long popularity;
+
+        Suggestion(String text, String normalized, List<String> keys, long serial) {
+            this.text = text;
+            this.normalized = normalized;
+            this.keys = keys;
+            this.serial = serial;
+        }
+
+        /** Whether the suggestion is reachable from {@code prefix}, checked on the text rather than its keys. */
+        boolean completes(String prefix) {
+            return normalized.startsWith(prefix) || normalized.contains(" " + prefix);
+        }
+
+        double weight() {
+            double weight = popularity;
+            for (double sourceWeight : sources.values()) {
+                weight += sourceWeight;
+            }
+            return weight;
+        }
+    }
+
+    private static class Candidate {
+        final double weight;
+        final Node node;
+        final Suggestion suggestion;
+
+        Candidate(double weight, Node node, Suggestion suggestion) {
+            this.weight = weight;
+            this.node = node;
+            this.suggestion = suggestion;
+        }
+    }
+
+    private final Node root = new Node(null, '\0');
+    private final Map<String, Suggestion> byText = new HashMap<>();
+    private final Map<String, String> textBySource = new HashMap<>();
+    // Least searched (then oldest) first; popularity is only changed while a suggestion is out of the set
+    private final TreeSet<Suggestion> querySuggestions = new TreeSet<>(Comparator
+            .comparingLong((Suggestion suggestion) -> suggestion.popularity)
+            .thenComparingLong(suggestion -> suggestion.serial));
+    private long nextSerial;
+    private long modifications;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Registers (or replaces) the suggestion contributed by one source, for
+     * example {@code "document:42"} contributing its file name.
+     */
+    public void put(String sourceKey, String text, double weight) {
+        String normalized = normalize(text);
+        lock.writeLock().lock();
+        try {
+            modifications++;
+            removeSource(sourceKey);
+            if (normalized.isEmpty()) {
+                return;
+            }
+            Suggestion suggestion = byText.get(normalized);
+            if (suggestion == null) {
+                suggestion = insert(normalized, text.trim());
+            }
+            querySuggestions.remove(suggestion);
+            suggestion.sources.put(sourceKey, weight);
+            textBySource.put(sourceKey, normalized);
+            refresh(suggestion);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String sourceKey) {
+        lock.writeLock().lock();
+        try {
+            modifications++;
+            removeSource(sourceKey);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Counts a search for {@code query}, making it a suggestion of its own if
+     * it is not one already. When {@link #MAX_QUERY_SUGGESTIONS} searched-only
+     * suggestions exist, the least searched of them is dropped for it.
+     */
+    public void recordQuery(String query) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Suggestion suggestion = byText.get(normalized);
+            if (suggestion == null) {
+                if (querySuggestions.size() >= MAX_QUERY_SUGGESTIONS) {
+                    delete(querySuggestions.pollFirst());
+                }
+                suggestion = insert(normalized, query.trim());
+            }
+            boolean queryOnly = suggestion.sources.isEmpty();
+            querySuggestions.remove(suggestion);
+            suggestion.popularity++;
+            if (queryOnly) {
+                querySuggestions.add(suggestion);
+            }
+            modifications++;
+            refresh(suggestion);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            root.children.clear();
+            root.terminals.clear();
+            root.maxWeight = 0;
+            byText.clear();
+            textBySource.clear();
+            querySuggestions.clear();
+            modifications++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code k} suggestions for the prefix, heaviest first. A
+     * prefix longer than {@link #MAX_KEY_LENGTH} walks the trie with that
+     * many characters, and the rest is checked on the suggestion's text.
+     */
+    public List<String> suggest(String prefix, int k) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty() || k <= 0) {
+            return Collections.emptyList();
+        }
+        String key = truncate(normalized);
+        boolean truncated = key.length() < normalized.length();
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.children.get(key.charAt(i));
+            }
+            if (node == null) {
+                return Collections.emptyList();
+            }
+
+            // Frontier of subtrees (by their best weight) and complete suggestions (by their own)
+            PriorityQueue<Candidate> frontier = new PriorityQueue<>(
+                    Comparator.comparingDouble((Candidate candidate) -> candidate.weight).reversed());
+            frontier.add(new Candidate(node.maxWeight, node, null));
+            LinkedHashSet<Suggestion> result = new LinkedHashSet<>();
+            while (!frontier.isEmpty() && result.size() < k) {
+                Candidate candidate = frontier.poll();
+                if (candidate.suggestion != null) {
+                    if (!truncated || candidate.suggestion.completes(normalized)) {
+                        result.add(candidate.suggestion);
+                    }
+                    continue;
+                }
+                for (Suggestion suggestion : candidate.node.terminals) {
+                    frontier.add(new Candidate(suggestion.weight(), null, suggestion));
+                }
+                for (Node child : candidate.node.children.values()) {
+                    frontier.add(new Candidate(child.maxWeight, child, null));
+                }
+            }
+            List<String> texts = new ArrayList<>(result.size());
+            result.forEach(suggestion -> texts.add(suggestion.text));
+            return texts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byText.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Count of changes so far; lets a caller tell whether the trie changed since it was last saved. */
+    public long getModifications() {
+        lock.readLock().lock();
+        try {
+            return modifications;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Saves every suggestion with its sources and search count, through a
+     * temporary file that is then moved into place.
+     */
+    public void writeTo(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(byText.size());
+                for (Suggestion suggestion : byText.values()) {
+                    out.writeUTF(suggestion.text);
+                    out.writeLong(suggestion.popularity);
+                    out.writeInt(suggestion.sources.size());
+                    for (Map.Entry<String, Double> source : suggestion.sources.entrySet()) {
+                        out.writeUTF(source.getKey());
+                        out.writeDouble(source.getValue());
+                    }
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Replaces the contents of the trie with a file written by {@link #writeTo}. */
+    public void readFrom(Path file) throws IOException {
+        lock.writeLock().lock();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            clear();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String text = in.readUTF();
+                String normalized = normalize(text);
+                Suggestion suggestion = byText.get(normalized);
+                if (suggestion == null) {
+                    suggestion = insert(normalized, text);
+                }
+                // The file may hold two texts that normalize alike
+                querySuggestions.remove(suggestion);
+                suggestion.popularity += in.readLong();
+                int sources = in.readInt();
+                for (int s = 0; s < sources; s++) {
+                    String sourceKey = in.readUTF();
+                    suggestion.sources.put(sourceKey, in.readDouble());
+                    textBySource.put(sourceKey, normalized);
+                }
+                if (suggestion.sources.isEmpty()) {
+                    querySuggestions.add(suggestion);
+                }
+                refresh(suggestion);
+            }
+            while (querySuggestions.size() > MAX_QUERY_SUGGESTIONS) {
+                delete(querySuggestions.pollFirst());
+            }
+        } catch (IOException | RuntimeException e) {
+            clear();
+            throw e instanceof IOException ? (IOException) e : new IOException("Corrupt suggestions " + file, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Suggestion insert(String normalized, String display) {
+        Suggestion suggestion = new Suggestion(display, normalized, keysOf(normalized), nextSerial++);
+        byText.put(normalized, suggestion);
+        for (String key : suggestion.keys) {
+            Node node = root;
+            for (int i = 0; i < key.length(); i++) {
+                Node parent = node;
+                char c = key.charAt(i);
+                node = parent.children.computeIfAbsent(c, ch -> new Node(parent, ch));
+            }
+            node.terminals.add(suggestion);
+        }
+        return suggestion;
+    }
+
+    private void removeSource(String sourceKey) {
+        String previous = textBySource.remove(sourceKey);
+        if (previous == null) {
+            return;
+        }
+        Suggestion suggestion = byText.get(previous);
+        if (suggestion == null) {
+            return;
+        }
+        suggestion.sources.remove(sourceKey);
+        if (suggestion.sources.isEmpty() && suggestion.popularity == 0) {
+            delete(suggestion);
+            return;
+        }
+        if (suggestion.sources.isEmpty()) {
+            // Only searched for from now on, so it competes for the query suggestion slots
+            querySuggestions.add(suggestion);
+            if (querySuggestions.size() > MAX_QUERY_SUGGESTIONS) {
+                Suggestion evicted = querySuggestions.pollFirst();
+                delete(evicted);
+                if (evicted == suggestion) {
+                    return;
+                }
+            }
+        }
+        refresh(suggestion);
+    }
+
+    private void delete(Suggestion suggestion) {
+        byText.remove(suggestion.normalized);
+        querySuggestions.remove(suggestion);
+        for (String key : suggestion.keys) {
+            Node node = find(key);
+            if (node != null) {
+                node.terminals.remove(suggestion);
+                updateUpwards(node);
+            }
+        }
+    }
+
+    private void refresh(Suggestion suggestion) {
+        for (String key : suggestion.keys) {
+            Node node = find(key);
+            if (node != null) {
+                updateUpwards(node);
+            }
+        }
+    }
+
+    /**
+     * Recomputes the cached maximum from {@code node} up to the root, pruning
+     * nodes that no longer lead to any suggestion.
+     */
+    private void updateUpwards(Node node) {
+        while (node != null) {
+            double max = 0;
+            for (Suggestion suggestion : node.terminals) {
+                max = Math.max(max, suggestion.weight());
+            }
+            for (Node child : node.children.values()) {
+                max = Math.max(max, child.maxWeight);
+            }
+            node.maxWeight = max;
+            if (node.parent != null && node.terminals.isEmpty() && node.children.isEmpty()) {
+                node.parent.children.remove(node.key);
+            }
+            node = node.parent;
+        }
+    }
+
+    private Node find(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        return node;
+    }
+
+    private static List<String> keysOf(String normalized) {
+        List<String> keys = new ArrayList<>();
+        keys.add(truncate(normalized));
+        int words = 1;
+        for (int i = 1; i < normalized.length() && words < MAX_WORD_KEYS; i++) {
+            if (normalized.charAt(i - 1) == ' ' && normalized.charAt(i) != ' ') {
+                keys.add(truncate(normalized.substring(i)));
+                words++;
+            }
+        }
+        return keys;
+    }
+
+    private static String truncate(String key) {
+        return key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key;
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim().toLowerCase().replaceAll("\\s+", " ");
+    }
+}
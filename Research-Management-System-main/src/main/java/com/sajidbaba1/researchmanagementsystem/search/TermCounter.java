@@ -0,0 +1,177 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writer that tokenizes whatever is written to it and keeps only the
+ * positions of each term, so arbitrarily large text can be indexed without
+ * ever being held in memory. Tokens follow the same rules as
+ * {@link Tokenizer}, down to the overlong runs it skips; once
+ * {@code maxTerms} tokens have been counted the rest of the input is
+ * ignored.
+ *
+ * The first {@code maxStoredChars} characters are also kept verbatim, with
+ * the offset at which each token inside them starts, so that snippets can
+ * later be cut from the indexed text without reading the source again.
+ */
+public class TermCounter extends Writer {
+
+    private static class Occurrences {
+        int[] positions = new int[2];
+        int size;
+
+        void add(int position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+    }
+
+    private final int maxTerms;
+    private final int maxStoredChars;
+    private final Map<String, Occurrences> occurrences = new HashMap<>();
+    private final StringBuilder current = new StringBuilder();
+    private final StringBuilder stored = new StringBuilder();
+    private int[] tokenStarts = new int[8];
+    private int storedTokens;
+    private boolean overlong;
+    private int length;
+    private int charsRead;
+    private int currentStart;
+
+    public TermCounter(int maxTerms) {
+        this(maxTerms, 0);
+    }
+
+    public TermCounter(int maxTerms, int maxStoredChars) {
+        this.maxTerms = maxTerms;
+        this.maxStoredChars = maxStoredChars;
+    }
+
+    /**
+     * Counts (and stores) the terms of a short string, such as a title or
+     * description.
+     */
+    public static TermCounter of(String text) {
+        TermCounter counter = new TermCounter(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        if (text != null) {
+            counter.write(text.toCharArray(), 0, text.length());
+            counter.flush();
+        }
+        return counter;
+    }
+
+    /**
+     * A counter holding terms counted earlier, as read back from an index,
+     * so that a field can be indexed again without its source.
+     *
+     * @param positions field-local positions of each term, ascending
+     */
+    static TermCounter restored(Map<String, int[]> positions, int length, String storedText, int[] tokenStarts) {
+        TermCounter counter = new TermCounter(Integer.MAX_VALUE, 0);
+        positions.forEach((term, termPositions) -> {
+            Occurrences entry = new Occurrences();
+            entry.positions = termPositions.clone();
+            entry.size = termPositions.length;
+            counter.occurrences.put(term, entry);
+        });
+        counter.length = length;
+        counter.stored.append(storedText);
+        counter.tokenStarts = tokenStarts.clone();
+        counter.storedTokens = tokenStarts.length;
+        return counter;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int count) {
+        for (int i = offset; i < offset + count && !isFull(); i++) {
+            char c = buffer[i];
+            if (charsRead < maxStoredChars) {
+                stored.append(c);
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (current.length() == 0 && !overlong) {
+                    currentStart = charsRead;
+                }
+                if (current.length() < Tokenizer.MAX_TERM_LENGTH) {
+                    current.append(c);
+                } else {
+                    overlong = true;
+                }
+            } else {
+                endTerm();
+            }
+            charsRead++;
+        }
+    }
+
+    /** Ends the term in progress; text written afterwards starts a new one. */
+    @Override
+    public void flush() {
+        endTerm();
+    }
+
+    @Override
+    public void close() {
+        endTerm();
+    }
+
+    public boolean isFull() {
+        return length >= maxTerms;
+    }
+
+    public Set<String> terms() {
+        return Collections.unmodifiableSet(occurrences.keySet());
+    }
+
+    public int count(String term) {
+        Occurrences entry = occurrences.get(term);
+        return entry == null ? 0 : entry.size;
+    }
+
+    /** Token positions of {@code term}, ascending and counted from 0. */
+    public int[] positions(String term) {
+        Occurrences entry = occurrences.get(term);
+        return entry == null ? new int[0] : Arrays.copyOf(entry.positions, entry.size);
+    }
+
+    /** The stored leading part of the text. */
+    public String getStoredText() {
+        return stored.toString();
+    }
+
+    /**
+     * Character offsets in {@link #getStoredText()} at which the tokens
+     * start, indexed by position; tokens past the stored text have none.
+     */
+    public int[] getTokenStarts() {
+        return Arrays.copyOf(tokenStarts, storedTokens);
+    }
+
+    /** Number of tokens counted, including repeats. */
+    public int getLength() {
+        return length;
+    }
+
+    private void endTerm() {
+        if (current.length() > 0 && !overlong && !isFull()) {
+            occurrences.computeIfAbsent(current.toString().toLowerCase(), term -> new Occurrences()).add(length);
+            // Positions are consecutive, so only a prefix of them can lie inside the stored text
+            if (storedTokens == length && charsRead <= maxStoredChars) {
+                if (storedTokens == tokenStarts.length) {
+                    tokenStarts = Arrays.copyOf(tokenStarts, storedTokens * 2);
+                }
+                tokenStarts[storedTokens++] = currentStart;
+            }
+            length++;
+        }
+        current.setLength(0);
+        overlong = false;
+    }
+}
@@ -0,0 +1,46 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Splits text into lowercase alphanumeric terms. The same rules are used at
+ * index time and query time so that both sides agree on what a term is.
+ */
+public final class Tokenizer {
+
+    /** Longer runs of letters and digits are not words (base64, hashes) and are skipped. */
+    public static final int MAX_TERM_LENGTH = 64;
+
+    private Tokenizer() {}
+
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                add(tokens, text, start, i);
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            add(tokens, text, start, text.length());
+        }
+        return tokens;
+    }
+
+    private static void add(List<String> tokens, String text, int start, int end) {
+        if (end - start <= MAX_TERM_LENGTH) {
+            tokens.add(text.substring(start, end).toLowerCase());
+        }
+    }
+}
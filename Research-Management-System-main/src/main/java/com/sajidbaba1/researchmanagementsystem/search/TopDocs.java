@@ -0,0 +1,54 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongPredicate;
+
+/**
+ * The ranked hits of a query plus the total number of entities it matched.
+ */
+public class TopDocs {
+
+    public static final TopDocs EMPTY = new TopDocs(0, Collections.emptyList());
+
+    private final long totalHits;
+    private final List<ScoredDoc> hits;
+
+    public TopDocs(long totalHits, List<ScoredDoc> hits) {
+        this.totalHits = totalHits;
+        this.hits = hits;
+    }
+
+    /**
+     * Selects the best {@code k} of the scored ids that pass {@code accept}
+     * (all of them when it is null). The total counts accepted ids only.
+     */
+    public static TopDocs select(Map<Long, Double> scores, int k, LongPredicate accept) {
+        return select(scores, k, accept, null);
+    }
+
+    /**
+     * Like {@link #select(Map, int, LongPredicate)} but only keeps hits that
+     * rank strictly after {@code after}, which is how keyset pages are read.
+     * The total still counts every accepted id, before or after the bound.
+     */
+    public static TopDocs select(Map<Long, Double> scores, int k, LongPredicate accept, ScoredDoc after) {
+        TopK<ScoredDoc> top = new TopK<>(k, ScoredDoc.BEST_FIRST);
+        long total = 0;
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            if (accept == null || accept.test(entry.getKey())) {
+                total++;
+                ScoredDoc candidate = new ScoredDoc(entry.getKey(), entry.getValue());
+                if (after == null || ScoredDoc.BEST_FIRST.compare(candidate, after) > 0) {
+                    top.offer(candidate);
+                }
+            }
+        }
+        return new TopDocs(total, top.toSortedList());
+    }
+
+    public long getTotalHits() { return totalHits; }
+
+    public List<ScoredDoc> getHits() { return hits; }
+}
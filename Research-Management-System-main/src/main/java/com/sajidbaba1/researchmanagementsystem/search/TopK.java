@@ -0,0 +1,49 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the best {@code k} elements seen so far in a bounded heap whose head
+ * is the current worst, so each offer costs O(log k) regardless of how many
+ * candidates are streamed through it.
+ */
+public class TopK<T> {
+
+    // The heap grows from here, so a large k costs nothing until candidates arrive
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private final int k;
+    private final Comparator<T> bestFirst;
+    private final PriorityQueue<T> heap;
+
+    public TopK(int k, Comparator<T> bestFirst) {
+        this.k = Math.max(k, 0);
+        this.bestFirst = bestFirst;
+        this.heap = new PriorityQueue<>(Math.min(Math.max(this.k, 1), MAX_INITIAL_CAPACITY), bestFirst.reversed());
+    }
+
+    public void offer(T candidate) {
+        if (k == 0) {
+            return;
+        }
+        if (heap.size() < k) {
+            heap.add(candidate);
+        } else if (bestFirst.compare(candidate, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(candidate);
+        }
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    public List<T> toSortedList() {
+        List<T> result = new ArrayList<>(heap);
+        result.sort(bestFirst);
+        return result;
+    }
+}
@@ -0,0 +1,114 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.util.*;
+
+/**
+ * Character trigram index over a term vocabulary, used to find the terms
+ * within a small edit distance of a misspelt query token. Candidates are the
+ * terms sharing enough trigrams with the token, so only the trigram lists of
+ * the token are visited; the edit distance is then verified on those
+ * candidates alone.
+ *
+ * Not thread-safe: the owning {@link InvertedIndex} guards it with its lock.
+ */
+class TrigramIndex {
+
+    private static final char PAD = '$';
+
+    private final Map<String, Set<String>> termsByGram = new HashMap<>();
+
+    void add(String term) {
+        for (String gram : grams(term)) {
+            termsByGram.computeIfAbsent(gram, g -> new HashSet<>()).add(term);
+        }
+    }
+
+    void remove(String term) {
+        for (String gram : grams(term)) {
+            Set<String> terms = termsByGram.get(gram);
+            if (terms != null && terms.remove(term) && terms.isEmpty()) {
+                termsByGram.remove(gram);
+            }
+        }
+    }
+
+    void clear() {
+        termsByGram.clear();
+    }
+
+    /**
+     * Returns the terms within {@code maxEdits} insertions, deletions,
+     * substitutions or adjacent transpositions of {@code token}, mapped to
+     * their distance.
+     */
+    Map<String, Integer> near(String token, int maxEdits) {
+        if (maxEdits <= 0) {
+            return Collections.emptyMap();
+        }
+        Set<String> tokenGrams = grams(token);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String gram : tokenGrams) {
+            for (String term : termsByGram.getOrDefault(gram, Collections.emptySet())) {
+                shared.merge(term, 1, Integer::sum);
+            }
+        }
+
+        // Each edit breaks at most four of the token's trigrams (three, or four for a transposition)
+        int minShared = Math.max(1, tokenGrams.size() - 4 * maxEdits);
+        Map<String, Integer> result = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : shared.entrySet()) {
+            String term = entry.getKey();
+            if (entry.getValue() < minShared || Math.abs(term.length() - token.length()) > maxEdits) {
+                continue;
+            }
+            int distance = distance(token, term, maxEdits);
+            if (distance <= maxEdits) {
+                result.put(term, distance);
+            }
+        }
+        return result;
+    }
+
+    private static Set<String> grams(String term) {
+        String padded = "" + PAD + PAD + term + PAD + PAD;
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    /**
+     * Optimal string alignment distance, giving up with {@code maxEdits + 1}
+     * as soon as every alignment of a row exceeds the bound.
+     */
+    static int distance(String a, String b, int maxEdits) {
+        int[] previous2 = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > maxEdits) {
+                return maxEdits + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()];
+    }
+}
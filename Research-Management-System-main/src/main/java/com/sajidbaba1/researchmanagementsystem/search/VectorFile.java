@@ -0,0 +1,308 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Full-precision vectors kept on disk rather than on the heap: an
+ * append-only file of little-endian floats where the vector in slot i
+ * starts at byte {@code i * dimensions * 4}. Reads are positional, so any
+ * number of threads can read at once; the operating system's page cache
+ * keeps the vectors that are read often in memory.
+ *
+ * The file is named {@code <base>-<generation>.f32}. A rewrite
+ * ({@link #startRewrite}, {@link #finishRewrite}) copies the vectors that are still needed into the next generation and
+ * leaves the previous file in place until {@link #deleteObsolete}, so a
+ * snapshot that refers to the previous generation stays loadable until a
+ * newer snapshot has been saved.
+ */
+public class VectorFile implements Closeable {
+
+    private static final String SUFFIX = ".f32";
+
+    private final Path directory;
+    private final String baseName;
+    private final int dimensions;
+    private final int vectorBytes;
+    private final boolean temporary;
+
+    private int generation;
+    private Path path;
+    private volatile FileChannel channel;
+    private int count;
+    private final List<Path> obsolete = new ArrayList<>();
+
+    private VectorFile(Path directory, String baseName, int generation, int dimensions, boolean temporary)
+            throws IOException {
+        this.directory = directory;
+        this.baseName = baseName;
+        this.dimensions = dimensions;
+        this.vectorBytes = dimensions * Float.BYTES;
+        this.temporary = temporary;
+        this.generation = generation;
+        this.path = pathOf(generation);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (temporary) {
+            path.toFile().deleteOnExit();
+        }
+        this.count = (int) (channel.size() / vectorBytes);
+    }
+
+    /** Starts an empty file of generation 1, deleting every earlier generation. */
+    public static VectorFile create(Path directory, String baseName, int dimensions) throws IOException {
+        Files.createDirectories(directory);
+        deleteGenerations(directory, baseName, -1);
+        return new VectorFile(directory, baseName, 1, dimensions, false);
+    }
+
+    /**
+     * Opens an existing generation, deleting every other one; they are
+     * either obsolete or from a rewrite no snapshot refers to.
+     */
+    public static VectorFile open(Path directory, String baseName, int generation, int dimensions)
+            throws IOException {
+        Path path = directory.resolve(baseName + "-" + generation + SUFFIX);
+        if (!Files.exists(path)) {
+            throw new IOException(path + " is missing");
+        }
+        deleteGenerations(directory, baseName, generation);
+        return new VectorFile(directory, baseName, generation, dimensions, false);
+    }
+
+    /**
+     * Deletes every vector file in the directory whose base name is not one
+     * of {@code keep}, for example those of partitions that no snapshot
+     * lists.
+     */
+    public static void deleteOthers(Path directory, Collection<String> keep) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int dash = name.lastIndexOf('-');
+                if (dash < 0 || !keep.contains(name.substring(0, dash))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /** A file in the temporary directory, deleted when the JVM exits. */
+    public static VectorFile temporary(int dimensions) throws IOException {
+        Path directory = Files.createTempDirectory("rag-vectors");
+        directory.toFile().deleteOnExit();
+        return new VectorFile(directory, "vectors", 1, dimensions, true);
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    /** Number of vectors in the file. */
+    public synchronized int size() {
+        return count;
+    }
+
+    /** Bytes the vectors take up on disk. */
+    public synchronized long sizeInBytes() {
+        return (long) count * vectorBytes;
+    }
+
+    /** Appends a vector and returns its slot. */
+    public synchronized int append(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vectorBytes).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector, 0, dimensions);
+        try {
+            long position = (long) count * vectorBytes;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to " + path, e);
+        }
+        return count++;
+    }
+
+    public float[] read(int slot) {
+        ByteBuffer buffer = ByteBuffer.allocate(vectorBytes).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            long position = (long) slot * vectorBytes;
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("slot " + slot + " is past the end of the file");
+                }
+                position += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read from " + path, e);
+        }
+        buffer.flip();
+        float[] vector = new float[dimensions];
+        buffer.asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    /**
+     * Drops the vectors past the first {@code count}, which were appended
+     * after the snapshot being loaded was taken.
+     */
+    public synchronized void truncate(int count) throws IOException {
+        if (this.count < count) {
+            throw new IOException(path + " holds " + this.count + " vectors, expected " + count);
+        }
+        channel.truncate((long) count * vectorBytes);
+        this.count = count;
+    }
+
+    /**
+     * Writes the next generation, holding the vectors of the given slots in
+     * that order, without moving to it; slot {@code i} of the new file is
+     * {@code slots[i]} of the current one. Appends and reads carry on
+     * meanwhile. Only one rewrite may be in progress at a time.
+     */
+    public Rewrite startRewrite(int[] slots) {
+        Path nextPath;
+        synchronized (this) {
+            nextPath = pathOf(generation + 1);
+        }
+        FileChannel next = null;
+        try {
+            next = FileChannel.open(nextPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (temporary) {
+                nextPath.toFile().deleteOnExit();
+            }
+            Rewrite rewrite = new Rewrite(nextPath, next);
+            copy(slots, rewrite);
+            return rewrite;
+        } catch (IOException e) {
+            closeQuietly(next);
+            throw new UncheckedIOException("Could not rewrite " + path, e);
+        }
+    }
+
+    /**
+     * Copies the vectors of {@code moreSlots}, appended since the rewrite
+     * started, after those already copied and moves to the next generation.
+     */
+    public synchronized void finishRewrite(Rewrite rewrite, int[] moreSlots) {
+        try {
+            copy(moreSlots, rewrite);
+        } catch (IOException e) {
+            rewrite.discard();
+            throw new UncheckedIOException("Could not rewrite " + path, e);
+        }
+        closeQuietly(channel);
+        channel = rewrite.channel;
+        obsolete.add(path);
+        generation++;
+        path = rewrite.path;
+        count = rewrite.count;
+        if (temporary) {
+            deleteObsolete();
+        }
+    }
+
+    private void copy(int[] slots, Rewrite rewrite) throws IOException {
+        for (int slot : slots) {
+            long from = (long) slot * vectorBytes;
+            long position = (long) rewrite.count * vectorBytes;
+            long copied = 0;
+            while (copied < vectorBytes) {
+                copied += channel.transferTo(from + copied, vectorBytes - copied,
+                        rewrite.channel.position(position + copied));
+            }
+            rewrite.count++;
+        }
+    }
+
+    /** The next generation of a file while it is being written. */
+    public static class Rewrite {
+        private final Path path;
+        private final FileChannel channel;
+        private int count;
+
+        private Rewrite(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+
+        /** Gives up on the rewrite, deleting the file written so far. */
+        public void discard() {
+            closeQuietly(channel);
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                System.err.println("Could not delete " + path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /** Makes the appended vectors durable; call before saving a snapshot that counts them. */
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    /** Deletes the generations before the current one, once a snapshot of the current one is saved. */
+    public synchronized void deleteObsolete() {
+        for (Path previous : obsolete) {
+            try {
+                Files.deleteIfExists(previous);
+            } catch (IOException e) {
+                System.err.println("Could not delete " + previous + ": " + e.getMessage());
+            }
+        }
+        obsolete.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private Path pathOf(int generation) {
+        return directory.resolve(baseName + "-" + generation + SUFFIX);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Could not close a vector file: " + e.getMessage());
+        }
+    }
+
+    private static void deleteGenerations(Path directory, String baseName, int keep) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, baseName + "-*" + SUFFIX)) {
+            for (Path file : files) {
+                if (!file.getFileName().toString().equals(baseName + "-" + keep + SUFFIX)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache whose entries remember the data versions they were
+ * computed from. A lookup with different versions is a miss and drops the
+ * entry, so a write only has to bump a version to invalidate every result
+ * that depended on it.
+ */
+public class VersionedCache<K, V> {
+
+    private static class Entry<V> {
+        final long[] versions;
+        final V value;
+
+        Entry(long[] versions, V value) {
+            this.versions = versions;
+            this.value = value;
+        }
+    }
+
+    private final int maxEntries;
+    private final Map<K, Entry<V>> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public VersionedCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > VersionedCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the value cached for {@code key} if it was computed from exactly
+     * these versions, otherwise {@code null}.
+     */
+    public synchronized V get(K key, long[] versions) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (!Arrays.equals(entry.versions, versions)) {
+            entries.remove(key);
+            invalidations.increment();
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Caches a value. {@code versions} must be read before the value was
+     * computed so that a concurrent write leaves the entry stale rather than
+     * mislabelled.
+     */
+    public synchronized void put(K key, long[] versions, V value) {
+        if (maxEntries > 0) {
+            entries.put(key, new Entry<>(versions.clone(), value));
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+}
@@ -0,0 +1,23 @@
+package com.sajidbaba1.researchmanagementsystem.service;
+
+import java.util.List;
+
+/**
+ * Receives an answer in the order it is produced: its sources, then its
+ * text one section at a time. Concatenating the sections gives the whole
+ * answer. A sink may stop listening at any point, for example when the
+ * client disconnects; producers check the return values or
+ * {@link #isOpen()} and stop working on an answer nobody will read.
+ */
+public interface AnswerSink {
+
+    /** @return false if the sink is closed and the producer should stop */
+    boolean sources(List<String> sources);
+
+    /** @return false if the sink is closed and the producer should stop */
+    boolean section(String text);
+
+    default boolean isOpen() {
+        return true;
+    }
+}
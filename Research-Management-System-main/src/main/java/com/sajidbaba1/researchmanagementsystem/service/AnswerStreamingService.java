@@ -0,0 +1,191 @@
+package com.sajidbaba1.researchmanagementsystem.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Streams answers to clients as server-sent events. A {@code start} event
+ * is sent as soon as the request is accepted, then {@code sources}, one
+ * {@code section} per piece of the answer and finally {@code done} (or
+ * {@code error}). Every event's data is JSON.
+ *
+ * Answers are produced on a pool of {@code rag.stream.threads} threads
+ * that write the events themselves, so a client reading slowly holds its
+ * producer back instead of letting events pile up in memory. When every
+ * thread is busy and {@code rag.stream.queue-capacity} answers are waiting,
+ * new streams are refused. A client that disconnects or times out closes
+ * its sink, and the producer stops at its next check.
+ */
+@Service
+public class AnswerStreamingService {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${rag.stream.threads:4}")
+    private int threads;
+
+    @Value("${rag.stream.queue-capacity:32}")
+    private int queueCapacity;
+
+    @Value("${rag.stream.timeout-ms:60000}")
+    private long timeoutMs;
+
+    private ThreadPoolExecutor executor;
+    private final AtomicInteger activeStreams = new AtomicInteger();
+
+    private Timer timeToContent;
+    private Counter completed;
+    private Counter cancelled;
+    private Counter failed;
+    private Counter rejected;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "answer-stream-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        Gauge.builder("rag.stream.active", activeStreams, AtomicInteger::get)
+                .description("Answers being streamed right now")
+                .register(meterRegistry);
+        timeToContent = Timer.builder("rag.stream.time-to-content")
+                .description("Time from accepting a stream to its first sources or section")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        completed = Counter.builder("rag.stream.requests").tag("outcome", "completed").register(meterRegistry);
+        cancelled = Counter.builder("rag.stream.requests").tag("outcome", "cancelled").register(meterRegistry);
+        failed = Counter.builder("rag.stream.requests").tag("outcome", "failed").register(meterRegistry);
+        rejected = Counter.builder("rag.stream.requests").tag("outcome", "rejected").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Runs {@code producer} on the streaming pool, feeding what it produces
+     * to a new emitter.
+     *
+     * @return the emitter to return from the handler, or null if the pool
+     *         is saturated
+     */
+    public SseEmitter stream(Consumer<AnswerSink> producer) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        EmitterSink sink = new EmitterSink(emitter, System.nanoTime());
+        emitter.onCompletion(sink::close);
+        emitter.onTimeout(() -> {
+            sink.close();
+            emitter.complete();
+        });
+        emitter.onError(error -> sink.close());
+        // Held by the emitter until the handler returns, then flushed straight away
+        sink.send("start", Map.of());
+        try {
+            executor.execute(() -> run(producer, sink, emitter));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return null;
+        }
+        return emitter;
+    }
+
+    private void run(Consumer<AnswerSink> producer, EmitterSink sink, SseEmitter emitter) {
+        activeStreams.incrementAndGet();
+        try {
+            if (!sink.isOpen()) {
+                cancelled.increment();
+                return;
+            }
+            producer.accept(sink);
+            if (sink.send("done", Map.of())) {
+                emitter.complete();
+                completed.increment();
+            } else {
+                cancelled.increment();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Streaming an answer failed: " + e.getMessage());
+            sink.send("error", Map.of("message", String.valueOf(e.getMessage())));
+            emitter.complete();
+            failed.increment();
+        } finally {
+            activeStreams.decrementAndGet();
+        }
+    }
+
+    private class EmitterSink implements AnswerSink {
+        private final SseEmitter emitter;
+        private final long accepted;
+        private final AtomicBoolean open = new AtomicBoolean(true);
+        private boolean contentSent;
+
+        EmitterSink(SseEmitter emitter, long accepted) {
+            this.emitter = emitter;
+            this.accepted = accepted;
+        }
+
+        @Override
+        public boolean sources(List<String> sources) {
+            return content("sources", sources);
+        }
+
+        @Override
+        public boolean section(String text) {
+            return content("section", Map.of("text", text));
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open.get();
+        }
+
+        void close() {
+            open.set(false);
+        }
+
+        private boolean content(String name, Object data) {
+            boolean sent = send(name, data);
+            if (sent && !contentSent) {
+                contentSent = true;
+                timeToContent.record(System.nanoTime() - accepted, TimeUnit.NANOSECONDS);
+            }
+            return sent;
+        }
+
+        /** Blocks while the client's connection is backed up; false once it is gone. */
+        boolean send(String name, Object data) {
+            if (!open.get()) {
+                return false;
+            }
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                close();
+                return false;
+            }
+        }
+    }
+}
@@ -12,6 +12,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ChatbotService {
@@ -26,123 +27,149 @@ public class ChatbotService {
     private ProjectDocumentRepository documentRepository;
 
     public String processQuery(String query) {
+        StringBuilder answer = new StringBuilder();
+        processQuery(query, new AnswerSink() {
+            @Override
+            public boolean sources(List<String> sources) {
+                return true;
+            }
+
+            @Override
+            public boolean section(String text) {
+                answer.append(text);
+                return true;
+            }
+        });
+        return answer.toString();
+    }
+
+    /** Hands the answer to {@code sink} line by line, stopping early if the sink closes. */
+    public void processQuery(String query, AnswerSink sink) {
         query = query.toLowerCase().trim();
         
         // Search projects
         if (query.contains("project") || query.contains("projects")) {
-            return searchProjects(query);
+            searchProjects(query, sink);
+            return;
         }
         
         // Search team members
         if (query.contains("team") || query.contains("member") || query.contains("person")) {
-            return searchTeamMembers(query);
+            searchTeamMembers(query, sink);
+            return;
         }
         
         // Search documents
         if (query.contains("document") || query.contains("file") || query.contains("paper")) {
-            return searchDocuments(query);
+            searchDocuments(query, sink);
+            return;
         }
         
         // General search
-        return performGeneralSearch(query);
+        performGeneralSearch(sink);
     }
     
-    private String searchProjects(String query) {
+    private void searchProjects(String query, AnswerSink sink) {
         List<ResearchProject> projects = projectRepository.findAll();
         
         if (query.contains("status")) {
             Map<String, Long> statusCounts = projects.stream()
                     .collect(Collectors.groupingBy(ResearchProject::getStatus, Collectors.counting()));
             
-            return String.format("Project Status: %s", statusCounts.entrySet().stream()
+            sink.section(String.format("Project Status: %s", statusCounts.entrySet().stream()
                     .map(e -> e.getKey() + ": " + e.getValue())
-                    .collect(Collectors.joining(", ")));
+                    .collect(Collectors.joining(", "))));
+            return;
         }
         
         if (query.contains("count")) {
-            return String.format("Total Projects: %d", projects.size());
+            sink.section(String.format("Total Projects: %d", projects.size()));
+            return;
         }
         
         // Return project details
-        return projects.stream()
+        sendLines(projects.stream()
                 .limit(5)
                 .map(p -> String.format("Project: %s | Status: %s | Budget: $%.2f", 
-                        p.getTitle(), p.getStatus(), p.getBudget()))
-                .collect(Collectors.joining("\n"));
+                        p.getTitle(), p.getStatus(), p.getBudget())), sink);
     }
     
-    private String searchTeamMembers(String query) {
+    private void searchTeamMembers(String query, AnswerSink sink) {
         List<TeamMember> members = teamMemberRepository.findAll();
         
         if (query.contains("count")) {
-            return String.format("Total Team Members: %d", members.size());
+            sink.section(String.format("Total Team Members: %d", members.size()));
+            return;
         }
         
         // Return member details
-        return members.stream()
+        sendLines(members.stream()
                 .limit(5)
                 .map(m -> String.format("Member: %s | Role: %s | Department: %s", 
-                        m.getName(), m.getRole(), m.getDepartment()))
-                .collect(Collectors.joining("\n"));
+                        m.getName(), m.getRole(), m.getDepartment())), sink);
     }
     
-    private String searchDocuments(String query) {
+    private void searchDocuments(String query, AnswerSink sink) {
         List<ProjectDocument> documents = documentRepository.findAll();
         
         if (query.contains("count")) {
-            return String.format("Total Documents: %d", documents.size());
+            sink.section(String.format("Total Documents: %d", documents.size()));
+            return;
         }
         
         // Return document details
-        return documents.stream()
+        sendLines(documents.stream()
                 .limit(5)
                 .map(d -> String.format("Document: %s | Type: %s | Uploaded by: %s", 
-                        d.getFileName(), d.getFileType(), d.getUploadedBy()))
-                .collect(Collectors.joining("\n"));
+                        d.getFileName(), d.getFileType(), d.getUploadedBy())), sink);
+    }
+
+    /** Sends the lines as sections joined by newlines, as they are formatted. */
+    private static void sendLines(Stream<String> lines, AnswerSink sink) {
+        boolean first = true;
+        for (Iterator<String> it = lines.iterator(); it.hasNext(); first = false) {
+            if (!sink.section((first ? "" : "\n") + it.next())) {
+                return;
+            }
+        }
     }
     
-    private String performGeneralSearch(String query) {
-        StringBuilder response = new StringBuilder();
-        
+    private void performGeneralSearch(AnswerSink sink) {
         // Search all entities
         List<ResearchProject> projects = projectRepository.findAll();
         List<TeamMember> members = teamMemberRepository.findAll();
         List<ProjectDocument> documents = documentRepository.findAll();
         
-        response.append("📊 **Research Management System Overview**\n\n");
-        
-        response.append(String.format("🗂️ **Projects**: %d total\n", projects.size()));
-        response.append(String.format("👥 **Team Members**: %d total\n", members.size()));
-        response.append(String.format("📄 **Documents**: %d total\n\n", documents.size()));
-        
-        // Add recent activity
-        response.append("**Recent Activity**:\n");
+        boolean open = sink.section("📊 **Research Management System Overview**\n\n"
+                + String.format("🗂️ **Projects**: %d total\n", projects.size())
+                + String.format("👥 **Team Members**: %d total\n", members.size())
+                + String.format("📄 **Documents**: %d total\n\n", documents.size())
+                // Add recent activity
+                + "**Recent Activity**:\n");
         
         // Recent projects
-        if (!projects.isEmpty()) {
-            response.append("**Latest Projects:**\n");
-            projects.stream()
+        if (open && !projects.isEmpty()) {
+            open = sink.section("**Latest Projects:**\n" + projects.stream()
                     .limit(3)
-                    .forEach(p -> response.append(String.format("• %s (%s)\n", p.getTitle(), p.getStatus())));
+                    .map(p -> String.format("• %s (%s)\n", p.getTitle(), p.getStatus()))
+                    .collect(Collectors.joining()));
         }
         
         // Recent team members
-        if (!members.isEmpty()) {
-            response.append("\n**Team Members:**\n");
-            members.stream()
+        if (open && !members.isEmpty()) {
+            open = sink.section("\n**Team Members:**\n" + members.stream()
                     .limit(3)
-                    .forEach(m -> response.append(String.format("• %s - %s\n", m.getName(), m.getRole())));
+                    .map(m -> String.format("• %s - %s\n", m.getName(), m.getRole()))
+                    .collect(Collectors.joining()));
         }
         
         // Recent documents
-        if (!documents.isEmpty()) {
-            response.append("\n**Recent Documents:**\n");
-            documents.stream()
+        if (open && !documents.isEmpty()) {
+            sink.section("\n**Recent Documents:**\n" + documents.stream()
                     .limit(3)
-                    .forEach(d -> response.append(String.format("• %s (%s)\n", d.getFileName(), d.getFileType())));
+                    .map(d -> String.format("• %s (%s)\n", d.getFileName(), d.getFileType()))
+                    .collect(Collectors.joining()));
         }
-        
-        return response.toString();
     }
     
     public Map<String, Object> getProjectStats() {
@@ -0,0 +1,199 @@
+package com.sajidbaba1.researchmanagementsystem.service;
+
+import com.sajidbaba1.researchmanagementsystem.entity.ProjectDocument;
+import com.sajidbaba1.researchmanagementsystem.search.Chunker;
+import com.sajidbaba1.researchmanagementsystem.search.TermCounter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Extracts the text of uploaded files for the search index and for RAG.
+ * Text is streamed straight into a {@link TermCounter} or a {@link Chunker},
+ * so memory use does not depend on the file size: plain text is read through
+ * a fixed buffer and PDFs are parsed one page at a time with a temp-file
+ * backed stream cache.
+ */
+@Service
+public class ContentExtractionService {
+
+    private static final Set<String> TEXT_EXTENSIONS = Set.of("txt", "md", "markdown", "csv");
+    private static final Set<String> TEXT_CONTENT_TYPES = Set.of("text/plain", "text/markdown", "text/csv");
+    private static final String PDF_CONTENT_TYPE = "application/pdf";
+
+    // Upper bound on tokens counted per file; the rest of a larger file is not indexed
+    @Value("${search.content.max-terms:1000000}")
+    private int maxTerms;
+
+    // Leading characters of each file kept in the index for result snippets
+    @Value("${search.snippets.stored-chars:10000}")
+    private int storedChars;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private volatile DistributionSummary throughput;
+
+    /**
+     * Returns the term counts of the document's file, or {@code null} when
+     * the file is missing, unreadable or of an unsupported type.
+     */
+    public TermCounter extract(ProjectDocument document) {
+        TermCounter counter = new TermCounter(maxTerms, storedChars);
+        return stream(document, counter, counter::isFull) >= 0 ? counter : null;
+    }
+
+    /** The outcome of chunking one file. */
+    public static class ChunkingStats {
+        private final long bytes;
+        private final int chunks;
+        private final long nanos;
+
+        ChunkingStats(long bytes, int chunks, long nanos) {
+            this.bytes = bytes;
+            this.chunks = chunks;
+            this.nanos = nanos;
+        }
+
+        /** Bytes of the file read. */
+        public long getBytes() { return bytes; }
+        public int getChunks() { return chunks; }
+        public long getNanos() { return nanos; }
+
+        public double getMegabytesPerSecond() {
+            return nanos == 0 ? 0 : bytes / 1_048_576.0 / (nanos / 1e9);
+        }
+    }
+
+    /**
+     * Streams the document's file through a {@link Chunker}, handing every
+     * chunk to {@code sink} as soon as it is complete. Returns {@code null}
+     * when the file is missing, unreadable or of an unsupported type.
+     */
+    public ChunkingStats chunk(ProjectDocument document, int chunkWords, int overlapWords, int maxChunks,
+                               Consumer<Chunker.Span> sink) {
+        long start = System.nanoTime();
+        Chunker chunker = new Chunker(chunkWords, overlapWords, maxChunks, sink);
+        long bytes = stream(document, chunker, chunker::isFull);
+        if (bytes < 0) {
+            return null;
+        }
+        ChunkingStats stats = new ChunkingStats(bytes, chunker.getChunkCount(), System.nanoTime() - start);
+        if (stats.getNanos() > 0 && bytes > 0) {
+            chunkingThroughput().record(stats.getMegabytesPerSecond());
+        }
+        return stats;
+    }
+
+    /**
+     * Writes the text of the document's file into {@code out} and closes
+     * it, stopping early once {@code full} says so.
+     *
+     * @return the number of bytes of the file read, or -1 when nothing
+     *         could be extracted
+     */
+    private long stream(ProjectDocument document, Writer out, BooleanSupplier full) {
+        if (document.getFilePath() == null) {
+            return -1;
+        }
+        Path path = Paths.get(document.getFilePath());
+        if (!Files.isRegularFile(path)) {
+            return -1;
+        }
+
+        String extension = extensionOf(document.getFileName() != null ? document.getFileName() : path.toString());
+        String contentType = document.getFileType() != null ? document.getFileType().toLowerCase(Locale.ROOT) : "";
+        try {
+            if ("pdf".equals(extension) || contentType.startsWith(PDF_CONTENT_TYPE)) {
+                return streamPdf(path, out, full);
+            }
+            if (TEXT_EXTENSIONS.contains(extension) || TEXT_CONTENT_TYPES.stream().anyMatch(contentType::startsWith)) {
+                return streamText(path, out, full);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not extract text from " + document.getFileName() + ": " + e.getMessage());
+        }
+        return -1;
+    }
+
+    private long streamText(Path path, Writer out, BooleanSupplier full) throws IOException {
+        long[] bytesRead = {0};
+        InputStream counting = new FilterInputStream(Files.newInputStream(path)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    bytesRead[0] += read;
+                }
+                return read;
+            }
+        };
+        // Undecodable bytes become replacement characters instead of failing the whole file
+        try (Reader reader = new InputStreamReader(counting, StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE))) {
+            char[] buffer = new char[8192];
+            int read;
+            while (!full.getAsBoolean() && (read = reader.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        out.close();
+        return bytesRead[0];
+    }
+
+    private long streamPdf(Path path, Writer out, BooleanSupplier full) throws IOException {
+        try (PDDocument pdf = Loader.loadPDF(path.toFile(), null, null, null, IOUtils.createTempFileOnlyStreamCache())) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            for (int page = 1; page <= pdf.getNumberOfPages() && !full.getAsBoolean(); page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                stripper.writeText(pdf, out);
+                out.flush();
+            }
+        }
+        out.close();
+        // The parser reads the file as it needs to, so the whole file counts as read
+        return Files.size(path);
+    }
+
+    private DistributionSummary chunkingThroughput() {
+        DistributionSummary summary = throughput;
+        if (summary == null) {
+            summary = DistributionSummary.builder("rag.chunking.throughput")
+                    .baseUnit("MB/s")
+                    .description("Rate at which uploaded files are read and split into chunks, per file")
+                    .publishPercentiles(0.05, 0.5, 0.95)
+                    .register(meterRegistry);
+            throughput = summary;
+        }
+        return summary;
+    }
+
+    private static String extensionOf(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+}
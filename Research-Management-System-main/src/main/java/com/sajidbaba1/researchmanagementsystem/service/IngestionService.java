@@ -0,0 +1,322 @@
+package com.sajidbaba1.researchmanagementsystem.service;
+
+import com.sajidbaba1.researchmanagementsystem.entity.ProjectDocument;
+import com.sajidbaba1.researchmanagementsystem.repository.ProjectDocumentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Processes documents for RAG off the request thread. Jobs wait in a
+ * bounded queue drained by a fixed pool of workers; when the queue is full
+ * a job is refused rather than queued, so callers can answer 429 with a
+ * Retry-After estimated from the backlog.
+ *
+ * A job moves its document through QUEUED, PROCESSING and then PROCESSED
+ * or FAILED, in the document's status column. A document already waiting
+ * is not queued twice. Jobs and {@link #processNow} read the document when
+ * they start and hold a lock on its id while processing it, so two of them
+ * never work on the same document at once and neither works from a copy
+ * older than the last save before it started. They write back only the
+ * status column: an edit saved while a job runs is kept, and the editor
+ * queues another job for it (see {@link #isProcessing}).
+ *
+ * Documents left UPLOADED, QUEUED or PROCESSING with no job, because the
+ * queue was full or the application stopped, are queued again at startup
+ * and every {@code rag.ingestion.requeue-interval-ms}, as slots allow.
+ */
+@Service
+public class IngestionService {
+
+    public static final String QUEUED = "QUEUED";
+    public static final String PROCESSING = "PROCESSING";
+    public static final String PROCESSED = "PROCESSED";
+    public static final String FAILED = "FAILED";
+    public static final String UPLOADED = "UPLOADED";
+
+    private static final List<String> UNPROCESSED = List.of(UPLOADED, QUEUED, PROCESSING);
+
+    private static final int LOCK_STRIPES = 64;
+
+    public enum Outcome { PROCESSED, FAILED, SKIPPED, MISSING }
+
+    @Autowired
+    private ProjectDocumentRepository projectDocumentRepository;
+
+    @Autowired
+    private RAGService ragService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private VectorIndexService vectorIndexService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${rag.ingestion.workers:2}")
+    private int workers;
+
+    @Value("${rag.ingestion.queue-capacity:100}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private final Set<Long> processing = ConcurrentHashMap.newKeySet();
+    private final Object[] documentLocks = new Object[LOCK_STRIPES];
+    private final AtomicInteger busyWorkers = new AtomicInteger();
+    private final AtomicLong busyNanos = new AtomicLong();
+    // Moving average of job duration, seeded with a guess until the first job finishes
+    private volatile double averageJobNanos = TimeUnit.SECONDS.toNanos(2);
+
+    private Timer jobTimer;
+    private Counter processed;
+    private Counter failed;
+    private Counter rejected;
+
+    @PostConstruct
+    public void init() {
+        for (int i = 0; i < documentLocks.length; i++) {
+            documentLocks[i] = new Object();
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "rag-ingestion-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("rag.ingestion.queue.depth", executor, e -> e.getQueue().size())
+                .description("Documents waiting to be processed for RAG")
+                .register(meterRegistry);
+        Gauge.builder("rag.ingestion.queue.capacity", executor, e -> queueCapacity)
+                .register(meterRegistry);
+        Gauge.builder("rag.ingestion.workers.active", busyWorkers, AtomicInteger::get)
+                .description("Workers processing a document right now")
+                .register(meterRegistry);
+        Gauge.builder("rag.ingestion.workers.utilization", busyWorkers, busy -> busy.get() / (double) workers)
+                .description("Share of the workers busy right now")
+                .register(meterRegistry);
+        // rate(busy time) / workers is the utilisation over any window
+        FunctionCounter.builder("rag.ingestion.workers.busy", busyNanos, nanos -> nanos.get() / 1e9)
+                .baseUnit("seconds")
+                .description("Total time workers spent processing documents")
+                .register(meterRegistry);
+        jobTimer = Timer.builder("rag.ingestion.duration")
+                .description("Time to process one document for RAG")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        processed = Counter.builder("rag.ingestion.jobs").tag("outcome", "processed").register(meterRegistry);
+        failed = Counter.builder("rag.ingestion.jobs").tag("outcome", "failed").register(meterRegistry);
+        rejected = Counter.builder("rag.ingestion.jobs").tag("outcome", "rejected").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queues the document for processing and marks it QUEUED.
+     *
+     * @return false if the queue is full; the document is left unchanged
+     */
+    public boolean enqueue(ProjectDocument document) {
+        Long id = document.getId();
+        if (!pending.add(id)) {
+            return true;
+        }
+        String previousStatus = document.getStatus();
+        document.setStatus(QUEUED);
+        saveStatus(id, QUEUED);
+        try {
+            executor.execute(() -> process(id));
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(id);
+            document.setStatus(previousStatus);
+            saveStatus(id, previousStatus);
+            rejected.increment();
+            return false;
+        }
+    }
+
+    /**
+     * Queues documents still waiting to be processed that have no job, in id
+     * order, until the queue is full; the rest wait for the next run.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${rag.ingestion.requeue-interval-ms:60000}")
+    public void requeueUnprocessed() {
+        // Jobs write to both indexes, which must have been loaded first
+        if (!searchIndexService.isReady() || !vectorIndexService.isReady()) {
+            return;
+        }
+        int queued = 0;
+        for (Long id : projectDocumentRepository.findIdsByStatusIn(UNPROCESSED)) {
+            if (!hasCapacity()) {
+                break;
+            }
+            if (pending.contains(id) || isProcessing(id)) {
+                continue;
+            }
+            // Read again: a job may have finished it since the ids were listed
+            Optional<ProjectDocument> document = projectDocumentRepository.findById(id);
+            if (document.isPresent() && UNPROCESSED.contains(document.get().getStatus()) && enqueue(document.get())) {
+                queued++;
+            }
+        }
+        if (queued > 0) {
+            System.out.println("Requeued " + queued + " unprocessed documents for RAG");
+        }
+    }
+
+    /** Whether a job would currently be accepted; uploads check this before storing anything. */
+    public boolean hasCapacity() {
+        return executor.getQueue().remainingCapacity() > 0;
+    }
+
+    /** Seconds until the queue has likely drained enough to take another job. */
+    public long retryAfterSeconds() {
+        double nanos = averageJobNanos * (executor.getQueue().size() + 1) / Math.max(1, workers);
+        return Math.max(1, (long) Math.ceil(nanos / 1e9));
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Processes the document on the calling thread, outside the queue and its
+     * metrics, as the bulk reindex does. A document waiting in the queue is
+     * left to its job.
+     */
+    public Result processNow(Long id) {
+        if (pending.contains(id)) {
+            return new Result(Outcome.SKIPPED, 0);
+        }
+        return ingest(id);
+    }
+
+    /**
+     * Whether a job or {@link #processNow} is working on the document right
+     * now, from a copy read before any save made meanwhile.
+     */
+    public boolean isProcessing(Long id) {
+        return id != null && processing.contains(id);
+    }
+
+    /** Runs the action while no job is processing the document, e.g. to remove it from the indexes. */
+    public void whileIdle(Long id, Runnable action) {
+        synchronized (lockFor(id)) {
+            action.run();
+        }
+    }
+
+    private void process(Long id) {
+        busyWorkers.incrementAndGet();
+        long start = System.nanoTime();
+        Outcome outcome = Outcome.FAILED;
+        try {
+            pending.remove(id);
+            outcome = ingest(id).getOutcome();
+        } finally {
+            long nanos = System.nanoTime() - start;
+            busyWorkers.decrementAndGet();
+            busyNanos.addAndGet(nanos);
+            jobTimer.record(nanos, TimeUnit.NANOSECONDS);
+            averageJobNanos = 0.8 * averageJobNanos + 0.2 * nanos;
+            // A document deleted while it was waiting counts as neither
+            if (outcome == Outcome.PROCESSED) {
+                processed.increment();
+            } else if (outcome == Outcome.FAILED) {
+                failed.increment();
+            }
+        }
+    }
+
+    private Result ingest(Long id) {
+        synchronized (lockFor(id)) {
+            // Marked before the read, so a save that misses this copy sees it and queues another job
+            processing.add(id);
+            long bytes = 0;
+            try {
+                Optional<ProjectDocument> found = projectDocumentRepository.findById(id);
+                if (found.isEmpty()) {
+                    return new Result(Outcome.MISSING, 0);
+                }
+                ProjectDocument document = found.get();
+                bytes = document.getFileSize() != null ? document.getFileSize() : 0;
+                document.setStatus(PROCESSING);
+                saveStatus(id, PROCESSING);
+                // The search index gets the file's content here rather than on the upload request
+                searchIndexService.indexDocumentContent(document);
+                boolean embedded = ragService.processDocumentForRAG(document);
+                saveStatus(id, embedded ? PROCESSED : FAILED);
+                return new Result(embedded ? Outcome.PROCESSED : Outcome.FAILED, bytes);
+            } catch (RuntimeException e) {
+                System.err.println("Ingestion of document " + id + " failed: " + e.getMessage());
+                markFailed(id);
+                return new Result(Outcome.FAILED, bytes);
+            } finally {
+                processing.remove(id);
+            }
+        }
+    }
+
+    private Object lockFor(Long id) {
+        return documentLocks[Math.floorMod(id.hashCode(), documentLocks.length)];
+    }
+
+    /**
+     * Writes the status column alone and updates the status facet from a
+     * fresh read, so searches filtered by status see it and no field edited
+     * since the document was read is overwritten.
+     */
+    private void saveStatus(Long id, String status) {
+        if (projectDocumentRepository.updateStatus(id, status) > 0) {
+            projectDocumentRepository.findById(id).ifPresent(searchIndexService::updateDocumentStatus);
+        }
+    }
+
+    private void markFailed(Long id) {
+        try {
+            saveStatus(id, FAILED);
+        } catch (RuntimeException e) {
+            System.err.println("Could not mark document " + id + " as failed: " + e.getMessage());
+        }
+    }
+
+    public static class Result {
+        private final Outcome outcome;
+        private final long bytes;
+
+        Result(Outcome outcome, long bytes) {
+            this.outcome = outcome;
+            this.bytes = bytes;
+        }
+
+        public Outcome getOutcome() { return outcome; }
+        /** Size of the file read, 0 if the document was not processed or has none. */
+        public long getBytes() { return bytes; }
+    }
+}
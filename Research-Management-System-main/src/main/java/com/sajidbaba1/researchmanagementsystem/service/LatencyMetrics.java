@@ -0,0 +1,51 @@
+package com.sajidbaba1.researchmanagementsystem.service;
+
+import com.sajidbaba1.researchmanagementsystem.search.StageTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes per-stage request latencies as Micrometer timers named
+ * {@code <operation>.latency} with a {@code stage} tag, for example
+ * {@code search.latency{stage=match}}. Every timer keeps a histogram and
+ * publishes its p50, p95, p99 and p99.9, so they show up under
+ * /actuator/metrics without a monitoring system attached.
+ */
+@Service
+public class LatencyMetrics {
+
+    public static final String SEARCH = "search";
+    public static final String RAG = "rag";
+    public static final String TOTAL = "total";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    /** Records every stage of a finished request, plus its wall time as the {@value #TOTAL} stage. */
+    public void record(String operation, StageTimer timer) {
+        long total = timer.elapsedNanos();
+        timer.getStages().forEach((stage, nanos) -> record(operation, stage, nanos));
+        record(operation, TOTAL, total);
+    }
+
+    public void record(String operation, String stage, long nanos) {
+        timers.computeIfAbsent(operation + "\u0000" + stage, key -> Timer.builder(operation + ".latency")
+                        .tag("stage", stage)
+                        .description("Time spent per " + operation + " request in one stage")
+                        .publishPercentiles(0.5, 0.95, 0.99, 0.999)
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofNanos(1_000))
+                        .maximumExpectedValue(Duration.ofSeconds(30))
+                        .register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,216 @@
+package com.sajidbaba1.researchmanagementsystem.service;
+
+import com.sajidbaba1.researchmanagementsystem.llm.Coalescer;
+import com.sajidbaba1.researchmanagementsystem.llm.EmbeddingBatcher;
+import com.sajidbaba1.researchmanagementsystem.llm.LlmBackend;
+import com.sajidbaba1.researchmanagementsystem.llm.LlmException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The one way into the configured {@link LlmBackend}. Embedding requests
+ * are grouped into batches of up to {@code rag.llm.batch.max-size} texts,
+ * waiting at most {@code rag.llm.batch.max-delay-ms} for a batch to fill.
+ * Identical requests already in flight (the same text to embed, the same
+ * prompt to complete) share one call. At most
+ * {@code rag.llm.max-concurrent-calls} calls run at once, and every caller
+ * gives up after {@code rag.llm.timeout-ms}.
+ *
+ * {@link #embedAll}, which ingestion uses for a whole document's chunks,
+ * has a lane of its own: its batches run on at most
+ * {@code rag.llm.bulk.max-concurrent-calls} other threads, so a large
+ * document never queues user queries behind it, and the timeout applies
+ * to each batch rather than to the document.
+ */
+@Service
+public class LlmGateway {
+
+    private static final String EMBED = "embed";
+    private static final String COMPLETE = "complete";
+
+    @Autowired
+    private LlmBackend backend;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${rag.llm.batch.max-size:32}")
+    private int maxBatchSize;
+
+    @Value("${rag.llm.batch.max-delay-ms:5}")
+    private long maxBatchDelayMs;
+
+    @Value("${rag.llm.max-concurrent-calls:4}")
+    private int maxConcurrentCalls;
+
+    @Value("${rag.llm.timeout-ms:30000}")
+    private long timeoutMs;
+
+    @Value("${rag.llm.bulk.max-concurrent-calls:2}")
+    private int bulkConcurrentCalls;
+
+    private ThreadPoolExecutor executor;
+    private ThreadPoolExecutor bulkExecutor;
+    private EmbeddingBatcher batcher;
+    private final Coalescer<String, float[]> embeddings = new Coalescer<>();
+    private final Coalescer<String, String> completions = new Coalescer<>();
+
+    private DistributionSummary batchSizes;
+    private Timer embedTimer;
+    private Timer completeTimer;
+    private Counter embedCoalesced;
+    private Counter completeCoalesced;
+    private Counter timeouts;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Callers time out on their own, so an unbounded queue here only holds work someone may still want
+        executor = new ThreadPoolExecutor(maxConcurrentCalls, maxConcurrentCalls, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "llm-call-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        AtomicInteger bulkThreadNumber = new AtomicInteger();
+        bulkExecutor = new ThreadPoolExecutor(bulkConcurrentCalls, bulkConcurrentCalls, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "llm-bulk-" + bulkThreadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        batchSizes = DistributionSummary.builder("llm.embedding.batch.size")
+                .description("Texts per embedding call")
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+        batcher = new EmbeddingBatcher(backend, maxBatchSize, TimeUnit.MILLISECONDS.toNanos(maxBatchDelayMs),
+                executor, batchSizes::record);
+        embedTimer = callTimer(EMBED);
+        completeTimer = callTimer(COMPLETE);
+        embedCoalesced = Counter.builder("llm.coalesced").tag("operation", EMBED)
+                .description("Requests that joined an identical call already in flight")
+                .register(meterRegistry);
+        completeCoalesced = Counter.builder("llm.coalesced").tag("operation", COMPLETE).register(meterRegistry);
+        timeouts = Counter.builder("llm.timeouts").description("Calls a caller gave up waiting for")
+                .register(meterRegistry);
+    }
+
+    private Timer callTimer(String operation) {
+        return Timer.builder("llm.request.duration")
+                .tag("operation", operation)
+                .description("Time a caller waited for the model, including batching")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batcher.close();
+        executor.shutdownNow();
+        bulkExecutor.shutdownNow();
+    }
+
+    public String getBackendName() {
+        return backend.name();
+    }
+
+    public CompletableFuture<float[]> embedAsync(String text) {
+        return embeddings.get(text, () -> batcher.submit(text), embedCoalesced::increment);
+    }
+
+    public float[] embed(String text) {
+        long start = System.nanoTime();
+        try {
+            return await(embedAsync(text), start);
+        } finally {
+            embedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Embeds every text, in order, in batches of {@code rag.llm.batch.max-size}
+     * on the bulk lane. No more batches are submitted than the lane runs at
+     * once, so each batch's timeout starts about when its call does.
+     */
+    public List<float[]> embedAll(List<String> texts) {
+        long start = System.nanoTime();
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        Deque<CompletableFuture<List<float[]>>> inFlight = new ArrayDeque<>();
+        try {
+            for (int from = 0; from < texts.size(); from += maxBatchSize) {
+                List<String> batch = texts.subList(from, Math.min(texts.size(), from + maxBatchSize));
+                if (inFlight.size() >= bulkConcurrentCalls) {
+                    vectors.addAll(awaitBatch(inFlight.poll()));
+                }
+                inFlight.add(CompletableFuture.supplyAsync(() -> embedBatch(batch), bulkExecutor));
+            }
+            while (!inFlight.isEmpty()) {
+                vectors.addAll(awaitBatch(inFlight.poll()));
+            }
+        } finally {
+            inFlight.forEach(future -> future.cancel(false));
+            embedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return vectors;
+    }
+
+    private List<float[]> embedBatch(List<String> batch) {
+        batchSizes.record(batch.size());
+        List<float[]> vectors = backend.embed(batch);
+        if (vectors.size() != batch.size()) {
+            throw new LlmException("Backend returned " + vectors.size() + " vectors for " + batch.size() + " texts");
+        }
+        return vectors;
+    }
+
+    private List<float[]> awaitBatch(CompletableFuture<List<float[]>> batch) {
+        return await(batch, System.nanoTime());
+    }
+
+    public CompletableFuture<String> completeAsync(String prompt) {
+        return completions.get(prompt,
+                () -> CompletableFuture.supplyAsync(() -> backend.complete(prompt), executor),
+                completeCoalesced::increment);
+    }
+
+    public String complete(String prompt) {
+        long start = System.nanoTime();
+        try {
+            return await(completeAsync(prompt), start);
+        } finally {
+            completeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Waits for the rest of the timeout that started at {@code start}. */
+    private <T> T await(CompletableFuture<T> future, long start) {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs) - (System.nanoTime() - start);
+        try {
+            return future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new LlmException("Model call timed out after " + timeoutMs + " ms");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof LlmException ? (LlmException) cause
+                    : new LlmException("Model call failed: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LlmException("Interrupted while waiting for the model");
+        }
+    }
+}
@@ -15,6 +15,15 @@ public class ProjectDocumentService {
     @Autowired
     private ProjectDocumentRepository projectDocumentRepository;
 
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private VectorIndexService vectorIndexService;
+
+    @Autowired
+    private IngestionService ingestionService;
+
     public List<ProjectDocument> getAllDocuments() {
         return projectDocumentRepository.findAll();
     }
@@ -31,14 +40,55 @@ public class ProjectDocumentService {
         return projectDocumentRepository.findByFileType(fileType);
     }
 
-    public ProjectDocument saveDocument(ProjectDocument document) {
+    /** What saving a document did about processing it for RAG. */
+    public enum Processing { NOT_NEEDED, QUEUED, REJECTED }
+
+    public static class SavedDocument {
+        private final ProjectDocument document;
+        private final Processing processing;
+
+        SavedDocument(ProjectDocument document, Processing processing) {
+            this.document = document;
+            this.processing = processing;
+        }
+
+        public ProjectDocument getDocument() { return document; }
+        /** REJECTED when the ingestion queue was full; the document is saved but not processed. */
+        public Processing getProcessing() { return processing; }
+    }
+
+    public SavedDocument saveDocument(ProjectDocument document) {
         if (document.getId() == null) {
             document.setCreatedAt(new Date());
         }
-        return projectDocumentRepository.save(document);
+        ProjectDocument saved = projectDocumentRepository.save(document);
+        // Checked before indexing: a job working from the copy before this save may still index it after us
+        boolean processing = ingestionService.isProcessing(saved.getId());
+        // The file is only read on the ingestion worker; a metadata-only edit keeps the indexed content.
+        // Documents already processed for RAG are re-embedded there too, so requests never wait on the model
+        boolean current = searchIndexService.indexDocumentFields(saved);
+        if (current && !processing && !vectorIndexService.hasDocument(saved.getId())) {
+            return new SavedDocument(saved, Processing.NOT_NEEDED);
+        }
+        if (ingestionService.enqueue(saved)) {
+            return new SavedDocument(saved, Processing.QUEUED);
+        }
+        System.err.println("Ingestion queue full, document " + saved.getId() + " keeps its previous index until reprocessed");
+        return new SavedDocument(saved, Processing.REJECTED);
+    }
+
+    /** Whether saving the document would queue an ingestion job, i.e. needs a free slot in the queue. */
+    public boolean needsProcessing(ProjectDocument document) {
+        return !searchIndexService.hasCurrentContent(document) || ingestionService.isProcessing(document.getId())
+                || vectorIndexService.hasDocument(document.getId());
     }
 
     public void deleteDocument(Long id) {
-        projectDocumentRepository.deleteById(id);
+        // A job already processing the document would otherwise index it again after its removal
+        ingestionService.whileIdle(id, () -> {
+            projectDocumentRepository.deleteById(id);
+            searchIndexService.removeDocument(id);
+            vectorIndexService.removeDocument(id);
+        });
     }
 }
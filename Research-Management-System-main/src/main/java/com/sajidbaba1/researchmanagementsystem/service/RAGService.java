@@ -4,48 +4,142 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sajidbaba1.researchmanagementsystem.entity.ProjectDocument;
 import com.sajidbaba1.researchmanagementsystem.entity.ResearchProject;
 import com.sajidbaba1.researchmanagementsystem.entity.TeamMember;
+import com.sajidbaba1.researchmanagementsystem.llm.LlmException;
 import com.sajidbaba1.researchmanagementsystem.repository.ProjectDocumentRepository;
 import com.sajidbaba1.researchmanagementsystem.repository.ResearchProjectRepository;
 import com.sajidbaba1.researchmanagementsystem.repository.TeamMemberRepository;
+import com.sajidbaba1.researchmanagementsystem.search.RankFusion;
+import com.sajidbaba1.researchmanagementsystem.search.SemanticCache;
+import com.sajidbaba1.researchmanagementsystem.search.StageTimer;
+import com.sajidbaba1.researchmanagementsystem.search.Tokenizer;
+import com.sajidbaba1.researchmanagementsystem.search.TopDocs;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
+import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class RAGService {
 
-    private final String groqApiKey;
-    private final RestTemplate restTemplate;
+    private static final int MAX_MATCHES_PER_TYPE = 20;
+    private static final int MAX_PASSAGES = 5;
+    private static final int PASSAGE_PREVIEW_CHARS = 300;
+    private static final int SUMMARY_CONTEXT_CHUNKS = 8;
+    // Chunks fetched for fusion; several can belong to one document
+    private static final int PASSAGE_CANDIDATES = 20;
+
+    private static final String PROJECT = "project";
+    private static final String TEAM_MEMBER = "teamMember";
+    private static final String DOCUMENT = "document";
+
     private final ProjectDocumentRepository documentRepository;
     private final ResearchProjectRepository projectRepository;
     private final TeamMemberRepository teamMemberRepository;
-    
-    @Value("${pinecone.api.key:}")
-    private String pineconeApiKey;
+    private final SearchIndexService searchIndexService;
+    private final LatencyMetrics latencyMetrics;
+    private final VectorIndexService vectorIndexService;
+    private final LlmGateway llmGateway;
+    private final MeterRegistry meterRegistry;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    @Value("${rag.answer-cache.max-entries:500}")
+    private int answerCacheMaxEntries;
+
+    // Answers older than this are recomputed even if nothing changed, 0 keeps them until evicted
+    @Value("${rag.answer-cache.ttl-seconds:600}")
+    private long answerCacheTtlSeconds;
+
+    // Cosine similarity from which a rephrased question gets the cached answer; above 1 only exact repeats do
+    @Value("${rag.answer-cache.similarity-threshold:1.1}")
+    private double answerCacheSimilarityThreshold;
+
+    @Value("${rag.embedder:hashing}")
+    private String embedderName;
+
+    private SemanticCache<Answer> answerCache;
+
+    // Sources an answer is built from, out of the fused lexical and vector rankings
+    @Value("${rag.retrieval.max-sources:10}")
+    private int maxSources;
+
+    // Threads running passage searches alongside the lexical searches of the calling thread
+    @Value("${rag.retrieval.threads:4}")
+    private int retrievalThreads;
+
+    private ExecutorService retrievalExecutor;
+
     @Autowired
-    public RAGService(@Value("${groq.api.key:}") String groqApiKey, 
-                     RestTemplate restTemplate,
-                     ProjectDocumentRepository documentRepository,
+    public RAGService(ProjectDocumentRepository documentRepository,
                      ResearchProjectRepository projectRepository,
-                     TeamMemberRepository teamMemberRepository) {
-        this.groqApiKey = groqApiKey;
-        this.restTemplate = restTemplate;
+                     TeamMemberRepository teamMemberRepository,
+                     SearchIndexService searchIndexService,
+                     LatencyMetrics latencyMetrics,
+                     VectorIndexService vectorIndexService,
+                     LlmGateway llmGateway,
+                     MeterRegistry meterRegistry) {
         this.documentRepository = documentRepository;
         this.projectRepository = projectRepository;
         this.teamMemberRepository = teamMemberRepository;
-        
-        if (groqApiKey == null || groqApiKey.trim().isEmpty()) {
-            System.err.println("⚠️  WARNING: groq.api.key is not configured. AI features will be disabled.");
-        }
+        this.searchIndexService = searchIndexService;
+        this.latencyMetrics = latencyMetrics;
+        this.vectorIndexService = vectorIndexService;
+        this.llmGateway = llmGateway;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        retrievalExecutor = Executors.newFixedThreadPool(retrievalThreads, runnable -> {
+            Thread thread = new Thread(runnable, "rag-retrieval-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Hashing vectors measure shared words, not meaning: questions differing in their one key term
+        // ("biology" or "chemistry" department) score above 0.9, so only exact repeats may share an answer
+        double similarityThreshold = "hashing".equals(embedderName)
+                ? SemanticCache.EXACT_ONLY : answerCacheSimilarityThreshold;
+        answerCache = new SemanticCache<>(answerCacheMaxEntries, TimeUnit.SECONDS.toNanos(answerCacheTtlSeconds),
+                similarityThreshold);
+        FunctionCounter.builder("rag.cache.requests", answerCache, SemanticCache::getHits)
+                .tag("result", "hit")
+                .description("Questions answered from the answer cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("rag.cache.requests", answerCache, SemanticCache::getSimilarHits)
+                .tag("result", "similar")
+                .description("Questions answered with the cached answer to a similar question")
+                .register(meterRegistry);
+        FunctionCounter.builder("rag.cache.requests", answerCache, SemanticCache::getMisses)
+                .tag("result", "miss")
+                .description("Questions that had to be answered")
+                .register(meterRegistry);
+        FunctionCounter.builder("rag.cache.evictions", answerCache, SemanticCache::getEvictions)
+                .description("Cached answers dropped to stay within the size bound")
+                .register(meterRegistry);
+        FunctionCounter.builder("rag.cache.expirations", answerCache, SemanticCache::getExpirations)
+                .description("Cached answers dropped for being older than the TTL")
+                .register(meterRegistry);
+        FunctionCounter.builder("rag.cache.invalidations", answerCache, SemanticCache::getInvalidations)
+                .description("Cached answers dropped because their data changed")
+                .register(meterRegistry);
+        Gauge.builder("rag.cache.size", answerCache, SemanticCache::size)
+                .description("Answers currently cached")
+                .register(meterRegistry);
     }
 
     public static class SearchResult {
@@ -86,60 +180,248 @@ public class RAGService {
         public void setQuery(String query) { this.query = query; }
     }
 
+    /** An answer as produced: its sources, then its text in sections. */
+    private static class Answer {
+        final List<String> sources;
+        final List<String> sections;
+
+        Answer(List<String> sources, List<String> sections) {
+            this.sources = sources;
+            this.sections = sections;
+        }
+
+        /** @return false if the sink closed before the whole answer was sent */
+        boolean sendTo(AnswerSink sink) {
+            if (!sink.sources(sources)) {
+                return false;
+            }
+            for (String section : sections) {
+                if (!sink.section(section)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Answers from the projects, team members, documents and passages of
+     * one project, or of every project when {@code projectId} is null.
+     */
     public AIResponse searchAndAnswer(String query, Long projectId) {
+        List<String> sources = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
         try {
-            StringBuilder responseBuilder = new StringBuilder();
-            List<String> sources = new ArrayList<>();
-
-            // Search projects
-            List<ResearchProject> projects = projectRepository.findAll();
-            List<ResearchProject> relevantProjects = searchProjects(query, projects);
-
-            // Search team members
-            List<TeamMember> teamMembers = teamMemberRepository.findAll();
-            List<TeamMember> relevantMembers = searchTeamMembers(query, teamMembers);
-
-            // Search documents
-            List<ProjectDocument> documents = documentRepository.findAll();
-            List<ProjectDocument> relevantDocuments = searchDocuments(query, documents);
-
-            // Build response based on search results
-            if (!relevantProjects.isEmpty()) {
-                responseBuilder.append("Found ").append(relevantProjects.size()).append(" relevant projects:\n");
-                for (ResearchProject project : relevantProjects) {
-                    responseBuilder.append("- ").append(project.getTitle()).append(" (Status: ").append(project.getStatus()).append(")\n");
-                    sources.add("Project: " + project.getTitle());
+            answer(query, projectId, new AnswerSink() {
+                @Override
+                public boolean sources(List<String> answerSources) {
+                    sources.addAll(answerSources);
+                    return true;
                 }
-            }
 
-            if (!relevantMembers.isEmpty()) {
-                responseBuilder.append("\nFound ").append(relevantMembers.size()).append(" relevant team members:\n");
-                for (TeamMember member : relevantMembers) {
-                    responseBuilder.append("- ").append(member.getName()).append(" (Role: ").append(member.getRole()).append(")\n");
-                    sources.add("Team Member: " + member.getName());
+                @Override
+                public boolean section(String section) {
+                    text.append(section);
+                    return true;
                 }
+            });
+            return new AIResponse(text.toString(), sources, query);
+        } catch (Exception e) {
+            return new AIResponse("Error processing query: " + e.getMessage(), Collections.emptyList(), query);
+        }
+    }
+
+    /**
+     * Like {@link #searchAndAnswer} but hands the answer to {@code sink}
+     * piece by piece, stopping early if the sink closes. Failures are
+     * thrown rather than turned into an error answer.
+     */
+    public void streamAnswer(String query, Long projectId, AnswerSink sink) {
+        answer(query, projectId, sink);
+    }
+
+    /**
+     * Answers from the cache when the same question, or one whose embedding
+     * is close enough, was answered before and no project, member, document
+     * or chunk has changed since.
+     */
+    private void answer(String query, Long projectId, AnswerSink sink) {
+        StageTimer timer = new StageTimer();
+        try {
+            String question = String.join(" ", Tokenizer.tokenize(query));
+            String scope = Objects.toString(projectId, "");
+            // Read before answering: a write that lands meanwhile leaves the entry stale, never mislabelled
+            long[] versions = dataVersions();
+            Answer cached = timer.time("cache", () -> answerCache.get(question, scope, versions));
+            if (cached != null) {
+                cached.sendTo(sink);
+                return;
             }
+            // Embedded once, for the similar-question lookup and then for passage retrieval
+            float[] queryVector = timer.time("embed", () -> vectorIndexService.embed(query));
+            cached = timer.time("cache", () -> answerCache.getSimilar(queryVector, scope, versions));
+            if (cached != null) {
+                cached.sendTo(sink);
+                return;
+            }
+            // Sent to the sink piece by piece while it is built; only a whole answer is cached
+            Answer answer = retrieve(query, projectId, queryVector, timer, sink);
+            if (answer != null) {
+                answerCache.put(question, scope, versions, queryVector, answer);
+            }
+        } finally {
+            latencyMetrics.record(LatencyMetrics.RAG, timer);
+        }
+    }
 
-            if (!relevantDocuments.isEmpty()) {
-                responseBuilder.append("\nFound ").append(relevantDocuments.size()).append(" relevant documents:\n");
-                for (ProjectDocument doc : relevantDocuments) {
-                    responseBuilder.append("- ").append(doc.getFileName()).append("\n");
-                    sources.add("Document: " + doc.getFileName());
-                }
+    @PreDestroy
+    void shutdown() {
+        retrievalExecutor.shutdownNow();
+    }
+
+    private long[] dataVersions() {
+        return new long[] {searchIndexService.getProjectVersion(), searchIndexService.getTeamMemberVersion(),
+                searchIndexService.getDocumentVersion(), vectorIndexService.getVersion()};
+    }
+
+    /**
+     * Searches the lexical indexes while the passage search runs on the
+     * retrieval pool, both confined to the project's shard and vector
+     * partition when {@code projectId} is not null, fuses the rankings with {@link RankFusion} and builds
+     * the answer from the best {@code rag.retrieval.max-sources} sources
+     * only, so its size and the rows loaded do not grow with the corpus.
+     * The sources go to {@code sink} as soon as their rows are loaded and
+     * every section as soon as it is built.
+     *
+     * @return the answer as sent, or null if the sink closed before all of it was
+     */
+    private Answer retrieve(String query, Long projectId, float[] queryVector, StageTimer timer, AnswerSink sink) {
+        CompletableFuture<List<VectorIndexService.ScoredChunk>> passageSearch = CompletableFuture.supplyAsync(
+                () -> timer.time("retrieval",
+                        () -> vectorIndexService.search(queryVector, PASSAGE_CANDIDATES, projectId)),
+                retrievalExecutor);
+        // Search projects, team members and documents through the typo-tolerant search index
+        TopDocs projectHits = timer.time("retrieval",
+                () -> searchIndexService.searchProjects(query, MAX_MATCHES_PER_TYPE, projectId));
+        TopDocs memberHits = timer.time("retrieval",
+                () -> searchIndexService.searchTeamMembers(query, MAX_MATCHES_PER_TYPE, projectId));
+        TopDocs documentHits = timer.time("retrieval",
+                () -> searchIndexService.searchDocuments(query, MAX_MATCHES_PER_TYPE, projectId));
+        if (!sink.isOpen()) {
+            passageSearch.cancel(false);
+            return null;
+        }
+        // Passages of documents processed for RAG, by meaning rather than by shared words
+        List<VectorIndexService.ScoredChunk> passages = timer.time("retrieval-wait", passageSearch::join);
+
+        List<SourceRef> passageDocumentRanking = passages.stream()
+                .map(passage -> new SourceRef(DOCUMENT, passage.getChunk().getDocumentId()))
+                .collect(Collectors.toList());
+        List<RankFusion.Fused<SourceRef>> best = timer.time("fusion", () -> RankFusion.fuse(List.of(
+                ranking(PROJECT, projectHits), ranking(TEAM_MEMBER, memberHits),
+                ranking(DOCUMENT, documentHits), passageDocumentRanking), RankFusion.DEFAULT_K, maxSources));
+        if (!sink.isOpen()) {
+            return null;
+        }
+
+        Map<Long, ResearchProject> projects = timer.time("db-load",
+                () -> loadById(idsOf(best, PROJECT), projectRepository, ResearchProject::getId));
+        Map<Long, TeamMember> members = timer.time("db-load",
+                () -> loadById(idsOf(best, TEAM_MEMBER), teamMemberRepository, TeamMember::getId));
+        Map<Long, ProjectDocument> documents = timer.time("db-load",
+                () -> loadById(idsOf(best, DOCUMENT), documentRepository, ProjectDocument::getId));
+        long composeStart = System.nanoTime();
+        long sendNanos = timer.getStages().getOrDefault("send", 0L);
+
+        // Sources best first; the sections below keep that order within each type
+        List<String> sources = new ArrayList<>();
+        List<ResearchProject> relevantProjects = new ArrayList<>();
+        List<TeamMember> relevantMembers = new ArrayList<>();
+        List<ProjectDocument> relevantDocuments = new ArrayList<>();
+        for (RankFusion.Fused<SourceRef> fused : best) {
+            SourceRef ref = fused.getItem();
+            if (PROJECT.equals(ref.type) && projects.containsKey(ref.id)) {
+                relevantProjects.add(projects.get(ref.id));
+                sources.add("Project: " + projects.get(ref.id).getTitle());
+            } else if (TEAM_MEMBER.equals(ref.type) && members.containsKey(ref.id)) {
+                relevantMembers.add(members.get(ref.id));
+                sources.add("Team Member: " + members.get(ref.id).getName());
+            } else if (DOCUMENT.equals(ref.type) && documents.containsKey(ref.id)) {
+                relevantDocuments.add(documents.get(ref.id));
+                sources.add("Document: " + documents.get(ref.id).getFileName());
             }
+        }
+        if (!timer.time("send", () -> sink.sources(Collections.unmodifiableList(sources)))) {
+            return null;
+        }
 
-            if (responseBuilder.length() == 0) {
-                responseBuilder.append("No specific matches found. However, I can provide general information about your research management system.\n");
-                responseBuilder.append("You have ").append(projects.size()).append(" projects, ")
-                        .append(teamMembers.size()).append(" team members, and ")
-                        .append(documents.size()).append(" documents in your system.");
+        List<String> sections = new ArrayList<>();
+        if (!relevantProjects.isEmpty()) {
+            StringBuilder section = new StringBuilder();
+            section.append("Found ").append(relevantProjects.size()).append(" relevant projects:\n");
+            for (ResearchProject project : relevantProjects) {
+                section.append("- ").append(project.getTitle()).append(" (Status: ").append(project.getStatus()).append(")\n");
+            }
+            if (!send(section.toString(), sections, sink, timer)) {
+                return null;
+            }
+        }
+
+        if (!relevantMembers.isEmpty()) {
+            StringBuilder section = new StringBuilder();
+            section.append("\nFound ").append(relevantMembers.size()).append(" relevant team members:\n");
+            for (TeamMember member : relevantMembers) {
+                section.append("- ").append(member.getName()).append(" (Role: ").append(member.getRole()).append(")\n");
+            }
+            if (!send(section.toString(), sections, sink, timer)) {
+                return null;
             }
+        }
 
-            return new AIResponse(responseBuilder.toString(), sources, query);
+        if (!relevantDocuments.isEmpty()) {
+            StringBuilder section = new StringBuilder();
+            section.append("\nFound ").append(relevantDocuments.size()).append(" relevant documents:\n");
+            for (ProjectDocument doc : relevantDocuments) {
+                section.append("- ").append(doc.getFileName()).append("\n");
+            }
+            if (!send(section.toString(), sections, sink, timer)) {
+                return null;
+            }
+        }
 
-        } catch (Exception e) {
-            return new AIResponse("Error processing query: " + e.getMessage(), Collections.emptyList(), query);
+        // Only passages of the documents that made the cut, closest first, a section each
+        int passageCount = 0;
+        for (VectorIndexService.ScoredChunk passage : passages) {
+            ProjectDocument doc = documents.get(passage.getChunk().getDocumentId());
+            if (doc == null || passageCount == MAX_PASSAGES) {
+                continue;
+            }
+            if (passageCount++ == 0 && !send("\nMost relevant passages:\n", sections, sink, timer)) {
+                return null;
+            }
+            String text = passage.getChunk().getText();
+            if (text.length() > PASSAGE_PREVIEW_CHARS) {
+                text = text.substring(0, PASSAGE_PREVIEW_CHARS) + "…";
+            }
+            if (!send("- " + doc.getFileName() + ": \"" + text + "\"\n", sections, sink, timer)) {
+                return null;
+            }
+        }
+
+        if (sections.isEmpty()) {
+            String fallback = "No specific matches found. However, I can provide general information about your research management system.\n"
+                    + "You have " + projectRepository.count() + " projects, "
+                    + teamMemberRepository.count() + " team members, and "
+                    + documentRepository.count() + " documents in your system.";
+            if (!send(fallback, sections, sink, timer)) {
+                return null;
+            }
         }
+
+        // Time spent blocked on a slow client is its own stage
+        sendNanos = timer.getStages().getOrDefault("send", 0L) - sendNanos;
+        timer.add("compose", System.nanoTime() - composeStart - sendNanos);
+        return new Answer(Collections.unmodifiableList(sources), Collections.unmodifiableList(sections));
     }
 
     public Map<String, Object> getProjectInsights(Long projectId) {
@@ -178,20 +460,40 @@ public class RAGService {
         return insights;
     }
 
+    /**
+     * Answers {@code query} about one document from its chunks, through the
+     * LLM gateway. Documents not processed for RAG yet have no chunks.
+     */
+    public AIResponse summarizeDocument(Long documentId, String query) {
+        Optional<ProjectDocument> document = documentRepository.findById(documentId);
+        if (document.isEmpty()) {
+            return new AIResponse("Document not found", Collections.emptyList(), query);
+        }
+        List<String> chunks = vectorIndexService.chunkTexts(documentId, SUMMARY_CONTEXT_CHUNKS);
+        if (chunks.isEmpty()) {
+            return new AIResponse("This document has not been processed for RAG yet", Collections.emptyList(), query);
+        }
+        String instruction = query == null || query.isBlank() ? "Summarize this document." : query.trim();
+        String prompt = instruction + "\n" + String.join("\n", chunks);
+        try {
+            String answer = llmGateway.complete(prompt);
+            return new AIResponse(answer, List.of("Document: " + document.get().getFileName()), query);
+        } catch (LlmException e) {
+            return new AIResponse("Error summarizing document: " + e.getMessage(), Collections.emptyList(), query);
+        }
+    }
+
+    /**
+     * Embeds the document's chunks into the vector index. The caller owns
+     * the document's status; only the status column may be written after
+     * this, as the document can be edited while it is embedded.
+     */
     public boolean processDocumentForRAG(ProjectDocument document) {
         try {
-            // In a real implementation, this would:
-            // 1. Extract text content from the document
-            // 2. Index the content for search
-            // 3. Store embeddings for semantic search
-            // 4. Update the document record with processing status
-            
-            System.out.println("Processing document for RAG: " + document.getFileName());
-            
-            // Mark document as processed
-            document.setStatus("PROCESSED");
-            documentRepository.save(document);
-            
+            long start = System.currentTimeMillis();
+            int chunks = vectorIndexService.indexDocument(document);
+            System.out.println("Processed document for RAG: " + document.getFileName() + ", " + chunks
+                    + " chunks embedded in " + (System.currentTimeMillis() - start) + " ms");
             return true;
         } catch (Exception e) {
             System.err.println("Error processing document for RAG: " + e.getMessage());
@@ -199,32 +501,47 @@ public class RAGService {
         }
     }
 
-    private List<ResearchProject> searchProjects(String query, List<ResearchProject> projects) {
-        String lowerQuery = query.toLowerCase();
-        return projects.stream()
-                .filter(project -> 
-                        project.getTitle().toLowerCase().contains(lowerQuery) ||
-                        (project.getDescription() != null && project.getDescription().toLowerCase().contains(lowerQuery)) ||
-                        project.getStatus().toLowerCase().contains(lowerQuery))
-                .collect(Collectors.toList());
+    /** An entity that can back an answer: its type label and id. */
+    private static final class SourceRef {
+        private final String type;
+        private final long id;
+
+        SourceRef(String type, long id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof SourceRef && ((SourceRef) other).id == id && ((SourceRef) other).type.equals(type);
+        }
+
+        @Override
+        public int hashCode() {
+            return type.hashCode() * 31 + Long.hashCode(id);
+        }
     }
 
-    private List<TeamMember> searchTeamMembers(String query, List<TeamMember> members) {
-        String lowerQuery = query.toLowerCase();
-        return members.stream()
-                .filter(member -> 
-                        member.getName().toLowerCase().contains(lowerQuery) ||
-                        member.getRole().toLowerCase().contains(lowerQuery) ||
-                        (member.getEmail() != null && member.getEmail().toLowerCase().contains(lowerQuery)))
-                .collect(Collectors.toList());
+    private static boolean send(String section, List<String> sections, AnswerSink sink, StageTimer timer) {
+        sections.add(section);
+        return timer.time("send", () -> sink.section(section));
     }
 
-    private List<ProjectDocument> searchDocuments(String query, List<ProjectDocument> documents) {
-        String lowerQuery = query.toLowerCase();
-        return documents.stream()
-                .filter(doc -> 
-                        doc.getFileName().toLowerCase().contains(lowerQuery) ||
-                        (doc.getDescription() != null && doc.getDescription().toLowerCase().contains(lowerQuery)))
+    private static List<SourceRef> ranking(String type, TopDocs topDocs) {
+        return topDocs.getHits().stream().map(hit -> new SourceRef(type, hit.getId())).collect(Collectors.toList());
+    }
+
+    private static List<Long> idsOf(List<RankFusion.Fused<SourceRef>> fused, String type) {
+        return fused.stream().map(RankFusion.Fused::getItem)
+                .filter(ref -> ref.type.equals(type))
+                .map(ref -> ref.id)
                 .collect(Collectors.toList());
     }
+
+    private static <T> Map<Long, T> loadById(List<Long> ids, JpaRepository<T, Long> repository, Function<T, Long> idGetter) {
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return repository.findAllById(ids).stream().collect(Collectors.toMap(idGetter, Function.identity()));
+    }
 }
@@ -0,0 +1,567 @@
+package com.sajidbaba1.researchmanagementsystem.service;
+
+import com.sajidbaba1.researchmanagementsystem.repository.ProjectDocumentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rebuilds the retrieval state (chunks, embeddings and search index
+ * entries) of every existing document, for example after changing the
+ * embedder or the chunking settings. The documents are split into ranges
+ * of {@code rag.reindex.range-size} ids that {@code rag.reindex.threads}
+ * workers claim in turn. Only the ids of a range are loaded up front; each
+ * document is handed to {@link IngestionService#processNow}, which reads
+ * it fresh, so edits and deletions made while the range waits are kept.
+ *
+ * Ranges finish out of order, so progress is checkpointed as a low
+ * watermark: every id below it is done. The watermark and the counts of
+ * the work below it are saved to {@code reindex.checkpoint} under
+ * {@code search.index-dir} whenever it moves. A run that was still going
+ * when the application stopped resumes from the watermark on the next
+ * start, redoing at most the ranges that were in flight; reindexing a
+ * document twice does no harm.
+ *
+ * Workers wait before each document so that the run stays within
+ * {@code rag.reindex.max-documents-per-second} and
+ * {@code rag.reindex.max-megabytes-per-second} of files read, leaving
+ * the rest of the machine to uploads and queries; a file's size is charged
+ * once it has been read. Documents waiting in the ingestion queue are
+ * skipped, as their job does the same.
+ */
+@Service
+public class ReindexService {
+
+    public static final String IDLE = "IDLE";
+    public static final String RUNNING = "RUNNING";
+    // Paused, with workers still finishing the document they were on
+    public static final String PAUSING = "PAUSING";
+    public static final String PAUSED = "PAUSED";
+    public static final String COMPLETED = "COMPLETED";
+
+    // Indexes into the per-range and committed counts
+    private static final int PROCESSED = 0;
+    private static final int FAILED = 1;
+    private static final int SKIPPED = 2;
+    private static final int BYTES = 3;
+
+    // How long a resume waits for the workers of a pause to finish their document
+    private static final long DRAIN_TIMEOUT_MS = 30_000;
+
+    @Autowired
+    private ProjectDocumentRepository projectDocumentRepository;
+
+    @Autowired
+    private IngestionService ingestionService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${rag.reindex.threads:2}")
+    private int threads;
+
+    @Value("${rag.reindex.range-size:200}")
+    private int rangeSize;
+
+    // 0 means no limit
+    @Value("${rag.reindex.max-documents-per-second:20}")
+    private double maxDocumentsPerSecond;
+
+    @Value("${rag.reindex.max-megabytes-per-second:20}")
+    private double maxMegabytesPerSecond;
+
+    @Value("${search.segments.enabled:true}")
+    private boolean persistenceEnabled;
+
+    @Value("${search.index-dir:search-index}")
+    private String indexDir;
+
+    private ExecutorService executor;
+    private Path checkpointFile;
+    private volatile Run run;
+    private volatile boolean shuttingDown;
+
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private Counter processedCounter;
+    private Counter failedCounter;
+    private Counter skippedCounter;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "rag-reindex-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (persistenceEnabled) {
+            checkpointFile = Paths.get(indexDir).resolve("reindex.checkpoint");
+        }
+        Gauge.builder("rag.reindex.workers.active", activeWorkers, AtomicInteger::get)
+                .description("Workers of the bulk reindex running right now")
+                .register(meterRegistry);
+        processedCounter = Counter.builder("rag.reindex.documents").tag("outcome", "processed").register(meterRegistry);
+        failedCounter = Counter.builder("rag.reindex.documents").tag("outcome", "failed").register(meterRegistry);
+        skippedCounter = Counter.builder("rag.reindex.documents").tag("outcome", "skipped").register(meterRegistry);
+    }
+
+    /** Resumes a run the application stopped in the middle of. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        Run saved = loadCheckpoint();
+        if (saved == null) {
+            return;
+        }
+        run = saved;
+        if (RUNNING.equals(saved.state)) {
+            System.out.println("Resuming the bulk reindex from document id " + saved.watermark
+                    + " of " + saved.lastId);
+            launch(saved);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // The checkpoint keeps saying RUNNING, so the next start picks the run up again
+        shuttingDown = true;
+        Run current = run;
+        if (current != null) {
+            current.stopRequested = true;
+        }
+        executor.shutdownNow();
+        // Workers finish the document in hand; none may write the checkpoint after this returns
+        try {
+            executor.awaitTermination(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Starts a run over every document, or resumes a paused or interrupted
+     * one from its checkpoint. Does nothing while a run is going. A run
+     * still PAUSING is waited for, up to {@link #DRAIN_TIMEOUT_MS}; if its
+     * workers are not done by then the PAUSING progress is returned and
+     * nothing is started.
+     *
+     * @param restart start from the first document even if a run can be resumed
+     */
+    public Progress start(boolean restart) throws InterruptedException {
+        Run current = run;
+        // Not under the lock: the workers take it to save their last checkpoint
+        if (current != null && current.stopRequested && !current.drained.await(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            return current.progress();
+        }
+        return startOrResume(restart);
+    }
+
+    private synchronized Progress startOrResume(boolean restart) {
+        Run current = run;
+        if (current != null && activeWorkers.get() > 0) {
+            return current.progress();
+        }
+        if (restart || current == null || COMPLETED.equals(current.state)) {
+            Long first = projectDocumentRepository.findMinId();
+            Long last = projectDocumentRepository.findMaxId();
+            if (first == null || last == null) {
+                current = new Run(0, -1, 0, new long[4], System.currentTimeMillis());
+                current.state = COMPLETED;
+                run = current;
+                saveCheckpoint(current);
+                return current.progress();
+            }
+            current = new Run(first, last, first, new long[4], System.currentTimeMillis());
+        } else {
+            // Resumed with the counts of the checkpoint; work past it is done again
+            current = new Run(current.firstId, current.lastId, current.watermark, current.committed,
+                    current.startedAt);
+        }
+        run = current;
+        launch(current);
+        return current.progress();
+    }
+
+    /** Stops the running workers after their current document; {@link #start} resumes. */
+    public Progress pause() {
+        Run current = run;
+        if (current == null) {
+            return Progress.idle();
+        }
+        synchronized (current) {
+            current.stopRequested = true;
+            if (RUNNING.equals(current.state)) {
+                current.state = PAUSING;
+            }
+        }
+        return current.progress();
+    }
+
+    public Progress getProgress() {
+        Run current = run;
+        return current != null ? current.progress() : Progress.idle();
+    }
+
+    private void launch(Run current) {
+        current.drained = new CountDownLatch(1);
+        current.state = RUNNING;
+        current.sessionStart = System.nanoTime();
+        current.sessionEnd = 0;
+        saveCheckpoint(current);
+        int workers = (int) Math.max(1, Math.min(threads, (current.lastId - current.watermark) / rangeSize + 1));
+        activeWorkers.addAndGet(workers);
+        for (int i = 0; i < workers; i++) {
+            executor.execute(() -> work(current));
+        }
+    }
+
+    private void work(Run current) {
+        try {
+            while (!current.stopRequested) {
+                long from = current.cursor.getAndAdd(rangeSize);
+                if (from > current.lastId) {
+                    break;
+                }
+                long[] counts = new long[4];
+                List<Long> ids = projectDocumentRepository.findIdsInRange(from, from + rangeSize);
+                for (Long id : ids) {
+                    if (current.stopRequested) {
+                        return;
+                    }
+                    reindex(current, id, counts);
+                }
+                rangeDone(current, from, counts);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            System.err.println("Bulk reindex stopped: " + e.getMessage());
+            current.lastError = e.getMessage();
+            current.stopRequested = true;
+        } finally {
+            if (activeWorkers.decrementAndGet() == 0) {
+                finish(current);
+            }
+        }
+    }
+
+    private void reindex(Run current, Long id, long[] counts) throws InterruptedException {
+        current.documentThrottle.acquire(1);
+        current.byteThrottle.await();
+        IngestionService.Result result = ingestionService.processNow(id);
+        switch (result.getOutcome()) {
+            case PROCESSED:
+                counts[PROCESSED]++;
+                current.processed.increment();
+                processedCounter.increment();
+                break;
+            case FAILED:
+                counts[FAILED]++;
+                current.failed.increment();
+                failedCounter.increment();
+                break;
+            case SKIPPED:
+                counts[SKIPPED]++;
+                current.skipped.increment();
+                skippedCounter.increment();
+                break;
+            default:
+                // Deleted since its range was listed
+                break;
+        }
+        current.byteThrottle.charge(result.getBytes());
+        counts[BYTES] += result.getBytes();
+        current.bytes.add(result.getBytes());
+    }
+
+    /** Records a finished range and moves the watermark past every range finished below it. */
+    private void rangeDone(Run current, long from, long[] counts) {
+        boolean moved = false;
+        synchronized (current) {
+            current.finishedRanges.put(from, counts);
+            while (!current.finishedRanges.isEmpty() && current.finishedRanges.firstKey() == current.watermark) {
+                long[] range = current.finishedRanges.remove(current.watermark);
+                for (int i = 0; i < range.length; i++) {
+                    current.committed[i] += range[i];
+                }
+                current.watermark += rangeSize;
+                moved = true;
+            }
+        }
+        if (moved) {
+            saveCheckpoint(current);
+        }
+    }
+
+    private void finish(Run current) {
+        if (shuttingDown) {
+            return;
+        }
+        try {
+            current.sessionEnd = System.nanoTime();
+            synchronized (current) {
+                current.state = !current.stopRequested && current.watermark > current.lastId ? COMPLETED : PAUSED;
+            }
+            saveCheckpoint(current);
+            Progress progress = current.progress();
+            System.out.printf("Bulk reindex %s: %d documents processed, %d failed, %d skipped at %.1f documents/s%n",
+                    progress.getState().toLowerCase(), progress.getDocumentsProcessed(), progress.getDocumentsFailed(),
+                    progress.getDocumentsSkipped(), progress.getDocumentsPerSecond());
+        } finally {
+            current.drained.countDown();
+        }
+    }
+
+    private synchronized void saveCheckpoint(Run current) {
+        if (checkpointFile == null) {
+            return;
+        }
+        Properties properties = new Properties();
+        synchronized (current) {
+            properties.setProperty("state", current.state);
+            properties.setProperty("firstId", Long.toString(current.firstId));
+            properties.setProperty("lastId", Long.toString(current.lastId));
+            properties.setProperty("watermark", Long.toString(current.watermark));
+            properties.setProperty("processed", Long.toString(current.committed[PROCESSED]));
+            properties.setProperty("failed", Long.toString(current.committed[FAILED]));
+            properties.setProperty("skipped", Long.toString(current.committed[SKIPPED]));
+            properties.setProperty("bytes", Long.toString(current.committed[BYTES]));
+            properties.setProperty("startedAt", Long.toString(current.startedAt));
+        }
+        Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(checkpointFile.getParent());
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                properties.store(out, "Bulk reindex checkpoint: every document id below watermark is done");
+            }
+            Files.move(temporary, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not save the reindex checkpoint to " + checkpointFile + ": " + e.getMessage());
+        }
+    }
+
+    private Run loadCheckpoint() {
+        if (checkpointFile == null || !Files.exists(checkpointFile)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(checkpointFile)) {
+            properties.load(in);
+            long[] committed = {
+                    Long.parseLong(properties.getProperty("processed")),
+                    Long.parseLong(properties.getProperty("failed")),
+                    Long.parseLong(properties.getProperty("skipped")),
+                    Long.parseLong(properties.getProperty("bytes"))};
+            Run saved = new Run(Long.parseLong(properties.getProperty("firstId")),
+                    Long.parseLong(properties.getProperty("lastId")),
+                    Long.parseLong(properties.getProperty("watermark")), committed,
+                    Long.parseLong(properties.getProperty("startedAt")));
+            saved.state = properties.getProperty("state");
+            return saved;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not read the reindex checkpoint " + checkpointFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** One pass over the documents with ids {@code firstId..lastId}, possibly resumed. */
+    private class Run {
+        final long firstId;
+        final long lastId;
+        final long startedAt;
+        final AtomicLong cursor;
+        // Every id below the watermark is done, and its counts are committed
+        long watermark;
+        final long[] committed;
+        final TreeMap<Long, long[]> finishedRanges = new TreeMap<>();
+
+        // Counts including ranges past the watermark, for progress reports
+        final LongAdder processed = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final long[] sessionBase;
+        volatile long sessionStart;
+        volatile long sessionEnd;
+
+        final Throttle documentThrottle = new Throttle(maxDocumentsPerSecond);
+        final Throttle byteThrottle = new Throttle(maxMegabytesPerSecond * 1024 * 1024);
+
+        volatile String state = IDLE;
+        volatile boolean stopRequested;
+        // Counted down once the workers of the last launch have all stopped
+        volatile CountDownLatch drained = new CountDownLatch(0);
+        volatile String lastError;
+
+        Run(long firstId, long lastId, long watermark, long[] committed, long startedAt) {
+            this.firstId = firstId;
+            this.lastId = lastId;
+            this.watermark = watermark;
+            this.committed = committed.clone();
+            this.startedAt = startedAt;
+            this.cursor = new AtomicLong(watermark);
+            this.sessionBase = committed.clone();
+            processed.add(committed[PROCESSED]);
+            failed.add(committed[FAILED]);
+            skipped.add(committed[SKIPPED]);
+            bytes.add(committed[BYTES]);
+        }
+
+        Progress progress() {
+            long checkpoint;
+            synchronized (this) {
+                checkpoint = watermark;
+            }
+            double span = Math.max(1, lastId - firstId + 1);
+            double percent = COMPLETED.equals(state) ? 100
+                    : Math.min(100, Math.max(0, (checkpoint - firstId) * 100.0 / span));
+            long end = sessionEnd != 0 ? sessionEnd : System.nanoTime();
+            double seconds = sessionStart != 0 ? (end - sessionStart) / 1e9 : 0;
+            long sessionDocuments = processed.sum() + failed.sum() - sessionBase[PROCESSED] - sessionBase[FAILED];
+            long sessionBytes = bytes.sum() - sessionBase[BYTES];
+            return new Progress(state, firstId, lastId, Math.min(checkpoint, lastId + 1), percent,
+                    processed.sum(), failed.sum(), skipped.sum(), bytes.sum(), seconds,
+                    seconds > 0 ? sessionDocuments / seconds : 0,
+                    seconds > 0 ? sessionBytes / seconds / (1024 * 1024) : 0, activeWorkers.get(), startedAt,
+                    lastError);
+        }
+    }
+
+    /**
+     * Spaces out work so that {@code permitsPerSecond} are used on average.
+     * Permits can be taken up front with {@link #acquire}, or charged once
+     * the amount is known with {@link #charge}, which delays later callers.
+     */
+    private static class Throttle {
+        private final double nanosPerPermit;
+        private long nextFree = System.nanoTime();
+
+        Throttle(double permitsPerSecond) {
+            this.nanosPerPermit = permitsPerSecond > 0 ? 1e9 / permitsPerSecond : 0;
+        }
+
+        void acquire(long permits) throws InterruptedException {
+            if (nanosPerPermit == 0 || permits <= 0) {
+                return;
+            }
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long start = Math.max(now, nextFree);
+                nextFree = start + (long) (permits * nanosPerPermit);
+                wait = start - now;
+            }
+            sleep(wait);
+        }
+
+        /** Waits until the permits charged so far have been paid off. */
+        void await() throws InterruptedException {
+            if (nanosPerPermit == 0) {
+                return;
+            }
+            long wait;
+            synchronized (this) {
+                wait = nextFree - System.nanoTime();
+            }
+            sleep(wait);
+        }
+
+        synchronized void charge(long permits) {
+            if (nanosPerPermit == 0 || permits <= 0) {
+                return;
+            }
+            nextFree = Math.max(System.nanoTime(), nextFree) + (long) (permits * nanosPerPermit);
+        }
+
+        private static void sleep(long nanos) throws InterruptedException {
+            if (nanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            }
+        }
+    }
+
+    public static class Progress {
+        private final String state;
+        private final long firstId;
+        private final long lastId;
+        private final long checkpointId;
+        private final double percentComplete;
+        private final long documentsProcessed;
+        private final long documentsFailed;
+        private final long documentsSkipped;
+        private final long bytesRead;
+        private final double elapsedSeconds;
+        private final double documentsPerSecond;
+        private final double megabytesPerSecond;
+        private final int activeWorkers;
+        private final long startedAt;
+        private final String lastError;
+
+        Progress(String state, long firstId, long lastId, long checkpointId, double percentComplete,
+                 long documentsProcessed, long documentsFailed, long documentsSkipped, long bytesRead,
+                 double elapsedSeconds, double documentsPerSecond, double megabytesPerSecond, int activeWorkers,
+                 long startedAt, String lastError) {
+            this.state = state;
+            this.firstId = firstId;
+            this.lastId = lastId;
+            this.checkpointId = checkpointId;
+            this.percentComplete = percentComplete;
+            this.documentsProcessed = documentsProcessed;
+            this.documentsFailed = documentsFailed;
+            this.documentsSkipped = documentsSkipped;
+            this.bytesRead = bytesRead;
+            this.elapsedSeconds = elapsedSeconds;
+            this.documentsPerSecond = documentsPerSecond;
+            this.megabytesPerSecond = megabytesPerSecond;
+            this.activeWorkers = activeWorkers;
+            this.startedAt = startedAt;
+            this.lastError = lastError;
+        }
+
+        static Progress idle() {
+            return new Progress(IDLE, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, null);
+        }
+
+        public String getState() { return state; }
+        public long getFirstId() { return firstId; }
+        public long getLastId() { return lastId; }
+        /** Every document with a smaller id is done; a resumed run starts here. */
+        public long getCheckpointId() { return checkpointId; }
+        public double getPercentComplete() { return percentComplete; }
+        public long getDocumentsProcessed() { return documentsProcessed; }
+        public long getDocumentsFailed() { return documentsFailed; }
+        public long getDocumentsSkipped() { return documentsSkipped; }
+        public long getBytesRead() { return bytesRead; }
+        /** Time this run has been going since it was started or last resumed. */
+        public double getElapsedSeconds() { return elapsedSeconds; }
+        public double getDocumentsPerSecond() { return documentsPerSecond; }
+        public double getMegabytesPerSecond() { return megabytesPerSecond; }
+        public int getActiveWorkers() { return activeWorkers; }
+        public long getStartedAt() { return startedAt; }
+        public String getLastError() { return lastError; }
+    }
+}
@@ -13,6 +13,9 @@ public class ResearchProjectService {
     @Autowired
     private ResearchProjectRepository repository;
 
+    @Autowired
+    private SearchIndexService searchIndexService;
+
     public List<ResearchProject> findAll() {
         return repository.findAll();
     }
@@ -22,10 +25,13 @@ public class ResearchProjectService {
     }
 
     public ResearchProject save(ResearchProject project) {
-        return repository.save(project);
+        ResearchProject saved = repository.save(project);
+        searchIndexService.indexProject(saved);
+        return saved;
     }
 
     public void deleteById(Long id) {
         repository.deleteById(id);
+        searchIndexService.removeProject(id);
     }
 }
\ No newline at end of file
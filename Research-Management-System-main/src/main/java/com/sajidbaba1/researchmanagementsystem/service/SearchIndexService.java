@@ -0,0 +1,553 @@
+package com.sajidbaba1.researchmanagementsystem.service;
+
+import com.sajidbaba1.researchmanagementsystem.entity.ProjectDocument;
+import com.sajidbaba1.researchmanagementsystem.entity.ResearchProject;
+import com.sajidbaba1.researchmanagementsystem.entity.TeamMember;
+import com.sajidbaba1.researchmanagementsystem.repository.ProjectDocumentRepository;
+import com.sajidbaba1.researchmanagementsystem.repository.ResearchProjectRepository;
+import com.sajidbaba1.researchmanagementsystem.repository.TeamMemberRepository;
+import com.sajidbaba1.researchmanagementsystem.search.IndexStore;
+import com.sajidbaba1.researchmanagementsystem.search.InvertedIndex;
+import com.sajidbaba1.researchmanagementsystem.search.Matches;
+import com.sajidbaba1.researchmanagementsystem.search.Query;
+import com.sajidbaba1.researchmanagementsystem.search.QueryParser;
+import com.sajidbaba1.researchmanagementsystem.search.Snippet;
+import com.sajidbaba1.researchmanagementsystem.search.SuggestionTrie;
+import com.sajidbaba1.researchmanagementsystem.search.TermCounter;
+import com.sajidbaba1.researchmanagementsystem.search.Tokenizer;
+import com.sajidbaba1.researchmanagementsystem.search.TopDocs;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Owns the in-memory search indexes. They are kept current by the entity
+ * services on every save and delete.
+ *
+ * With segments enabled the indexes are also saved under
+ * {@code search.index-dir}: every change is logged as it happens and the
+ * indexes are written out periodically. A restart maps the saved segments
+ * back in and only re-reads the entities changed since, instead of
+ * re-indexing (and re-extracting the files of) the whole database.
+ */
+@Service
+public class SearchIndexService {
+
+    @Autowired
+    private ProjectDocumentRepository projectDocumentRepository;
+
+    @Autowired
+    private TeamMemberRepository teamMemberRepository;
+
+    @Autowired
+    private ResearchProjectRepository researchProjectRepository;
+
+    @Autowired
+    private ContentExtractionService contentExtractionService;
+
+    private final InvertedIndex documentIndex = new InvertedIndex("fileName", "description", "content");
+
+    private final InvertedIndex teamMemberIndex =
+            new InvertedIndex("name", "email", "role", "department", "expertise");
+
+    private final InvertedIndex projectIndex = new InvertedIndex("title", "description");
+
+    // Facet the indexes are sharded by, see InvertedIndex#setShardFacet
+    private static final String PROJECT_SHARD = "projectId";
+
+    private static final String CONTENT_FIELD = "content";
+
+    // BM25F weights, in the field order of the indexes above
+    private static final double[] DOCUMENT_WEIGHTS = {2.0, 1.0, 0.8};
+    private static final double[] TEAM_MEMBER_WEIGHTS = {2.0, 0.5, 1.0, 1.0, 1.5};
+    private static final double[] PROJECT_WEIGHTS = {2.0, 1.0};
+
+    // Fields snippets are cut from, best first; titles are shown on their own
+    private static final String[] DOCUMENT_SNIPPET_FIELDS = {"content", "description"};
+    private static final String[] TEAM_MEMBER_SNIPPET_FIELDS = {"expertise", "role", "department"};
+    private static final String[] PROJECT_SNIPPET_FIELDS = {"description"};
+
+    @Value("${search.snippets.max-chars:200}")
+    private int snippetMaxChars;
+
+    // Time allowed for finding the matches of one result's snippet
+    @Value("${search.snippets.budget-micros:2000}")
+    private long snippetBudgetMicros;
+
+    // Bumped after every change to an entity type so cached search results can tell they are stale
+    private final AtomicLong documentVersion = new AtomicLong();
+    private final AtomicLong teamMemberVersion = new AtomicLong();
+    private final AtomicLong projectVersion = new AtomicLong();
+
+    // Autocomplete over file names, member names, project titles and past queries
+    private final SuggestionTrie suggestions = new SuggestionTrie();
+
+    // Base popularity of each kind of suggestion; every recorded search adds 1
+    private static final double DOCUMENT_SUGGESTION_WEIGHT = 1.0;
+    private static final double TEAM_MEMBER_SUGGESTION_WEIGHT = 1.0;
+    private static final double PROJECT_SUGGESTION_WEIGHT = 2.0;
+
+    @Value("${search.segments.enabled:true}")
+    private boolean segmentsEnabled;
+
+    @Value("${search.index-dir:search-index}")
+    private String indexDir;
+
+    private IndexStore documentStore;
+    private IndexStore teamMemberStore;
+    private IndexStore projectStore;
+    private Path suggestionsFile;
+    private long savedSuggestionModifications = -1;
+
+    // Flushing is held back until the indexes have been restored or rebuilt
+    private volatile boolean ready;
+
+    @PostConstruct
+    public void init() {
+        // Shard every index by project; a project is the only entity of its own shard
+        documentIndex.setShardFacet(PROJECT_SHARD);
+        teamMemberIndex.setShardFacet(PROJECT_SHARD);
+        projectIndex.setShardFacet(PROJECT_SHARD);
+        if (!segmentsEnabled) {
+            return;
+        }
+        try {
+            Path root = Paths.get(indexDir);
+            documentStore = new IndexStore(root.resolve("documents"));
+            teamMemberStore = new IndexStore(root.resolve("team-members"));
+            projectStore = new IndexStore(root.resolve("projects"));
+            suggestionsFile = root.resolve("suggestions.dat");
+        } catch (IOException e) {
+            System.err.println("Search index segments disabled, cannot use " + indexDir + ": " + e.getMessage());
+            documentStore = null;
+            teamMemberStore = null;
+            projectStore = null;
+        }
+    }
+
+    /** Whether the index has been loaded or rebuilt since startup. */
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        boolean restored = documentStore != null && restoreSegments();
+        if (!restored) {
+            rebuildFromDatabase();
+        }
+        ready = true;
+        flush();
+        System.out.println("Search index " + (restored ? "restored from segments" : "built") + " in "
+                + (System.currentTimeMillis() - start) + " ms: " + documentIndex.size() + " documents, "
+                + teamMemberIndex.size() + " team members, " + projectIndex.size() + " projects, "
+                + suggestions.size() + " suggestions");
+    }
+
+    private void rebuildFromDatabase() {
+        if (documentStore != null) {
+            try {
+                documentStore.discardChanges();
+                teamMemberStore.discardChanges();
+                projectStore.discardChanges();
+            } catch (IOException e) {
+                System.err.println("Could not discard search index change logs: " + e.getMessage());
+            }
+        }
+        suggestions.clear();
+
+        documentIndex.clear();
+        projectDocumentRepository.findAll().forEach(this::indexDocument);
+
+        teamMemberIndex.clear();
+        teamMemberRepository.findAll().forEach(this::indexTeamMember);
+
+        projectIndex.clear();
+        researchProjectRepository.findAll().forEach(this::indexProject);
+    }
+
+    /**
+     * Maps the saved segments back in and replays the changes logged since.
+     * Returns false (leaving a full rebuild to the caller) when anything is
+     * missing or unreadable.
+     */
+    private boolean restoreSegments() {
+        if (!Files.exists(suggestionsFile)) {
+            return false;
+        }
+        if (documentStore.load(documentIndex) < 0 || teamMemberStore.load(teamMemberIndex) < 0
+                || projectStore.load(projectIndex) < 0) {
+            return false;
+        }
+        try {
+            suggestions.readFrom(suggestionsFile);
+            int replayed = replay(documentStore, projectDocumentRepository::findById,
+                    this::indexDocument, this::removeDocument);
+            replayed += replay(teamMemberStore, teamMemberRepository::findById,
+                    this::indexTeamMember, this::removeTeamMember);
+            replayed += replay(projectStore, researchProjectRepository::findById,
+                    this::indexProject, this::removeProject);
+            System.out.println("Replayed " + replayed + " search index changes logged since the last flush");
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not restore search index segments, rebuilding: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Re-reads every logged entity, so a replay always ends in the database's current state. */
+    private <T> int replay(IndexStore store, Function<Long, Optional<T>> find,
+                           Consumer<T> index, Consumer<Long> remove) throws IOException {
+        List<IndexStore.Change> changes = store.pendingChanges();
+        for (IndexStore.Change change : changes) {
+            Optional<T> entity = change.isRemoved() ? Optional.empty() : find.apply(change.getId());
+            if (entity.isPresent()) {
+                index.accept(entity.get());
+            } else {
+                remove.accept(change.getId());
+            }
+        }
+        return changes.size();
+    }
+
+    /**
+     * Writes every index that changed since its last segment. The suggestion
+     * trie is saved first, so the change logs are only pruned up to what it
+     * contains too.
+     */
+    @Scheduled(fixedDelayString = "${search.segments.flush-interval-ms:60000}")
+    public synchronized void flush() {
+        if (!ready || documentStore == null) {
+            return;
+        }
+        long documentSequence = documentIndex.getSequence();
+        long teamMemberSequence = teamMemberIndex.getSequence();
+        long projectSequence = projectIndex.getSequence();
+        try {
+            long modifications = suggestions.getModifications();
+            if (modifications != savedSuggestionModifications) {
+                suggestions.writeTo(suggestionsFile);
+                savedSuggestionModifications = modifications;
+            }
+            boolean written = documentStore.flush(documentIndex, documentSequence);
+            written |= teamMemberStore.flush(teamMemberIndex, teamMemberSequence);
+            written |= projectStore.flush(projectIndex, projectSequence);
+            if (written) {
+                System.out.println("Search index segments written to " + indexDir);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write search index segments: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Indexes the document with the content of its file. The file is only
+     * read when the index does not already hold the content of the same
+     * path and size.
+     */
+    public void indexDocument(ProjectDocument document) {
+        indexDocument(document, true);
+    }
+
+    /**
+     * Indexes the document's name, description and facets without reading
+     * its file, so it is cheap enough for a request thread. Content indexed
+     * earlier from the same file is kept.
+     *
+     * @return false if the file is new or changed and its content is left
+     *         out until {@link #indexDocumentContent} reads it
+     */
+    public boolean indexDocumentFields(ProjectDocument document) {
+        return indexDocument(document, false);
+    }
+
+    /**
+     * Indexes the document's fields with its file's content, reading the
+     * file only if the index does not already hold that content. The fields
+     * are always rewritten, so a job never leaves those of a copy read
+     * before an edit in the index.
+     */
+    public void indexDocumentContent(ProjectDocument document) {
+        indexDocument(document, true);
+    }
+
+    private boolean indexDocument(ProjectDocument document, boolean extract) {
+        if (document == null || document.getId() == null) {
+            return true;
+        }
+        String source = contentSource(document);
+        boolean current = true;
+        TermCounter content = null;
+        if (source != null && hasContentOf(document)) {
+            content = documentIndex.fieldTerms(document.getId(), CONTENT_FIELD);
+        } else if (source != null && extract) {
+            // The file itself is streamed into term counts; its text is never held in memory
+            content = contentExtractionService.extract(document);
+        } else if (source != null) {
+            current = false;
+            source = null;
+        }
+        TermCounter[] fields = {
+                TermCounter.of(document.getFileName()),
+                TermCounter.of(document.getDescription()),
+                content
+        };
+        long sequence = documentIndex.index(document.getId(), documentFacets(document), fields, source);
+        if (documentStore != null) {
+            documentStore.recordIndexed(sequence, document.getId());
+        }
+        suggestions.put("document:" + document.getId(), document.getFileName(), DOCUMENT_SUGGESTION_WEIGHT);
+        documentVersion.incrementAndGet();
+        return current;
+    }
+
+    /** Whether the indexed content was counted from the file the document currently points at. */
+    public boolean hasCurrentContent(ProjectDocument document) {
+        return document.getId() != null && hasContentOf(document);
+    }
+
+    private boolean hasContentOf(ProjectDocument document) {
+        return Objects.equals(contentSource(document), documentIndex.getSource(document.getId()));
+    }
+
+    /** Identifies the file the content comes from; a file replaced in place keeps neither path nor size. */
+    private static String contentSource(ProjectDocument document) {
+        return document.getFilePath() == null ? null : document.getFilePath() + "|" + document.getFileSize();
+    }
+
+    /**
+     * Updates the facets of an indexed document, its status in particular,
+     * without reading its file or re-tokenizing anything.
+     */
+    public void updateDocumentStatus(ProjectDocument document) {
+        if (document == null || document.getId() == null) {
+            return;
+        }
+        long sequence = documentIndex.updateFacets(document.getId(), documentFacets(document));
+        if (sequence < 0) {
+            // Not indexed yet
+            indexDocumentFields(document);
+            return;
+        }
+        if (documentStore != null) {
+            documentStore.recordIndexed(sequence, document.getId());
+        }
+        documentVersion.incrementAndGet();
+    }
+
+    private static Map<String, String> documentFacets(ProjectDocument document) {
+        Map<String, String> facets = new HashMap<>();
+        facets.put("fileType", document.getFileType());
+        facets.put("status", document.getStatus());
+        facets.put(PROJECT_SHARD, document.getProjectId() != null ? document.getProjectId().toString() : null);
+        return facets;
+    }
+
+    public void removeDocument(Long id) {
+        if (id != null) {
+            long sequence = documentIndex.remove(id);
+            if (documentStore != null) {
+                documentStore.recordRemoved(sequence, id);
+            }
+            suggestions.remove("document:" + id);
+            documentVersion.incrementAndGet();
+        }
+    }
+
+    public void indexTeamMember(TeamMember member) {
+        if (member == null || member.getId() == null) {
+            return;
+        }
+        Map<String, String> facets = new HashMap<>();
+        facets.put("department", member.getDepartment());
+        facets.put("role", member.getRole());
+        facets.put(PROJECT_SHARD, member.getProjectId() != null ? member.getProjectId().toString() : null);
+        long sequence = teamMemberIndex.index(member.getId(), facets, member.getName(), member.getEmail(),
+                member.getRole(), member.getDepartment(), member.getExpertise());
+        if (teamMemberStore != null) {
+            teamMemberStore.recordIndexed(sequence, member.getId());
+        }
+        suggestions.put("team-member:" + member.getId(), member.getName(), TEAM_MEMBER_SUGGESTION_WEIGHT);
+        teamMemberVersion.incrementAndGet();
+    }
+
+    public void removeTeamMember(Long id) {
+        if (id != null) {
+            long sequence = teamMemberIndex.remove(id);
+            if (teamMemberStore != null) {
+                teamMemberStore.recordRemoved(sequence, id);
+            }
+            suggestions.remove("team-member:" + id);
+            teamMemberVersion.incrementAndGet();
+        }
+    }
+
+    public void indexProject(ResearchProject project) {
+        if (project == null || project.getId() == null) {
+            return;
+        }
+        Map<String, String> facets = new HashMap<>();
+        facets.put("status", project.getStatus());
+        facets.put(PROJECT_SHARD, project.getId().toString());
+        long sequence = projectIndex.index(project.getId(), facets, project.getTitle(), project.getDescription());
+        if (projectStore != null) {
+            projectStore.recordIndexed(sequence, project.getId());
+        }
+        suggestions.put("project:" + project.getId(), project.getTitle(), PROJECT_SUGGESTION_WEIGHT);
+        projectVersion.incrementAndGet();
+    }
+
+    public void removeProject(Long id) {
+        if (id != null) {
+            long sequence = projectIndex.remove(id);
+            if (projectStore != null) {
+                projectStore.recordRemoved(sequence, id);
+            }
+            suggestions.remove("project:" + id);
+            projectVersion.incrementAndGet();
+        }
+    }
+
+    public List<String> suggest(String prefix, int k) {
+        return suggestions.suggest(prefix, k);
+    }
+
+    /**
+     * Counts a search that returned results so that it ranks higher as a
+     * suggestion the next time someone types its beginning.
+     */
+    public void recordQuery(String query) {
+        suggestions.recordQuery(query);
+    }
+
+    /**
+     * Natural-language lookups (used by the assistant): any query word may
+     * match, and entities matching more of them rank higher.
+     */
+    public TopDocs searchDocuments(String query, int k) {
+        return searchDocuments(query, k, null);
+    }
+
+    public TopDocs searchTeamMembers(String query, int k) {
+        return searchTeamMembers(query, k, null);
+    }
+
+    public TopDocs searchProjects(String query, int k) {
+        return searchProjects(query, k, null);
+    }
+
+    /** Like {@link #searchDocuments(String, int)}, within one project's shard when {@code projectId} is not null. */
+    public TopDocs searchDocuments(String query, int k, Long projectId) {
+        return documentIndex.search(Query.anyOf(Tokenizer.tokenize(query)), DOCUMENT_WEIGHTS, k, shard(projectId));
+    }
+
+    public TopDocs searchTeamMembers(String query, int k, Long projectId) {
+        return teamMemberIndex.search(Query.anyOf(Tokenizer.tokenize(query)), TEAM_MEMBER_WEIGHTS, k,
+                shard(projectId));
+    }
+
+    public TopDocs searchProjects(String query, int k, Long projectId) {
+        return projectIndex.search(Query.anyOf(Tokenizer.tokenize(query)), PROJECT_WEIGHTS, k, shard(projectId));
+    }
+
+    /**
+     * Search box queries, in the {@link QueryParser} syntax: every word must
+     * match unless OR is used, with phrases, NOT and field:value clauses.
+     * With a {@code projectId} only that project's shard is searched;
+     * without one all shards are searched in parallel.
+     */
+    public Matches scoreDocuments(String query, Long projectId) {
+        return documentIndex.scoreAll(parse(query), DOCUMENT_WEIGHTS, shard(projectId));
+    }
+
+    public Matches scoreTeamMembers(String query, Long projectId) {
+        return teamMemberIndex.scoreAll(parse(query), TEAM_MEMBER_WEIGHTS, shard(projectId));
+    }
+
+    public Matches scoreProjects(String query, Long projectId) {
+        return projectIndex.scoreAll(parse(query), PROJECT_WEIGHTS, shard(projectId));
+    }
+
+    private static String shard(Long projectId) {
+        return projectId != null ? projectId.toString() : null;
+    }
+
+    /**
+     * Snippets of the stored text around the matches of a parsed search
+     * box query, or null when the query matches none of the snippet fields.
+     */
+    public Snippet snippetDocument(Long id, Query query) {
+        return documentIndex.snippet(id, query, DOCUMENT_SNIPPET_FIELDS, snippetMaxChars, snippetBudgetNanos());
+    }
+
+    public Snippet snippetTeamMember(Long id, Query query) {
+        return teamMemberIndex.snippet(id, query, TEAM_MEMBER_SNIPPET_FIELDS, snippetMaxChars, snippetBudgetNanos());
+    }
+
+    public Snippet snippetProject(Long id, Query query) {
+        return projectIndex.snippet(id, query, PROJECT_SNIPPET_FIELDS, snippetMaxChars, snippetBudgetNanos());
+    }
+
+    private long snippetBudgetNanos() {
+        return TimeUnit.MICROSECONDS.toNanos(snippetBudgetMicros);
+    }
+
+    /** Parses against the fields of every index, so one query can be run on each of them. */
+    public Query parse(String query) {
+        Set<String> fields = new HashSet<>(documentIndex.getQueryableFields());
+        fields.addAll(teamMemberIndex.getQueryableFields());
+        fields.addAll(projectIndex.getQueryableFields());
+        return QueryParser.parse(query, fields);
+    }
+
+    public long getDocumentVersion() {
+        return documentVersion.get();
+    }
+
+    public long getTeamMemberVersion() {
+        return teamMemberVersion.get();
+    }
+
+    public long getProjectVersion() {
+        return projectVersion.get();
+    }
+
+    public InvertedIndex getDocumentIndex() {
+        return documentIndex;
+    }
+
+    public InvertedIndex getTeamMemberIndex() {
+        return teamMemberIndex;
+    }
+
+    public InvertedIndex getProjectIndex() {
+        return projectIndex;
+    }
+}
@@ -1,138 +1,728 @@
 package com.sajidbaba1.researchmanagementsystem.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sajidbaba1.researchmanagementsystem.dto.*;
 import com.sajidbaba1.researchmanagementsystem.entity.ProjectDocument;
+import com.sajidbaba1.researchmanagementsystem.entity.ResearchProject;
 import com.sajidbaba1.researchmanagementsystem.entity.TeamMember;
 import com.sajidbaba1.researchmanagementsystem.repository.ProjectDocumentRepository;
+import com.sajidbaba1.researchmanagementsystem.repository.ResearchProjectRepository;
+import com.sajidbaba1.researchmanagementsystem.repository.SearchFilterRepository;
+import com.sajidbaba1.researchmanagementsystem.repository.SearchFilterRepository.SortedId;
+import com.sajidbaba1.researchmanagementsystem.repository.SearchSpecifications;
 import com.sajidbaba1.researchmanagementsystem.repository.TeamMemberRepository;
+import com.sajidbaba1.researchmanagementsystem.search.InvertedIndex;
+import com.sajidbaba1.researchmanagementsystem.search.Matches;
+import com.sajidbaba1.researchmanagementsystem.search.Query;
+import com.sajidbaba1.researchmanagementsystem.search.ScoredDoc;
+import com.sajidbaba1.researchmanagementsystem.search.SearchCursor;
+import com.sajidbaba1.researchmanagementsystem.search.Snippet;
+import com.sajidbaba1.researchmanagementsystem.search.StageTimer;
+import com.sajidbaba1.researchmanagementsystem.search.TopDocs;
+import com.sajidbaba1.researchmanagementsystem.search.TopK;
+import com.sajidbaba1.researchmanagementsystem.search.VersionedCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
 @Service
 public class SearchService {
 
+    private static final String DOCUMENT = "document";
+    private static final String TEAM_MEMBER = "team-member";
+    private static final String PROJECT = "project";
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    // Numbered pages reach this many results; deeper pages are served by cursors, which cost one page each
+    private static final int MAX_RESULT_WINDOW = 10_000;
+    private static final int MAX_FACET_VALUES = 20;
+    private static final int MAX_SUGGESTIONS = 5;
+    // Order of filter-only searches, which have no relevance to rank by
+    private static final String DEFAULT_SORT_FIELD = "createdAt";
+
+    // Request stages timed into the search.latency histograms. Matching and
+    // BM25 scoring happen in the same pass over the postings, so they are one stage.
+    private static final String STAGE_MATCH = "match";
+    private static final String STAGE_FILTER = "filter";
+    private static final String STAGE_RANK = "rank";
+    private static final String STAGE_FACETS = "facets";
+    private static final String STAGE_DB_LOAD = "db-load";
+    private static final String STAGE_MAP = "map";
+    private static final String STAGE_SNIPPETS = "snippets";
+
+    // Outcomes of one source in universal search, counted in search.fanout
+    private static final String FANOUT_OK = "ok";
+    private static final String FANOUT_TIMEOUT = "timeout";
+    private static final String FANOUT_ERROR = "error";
+
+    /** Merged relevance order across entity types: score, then type, then id. */
+    private static final Comparator<TypedHit> MERGED_ORDER = Comparator
+            .comparingDouble((TypedHit hit) -> hit.doc.getScore()).reversed()
+            .thenComparing(hit -> hit.type)
+            .thenComparingLong(hit -> hit.doc.getId());
+
     @Autowired
     private ProjectDocumentRepository projectDocumentRepository;
 
     @Autowired
     private TeamMemberRepository teamMemberRepository;
 
+    @Autowired
+    private ResearchProjectRepository researchProjectRepository;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private SearchFilterRepository searchFilterRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private LatencyMetrics latencyMetrics;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Source<ProjectDocument> documentSource;
+    private Source<TeamMember> teamMemberSource;
+    private Source<ResearchProject> projectSource;
+    private List<Source<?>> sources;
+
+    // How long universal search waits for each source before answering without it
+    @Value("${search.source-timeout-ms:2000}")
+    private long sourceTimeoutMs;
+
+    @Value("${search.fan-out-threads:8}")
+    private int fanOutThreads;
+
+    private ExecutorService fanOutExecutor;
+    private final Map<String, Counter> fanOutCounters = new HashMap<>();
+
+    @Value("${search.cache.max-entries:1000}")
+    private int cacheMaxEntries;
+
+    private VersionedCache<String, SearchResponse> responseCache;
+
+    @PostConstruct
+    void init() {
+        documentSource = new Source<>(DOCUMENT, ProjectDocument.class, projectDocumentRepository,
+                searchIndexService.getDocumentIndex(), searchIndexService::scoreDocuments,
+                SearchSpecifications::documentFilters, SearchSpecifications::documentSort,
+                ProjectDocument::getId, this::processDocumentResults, searchIndexService::snippetDocument,
+                searchIndexService::getDocumentVersion);
+        teamMemberSource = new Source<>(TEAM_MEMBER, TeamMember.class, teamMemberRepository,
+                searchIndexService.getTeamMemberIndex(), searchIndexService::scoreTeamMembers,
+                SearchSpecifications::teamMemberFilters, SearchSpecifications::teamMemberSort,
+                TeamMember::getId, this::processTeamMemberResults, searchIndexService::snippetTeamMember,
+                searchIndexService::getTeamMemberVersion);
+        projectSource = new Source<>(PROJECT, ResearchProject.class, researchProjectRepository,
+                searchIndexService.getProjectIndex(), searchIndexService::scoreProjects,
+                SearchSpecifications::projectFilters, SearchSpecifications::projectSort,
+                ResearchProject::getId, this::processProjectResults, searchIndexService::snippetProject,
+                searchIndexService::getProjectVersion);
+        sources = List.of(documentSource, teamMemberSource, projectSource);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        fanOutExecutor = Executors.newFixedThreadPool(fanOutThreads, runnable -> {
+            Thread thread = new Thread(runnable, "search-fan-out-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (Source<?> source : sources) {
+            for (String outcome : List.of(FANOUT_OK, FANOUT_TIMEOUT, FANOUT_ERROR)) {
+                fanOutCounters.put(source.type + ":" + outcome, Counter.builder("search.fanout")
+                        .tag("source", source.type)
+                        .tag("outcome", outcome)
+                        .description("Sources queried by universal search, by whether they answered in time")
+                        .register(meterRegistry));
+            }
+        }
+
+        responseCache = new VersionedCache<>(cacheMaxEntries);
+        FunctionCounter.builder("search.cache.requests", responseCache, VersionedCache::getHits)
+                .tag("result", "hit")
+                .description("Search requests answered from the result cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("search.cache.requests", responseCache, VersionedCache::getMisses)
+                .tag("result", "miss")
+                .description("Search requests that had to be computed")
+                .register(meterRegistry);
+        FunctionCounter.builder("search.cache.evictions", responseCache, VersionedCache::getEvictions)
+                .description("Cached search results dropped to stay within the size bound")
+                .register(meterRegistry);
+        FunctionCounter.builder("search.cache.invalidations", responseCache, VersionedCache::getInvalidations)
+                .description("Cached search results dropped because their data changed")
+                .register(meterRegistry);
+        Gauge.builder("search.cache.size", responseCache, VersionedCache::size)
+                .description("Search results currently cached")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        fanOutExecutor.shutdownNow();
+    }
+
     public SearchResponse searchDocuments(SearchRequest request) {
-        long startTime = System.currentTimeMillis();
-        
-        // Simple database search instead of vector search
-        String query = request.getQuery().toLowerCase();
-        List<ProjectDocument> documents = projectDocumentRepository.findAll();
-        
-        List<SearchResult> results = processDocumentResults(documents.stream()
-            .filter(doc -> doc.getFileName().toLowerCase().contains(query) || 
-                          (doc.getDescription() != null && doc.getDescription().toLowerCase().contains(query)))
-            .limit(request.getSize())
-            .collect(Collectors.toList()));
-        
-        long searchTime = System.currentTimeMillis() - startTime;
-        
-        return new SearchResponse(
-                results,
-                results.size(),
-                (int) Math.ceil((double) results.size() / request.getSize()),
-                request.getPage(),
-                request.getSize(),
-                searchTime
-        );
+        normalise(request);
+        return cached(DOCUMENT, List.of(documentSource), request, timer -> searchSingle(documentSource, request, timer));
     }
 
     public SearchResponse searchTeamMembers(SearchRequest request) {
-        long startTime = System.currentTimeMillis();
-        
-        String query = request.getQuery().toLowerCase();
-        List<TeamMember> teamMembers = teamMemberRepository.findAll();
-        
-        List<SearchResult> results = processTeamMemberResults(teamMembers.stream()
-            .filter(member -> member.getName().toLowerCase().contains(query) ||
-                          member.getEmail().toLowerCase().contains(query) ||
-                          member.getDepartment().toLowerCase().contains(query))
-            .limit(request.getSize())
-            .collect(Collectors.toList()));
-        
-        long searchTime = System.currentTimeMillis() - startTime;
-        
-        return new SearchResponse(
-                results,
-                results.size(),
-                (int) Math.ceil((double) results.size() / request.getSize()),
-                request.getPage(),
-                request.getSize(),
-                searchTime
-        );
+        normalise(request);
+        return cached(TEAM_MEMBER, List.of(teamMemberSource), request,
+                timer -> searchSingle(teamMemberSource, request, timer));
+    }
+
+    public SearchResponse searchProjects(SearchRequest request) {
+        normalise(request);
+        return cached(PROJECT, List.of(projectSource), request, timer -> searchSingle(projectSource, request, timer));
     }
 
     public SearchResponse universalSearch(SearchRequest request) {
-        long startTime = System.currentTimeMillis();
-        
-        String query = request.getQuery().toLowerCase();
-        
-        // Search both documents and team members
-        List<SearchResult> documentResults = searchDocuments(request).getResults();
-        List<SearchResult> teamMemberResults = searchTeamMembers(request).getResults();
-        
-        List<SearchResult> combinedResults = new ArrayList<>();
-        combinedResults.addAll(documentResults);
-        combinedResults.addAll(teamMemberResults);
-        
-        // Sort by relevance score
-        combinedResults.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
-        
-        long searchTime = System.currentTimeMillis() - startTime;
-        
-        return new SearchResponse(
-                combinedResults,
-                combinedResults.size(),
-                (int) Math.ceil((double) combinedResults.size() / request.getSize()),
-                request.getPage(),
-                request.getSize(),
-                searchTime
-        );
+        normalise(request);
+        SearchResponse response = cached("universal", sources, request, timer -> searchAll(request, timer));
+
+        boolean firstPage = (request.getCursor() == null || request.getCursor().isEmpty()) && request.getPage() == 0;
+        if (response.getTotalElements() > 0 && firstPage) {
+            searchIndexService.recordQuery(request.getQuery());
+        }
+        return response;
+    }
+
+    private SearchResponse searchAll(SearchRequest request, StageTimer timer) {
+        SearchCursor cursor = cursorOf(request);
+        int offset = cursor != null ? 0 : request.getPage() * request.getSize();
+        int limit = offset + request.getSize();
+
+        // Search every source concurrently, each up to the end of the requested page
+        List<String> incompleteSources = new ArrayList<>();
+        List<Window> windows = fanOut(request, limit, cursor, incompleteSources, timer);
+        long totalElements = windows.stream().mapToLong(window -> window.total).sum();
+        boolean hasMore = windows.stream().anyMatch(window -> window.hasMore);
+
+        List<SearchResult> combinedResults;
+        boolean relevanceOrdered = windows.stream().allMatch(window -> window.ranked != null);
+        if (relevanceOrdered) {
+            // Merge by relevance and only materialise the hits that land on this page
+            List<TypedHit> merged = timer.time(STAGE_RANK, () -> {
+                TopK<TypedHit> top = new TopK<>(limit + 1, MERGED_ORDER);
+                for (Window window : windows) {
+                    window.ranked.forEach(doc -> top.offer(new TypedHit(window.type, doc)));
+                }
+                return top.toSortedList();
+            });
+            hasMore |= merged.size() > limit;
+            combinedResults = materialise(merged.subList(Math.min(offset, merged.size()), Math.min(limit, merged.size())),
+                    request.getQuery(), timer);
+        } else {
+            // A field sort: the sources sorted on that field are merged by it, and those
+            // without the field follow in source order
+            String field = request.getSortBy() == null || request.getSortBy().isEmpty() ? DEFAULT_SORT_FIELD
+                    : request.getSortBy();
+            List<SearchResult> sorted = new ArrayList<>();
+            List<SearchResult> unsorted = new ArrayList<>();
+            Map<SearchResult, Object> keys = new IdentityHashMap<>();
+            Sort.Order fieldOrder = null;
+            for (Window window : windows) {
+                if (window.sortOrder != null && window.sortOrder.getProperty().equals(field)) {
+                    fieldOrder = window.sortOrder;
+                    for (SearchResult result : window.results) {
+                        keys.put(result, window.sortKeys.get(Long.valueOf(result.getId())));
+                        sorted.add(result);
+                    }
+                } else {
+                    unsorted.addAll(window.ranked == null ? window.results : materialise(window.ranked.stream()
+                            .map(doc -> new TypedHit(window.type, doc))
+                            .collect(Collectors.toList()), request.getQuery(), timer));
+                }
+            }
+            if (fieldOrder != null) {
+                Comparator<SearchResult> byKey = (a, b) -> SortedId.compareKeys(keys.get(a), keys.get(b));
+                sorted.sort((fieldOrder.isDescending() ? byKey.reversed() : byKey)
+                        .thenComparing(SearchResult::getType)
+                        .thenComparingLong(result -> Long.parseLong(result.getId())));
+            }
+            sorted.addAll(unsorted);
+            hasMore = limit < totalElements;
+            combinedResults = sorted.subList(Math.min(offset, sorted.size()), Math.min(limit, sorted.size()));
+        }
+
+        SearchResponse response = page(request, combinedResults, totalElements, hasMore, relevanceOrdered, timer);
+        response.setFacets(facetsOf(windows));
+        if (!incompleteSources.isEmpty()) {
+            response.setPartial(true);
+            response.setTotalExact(false);
+            response.setIncompleteSources(incompleteSources);
+        }
+        return response;
     }
 
     public List<String> getSearchSuggestions(String query) {
         if (query == null || query.trim().isEmpty()) {
             return Collections.emptyList();
         }
-        
-        // Get recent searches and popular searches
-        List<String> suggestions = new ArrayList<>();
-        
-        // Add document name suggestions
-        List<ProjectDocument> documents = projectDocumentRepository.findAll();
-        documents.stream()
-                .filter(doc -> doc.getFileName().toLowerCase().contains(query.toLowerCase()))
-                .limit(3)
-                .forEach(doc -> suggestions.add(doc.getFileName()));
-        
-        // Add team member name suggestions
-        List<TeamMember> teamMembers = teamMemberRepository.findAll();
-        teamMembers.stream()
-                .filter(member -> member.getName().toLowerCase().contains(query.toLowerCase()))
-                .limit(3)
-                .forEach(member -> suggestions.add(member.getName()));
-        
-        return suggestions.stream().distinct().limit(5).collect(Collectors.toList());
-    }
-
-    private List<SearchResult> processDocumentResults(List<ProjectDocument> documents) {
+
+        // Ranked by popularity: project titles, file names, member names and past searches
+        return searchIndexService.suggest(query, MAX_SUGGESTIONS);
+    }
+
+    /**
+     * Serves a response from the cache as long as none of the entity types
+     * it covers has changed since it was computed. Partial responses are
+     * never cached, so a slow source does not stick. Requests asking for
+     * {@code debugTiming} always run the search, so that the breakdown
+     * they get back is their own, and are not cached either.
+     */
+    private SearchResponse cached(String scope, List<Source<?>> covered, SearchRequest request,
+                                  Function<StageTimer, SearchResponse> search) {
+        StageTimer timer = new StageTimer();
+        SearchResponse response;
+        if (request.isDebugTiming()) {
+            response = search.apply(timer);
+            Map<String, Long> breakdown = timer.getStages();
+            breakdown.put(LatencyMetrics.TOTAL, timer.elapsedNanos());
+            response.setDebugTiming(breakdown);
+        } else {
+            String key = cacheKey(scope, request);
+            // Read before searching: a write that lands mid-search leaves the entry stale, never mislabelled
+            long[] versions = covered.stream().mapToLong(source -> source.version.getAsLong()).toArray();
+            SearchResponse snapshot = responseCache.get(key, versions);
+            if (snapshot != null) {
+                // Every hit gets its own copy, metadata trees included, timed as this request
+                response = new SearchResponse(snapshot);
+                for (SearchResult result : response.getResults()) {
+                    if (result.getMetadata() instanceof JsonNode) {
+                        result.setMetadata(((JsonNode) result.getMetadata()).deepCopy());
+                    }
+                }
+                response.setSearchTimeMs(TimeUnit.NANOSECONDS.toMillis(timer.elapsedNanos()));
+            } else {
+                response = search.apply(timer);
+                if (!response.isPartial()) {
+                    responseCache.put(key, versions, snapshot(response));
+                }
+            }
+        }
+        latencyMetrics.record(LatencyMetrics.SEARCH, timer);
+        return response;
+    }
+
+    /**
+     * A copy of the response to cache: later changes to the response do not
+     * reach it, and the entities in its results are replaced by their JSON
+     * trees, so no managed entity outlives the request that loaded it.
+     */
+    private SearchResponse snapshot(SearchResponse response) {
+        SearchResponse snapshot = new SearchResponse(response);
+        for (SearchResult result : snapshot.getResults()) {
+            result.setMetadata(objectMapper.valueToTree(result.getMetadata()));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Normalised form of everything in a request that can change its
+     * response, so that equivalent requests share one cache entry.
+     */
+    private static String cacheKey(String scope, SearchRequest request) {
+        String query = request.getQuery() == null ? "" : request.getQuery().trim().replaceAll("\\s+", " ");
+        List<String> fileTypes = request.getFileTypes() == null ? List.of()
+                : request.getFileTypes().stream().filter(Objects::nonNull).sorted().distinct().collect(Collectors.toList());
+        String sortOrder = "desc".equalsIgnoreCase(request.getSortOrder()) ? "desc" : "asc";
+        return String.join("\u0000", scope, query,
+                String.valueOf(request.getPage()), String.valueOf(request.getSize()),
+                Objects.toString(request.getCursor(), ""), Objects.toString(request.getProjectId(), ""),
+                Objects.toString(request.getDepartment(), ""), Objects.toString(request.getStatus(), ""),
+                String.join(",", fileTypes),
+                Objects.toString(request.getStartDate(), ""), Objects.toString(request.getEndDate(), ""),
+                Objects.toString(request.getSortBy(), ""), sortOrder);
+    }
+
+    /**
+     * Runs every source on the fan-out pool against one shared deadline.
+     * Sources that fail or miss it are cancelled and named in
+     * {@code incompleteSources}; the windows of the others are returned.
+     */
+    private List<Window> fanOut(SearchRequest request, int limit, SearchCursor cursor, List<String> incompleteSources,
+                                StageTimer timer) {
+        Map<String, Future<Window>> futures = new LinkedHashMap<>();
+        for (Source<?> source : sources) {
+            futures.put(source.type, fanOutExecutor.submit(() -> source.find(request, 0, limit, cursor, timer)));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sourceTimeoutMs);
+        List<Window> windows = new ArrayList<>();
+        for (Map.Entry<String, Future<Window>> entry : futures.entrySet()) {
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                windows.add(entry.getValue().get(remaining, TimeUnit.NANOSECONDS));
+                fanOutCounters.get(entry.getKey() + ":" + FANOUT_OK).increment();
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                fanOutCounters.get(entry.getKey() + ":" + FANOUT_TIMEOUT).increment();
+                System.err.println("Search source " + entry.getKey() + " missed its " + sourceTimeoutMs + " ms deadline");
+                incompleteSources.add(entry.getKey());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IllegalArgumentException) {
+                    throw (IllegalArgumentException) e.getCause();
+                }
+                fanOutCounters.get(entry.getKey() + ":" + FANOUT_ERROR).increment();
+                System.err.println("Search source " + entry.getKey() + " failed: " + e.getCause().getMessage());
+                incompleteSources.add(entry.getKey());
+            } catch (InterruptedException e) {
+                futures.values().forEach(future -> future.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Search was interrupted", e);
+            }
+        }
+        return windows;
+    }
+
+    private <T> SearchResponse searchSingle(Source<T> source, SearchRequest request, StageTimer timer) {
+        SearchCursor cursor = cursorOf(request);
+        int offset = cursor != null ? 0 : request.getPage() * request.getSize();
+        Window window = source.find(request, offset, request.getSize(), cursor, timer);
+        List<SearchResult> results = window.ranked != null
+                ? source.materialise(window.ranked, request.getQuery(), timer)
+                : window.results;
+
+        SearchResponse response = page(request, results, window.total, window.hasMore, window.ranked != null, timer);
+        response.setFacets(facetsOf(List.of(window)));
+        return response;
+    }
+
+    private SearchResponse page(SearchRequest request, List<SearchResult> results, long totalElements,
+                                boolean hasMore, boolean relevanceOrdered, StageTimer timer) {
+        SearchResponse response = new SearchResponse(
+                results,
+                totalElements,
+                (int) Math.ceil((double) totalElements / request.getSize()),
+                request.getPage(),
+                request.getSize(),
+                TimeUnit.NANOSECONDS.toMillis(timer.elapsedNanos())
+        );
+        response.setHasNext(hasMore);
+        if (hasMore && relevanceOrdered && !results.isEmpty()) {
+            SearchResult last = results.get(results.size() - 1);
+            response.setNextCursor(new SearchCursor(last.getScore(), last.getType(), Long.parseLong(last.getId())).encode());
+        }
+        return response;
+    }
+
+    /**
+     * Builds the response facets: one "type" facet from the per-source totals,
+     * plus the bitmap counts of every source merged by facet name.
+     */
+    private List<SearchFacet> facetsOf(List<Window> windows) {
+        Map<String, Map<String, Long>> merged = new TreeMap<>();
+        Map<String, Long> typeCounts = new HashMap<>();
+        for (Window window : windows) {
+            if (window.total > 0) {
+                typeCounts.put(window.type, window.total);
+            }
+            window.facets.forEach((name, values) -> values.forEach((value, count) ->
+                    merged.computeIfAbsent(name, n -> new HashMap<>()).merge(value, count, Long::sum)));
+        }
+
+        List<SearchFacet> facets = new ArrayList<>();
+        if (!typeCounts.isEmpty()) {
+            facets.add(toFacet("type", typeCounts));
+        }
+        merged.forEach((name, values) -> facets.add(toFacet(name, values)));
+        return facets;
+    }
+
+    private SearchFacet toFacet(String name, Map<String, Long> counts) {
+        List<SearchFacet.FacetValue> values = counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(MAX_FACET_VALUES)
+                .map(entry -> new SearchFacet.FacetValue(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+        return new SearchFacet(name, values);
+    }
+
+    /**
+     * Defaults and clamps the page size and rejects numbered pages past
+     * {@link #MAX_RESULT_WINDOW}, which every source would have to rank up to.
+     */
+    private SearchRequest normalise(SearchRequest request) {
+        if (request.getSize() <= 0) {
+            request.setSize(DEFAULT_PAGE_SIZE);
+        }
+        request.setSize(Math.min(request.getSize(), MAX_PAGE_SIZE));
+        if (request.getPage() < 0) {
+            request.setPage(0);
+        }
+        boolean numbered = request.getCursor() == null || request.getCursor().isEmpty();
+        if (numbered && (long) request.getPage() * request.getSize() + request.getSize() > MAX_RESULT_WINDOW) {
+            throw new IllegalArgumentException("Page " + request.getPage() + " is past the first " + MAX_RESULT_WINDOW
+                    + " results; follow nextCursor to page further");
+        }
+        return request;
+    }
+
+    private SearchCursor cursorOf(SearchRequest request) {
+        String token = request.getCursor();
+        return token == null || token.isEmpty() ? null : SearchCursor.decode(token);
+    }
+
+    private List<SearchResult> materialise(List<TypedHit> hits, String query, StageTimer timer) {
+        Map<String, SearchResult> byKey = new HashMap<>();
+        for (Source<?> source : sources) {
+            List<ScoredDoc> docs = hits.stream()
+                    .filter(hit -> hit.type.equals(source.type))
+                    .map(hit -> hit.doc)
+                    .collect(Collectors.toList());
+            source.materialise(docs, query, timer).forEach(result -> byKey.put(result.getType() + ":" + result.getId(), result));
+        }
+        return hits.stream()
+                .map(hit -> byKey.get(hit.type + ":" + hit.doc.getId()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private static List<Long> idsOf(List<ScoredDoc> hits) {
+        return hits.stream().map(ScoredDoc::getId).collect(Collectors.toList());
+    }
+
+    private static <T> List<T> loadInOrder(List<Long> ids, List<T> entities, Function<T, Long> idGetter) {
+        Map<Long, T> byId = entities.stream().collect(Collectors.toMap(idGetter, Function.identity()));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private static class TypedHit {
+        final String type;
+        final ScoredDoc doc;
+
+        TypedHit(String type, ScoredDoc doc) {
+            this.type = type;
+            this.doc = doc;
+        }
+    }
+
+    /**
+     * A window of one source's results. Relevance-ordered windows carry only
+     * scored ids so that merging never loads rows that fall off the page;
+     * database-ordered windows are already loaded and mapped.
+     */
+    private static class Window {
+        final String type;
+        final List<ScoredDoc> ranked;
+        final List<SearchResult> results;
+        final long total;
+        final boolean hasMore;
+        Map<String, Map<String, Long>> facets = Collections.emptyMap();
+        // Set on database-ordered windows: the field they are sorted on and each result's value of it
+        Sort.Order sortOrder;
+        Map<Long, Object> sortKeys = Collections.emptyMap();
+
+        Window(String type, List<ScoredDoc> ranked, List<SearchResult> results, long total, boolean hasMore) {
+            this.type = type;
+            this.ranked = ranked;
+            this.results = results;
+            this.total = total;
+            this.hasMore = hasMore;
+        }
+    }
+
+    /**
+     * One searchable entity type: how to score it, filter and sort it in the
+     * database, and map it to search results.
+     */
+    private class Source<T> {
+        final String type;
+        final Class<T> entityType;
+        final JpaRepository<T, Long> repository;
+        final InvertedIndex index;
+        final BiFunction<String, Long, Matches> scorer;
+        final Function<SearchRequest, Specification<T>> filters;
+        final Function<SearchRequest, Sort> sort;
+        final Function<T, Long> idGetter;
+        final BiFunction<List<T>, Map<Long, Double>, List<SearchResult>> mapper;
+        final BiFunction<Long, Query, Snippet> snippets;
+        final LongSupplier version;
+
+        Source(String type, Class<T> entityType, JpaRepository<T, Long> repository, InvertedIndex index,
+               BiFunction<String, Long, Matches> scorer,
+               Function<SearchRequest, Specification<T>> filters, Function<SearchRequest, Sort> sort,
+               Function<T, Long> idGetter, BiFunction<List<T>, Map<Long, Double>, List<SearchResult>> mapper,
+               BiFunction<Long, Query, Snippet> snippets, LongSupplier version) {
+            this.type = type;
+            this.entityType = entityType;
+            this.repository = repository;
+            this.index = index;
+            this.scorer = scorer;
+            this.filters = filters;
+            this.sort = sort;
+            this.idGetter = idGetter;
+            this.mapper = mapper;
+            this.snippets = snippets;
+            this.version = version;
+        }
+
+        /**
+         * Returns up to {@code limit} results starting at {@code offset}, or
+         * right after {@code cursor} when one is given. Free text is matched
+         * and scored by the inverted index; structured filters and field
+         * sorts are pushed down to the database, which only ever sees the ids
+         * of full-text candidates. Totals are exact in every path. Facets
+         * are counted over the full match set, not just the window.
+         */
+        Window find(SearchRequest request, int offset, int limit, SearchCursor cursor, StageTimer timer) {
+            boolean hasQuery = request.getQuery() != null && !request.getQuery().trim().isEmpty();
+            boolean hasFilters = SearchSpecifications.hasFilters(request);
+            Specification<T> spec = filters.apply(request);
+            Sort order = sort.apply(request);
+
+            if (!hasQuery) {
+                if (!hasFilters && request.getProjectId() == null) {
+                    return new Window(type, null, Collections.emptyList(), 0, false);
+                }
+                Sort fieldOrder = order != null ? order
+                        : Sort.by(Sort.Direction.DESC, DEFAULT_SORT_FIELD).and(Sort.by("id"));
+                Set<Long> matchingIds = timer.time(STAGE_FILTER,
+                        () -> searchFilterRepository.findMatchingIds(entityType, spec));
+                // The database applies the offset; one row past the window tells whether there is more
+                List<SortedId> sorted = timer.time(STAGE_DB_LOAD,
+                        () -> searchFilterRepository.findSortedIds(entityType, spec, fieldOrder, offset, limit + 1));
+                Window window = sortedWindow(sorted, matchingIds.size(), Collections.emptyMap(), 0, limit, fieldOrder,
+                        timer);
+                window.facets = timer.time(STAGE_FACETS, () -> index.facetCounts(index.toOrdinals(matchingIds)));
+                return window;
+            }
+
+            Matches matches = timer.time(STAGE_MATCH, () -> scorer.apply(request.getQuery(), request.getProjectId()));
+            Map<Long, Double> scores = matches.getScores();
+            if (matches.isEmpty()) {
+                return new Window(type, Collections.emptyList(), Collections.emptyList(), 0, false);
+            }
+
+            if (order != null) {
+                // Matches are filtered and sorted a chunk of ids at a time; one IN list of every
+                // match could exceed the bind parameter limit of the driver
+                Sort fieldOrder = order;
+                Set<Long> qualifying = timer.time(STAGE_FILTER,
+                        () -> searchFilterRepository.findMatchingIds(entityType, spec, scores.keySet()));
+                List<SortedId> sorted = timer.time(STAGE_DB_LOAD,
+                        () -> searchFilterRepository.findSortedIds(entityType, qualifying, fieldOrder, offset + limit + 1));
+                Window window = sortedWindow(sorted, qualifying.size(), scores, offset, limit, fieldOrder, timer);
+                highlight(window.results, request.getQuery(), timer);
+                window.facets = timer.time(STAGE_FACETS, () -> index.facetCounts(hasFilters
+                        ? index.toOrdinals(qualifying)
+                        : matches.getOrdinals()));
+                return window;
+            }
+
+            Set<Long> qualifying = hasFilters
+                    ? timer.time(STAGE_FILTER,
+                            () -> searchFilterRepository.findMatchingIds(entityType, spec, scores.keySet()))
+                    : null;
+            ScoredDoc after = cursor != null ? cursor.boundFor(type) : null;
+            // One hit past the window tells whether another page exists
+            TopDocs topDocs = timer.time(STAGE_RANK, () -> TopDocs.select(scores, offset + limit + 1,
+                    qualifying == null ? null : qualifying::contains, after));
+            List<ScoredDoc> hits = topDocs.getHits();
+            boolean hasMore = hits.size() > offset + limit;
+            hits = hits.subList(Math.min(offset, hits.size()), Math.min(offset + limit, hits.size()));
+            Window window = new Window(type, hits, null, topDocs.getTotalHits(), hasMore);
+            window.facets = timer.time(STAGE_FACETS, () -> index.facetCounts(qualifying == null
+                    ? matches.getOrdinals()
+                    : index.toOrdinals(qualifying)));
+            return window;
+        }
+
+        List<SearchResult> materialise(List<ScoredDoc> hits, String query, StageTimer timer) {
+            if (hits.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<Long> ids = idsOf(hits);
+            Map<Long, Double> scores = hits.stream().collect(Collectors.toMap(ScoredDoc::getId, ScoredDoc::getScore));
+            List<T> entities = timer.time(STAGE_DB_LOAD, () -> repository.findAllById(ids));
+            List<SearchResult> results = timer.time(STAGE_MAP,
+                    () -> mapper.apply(loadInOrder(ids, entities, idGetter), scores));
+            return highlight(results, query, timer);
+        }
+
+        /**
+         * Replaces the preview of each result with a snippet of its indexed
+         * text around the query matches, where it has one; the highlight
+         * carries the same snippet with the matches marked.
+         */
+        List<SearchResult> highlight(List<SearchResult> results, String text, StageTimer timer) {
+            if (text == null || text.trim().isEmpty() || results.isEmpty()) {
+                return results;
+            }
+            timer.time(STAGE_SNIPPETS, () -> {
+                Query query = searchIndexService.parse(text);
+                for (SearchResult result : results) {
+                    Snippet snippet = snippets.apply(Long.valueOf(result.getId()), query);
+                    if (snippet != null) {
+                        result.setContentPreview(snippet.getText());
+                        result.setHighlight(snippet.toHtml());
+                    }
+                }
+            });
+            return results;
+        }
+
+        /**
+         * Loads and maps the ids at {@code offset..offset + limit} of a sorted
+         * list, keeping their sort keys so that windows can be merged; one
+         * more id tells whether there is more.
+         */
+        private Window sortedWindow(List<SortedId> sorted, long total, Map<Long, Double> scores, int offset, int limit,
+                                    Sort order, StageTimer timer) {
+            boolean hasMore = sorted.size() > offset + limit;
+            List<SortedId> page = sorted.subList(Math.min(offset, sorted.size()), Math.min(offset + limit, sorted.size()));
+            List<Long> ids = page.stream().map(SortedId::getId).collect(Collectors.toList());
+            List<T> entities = ids.isEmpty() ? Collections.emptyList()
+                    : timer.time(STAGE_DB_LOAD, () -> repository.findAllById(ids));
+            Window window = new Window(type, null, timer.time(STAGE_MAP,
+                    () -> mapper.apply(loadInOrder(ids, entities, idGetter), scores)), total, hasMore);
+            window.sortOrder = order.iterator().next();
+            window.sortKeys = new HashMap<>();
+            for (SortedId sortedId : page) {
+                window.sortKeys.put(sortedId.getId(), sortedId.getKey());
+            }
+            return window;
+        }
+    }
+
+    private List<SearchResult> processDocumentResults(List<ProjectDocument> documents, Map<Long, Double> scores) {
         return documents.stream()
             .map(doc -> {
                 SearchResult result = new SearchResult();
                 result.setId(doc.getId().toString());
-                result.setType("document");
+                result.setType(DOCUMENT);
                 result.setTitle(doc.getFileName());
                 result.setDescription(doc.getDescription());
                 result.setContentPreview(doc.getFileName() + " - " + doc.getFileType());
-                result.setScore(0.8);
+                result.setScore(scores.getOrDefault(doc.getId(), 0.0));
                 result.setUrl("/documents/" + doc.getId());
                 result.setMetadata(doc);
                 return result;
@@ -140,20 +730,37 @@ public class SearchService {
             .collect(Collectors.toList());
     }
 
-    private List<SearchResult> processTeamMemberResults(List<TeamMember> members) {
+    private List<SearchResult> processTeamMemberResults(List<TeamMember> members, Map<Long, Double> scores) {
         return members.stream()
             .map(member -> {
                 SearchResult result = new SearchResult();
                 result.setId(member.getId().toString());
-                result.setType("team-member");
+                result.setType(TEAM_MEMBER);
                 result.setTitle(member.getName());
                 result.setDescription(member.getRole() + " - " + member.getDepartment());
                 result.setContentPreview(member.getEmail() + " - " + member.getExpertise());
-                result.setScore(0.8);
+                result.setScore(scores.getOrDefault(member.getId(), 0.0));
                 result.setUrl("/team-members/" + member.getId());
                 result.setMetadata(member);
                 return result;
             })
             .collect(Collectors.toList());
     }
+
+    private List<SearchResult> processProjectResults(List<ResearchProject> projects, Map<Long, Double> scores) {
+        return projects.stream()
+            .map(project -> {
+                SearchResult result = new SearchResult();
+                result.setId(project.getId().toString());
+                result.setType(PROJECT);
+                result.setTitle(project.getTitle());
+                result.setDescription(project.getDescription());
+                result.setContentPreview(project.getTitle() + " - " + project.getStatus());
+                result.setScore(scores.getOrDefault(project.getId(), 0.0));
+                result.setUrl("/projects/" + project.getId());
+                result.setMetadata(project);
+                return result;
+            })
+            .collect(Collectors.toList());
+    }
 }
@@ -14,6 +14,9 @@ public class TeamMemberService {
     @Autowired
     private TeamMemberRepository teamMemberRepository;
 
+    @Autowired
+    private SearchIndexService searchIndexService;
+
     public List<TeamMember> getAllTeamMembers() {
         return teamMemberRepository.findAll();
     }
@@ -27,11 +30,14 @@ public class TeamMemberService {
     }
 
     public TeamMember saveTeamMember(TeamMember teamMember) {
-        return teamMemberRepository.save(teamMember);
+        TeamMember saved = teamMemberRepository.save(teamMember);
+        searchIndexService.indexTeamMember(saved);
+        return saved;
     }
 
     public void deleteTeamMember(Long id) {
         teamMemberRepository.deleteById(id);
+        searchIndexService.removeTeamMember(id);
     }
 
     public List<TeamMember> getTeamMembersByRole(String role) {
@@ -0,0 +1,563 @@
+package com.sajidbaba1.researchmanagementsystem.service;
+
+import com.sajidbaba1.researchmanagementsystem.entity.ProjectDocument;
+import com.sajidbaba1.researchmanagementsystem.repository.ProjectDocumentRepository;
+import com.sajidbaba1.researchmanagementsystem.search.Chunk;
+import com.sajidbaba1.researchmanagementsystem.search.Chunker;
+import com.sajidbaba1.researchmanagementsystem.search.Embedder;
+import com.sajidbaba1.researchmanagementsystem.search.HnswIndex;
+import com.sajidbaba1.researchmanagementsystem.search.ScoredDoc;
+import com.sajidbaba1.researchmanagementsystem.search.TopK;
+import com.sajidbaba1.researchmanagementsystem.search.VectorFile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Owns the chunk embeddings behind RAG retrieval: documents processed for
+ * RAG are streamed through a {@link Chunker} into overlapping chunks of
+ * {@code rag.chunk.words} words, so a passage cut at a chunk boundary is
+ * still whole in the next one. Each chunk is embedded by the configured
+ * {@link Embedder} and added to an {@link HnswIndex}, so a question finds
+ * its closest passages without scanning them all.
+ *
+ * Chunks are partitioned by project: every project has an index of its
+ * own, and documents without a project share one more, so a question about
+ * one project searches only that project's chunks. A global search queries
+ * every partition and merges their hits.
+ *
+ * The indexes hold int8 codes of the embeddings in memory; the embeddings
+ * themselves are appended to one file per partition under
+ * {@code vectors/} ({@code project-<id>-<generation>.f32}) and read back
+ * only to re-rank the best candidates of a search. The chunks and the
+ * graphs are saved to {@code vectors.dat} under {@code search.index-dir}
+ * periodically and on shutdown. On startup the file is loaded and
+ * reconciled with the database: chunks of deleted documents are dropped
+ * and processed documents without chunks (changed after the last save)
+ * are embedded again.
+ */
+@Service
+public class VectorIndexService {
+
+    private static final int FILE_MAGIC = 0x524d5356; // "RMSV"
+    private static final int FILE_VERSION = 4;
+    private static final String VECTOR_DIR_NAME = "vectors";
+    // Partition of the chunks of documents without a project
+    private static final long UNASSIGNED = -1;
+    private static final String PROCESSED = "PROCESSED";
+
+    @Autowired
+    private ProjectDocumentRepository projectDocumentRepository;
+
+    @Autowired
+    private ContentExtractionService contentExtractionService;
+
+    @Autowired
+    private Embedder embedder;
+
+    // Chunk length and the words each chunk repeats from the one before
+    @Value("${rag.chunk.words:200}")
+    private int chunkWords;
+
+    @Value("${rag.chunk.overlap-words:40}")
+    private int overlapWords;
+
+    // Chunks taken from one file at most; the rest of a larger file is not embedded
+    @Value("${rag.chunk.max-chunks:5000}")
+    private int maxChunks;
+
+    // HNSW graph degree and beam widths, see HnswIndex
+    @Value("${rag.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${rag.hnsw.ef-construction:100}")
+    private int efConstruction;
+
+    @Value("${rag.hnsw.ef-search:100}")
+    private int efSearch;
+
+    @Value("${search.segments.enabled:true}")
+    private boolean persistenceEnabled;
+
+    @Value("${search.index-dir:search-index}")
+    private String indexDir;
+
+    private final Map<Long, Partition> partitions = new ConcurrentHashMap<>();
+    private final Map<Long, Chunk> chunks = new ConcurrentHashMap<>();
+    private final Map<Long, long[]> chunkKeysByDocument = new ConcurrentHashMap<>();
+    private long nextChunkKey = 1;
+
+    private final AtomicLong modifications = new AtomicLong();
+    private long savedModifications;
+    private Path vectorsFile;
+    private Path vectorDir;
+    private volatile boolean ready;
+
+    @PostConstruct
+    public void init() {
+        if (persistenceEnabled) {
+            vectorsFile = Paths.get(indexDir).resolve("vectors.dat");
+            vectorDir = vectorsFile.resolveSibling(VECTOR_DIR_NAME);
+            if (Files.exists(vectorsFile)) {
+                try {
+                    load();
+                    return;
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Could not load vector index from " + vectorsFile + ", re-embedding: " + e.getMessage());
+                    chunks.clear();
+                    chunkKeysByDocument.clear();
+                    closeVectorFiles();
+                }
+            }
+            try {
+                // Vector files of an unloadable snapshot, and the single file of the unpartitioned format
+                VectorFile.deleteOthers(vectorDir, Set.of());
+                VectorFile.deleteOthers(vectorsFile.getParent(), Set.of());
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not clear the vector files: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /** Whether the index has been loaded or rebuilt since startup. */
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcile() {
+        long start = System.currentTimeMillis();
+        Set<Long> existing = new HashSet<>();
+        int embedded = 0;
+        for (ProjectDocument document : projectDocumentRepository.findAll()) {
+            existing.add(document.getId());
+            if (PROCESSED.equals(document.getStatus()) && !chunkKeysByDocument.containsKey(document.getId())) {
+                indexDocument(document);
+                embedded++;
+            }
+        }
+        int dropped = 0;
+        for (Long documentId : new ArrayList<>(chunkKeysByDocument.keySet())) {
+            if (!existing.contains(documentId)) {
+                removeDocument(documentId);
+                dropped++;
+            }
+        }
+        ready = true;
+        flush();
+        System.out.println("Vector index ready in " + (System.currentTimeMillis() - start) + " ms: "
+                + chunks.size() + " chunks of " + chunkKeysByDocument.size() + " documents ("
+                + embedded + " embedded, " + dropped + " dropped)");
+    }
+
+    /**
+     * Chunks, embeds and indexes the document, replacing its previous
+     * chunks.
+     *
+     * @return the number of chunks indexed
+     */
+    public int indexDocument(ProjectDocument document) {
+        List<Chunker.Span> spans = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        // The file name and description come first, as a chunk of their own that is not part of the file
+        String header = String.join(". ", nonBlank(document.getFileName()), nonBlank(document.getDescription())).trim();
+        if (!header.isEmpty() && !".".equals(header)) {
+            spans.add(null);
+            texts.add(header);
+        }
+        ContentExtractionService.ChunkingStats stats = contentExtractionService.chunk(document, chunkWords,
+                overlapWords, maxChunks, span -> {
+                    spans.add(span);
+                    texts.add(span.getText());
+                });
+        // Embedding is the slow part and needs no lock; all chunks go at once so a batching embedder can group them
+        List<float[]> vectors = embedder.embedAll(texts);
+        if (stats != null) {
+            System.out.printf("Chunked %s: %d bytes into %d chunks at %.1f MB/s%n", document.getFileName(),
+                    stats.getBytes(), stats.getChunks(), stats.getMegabytesPerSecond());
+        }
+        synchronized (this) {
+            removeChunks(document.getId());
+            HnswIndex index = partition(document.getProjectId()).index;
+            long[] keys = new long[spans.size()];
+            for (int i = 0; i < spans.size(); i++) {
+                Chunker.Span span = spans.get(i);
+                Chunk chunk = span == null
+                        ? new Chunk(nextChunkKey++, document.getId(), document.getProjectId(), i, header, -1, -1)
+                        : new Chunk(nextChunkKey++, document.getId(), document.getProjectId(), i, span.getText(),
+                                span.getStartOffset(), span.getEndOffset());
+                chunks.put(chunk.getKey(), chunk);
+                index.add(chunk.getKey(), vectors.get(i));
+                keys[i] = chunk.getKey();
+            }
+            chunkKeysByDocument.put(document.getId(), keys);
+            modifications.incrementAndGet();
+        }
+        compactPartitions();
+        return spans.size();
+    }
+
+    public void removeDocument(Long documentId) {
+        synchronized (this) {
+            removeChunks(documentId);
+        }
+        compactPartitions();
+    }
+
+    private void removeChunks(Long documentId) {
+        long[] keys = chunkKeysByDocument.remove(documentId);
+        if (keys == null) {
+            return;
+        }
+        for (long key : keys) {
+            Chunk chunk = chunks.remove(key);
+            Partition partition = chunk != null ? partitions.get(partitionKey(chunk.getProjectId())) : null;
+            if (partition != null) {
+                partition.index.remove(key);
+            }
+        }
+        modifications.incrementAndGet();
+    }
+
+    /** Texts of the document's first {@code limit} chunks, in document order. */
+    public List<String> chunkTexts(Long documentId, int limit) {
+        long[] keys = chunkKeysByDocument.get(documentId);
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; keys != null && i < keys.length && texts.size() < limit; i++) {
+            Chunk chunk = chunks.get(keys[i]);
+            if (chunk != null) {
+                texts.add(chunk.getText());
+            }
+        }
+        return texts;
+    }
+
+    public boolean hasDocument(Long documentId) {
+        return chunkKeysByDocument.containsKey(documentId);
+    }
+
+    /** The {@code k} chunks of any project closest in meaning to {@code query}, best first. */
+    public List<ScoredChunk> search(String query, int k) {
+        return search(embed(query), k);
+    }
+
+    /**
+     * Like {@link #search(String, int)}, for a query already embedded with
+     * {@link #embed}. Every partition is searched for its best {@code k}.
+     */
+    public List<ScoredChunk> search(float[] queryVector, int k) {
+        TopK<ScoredChunk> top = new TopK<>(k, Comparator.comparingDouble(ScoredChunk::getScore).reversed());
+        for (Partition partition : partitions.values()) {
+            collect(partition, queryVector, k, top::offer);
+        }
+        return top.toSortedList();
+    }
+
+    /**
+     * The {@code k} chunks of one project's documents closest in meaning
+     * to the query; only that project's index is searched.
+     */
+    public List<ScoredChunk> search(float[] queryVector, int k, Long projectId) {
+        if (projectId == null) {
+            return search(queryVector, k);
+        }
+        List<ScoredChunk> hits = new ArrayList<>();
+        Partition partition = partitions.get(projectId);
+        if (partition != null) {
+            collect(partition, queryVector, k, hits::add);
+        }
+        return hits;
+    }
+
+    private void collect(Partition partition, float[] queryVector, int k, Consumer<ScoredChunk> hits) {
+        for (ScoredDoc hit : partition.index.search(queryVector, k, efSearch)) {
+            Chunk chunk = chunks.get(hit.getId());
+            // A chunk can be removed between the graph search and this lookup
+            if (chunk != null) {
+                hits.accept(new ScoredChunk(chunk, hit.getScore()));
+            }
+        }
+    }
+
+    public float[] embed(String text) {
+        return embedder.embed(text);
+    }
+
+    public int size() {
+        return chunks.size();
+    }
+
+    /** Number of partitions, including the one of documents without a project. */
+    public int partitionCount() {
+        return partitions.size();
+    }
+
+    /**
+     * Recall@k of a project's index against an exact scan of its
+     * embeddings, see {@link HnswIndex#measureRecall}. Without a project,
+     * the largest partition is measured.
+     *
+     * @return null if there is no such partition
+     */
+    public HnswIndex.RecallReport measureRecall(int queries, int k, Long projectId) {
+        Partition partition = projectId != null
+                ? partitions.get(projectId)
+                : partitions.values().stream().max(Comparator.comparingInt(p -> p.index.size())).orElse(null);
+        return partition != null ? partition.index.measureRecall(queries, k, efSearch, 42) : null;
+    }
+
+    /** Bumped whenever chunks are added or removed. */
+    public long getVersion() {
+        return modifications.get();
+    }
+
+    public static class ScoredChunk {
+        private final Chunk chunk;
+        private final double score;
+
+        public ScoredChunk(Chunk chunk, double score) {
+            this.chunk = chunk;
+            this.score = score;
+        }
+
+        public Chunk getChunk() { return chunk; }
+        public double getScore() { return score; }
+    }
+
+    private static class Partition {
+        final long projectId;
+        final VectorFile fullVectors;
+        final HnswIndex index;
+
+        Partition(long projectId, VectorFile fullVectors, HnswIndex index) {
+            this.projectId = projectId;
+            this.fullVectors = fullVectors;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Compacts the partitions whose graphs are mostly tombstones. The new
+     * graphs are built without the lock, which is only taken to swap them
+     * in, so searches and indexing carry on meanwhile. Empty partitions are
+     * dropped by {@link #flush} instead.
+     */
+    private void compactPartitions() {
+        List<Partition> due = new ArrayList<>();
+        synchronized (this) {
+            for (Partition partition : partitions.values()) {
+                if (partition.index.size() > 0 && partition.index.needsCompaction()) {
+                    due.add(partition);
+                }
+            }
+        }
+        for (Partition partition : due) {
+            try {
+                HnswIndex.Compaction compaction = partition.index.prepareCompaction();
+                if (compaction == null) {
+                    continue;
+                }
+                synchronized (this) {
+                    // The snapshot must name the generation the graph was written with, so swap under the lock
+                    if (partitions.get(partition.projectId) == partition) {
+                        partition.index.finishCompaction(compaction);
+                        modifications.incrementAndGet();
+                    } else {
+                        partition.index.abandonCompaction(compaction);
+                    }
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Could not compact the vectors of " + baseName(partition.projectId) + ": "
+                        + e.getMessage());
+            }
+        }
+    }
+
+    private static long partitionKey(Long projectId) {
+        return projectId != null ? projectId : UNASSIGNED;
+    }
+
+    private static String baseName(long partitionKey) {
+        return partitionKey == UNASSIGNED ? "unassigned" : "project-" + partitionKey;
+    }
+
+    /** The project's partition, created empty on first use; call while holding the lock. */
+    private Partition partition(Long projectId) {
+        long key = partitionKey(projectId);
+        Partition partition = partitions.get(key);
+        if (partition == null) {
+            VectorFile fullVectors;
+            try {
+                fullVectors = persistenceEnabled
+                        ? VectorFile.create(vectorDir, baseName(key), embedder.dimensions())
+                        : VectorFile.temporary(embedder.dimensions());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not create the vector file of " + baseName(key), e);
+            }
+            partition = new Partition(key, fullVectors,
+                    new HnswIndex(embedder.dimensions(), hnswM, efConstruction, fullVectors));
+            partitions.put(key, partition);
+        }
+        return partition;
+    }
+
+    private static String nonBlank(String value) {
+        return value == null ? "" : value.trim();
+    }
+
+    @Scheduled(fixedDelayString = "${search.segments.flush-interval-ms:60000}")
+    public synchronized void flush() {
+        if (!ready || vectorsFile == null) {
+            return;
+        }
+        long current = modifications.get();
+        if (current == savedModifications) {
+            return;
+        }
+        // Projects whose documents are all gone are left out of the snapshot and deleted once it is saved
+        List<Partition> empty = new ArrayList<>();
+        for (Partition partition : partitions.values()) {
+            if (partition.index.size() == 0) {
+                empty.add(partition);
+            }
+        }
+        Path temporary = vectorsFile.resolveSibling(vectorsFile.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(vectorsFile.getParent());
+            // The snapshot counts the vectors in the files, so they must be on disk before it is
+            for (Partition partition : partitions.values()) {
+                partition.fullVectors.force();
+            }
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeUTF(embedder.name());
+                out.writeLong(nextChunkKey);
+                out.writeInt(chunks.size());
+                for (Chunk chunk : chunks.values()) {
+                    out.writeLong(chunk.getKey());
+                    out.writeLong(chunk.getDocumentId());
+                    out.writeLong(chunk.getProjectId() != null ? chunk.getProjectId() : -1);
+                    out.writeInt(chunk.getOrdinal());
+                    out.writeLong(chunk.getStartOffset());
+                    out.writeLong(chunk.getEndOffset());
+                    byte[] text = chunk.getText().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(text.length);
+                    out.write(text);
+                }
+                out.writeInt(partitions.size() - empty.size());
+                for (Partition partition : partitions.values()) {
+                    if (!empty.contains(partition)) {
+                        out.writeLong(partition.projectId);
+                        out.writeInt(partition.fullVectors.getGeneration());
+                        partition.index.writeTo(out);
+                    }
+                }
+            }
+            Files.move(temporary, vectorsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            savedModifications = current;
+            // Only now does no snapshot refer to the generations before the current ones
+            for (Partition partition : partitions.values()) {
+                partition.fullVectors.deleteObsolete();
+            }
+            for (Partition partition : empty) {
+                partitions.remove(partition.projectId);
+                closeVectorFile(partition);
+            }
+            VectorFile.deleteOthers(vectorDir, partitions.keySet().stream()
+                    .map(VectorIndexService::baseName).collect(Collectors.toSet()));
+        } catch (IOException e) {
+            System.err.println("Could not write vector index to " + vectorsFile + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        closeVectorFiles();
+    }
+
+    private void closeVectorFiles() {
+        for (Partition partition : partitions.values()) {
+            closeVectorFile(partition);
+        }
+        partitions.clear();
+    }
+
+    private static void closeVectorFile(Partition partition) {
+        try {
+            partition.fullVectors.close();
+        } catch (IOException e) {
+            System.err.println("Could not close the vector file of " + baseName(partition.projectId) + ": "
+                    + e.getMessage());
+        }
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(vectorsFile)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                throw new IOException("not a version " + FILE_VERSION + " vector index file");
+            }
+            String embedderName = in.readUTF();
+            if (!embedder.name().equals(embedderName)) {
+                throw new IOException("vectors were made by " + embedderName + ", not " + embedder.name());
+            }
+            nextChunkKey = in.readLong();
+            int count = in.readInt();
+            Map<Long, List<Chunk>> byDocument = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                long key = in.readLong();
+                long documentId = in.readLong();
+                long projectId = in.readLong();
+                int ordinal = in.readInt();
+                long startOffset = in.readLong();
+                long endOffset = in.readLong();
+                byte[] text = new byte[in.readInt()];
+                in.readFully(text);
+                Chunk chunk = new Chunk(key, documentId, projectId >= 0 ? projectId : null, ordinal,
+                        new String(text, StandardCharsets.UTF_8), startOffset, endOffset);
+                chunks.put(key, chunk);
+                byDocument.computeIfAbsent(documentId, id -> new ArrayList<>()).add(chunk);
+            }
+            byDocument.forEach((documentId, documentChunks) -> chunkKeysByDocument.put(documentId,
+                    documentChunks.stream().mapToLong(Chunk::getKey).toArray()));
+            int partitionCount = in.readInt();
+            for (int i = 0; i < partitionCount; i++) {
+                long projectId = in.readLong();
+                int generation = in.readInt();
+                VectorFile fullVectors = VectorFile.open(vectorDir, baseName(projectId), generation,
+                        embedder.dimensions());
+                HnswIndex index;
+                try {
+                    index = HnswIndex.readFrom(in, fullVectors);
+                } catch (IOException | RuntimeException e) {
+                    fullVectors.close();
+                    throw e;
+                }
+                partitions.put(projectId, new Partition(projectId, fullVectors, index));
+            }
+        }
+        // Partitions created after the snapshot was saved
+        VectorFile.deleteOthers(vectorDir, partitions.keySet().stream()
+                .map(VectorIndexService::baseName).collect(Collectors.toSet()));
+        savedModifications = modifications.get();
+    }
+}
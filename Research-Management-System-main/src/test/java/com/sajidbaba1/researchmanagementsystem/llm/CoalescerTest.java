@@ -0,0 +1,127 @@
+package com.sajidbaba1.researchmanagementsystem.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CoalescerTest {
+
+    private final Coalescer<String, String> coalescer = new Coalescer<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger joins = new AtomicInteger();
+
+    @Test
+    void callersOfTheSameKeyShareOneCall() throws Exception {
+        CompletableFuture<String> call = new CompletableFuture<>();
+
+        CompletableFuture<String> first = coalescer.get("q", () -> started(call), joins::incrementAndGet);
+        CompletableFuture<String> second = coalescer.get("q", () -> started(new CompletableFuture<>()), joins::incrementAndGet);
+        call.complete("answer");
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("answer");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("answer");
+        assertThat(calls).hasValue(1);
+        assertThat(joins).hasValue(1);
+    }
+
+    @Test
+    void differentKeysAreNotShared() {
+        coalescer.get("a", () -> started(new CompletableFuture<>()), joins::incrementAndGet);
+        coalescer.get("b", () -> started(new CompletableFuture<>()), joins::incrementAndGet);
+
+        assertThat(calls).hasValue(2);
+        assertThat(joins).hasValue(0);
+        assertThat(coalescer.size()).isEqualTo(2);
+    }
+
+    @Test
+    void keyIsForgottenOnceTheCallCompletes() throws Exception {
+        coalescer.get("q", () -> started(CompletableFuture.completedFuture("old")), joins::incrementAndGet)
+                .get(5, TimeUnit.SECONDS);
+
+        String value = coalescer.get("q", () -> started(CompletableFuture.completedFuture("new")), joins::incrementAndGet)
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(value).isEqualTo("new");
+        assertThat(calls).hasValue(2);
+        assertThat(coalescer.size()).isZero();
+    }
+
+    @Test
+    void callerWokenByTheResultStartsAFreshCall() throws Exception {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> next = new CompletableFuture<>();
+        CompletableFuture<String> first = coalescer.get("q", () -> started(call), joins::incrementAndGet);
+        first.thenRun(() -> next.complete(coalescer.get("q",
+                () -> started(CompletableFuture.completedFuture("fresh")), joins::incrementAndGet).join()));
+
+        call.complete("stale");
+
+        assertThat(next.get(5, TimeUnit.SECONDS)).isEqualTo("fresh");
+        assertThat(joins).hasValue(0);
+    }
+
+    @Test
+    void failureIsSharedAndForgotten() {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> first = coalescer.get("q", () -> started(call), joins::incrementAndGet);
+        CompletableFuture<String> second = coalescer.get("q", () -> started(call), joins::incrementAndGet);
+
+        call.completeExceptionally(new LlmException("timed out"));
+
+        for (CompletableFuture<String> result : List.of(first, second)) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("timed out");
+        }
+        assertThat(coalescer.size()).isZero();
+    }
+
+    @Test
+    void callThatThrowsIsNotLeftInFlight() {
+        CompletableFuture<String> result = coalescer.get("q", () -> {
+            throw new LlmException("no capacity");
+        }, joins::incrementAndGet);
+
+        assertThat(result).isCompletedExceptionally();
+        assertThat(coalescer.size()).isZero();
+    }
+
+    @Test
+    void concurrentCallersOfOneKeyStartOneCall() throws Exception {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch go = new CountDownLatch(1);
+        try {
+            List<Future<CompletableFuture<String>>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                results.add(pool.submit(() -> {
+                    go.await();
+                    return coalescer.get("q", () -> started(call), joins::incrementAndGet);
+                }));
+            }
+            go.countDown();
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (Future<CompletableFuture<String>> result : results) {
+                futures.add(result.get(5, TimeUnit.SECONDS));
+            }
+            call.complete("answer");
+
+            for (CompletableFuture<String> future : futures) {
+                assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo("answer");
+            }
+            assertThat(calls).hasValue(1);
+            assertThat(joins).hasValue(31);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private CompletableFuture<String> started(CompletableFuture<String> call) {
+        calls.incrementAndGet();
+        return call;
+    }
+}
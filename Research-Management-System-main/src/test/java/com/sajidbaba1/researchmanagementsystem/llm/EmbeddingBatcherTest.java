@@ -0,0 +1,183 @@
+package com.sajidbaba1.researchmanagementsystem.llm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmbeddingBatcherTest {
+
+    /** Embeds a text as its length and records every batch it is sent. */
+    private static class RecordingBackend implements LlmBackend {
+        final List<List<String>> batches = new CopyOnWriteArrayList<>();
+        volatile CountDownLatch release = new CountDownLatch(0);
+        volatile RuntimeException failure;
+        volatile boolean dropLast;
+
+        @Override
+        public String name() {
+            return "recording";
+        }
+
+        @Override
+        public List<float[]> embed(List<String> texts) {
+            batches.add(List.copyOf(texts));
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            List<float[]> vectors = new ArrayList<>();
+            for (String text : texts) {
+                vectors.add(new float[]{text.length()});
+            }
+            return dropLast ? vectors.subList(0, vectors.size() - 1) : vectors;
+        }
+
+        @Override
+        public String complete(String prompt) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private final RecordingBackend backend = new RecordingBackend();
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private EmbeddingBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        if (batcher != null) {
+            batcher.close();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    void loneRequestIsSentAfterTheDelay() throws Exception {
+        batcher = new EmbeddingBatcher(backend, 8, TimeUnit.MILLISECONDS.toNanos(50), executor, batchSizes::add);
+
+        long start = System.nanoTime();
+        float[] vector = batcher.submit("abc").get(5, TimeUnit.SECONDS);
+
+        assertThat(vector).containsExactly(3f);
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat(backend.batches).containsExactly(List.of("abc"));
+        assertThat(batchSizes).containsExactly(1);
+    }
+
+    @Test
+    void fullBatchIsSentWithoutWaitingForTheDelay() throws Exception {
+        batcher = new EmbeddingBatcher(backend, 3, TimeUnit.MINUTES.toNanos(1), executor, batchSizes::add);
+
+        List<CompletableFuture<float[]>> results = new ArrayList<>();
+        for (String text : List.of("a", "bb", "ccc")) {
+            results.add(batcher.submit(text));
+        }
+
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(results.get(i).get(5, TimeUnit.SECONDS)).containsExactly(i + 1f);
+        }
+        assertThat(backend.batches).containsExactly(List.of("a", "bb", "ccc"));
+    }
+
+    @Test
+    void burstIsSplitIntoBatchesOfAtMostMaxSize() throws Exception {
+        backend.release = new CountDownLatch(1);
+        batcher = new EmbeddingBatcher(backend, 4, TimeUnit.MILLISECONDS.toNanos(20), executor, batchSizes::add);
+
+        List<CompletableFuture<float[]>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(batcher.submit("x".repeat(i + 1)));
+        }
+        backend.release.countDown();
+
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(results.get(i).get(5, TimeUnit.SECONDS)).containsExactly(i + 1f);
+        }
+        assertThat(batchSizes).allMatch(size -> size <= 4);
+        assertThat(batchSizes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(10);
+        assertThat(backend.batches.stream().flatMap(List::stream)).hasSize(10).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void backendFailureFailsTheWholeBatch() {
+        backend.failure = new LlmException("backend down");
+        batcher = new EmbeddingBatcher(backend, 2, TimeUnit.MINUTES.toNanos(1), executor, batchSizes::add);
+
+        CompletableFuture<float[]> first = batcher.submit("a");
+        CompletableFuture<float[]> second = batcher.submit("b");
+
+        for (CompletableFuture<float[]> result : List.of(first, second)) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasRootCauseMessage("backend down");
+        }
+    }
+
+    @Test
+    void wrongNumberOfVectorsFailsTheBatch() {
+        backend.dropLast = true;
+        batcher = new EmbeddingBatcher(backend, 2, TimeUnit.MINUTES.toNanos(1), executor, batchSizes::add);
+
+        CompletableFuture<float[]> first = batcher.submit("a");
+        CompletableFuture<float[]> second = batcher.submit("b");
+
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS))
+                .hasRootCauseInstanceOf(LlmException.class)
+                .hasRootCauseMessage("Backend returned 1 vectors for 2 texts");
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS))
+                .hasRootCauseInstanceOf(LlmException.class);
+    }
+
+    @Test
+    void rejectedBatchFails() {
+        executor.shutdown();
+        batcher = new EmbeddingBatcher(backend, 1, 0, executor, batchSizes::add);
+
+        assertThatThrownBy(() -> batcher.submit("a").get(5, TimeUnit.SECONDS))
+                .hasRootCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(backend.batches).isEmpty();
+    }
+
+    @Test
+    void closeFailsWaitingAndLaterRequests() {
+        batcher = new EmbeddingBatcher(backend, 8, TimeUnit.MINUTES.toNanos(1), executor, batchSizes::add);
+        CompletableFuture<float[]> waiting = batcher.submit("a");
+
+        batcher.close();
+
+        assertThatThrownBy(() -> waiting.get(5, TimeUnit.SECONDS))
+                .hasRootCauseInstanceOf(LlmException.class);
+        assertThat(batcher.submit("b")).isCompletedExceptionally();
+        assertThat(backend.batches).isEmpty();
+    }
+
+    @Test
+    void requestsRacingCloseAllComplete() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            EmbeddingBatcher racing = new EmbeddingBatcher(backend, 4, 0, executor, batchSizes::add);
+            ExecutorService submitter = Executors.newSingleThreadExecutor();
+            Future<List<CompletableFuture<float[]>>> submitted = submitter.submit(() -> {
+                List<CompletableFuture<float[]>> results = new ArrayList<>();
+                for (int i = 0; i < 200; i++) {
+                    results.add(racing.submit("t"));
+                }
+                return results;
+            });
+            racing.close();
+            for (CompletableFuture<float[]> result : submitted.get(5, TimeUnit.SECONDS)) {
+                // Either embedded or failed, never left pending
+                assertThat(result.handle((vector, error) -> true).get(5, TimeUnit.SECONDS)).isTrue();
+            }
+            submitter.shutdown();
+        }
+    }
+}
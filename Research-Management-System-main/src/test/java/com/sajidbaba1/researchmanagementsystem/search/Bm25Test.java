@@ -0,0 +1,117 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class Bm25Test {
+
+    private static final Query ALPHA = new Query.Term(null, "alpha");
+
+    /** Doc 1 has "alpha" once in a short title; doc 2 twice in a longer description. */
+    private static InvertedIndex twoDocs() {
+        InvertedIndex index = new InvertedIndex("title", "description");
+        index.index(1, "alpha", "beta gamma");
+        index.index(2, "beta", "alpha alpha delta");
+        return index;
+    }
+
+    @Test
+    void matchesTheBm25fFormula() {
+        Map<Long, Double> scores = twoDocs().scoreAll(ALPHA, new double[] {2.0, 1.0}).getScores();
+
+        // Both documents contain the term; average lengths are 1 (title) and 2.5 (description)
+        double idf = Math.log(1.0 + (2 - 2 + 0.5) / (2 + 0.5));
+        double titleTf = 2.0 * 1 / (1 - Bm25.B + Bm25.B * 1 / 1.0);
+        double descriptionTf = 1.0 * 2 / (1 - Bm25.B + Bm25.B * 3 / 2.5);
+        assertThat(scores.get(1L)).isCloseTo(idf * titleTf / (Bm25.K1 + titleTf), within(1e-12));
+        assertThat(scores.get(2L)).isCloseTo(idf * descriptionTf / (Bm25.K1 + descriptionTf), within(1e-12));
+    }
+
+    @Test
+    void fieldWeightsDecideTheOrder() {
+        InvertedIndex index = twoDocs();
+
+        assertThat(ids(index.search(ALPHA, new double[] {2.0, 1.0}, 10))).containsExactly(1L, 2L);
+        assertThat(ids(index.search(ALPHA, new double[] {1.0, 1.0}, 10))).containsExactly(2L, 1L);
+        // A field weighted zero does not count at all
+        assertThat(index.scoreAll(ALPHA, new double[] {0.0, 1.0}).getScores().get(1L)).isZero();
+    }
+
+    @Test
+    void rarerTermsAndShorterFieldsScoreHigher() {
+        assertThat(Bm25.idf(100, 1)).isGreaterThan(Bm25.idf(100, 10));
+        assertThat(Bm25.idf(100, 100)).isPositive();
+
+        InvertedIndex index = new InvertedIndex("title");
+        index.index(1, "alpha beta");
+        index.index(2, "alpha beta gamma delta epsilon");
+        Map<Long, Double> scores = index.scoreAll(ALPHA, new double[] {1.0}).getScores();
+        assertThat(scores.get(1L)).isGreaterThan(scores.get(2L));
+    }
+
+    @Test
+    void termFrequencySaturates() {
+        InvertedIndex index = new InvertedIndex("title");
+        index.index(1, "alpha x x x x x x x x x");
+        index.index(2, "alpha alpha x x x x x x x x");
+        index.index(3, "alpha alpha alpha alpha alpha alpha alpha alpha alpha alpha");
+        index.index(4, "beta");
+        Map<Long, Double> scores = index.scoreAll(ALPHA, new double[] {1.0}).getScores();
+
+        double second = scores.get(2L) - scores.get(1L);
+        double tenth = scores.get(3L) - scores.get(2L);
+        assertThat(second).isPositive();
+        assertThat(tenth / 8).isLessThan(second);
+        assertThat(scores.get(3L)).isLessThan(Bm25.idf(4, 3));
+    }
+
+    @Test
+    void tiesRankByLowerIdFirst() {
+        InvertedIndex index = new InvertedIndex("title");
+        for (long id : new long[] {9, 3, 7, 5}) {
+            index.index(id, "alpha");
+        }
+        index.index(1, "alpha alpha");
+
+        TopDocs top = index.search(ALPHA, new double[] {1.0}, 3);
+        assertThat(top.getTotalHits()).isEqualTo(5);
+        assertThat(ids(top)).containsExactly(1L, 3L, 5L);
+
+        // The next keyset page continues after the last tie
+        ScoredDoc last = top.getHits().get(2);
+        Map<Long, Double> scores = index.scoreAll(ALPHA, new double[] {1.0}).getScores();
+        assertThat(ids(TopDocs.select(scores, 3, null, last))).containsExactly(7L, 9L);
+    }
+
+    @Test
+    void topKKeepsTheBestInOrder() {
+        Random random = new Random(42);
+        Map<Long, Double> scores = new HashMap<>();
+        for (long id = 0; id < 1000; id++) {
+            // Few distinct scores, so there are many ties
+            scores.put(id, (double) random.nextInt(20));
+        }
+        List<Long> expected = scores.entrySet().stream()
+                .map(entry -> new ScoredDoc(entry.getKey(), entry.getValue()))
+                .sorted(ScoredDoc.BEST_FIRST)
+                .limit(25)
+                .map(ScoredDoc::getId)
+                .collect(Collectors.toList());
+
+        assertThat(ids(TopDocs.select(scores, 25, null))).containsExactlyElementsOf(expected);
+        assertThat(TopDocs.select(scores, 0, null).getHits()).isEmpty();
+        assertThat(TopDocs.select(scores, 5000, null).getHits()).hasSize(1000);
+        assertThat(ids(TopDocs.select(scores, 25, id -> id % 2 == 0)))
+                .allMatch(id -> id % 2 == 0)
+                .hasSize(25);
+    }
+
+    private static List<Long> ids(TopDocs top) {
+        return top.getHits().stream().map(ScoredDoc::getId).collect(Collectors.toList());
+    }
+}
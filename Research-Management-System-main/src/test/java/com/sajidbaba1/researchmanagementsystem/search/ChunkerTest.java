@@ -0,0 +1,124 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChunkerTest {
+
+    private static final String MIXED = "Café naïve façade — 日本語の テキスト, русский текст 😀 emoji "
+            + "𝒜lpha ελληνικά عربي हिन्दी 한국어 done. Plain ASCII words close the text out";
+
+    @Test
+    void offsetsAreUtf8ByteOffsetsOfTheFirstAndLastWord() {
+        byte[] utf8 = MIXED.getBytes(StandardCharsets.UTF_8);
+        List<Chunker.Span> spans = chunk(MIXED, 4, 1, 100);
+
+        assertThat(spans).isNotEmpty();
+        for (Chunker.Span span : spans) {
+            String covered = new String(utf8, (int) span.getStartOffset(),
+                    (int) (span.getEndOffset() - span.getStartOffset()), StandardCharsets.UTF_8);
+            assertThat(covered.replaceAll("\\s+", " ")).isEqualTo(span.getText());
+        }
+    }
+
+    @Test
+    void surrogatePairsCountForFourBytes() {
+        String text = "😀😀 word 𝒜 next";
+        List<Chunker.Span> spans = chunk(text, 10, 0, 10);
+
+        assertThat(spans).hasSize(1);
+        Chunker.Span span = spans.get(0);
+        // Two 4-byte emoji and a space come before "word"; the text ends on "next"
+        assertThat(span.getStartOffset()).isEqualTo(9);
+        assertThat(span.getEndOffset()).isEqualTo(text.getBytes(StandardCharsets.UTF_8).length);
+        assertThat(span.getText()).isEqualTo("word 𝒜 next");
+    }
+
+    @Test
+    void surrogatePairSplitAcrossWritesGivesTheSameChunks() {
+        Chunker.Span whole = chunk(MIXED, 5, 2, 100).get(2);
+        List<Chunker.Span> spans = new ArrayList<>();
+        Chunker chunker = new Chunker(5, 2, 100, spans::add);
+        int cut = MIXED.indexOf("😀") + 1;
+        write(chunker, MIXED.substring(0, cut));
+        write(chunker, MIXED.substring(cut));
+        chunker.close();
+
+        Chunker.Span split = spans.get(2);
+        assertThat(split.getText()).isEqualTo(whole.getText());
+        assertThat(split.getStartOffset()).isEqualTo(whole.getStartOffset());
+        assertThat(split.getEndOffset()).isEqualTo(whole.getEndOffset());
+    }
+
+    @Test
+    void consecutiveChunksShareTheOverlapWords() {
+        String text = numberedWords(23);
+        List<Chunker.Span> spans = chunk(text, 5, 2, 100);
+
+        List<List<String>> words = spans.stream().map(span -> Arrays.asList(span.getText().split(" ")))
+                .collect(Collectors.toList());
+        for (int i = 1; i < words.size(); i++) {
+            List<String> previous = words.get(i - 1);
+            assertThat(words.get(i).subList(0, 2)).isEqualTo(previous.subList(previous.size() - 2, previous.size()));
+            assertThat(spans.get(i).getOrdinal()).isEqualTo(i);
+        }
+        // Every word is in some chunk, in order, and only the overlap is repeated
+        List<String> covered = new ArrayList<>(words.get(0));
+        for (int i = 1; i < words.size(); i++) {
+            covered.addAll(words.get(i).subList(2, words.get(i).size()));
+        }
+        assertThat(String.join(" ", covered)).isEqualTo(text);
+        assertThat(words.get(0)).hasSize(5);
+        assertThat(words.get(words.size() - 1)).hasSizeLessThanOrEqualTo(5);
+    }
+
+    @Test
+    void overlapChunksStartAtTheOverlappingWord() {
+        String text = numberedWords(8);
+        List<Chunker.Span> spans = chunk(text, 5, 2, 100);
+
+        assertThat(spans).hasSize(2);
+        assertThat(spans.get(1).getText()).isEqualTo("w3 w4 w5 w6 w7");
+        assertThat(spans.get(1).getStartOffset()).isEqualTo(text.indexOf("w3"));
+        assertThat(spans.get(0).getEndOffset()).isEqualTo(text.indexOf(" w5"));
+    }
+
+    @Test
+    void stopsAtTheChunkLimit() {
+        List<Chunker.Span> spans = new ArrayList<>();
+        Chunker chunker = new Chunker(3, 0, 2, spans::add);
+        write(chunker, numberedWords(20));
+        chunker.close();
+
+        assertThat(spans).hasSize(2);
+        assertThat(chunker.isFull()).isTrue();
+        assertThat(spans.get(1).getText()).isEqualTo("w3 w4 w5");
+    }
+
+    private static List<Chunker.Span> chunk(String text, int words, int overlap, int maxChunks) {
+        List<Chunker.Span> spans = new ArrayList<>();
+        Chunker chunker = new Chunker(words, overlap, maxChunks, spans::add);
+        write(chunker, text);
+        chunker.close();
+        return spans;
+    }
+
+    private static void write(Chunker chunker, String text) {
+        chunker.write(text.toCharArray(), 0, text.length());
+    }
+
+    private static String numberedWords(int count) {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            words.add("w" + i);
+        }
+        return String.join(" ", words);
+    }
+}
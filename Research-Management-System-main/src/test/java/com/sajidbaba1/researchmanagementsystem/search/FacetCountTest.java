@@ -0,0 +1,112 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FacetCountTest {
+
+    private static final double[] WEIGHTS = {1.0};
+
+    private InvertedIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new InvertedIndex("title");
+        index.index(1, facets("pdf", "active"), "quantum sensing");
+        index.index(2, facets("pdf", "archived"), "quantum networks");
+        index.index(3, facets("docx", "active"), "quantum chemistry");
+        index.index(4, facets("csv", "active"), "climate data");
+        index.index(5, facets(null, "active"), "quantum data");
+    }
+
+    @Test
+    void countsTheMatchesPerValue() {
+        assertThat(counts("quantum")).isEqualTo(Map.of(
+                "fileType", Map.of("pdf", 2L, "docx", 1L),
+                "status", Map.of("active", 3L, "archived", 1L)));
+        assertThat(index.facetCounts(new RoaringBitmap())).isEmpty();
+    }
+
+    @Test
+    void countsOnlyTheFilteredMatches() {
+        RoaringBitmap matched = match("quantum").getOrdinals();
+        // As SearchService does when database filters narrow the matches down
+        RoaringBitmap filtered = index.toOrdinals(List.of(1L, 3L, 5L, 99L));
+        filtered.and(matched);
+
+        assertThat(index.facetCounts(filtered)).isEqualTo(Map.of(
+                "fileType", Map.of("pdf", 1L, "docx", 1L),
+                "status", Map.of("active", 3L)));
+
+        // A facet clause in the query narrows the counts the same way
+        Query activeOnly = new Query.Bool()
+                .must(new Query.Term(null, "quantum"))
+                .must(new Query.FieldValue("status", List.of("active")));
+        assertThat(index.facetCounts(index.scoreAll(activeOnly, WEIGHTS).getOrdinals())).isEqualTo(Map.of(
+                "fileType", Map.of("pdf", 1L, "docx", 1L),
+                "status", Map.of("active", 3L)));
+    }
+
+    @Test
+    void statusUpdateMovesTheCount() {
+        long sequence = index.getSequence();
+        assertThat(index.updateFacets(1, facets("pdf", "archived"))).isEqualTo(sequence + 1);
+
+        assertThat(counts("quantum").get("status")).isEqualTo(Map.of("active", 2L, "archived", 2L));
+        assertThat(ids(new Query.FieldValue("status", List.of("archived")))).containsExactlyInAnyOrder(1L, 2L);
+        // The text is untouched
+        assertThat(ids(new Query.Term(null, "sensing"))).containsExactly(1L);
+
+        // The last entity with a value takes the value with it
+        index.updateFacets(3, facets("docx", "archived"));
+        index.updateFacets(3, facets(null, "archived"));
+        assertThat(counts("quantum").get("fileType")).isEqualTo(Map.of("pdf", 2L));
+        assertThat(ids(new Query.FieldValue("fileType", List.of("docx")))).isEmpty();
+
+        assertThat(index.updateFacets(99, facets("pdf", "active"))).isEqualTo(-1);
+    }
+
+    @Test
+    void removedAndReindexedEntitiesLeaveNoStaleCounts() {
+        RoaringBitmap before = match("quantum").getOrdinals();
+        index.remove(2);
+        assertThat(counts("quantum")).isEqualTo(Map.of(
+                "fileType", Map.of("pdf", 1L, "docx", 1L),
+                "status", Map.of("active", 3L)));
+        // Ordinals kept from before the removal no longer count it
+        assertThat(index.facetCounts(before).get("status")).isEqualTo(Map.of("active", 3L));
+
+        index.index(3, facets("pdf", "archived"), "quantum chemistry");
+        assertThat(counts("quantum")).isEqualTo(Map.of(
+                "fileType", Map.of("pdf", 2L),
+                "status", Map.of("active", 2L, "archived", 1L)));
+
+        index.index(2, facets("csv", "active"), "quantum networks");
+        assertThat(counts("quantum").get("fileType")).isEqualTo(Map.of("pdf", 2L, "csv", 1L));
+        assertThat(index.getQueryableFields()).contains("fileType", "status", "title");
+    }
+
+    private static Map<String, String> facets(String fileType, String status) {
+        Map<String, String> facets = new HashMap<>();
+        facets.put("fileType", fileType);
+        facets.put("status", status);
+        return facets;
+    }
+
+    private Matches match(String token) {
+        return index.scoreAll(new Query.Term(null, token), WEIGHTS);
+    }
+
+    private Map<String, Map<String, Long>> counts(String token) {
+        return index.facetCounts(match(token).getOrdinals());
+    }
+
+    private Set<Long> ids(Query query) {
+        return index.scoreAll(query, WEIGHTS).getScores().keySet();
+    }
+}
@@ -0,0 +1,234 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 32;
+
+    @TempDir
+    Path directory;
+
+    private VectorFile vectors;
+    private final Random random = new Random(7);
+    private final Map<Long, float[]> live = new HashMap<>();
+
+    @BeforeEach
+    void createFile() throws IOException {
+        vectors = VectorFile.create(directory, "vectors", DIMENSIONS);
+    }
+
+    @AfterEach
+    void closeFile() throws IOException {
+        vectors.close();
+    }
+
+    @Test
+    void findsMostOfTheExactNeighbours() {
+        HnswIndex index = newIndex();
+        addRandom(index, 0, 2000);
+
+        int found = 0;
+        int expected = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = unitVector();
+            Set<Long> exact = new HashSet<>(bruteForce(query, 10));
+            for (ScoredDoc hit : index.search(query, 10, 100)) {
+                if (exact.contains(hit.getId())) {
+                    found++;
+                }
+            }
+            expected += exact.size();
+        }
+        assertThat(found / (double) expected).isGreaterThan(0.9);
+    }
+
+    @Test
+    void scoresAreFullPrecisionCosines() {
+        HnswIndex index = newIndex();
+        addRandom(index, 0, 200);
+        float[] query = unitVector();
+
+        for (ScoredDoc hit : index.search(query, 5, 100)) {
+            assertThat(hit.getScore()).isCloseTo(HnswIndex.similarity(query, live.get(hit.getId())),
+                    offset(1e-6));
+        }
+    }
+
+    @Test
+    void addingAKeyAgainReplacesItsVector() {
+        HnswIndex index = newIndex();
+        addRandom(index, 0, 100);
+        float[] replacement = unitVector();
+        index.add(42, replacement);
+
+        assertThat(index.size()).isEqualTo(100);
+        assertThat(index.search(replacement, 1, 100).get(0).getId()).isEqualTo(42);
+    }
+
+    @Test
+    void snapshotRoundTripGivesTheSameResults() throws IOException {
+        HnswIndex index = newIndex();
+        addRandom(index, 0, 500);
+        for (long key = 0; key < 50; key++) {
+            index.remove(key);
+        }
+        List<float[]> queries = new ArrayList<>();
+        List<List<Long>> expected = new ArrayList<>();
+        for (int q = 0; q < 20; q++) {
+            float[] query = unitVector();
+            queries.add(query);
+            expected.add(idsOf(index.search(query, 10, 100)));
+        }
+        vectors.force();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+        // Appended after the snapshot, so dropped when it is read back
+        index.add(1000, unitVector());
+
+        HnswIndex restored = HnswIndex.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+                vectors);
+
+        assertThat(restored.size()).isEqualTo(450);
+        assertThat(restored.contains(10)).isFalse();
+        assertThat(restored.contains(1000)).isFalse();
+        assertThat(vectors.size()).isEqualTo(500);
+        for (int q = 0; q < queries.size(); q++) {
+            assertThat(idsOf(restored.search(queries.get(q), 10, 100))).isEqualTo(expected.get(q));
+        }
+    }
+
+    @Test
+    void removedKeysAreNeverReturned() {
+        HnswIndex index = newIndex();
+        addRandom(index, 0, 300);
+        for (long key = 0; key < 300; key += 2) {
+            index.remove(key);
+            live.remove(key);
+        }
+
+        for (int q = 0; q < 20; q++) {
+            for (ScoredDoc hit : index.search(unitVector(), 10, 100)) {
+                assertThat(hit.getId() % 2).isEqualTo(1);
+            }
+        }
+        assertThat(index.size()).isEqualTo(150);
+    }
+
+    @Test
+    void compactionDropsTombstonesWithoutChangingResults() {
+        HnswIndex index = newIndex();
+        addRandom(index, 0, 400);
+        for (long key = 0; key < 300; key++) {
+            index.remove(key);
+            live.remove(key);
+        }
+        assertThat(index.needsCompaction()).isTrue();
+        // A beam wider than the graph makes the search exhaustive, so both graphs must agree exactly
+        List<float[]> queries = new ArrayList<>();
+        List<List<ScoredDoc>> before = new ArrayList<>();
+        for (int q = 0; q < 20; q++) {
+            float[] query = unitVector();
+            queries.add(query);
+            before.add(index.search(query, 10, 1000));
+        }
+        int generation = vectors.getGeneration();
+
+        index.compact();
+
+        assertThat(index.needsCompaction()).isFalse();
+        assertThat(index.size()).isEqualTo(100);
+        assertThat(index.getQuantizedBytes()).isEqualTo(100L * (DIMENSIONS + Float.BYTES));
+        assertThat(vectors.getGeneration()).isEqualTo(generation + 1);
+        assertThat(vectors.size()).isEqualTo(100);
+        for (int q = 0; q < queries.size(); q++) {
+            List<ScoredDoc> after = index.search(queries.get(q), 10, 1000);
+            assertThat(idsOf(after)).isEqualTo(idsOf(before.get(q)));
+            for (int i = 0; i < after.size(); i++) {
+                assertThat(after.get(i).getScore()).isEqualTo(before.get(q).get(i).getScore());
+            }
+        }
+    }
+
+    @Test
+    void changesMadeWhileCompactingAreKept() {
+        HnswIndex index = newIndex();
+        addRandom(index, 0, 400);
+        for (long key = 0; key < 300; key++) {
+            index.remove(key);
+            live.remove(key);
+        }
+
+        HnswIndex.Compaction compaction = index.prepareCompaction();
+        assertThat(index.prepareCompaction()).isNull();
+        index.remove(350);
+        live.remove(350L);
+        addRandom(index, 400, 410);
+        float[] replacement = unitVector();
+        index.add(399, replacement);
+        live.put(399L, replacement);
+        index.finishCompaction(compaction);
+
+        assertThat(index.size()).isEqualTo(live.size());
+        assertThat(index.contains(350)).isFalse();
+        assertThat(index.contains(405)).isTrue();
+        assertThat(index.search(replacement, 1, 100).get(0).getId()).isEqualTo(399);
+        for (int q = 0; q < 20; q++) {
+            float[] query = unitVector();
+            assertThat(idsOf(index.search(query, 10, 1000))).isEqualTo(bruteForce(query, 10));
+        }
+    }
+
+    private HnswIndex newIndex() {
+        return new HnswIndex(DIMENSIONS, 16, 100, vectors);
+    }
+
+    private void addRandom(HnswIndex index, long fromKey, long toKey) {
+        for (long key = fromKey; key < toKey; key++) {
+            float[] vector = unitVector();
+            index.add(key, vector);
+            live.put(key, vector);
+        }
+    }
+
+    private List<Long> bruteForce(float[] query, int k) {
+        return live.entrySet().stream()
+                .sorted(Comparator.comparingDouble((Map.Entry<Long, float[]> entry)
+                        -> HnswIndex.similarity(query, entry.getValue())).reversed())
+                .limit(k)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    private static List<Long> idsOf(List<ScoredDoc> hits) {
+        return hits.stream().map(ScoredDoc::getId).collect(Collectors.toList());
+    }
+
+    private float[] unitVector() {
+        float[] vector = new float[DIMENSIONS];
+        double norm = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,258 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IndexStoreTest {
+
+    private static final double[] WEIGHTS = {2.0, 1.0};
+    private static final List<Query> QUERIES = List.of(
+            new Query.Term(null, "quantum"),
+            new Query.Term(null, "learn"),
+            new Query.Term(null, "quantom"),
+            new Query.Phrase(null, List.of("machine", "learning")),
+            new Query.FieldValue("status", List.of("active")),
+            new Query.Bool().must(new Query.Term(null, "learning")).mustNot(new Query.Term("title", "quantum")));
+
+    @TempDir
+    Path dir;
+
+    /** The database the change log is replayed from: id to title, description and status. */
+    private final Map<Long, String[]> rows = new LinkedHashMap<>();
+
+    @Test
+    void segmentRoundTrip() throws IOException {
+        InvertedIndex original = index();
+        save(original, 1, "Quantum computing", "Error correction for quantum hardware", "active");
+        save(original, 2, "Machine learning", "Deep learning on graphs", "archived");
+        save(original, 3, "Quantum machine learning", "Variational circuits", "active");
+        original.index(4, Map.of("status", "active"), new TermCounter[] {TermCounter.of("Sourced"), null}, "file:4");
+
+        Path file = dir.resolve("segment-1.seg");
+        assertThat(original.writeSegment(file)).isEqualTo(original.getSequence());
+        assertThat(Files.exists(dir.resolve("segment-1.seg.tmp"))).isFalse();
+
+        InvertedIndex loaded = index();
+        assertThat(loaded.loadSegment(file)).isEqualTo(original.getSequence());
+        assertThat(loaded.getSequence()).isEqualTo(original.getSequence());
+        assertSameContents(loaded, original);
+        assertThat(loaded.getSource(4)).isEqualTo("file:4");
+        assertThat(loaded.fieldTerms(3, "title").terms()).containsExactlyInAnyOrder("quantum", "machine", "learning");
+        assertThat(loaded.facetCounts(loaded.scoreAll(new Query.Term(null, "learning"), WEIGHTS).getOrdinals()))
+                .containsEntry("status", Map.of("active", 1L, "archived", 1L));
+
+        // Entities read from the mapped file can still change
+        save(loaded, 2, "Machine learning", "Graph neural networks", "active");
+        save(original, 2, "Machine learning", "Graph neural networks", "active");
+        loaded.remove(1);
+        original.remove(1);
+        assertSameContents(loaded, original);
+    }
+
+    @Test
+    void changeLogIsReplayedAfterACrash() throws IOException {
+        InvertedIndex live = index();
+        IndexStore store = new IndexStore(dir);
+        save(live, store, 1, "Quantum computing", "Error correction for quantum hardware", "active");
+        save(live, store, 2, "Machine learning", "Deep learning on graphs", "archived");
+        save(live, store, 3, "Quantum machine learning", "Variational circuits", "active");
+        assertThat(store.flush(live, Long.MAX_VALUE)).isTrue();
+        long flushed = live.getSequence();
+        // Nothing changed since
+        assertThat(store.flush(live, Long.MAX_VALUE)).isFalse();
+        assertThat(store.pendingChanges()).isEmpty();
+
+        save(live, store, 2, "Machine learning", "Graph neural networks", "active");
+        rows.remove(3L);
+        store.recordRemoved(live.remove(3), 3);
+        save(live, store, 4, "Learning theory", "Sample complexity", "active");
+        save(live, store, 2, "Machine learning", "Graph neural networks and transformers", "active");
+        // The process dies here, before the next flush
+
+        InvertedIndex restored = index();
+        IndexStore reopened = new IndexStore(dir);
+        assertThat(reopened.load(restored)).isEqualTo(flushed);
+        List<IndexStore.Change> changes = reopened.pendingChanges();
+        // One entry per id, its latest, in the order the latest changes happened
+        assertThat(changes).extracting(IndexStore.Change::getId).containsExactly(3L, 4L, 2L);
+        assertThat(changes).extracting(IndexStore.Change::isRemoved).containsExactly(true, false, false);
+        replay(restored, changes);
+        assertSameContents(restored, live);
+
+        // Replaying the same log a second time changes nothing
+        replay(restored, reopened.pendingChanges());
+        assertSameContents(restored, live);
+
+        // The next flush covers the log and leaves a single generation
+        assertThat(reopened.flush(restored, Long.MAX_VALUE)).isTrue();
+        assertThat(reopened.pendingChanges()).isEmpty();
+        assertThat(segments()).containsExactly("segment-2.seg");
+    }
+
+    @Test
+    void flushKeepsLogEntriesPastThePruneSequence() throws IOException {
+        InvertedIndex live = index();
+        IndexStore store = new IndexStore(dir);
+        long first = save(live, store, 1, "Quantum computing", "", "active");
+        save(live, store, 2, "Machine learning", "", "active");
+
+        // The suggestion trie was only saved at the first change
+        store.flush(live, first);
+        assertThat(store.pendingChanges()).extracting(IndexStore.Change::getId).containsExactly(2L);
+    }
+
+    @Test
+    void unreadableNewestGenerationFallsBackToTheOlderOne() throws IOException {
+        InvertedIndex live = index();
+        IndexStore store = new IndexStore(dir);
+        save(live, store, 1, "Quantum computing", "Error correction", "active");
+        store.flush(live, Long.MAX_VALUE);
+        Files.write(dir.resolve("segment-2.seg"), "not a segment at all".getBytes());
+
+        InvertedIndex restored = index();
+        IndexStore reopened = new IndexStore(dir);
+        assertThat(reopened.load(restored)).isEqualTo(live.getSequence());
+        assertSameContents(restored, live);
+
+        // The next generation replaces the broken file
+        save(restored, reopened, 2, "Machine learning", "", "active");
+        reopened.flush(restored, Long.MAX_VALUE);
+        assertThat(segments()).containsExactly("segment-2.seg");
+        assertThat(index().loadSegment(dir.resolve("segment-2.seg"))).isEqualTo(restored.getSequence());
+    }
+
+    @Test
+    void nothingLoadsWhenEveryGenerationIsUnreadable() throws IOException {
+        Files.write(dir.resolve("segment-1.seg"), new byte[64]);
+        InvertedIndex restored = index();
+
+        assertThat(new IndexStore(dir).load(restored)).isEqualTo(-1);
+        assertThat(restored.size()).isZero();
+    }
+
+    @Test
+    void rejectsForeignAndCorruptSegments() throws IOException {
+        InvertedIndex original = index();
+        save(original, 1, "Quantum computing", "Error correction", "active");
+        save(original, 2, "Machine learning", "Deep learning", "archived");
+        Path valid = dir.resolve("valid.seg");
+        original.writeSegment(valid);
+
+        Path otherVersion = copy(valid, "version.seg");
+        putInt(otherVersion, 4, SegmentFile.VERSION - 1);
+        assertRejected(otherVersion, "Not a version " + SegmentFile.VERSION, 1);
+
+        Path otherMagic = copy(valid, "magic.seg");
+        putInt(otherMagic, 0, 0xCAFEBABE);
+        assertRejected(otherMagic, "Not a version", 1);
+
+        Path truncated = dir.resolve("truncated.seg");
+        Files.write(truncated, Arrays.copyOf(Files.readAllBytes(valid), (int) Files.size(valid) / 2));
+        assertRejected(truncated, null, 0);
+
+        Path badOffset = copy(valid, "offset.seg");
+        putLong(badOffset, Files.size(badOffset) - Long.BYTES, Files.size(badOffset) + 100);
+        assertRejected(badOffset, "metadata offset", 0);
+
+        Path tooSmall = dir.resolve("small.seg");
+        Files.write(tooSmall, new byte[SegmentFile.HEADER_BYTES]);
+        assertRejected(tooSmall, "Unsupported segment size", 1);
+
+        InvertedIndex otherFields = new InvertedIndex("name", "description");
+        otherFields.index(9, "Existing entity", "");
+        assertThatThrownBy(() -> otherFields.loadSegment(valid))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("different fields");
+        assertThat(otherFields.size()).isZero();
+    }
+
+    /** @param remaining entities left: a bad header is caught before the index is touched, later errors empty it */
+    private static void assertRejected(Path file, String message, int remaining) {
+        InvertedIndex index = index();
+        index.index(9, Map.of("status", "active"), "Existing entity", "");
+        var thrown = assertThatThrownBy(() -> index.loadSegment(file)).isInstanceOf(IOException.class);
+        if (message != null) {
+            thrown.hasMessageContaining(message);
+        }
+        assertThat(index.size()).isEqualTo(remaining);
+    }
+
+    private static InvertedIndex index() {
+        InvertedIndex index = new InvertedIndex("title", "description");
+        index.setShardFacet("status");
+        return index;
+    }
+
+    private long save(InvertedIndex index, long id, String title, String description, String status) {
+        rows.put(id, new String[] {title, description, status});
+        return index.index(id, Map.of("status", status), title, description);
+    }
+
+    private long save(InvertedIndex index, IndexStore store, long id, String title, String description,
+                      String status) {
+        long sequence = save(index, id, title, description, status);
+        store.recordIndexed(sequence, id);
+        return sequence;
+    }
+
+    /** Re-reads each logged entity from {@link #rows}, the way SearchIndexService replays its logs. */
+    private void replay(InvertedIndex index, List<IndexStore.Change> changes) {
+        for (IndexStore.Change change : changes) {
+            String[] row = change.isRemoved() ? null : rows.get(change.getId());
+            if (row == null) {
+                index.remove(change.getId());
+            } else {
+                index.index(change.getId(), Map.of("status", row[2]), row[0], row[1]);
+            }
+        }
+    }
+
+    private static void assertSameContents(InvertedIndex actual, InvertedIndex expected) {
+        assertThat(actual.size()).isEqualTo(expected.size());
+        for (Query query : QUERIES) {
+            assertThat(actual.scoreAll(query, WEIGHTS).getScores())
+                    .isEqualTo(expected.scoreAll(query, WEIGHTS).getScores());
+            assertThat(actual.scoreAll(query, WEIGHTS, "active").getScores())
+                    .isEqualTo(expected.scoreAll(query, WEIGHTS, "active").getScores());
+        }
+    }
+
+    private List<String> segments() throws IOException {
+        try (var files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(".seg"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path copy(Path file, String name) throws IOException {
+        return Files.copy(file, dir.resolve(name));
+    }
+
+    private static void putInt(Path file, long position, int value) throws IOException {
+        write(file, position, ByteBuffer.allocate(Integer.BYTES).putInt(0, value));
+    }
+
+    private static void putLong(Path file, long position, long value) throws IOException {
+        write(file, position, ByteBuffer.allocate(Long.BYTES).putLong(0, value));
+    }
+
+    private static void write(Path file, long position, ByteBuffer bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(bytes, position);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class InvertedIndexTest {
+
+    private static final double[] WEIGHTS = {1.0, 1.0};
+
+    private InvertedIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new InvertedIndex("title", "description");
+        index.index(1, "Quantum computing", "Error correction for quantum hardware");
+        index.index(2, "Machine learning", "Deep learning on graphs");
+        index.index(3, "Quantum machine learning", "Variational circuits");
+    }
+
+    @Test
+    void addUpdateAndRemove() {
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(ids(term("quantum"))).containsExactlyInAnyOrder(1L, 3L);
+
+        long before = index.getSequence();
+        index.index(1, "Classical computing", "Compilers");
+        assertThat(index.getSequence()).isGreaterThan(before);
+        assertThat(index.size()).isEqualTo(3);
+        // The old terms of a replaced entity no longer match it
+        assertThat(ids(term("quantum"))).containsExactly(3L);
+        assertThat(ids(term("compilers"))).containsExactly(1L);
+
+        index.remove(3);
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(ids(term("quantum"))).isEmpty();
+        assertThat(ids(term("learning"))).containsExactly(2L);
+
+        // Removing an unknown id is a no-op that still advances the sequence
+        before = index.getSequence();
+        index.remove(42);
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.getSequence()).isEqualTo(before + 1);
+    }
+
+    @Test
+    void prefixExpansionScoresBelowTheExactTerm() {
+        index.index(4, "Learn", "");
+        Map<Long, Double> scores = scores(term("learn"));
+
+        assertThat(scores.keySet()).containsExactlyInAnyOrder(2L, 3L, 4L);
+        assertThat(scores.get(4L)).isGreaterThan(scores.get(3L));
+        // Only completions: "arn" is inside "learn" but does not start it
+        assertThat(ids(term("arn"))).isEmpty();
+    }
+
+    @Test
+    void misspeltTokensFallBackToNearTerms() {
+        assertThat(ids(term("quantom"))).containsExactlyInAnyOrder(1L, 3L);
+        // A prefix match wins over a fuzzy one: "mach" never reaches for "much"
+        assertThat(ids(term("mach"))).containsExactlyInAnyOrder(2L, 3L);
+        // Three letters must match exactly
+        assertThat(ids(term("dep"))).isEmpty();
+    }
+
+    @Test
+    void phrasesNeedConsecutivePositionsInOneField() {
+        assertThat(ids(phrase(null, "machine", "learning"))).containsExactlyInAnyOrder(2L, 3L);
+        assertThat(ids(phrase(null, "learning", "machine"))).isEmpty();
+        assertThat(ids(phrase(null, "quantum", "learning"))).isEmpty();
+        assertThat(ids(phrase("description", "machine", "learning"))).isEmpty();
+        assertThat(ids(phrase("description", "deep", "learning"))).containsExactly(2L);
+        // "learning" ends the title of 2 and "deep" starts its description: the field gap keeps them apart
+        assertThat(ids(phrase(null, "learning", "deep"))).isEmpty();
+        // Phrase words are not expanded
+        assertThat(ids(phrase(null, "machine", "learn"))).isEmpty();
+    }
+
+    @Test
+    void fieldScopedTerms() {
+        assertThat(ids(new Query.Term("title", "quantum"))).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(ids(new Query.Term("description", "quantum"))).containsExactly(1L);
+        assertThat(ids(new Query.Term("abstract", "quantum"))).isEmpty();
+    }
+
+    @Test
+    void booleanQueries() {
+        Query both = new Query.Bool().must(term("quantum")).must(term("learning"));
+        assertThat(ids(both)).containsExactly(3L);
+
+        Query either = new Query.Bool().should(term("graphs")).should(term("hardware"));
+        assertThat(ids(either)).containsExactlyInAnyOrder(1L, 2L);
+
+        Query without = new Query.Bool().must(term("learning")).mustNot(term("quantum"));
+        assertThat(ids(without)).containsExactly(2L);
+
+        Query onlyExclusions = new Query.Bool().mustNot(term("quantum"));
+        assertThat(ids(onlyExclusions)).containsExactly(2L);
+
+        // Matching more optional clauses ranks higher
+        Map<Long, Double> scores = scores(Query.anyOf(List.of("quantum", "machine")));
+        assertThat(scores.get(3L)).isGreaterThan(scores.get(1L));
+        assertThat(scores.get(3L)).isGreaterThan(scores.get(2L));
+    }
+
+    @Test
+    void conjunctionLeapfrogsToCommonOrdinals() {
+        DocIterator conjunction = new DocIterator.Conjunction(List.of(
+                bitmap(1, 3, 5, 7, 9, 11), bitmap(3, 4, 7, 11, 12), bitmap(0, 3, 7, 8, 11)));
+
+        assertThat(drain(conjunction)).containsExactly(3, 7, 11);
+        assertThat(new DocIterator.Conjunction(List.of(bitmap(1, 2), bitmap(3, 4))).nextDoc())
+                .isEqualTo(DocIterator.NO_MORE_DOCS);
+
+        DocIterator advancing = new DocIterator.Conjunction(List.of(bitmap(1, 3, 5, 7, 9), bitmap(3, 5, 9)));
+        assertThat(advancing.advance(4)).isEqualTo(5);
+        assertThat(advancing.nextDoc()).isEqualTo(9);
+    }
+
+    @Test
+    void unionMergesOrdinalsOnce() {
+        DocIterator union = new DocIterator.Union(List.of(bitmap(1, 5, 9), bitmap(2, 5, 10), bitmap()), true);
+        assertThat(drain(union)).containsExactly(1, 2, 5, 9, 10);
+
+        DocIterator advancing = new DocIterator.Union(List.of(bitmap(1, 5, 9), bitmap(2, 6, 10)), true);
+        assertThat(advancing.nextDoc()).isEqualTo(1);
+        assertThat(advancing.advance(6)).isEqualTo(6);
+        assertThat(advancing.nextDoc()).isEqualTo(9);
+        assertThat(advancing.nextDoc()).isEqualTo(10);
+        assertThat(advancing.nextDoc()).isEqualTo(DocIterator.NO_MORE_DOCS);
+    }
+
+    @Test
+    void exclusionSkipsExcludedOrdinals() {
+        DocIterator exclusion = new DocIterator.Exclusion(bitmap(1, 2, 3, 4, 5, 6), bitmap(2, 3, 6, 8));
+        assertThat(drain(exclusion)).containsExactly(1, 4, 5);
+
+        DocIterator advancing = new DocIterator.Exclusion(bitmap(1, 2, 3, 4, 5, 6), bitmap(4, 5));
+        assertThat(advancing.advance(4)).isEqualTo(6);
+    }
+
+    @Test
+    void optionalClausesSumTheirScores() {
+        Query.Term quantum = term("quantum");
+        double alone = scores(quantum).get(3L);
+
+        Map<Long, Double> summed = scores(new Query.Bool().should(quantum).should(quantum));
+        assertThat(summed.get(3L)).isCloseTo(2 * alone, within(1e-9));
+    }
+
+    private static Query.Term term(String token) {
+        return new Query.Term(null, token);
+    }
+
+    private static Query.Phrase phrase(String field, String... tokens) {
+        return new Query.Phrase(field, List.of(tokens));
+    }
+
+    private Map<Long, Double> scores(Query query) {
+        return index.scoreAll(query, WEIGHTS).getScores();
+    }
+
+    private Set<Long> ids(Query query) {
+        return scores(query).keySet();
+    }
+
+    private static DocIterator bitmap(int... ordinals) {
+        return new DocIterator.Bitmap(RoaringBitmap.bitmapOf(ordinals));
+    }
+
+    private static List<Integer> drain(DocIterator iterator) {
+        List<Integer> docs = new ArrayList<>();
+        for (int doc = iterator.nextDoc(); doc != DocIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+            docs.add(doc);
+        }
+        return docs;
+    }
+}
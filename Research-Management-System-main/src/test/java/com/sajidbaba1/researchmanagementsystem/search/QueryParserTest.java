@@ -0,0 +1,96 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryParserTest {
+
+    private static final List<String> FIELDS = List.of("fileType", "department", "title");
+
+    @Test
+    void wordsAreRequiredByDefault() {
+        assertThat(parse("quantum computing")).isEqualTo("(+quantum +computing)");
+        assertThat(parse("ÜBER café")).isEqualTo("(+über +café)");
+    }
+
+    @Test
+    void orBindsLooserThanAnd() {
+        assertThat(parse("a OR b")).isEqualTo("(a b)");
+        assertThat(parse("a (b OR c) -d")).isEqualTo("(+a +(b c) -d)");
+        // Lowercase operators are plain words
+        assertThat(parse("a or b")).isEqualTo("(+a +or +b)");
+    }
+
+    @Test
+    void negation() {
+        assertThat(parse("NOT draft")).isEqualTo("(-draft)");
+        assertThat(parse("-draft")).isEqualTo("(-draft)");
+        assertThat(parse("-\"bad phrase\"")).isEqualTo("(-\"bad phrase\")");
+        assertThat(parse("a -(b OR c)")).isEqualTo("(+a -(b c))");
+        assertThat(parse("NOT NOT draft")).isEqualTo("draft");
+        assertThat(parse("- draft")).isEqualTo("draft");
+    }
+
+    @Test
+    void repairsUnbalancedInput() {
+        assertThat(parse("(a OR b")).isEqualTo("(a b)");
+        assertThat(parse("a ) b")).isEqualTo("(+a +b)");
+        assertThat(parse(") a")).isEqualTo("a");
+        assertThat(parse("\"machine learning")).isEqualTo("\"machine learning\"");
+        assertThat(parse("department:\"unclosed")).isEqualTo("department=unclosed");
+    }
+
+    @Test
+    void dropsDanglingOperators() {
+        assertThat(parse("a OR")).isEqualTo("a");
+        assertThat(parse("OR a")).isEqualTo("a");
+        assertThat(parse("a AND")).isEqualTo("a");
+        assertThat(parse("a OR OR b")).isEqualTo("(a b)");
+        assertThat(parse("x AND AND y")).isEqualTo("(+x +y)");
+    }
+
+    @Test
+    void fieldFilters() {
+        assertThat(parse("FileType:pdf")).isEqualTo("fileType=pdf");
+        assertThat(parse("title:\"deep learning\"")).isEqualTo("title=deep learning");
+        // Unknown fields are searched as words
+        assertThat(parse("foo:bar")).isEqualTo("(+foo +bar)");
+        assertThat(parse("\"single\"")).isEqualTo("single");
+    }
+
+    @Test
+    void nothingToSearchIsAnEmptyQuery() {
+        for (String text : Arrays.asList(null, "", "NOT", "()", "\"\"", "fileType:")) {
+            assertThat(parse(text)).as(String.valueOf(text)).isEqualTo("()");
+        }
+    }
+
+    private static String parse(String text) {
+        return render(QueryParser.parse(text, FIELDS));
+    }
+
+    private static String render(Query query) {
+        if (query instanceof Query.Term) {
+            Query.Term term = (Query.Term) query;
+            return (term.getField() == null ? "" : term.getField() + ":") + term.getToken();
+        }
+        if (query instanceof Query.Phrase) {
+            Query.Phrase phrase = (Query.Phrase) query;
+            return (phrase.getField() == null ? "" : phrase.getField() + ":")
+                    + "\"" + String.join(" ", phrase.getTokens()) + "\"";
+        }
+        if (query instanceof Query.FieldValue) {
+            Query.FieldValue value = (Query.FieldValue) query;
+            return value.getField() + "=" + String.join(" ", value.getTokens());
+        }
+        Query.Bool bool = (Query.Bool) query;
+        List<String> clauses = new ArrayList<>();
+        bool.getMust().forEach(clause -> clauses.add("+" + render(clause)));
+        bool.getShould().forEach(clause -> clauses.add(render(clause)));
+        bool.getMustNot().forEach(clause -> clauses.add("-" + render(clause)));
+        return "(" + String.join(" ", clauses) + ")";
+    }
+}
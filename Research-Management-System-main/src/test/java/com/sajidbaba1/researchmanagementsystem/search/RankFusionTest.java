@@ -0,0 +1,92 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RankFusionTest {
+
+    private static final int K = RankFusion.DEFAULT_K;
+
+    @Test
+    void scoresAreSummedReciprocalRanksWithKSixty() {
+        List<List<String>> rankings = List.of(
+                List.of("a", "b", "c"),
+                List.of("c", "a"),
+                List.of("d"));
+
+        Map<String, Double> scores = scores(RankFusion.fuse(rankings, K, 10));
+
+        assertThat(K).isEqualTo(60);
+        assertThat(scores.get("a")).isCloseTo(1.0 / 61 + 1.0 / 62, within(1e-15));
+        assertThat(scores.get("b")).isCloseTo(1.0 / 62, within(1e-15));
+        assertThat(scores.get("c")).isCloseTo(1.0 / 63 + 1.0 / 61, within(1e-15));
+        assertThat(scores.get("d")).isCloseTo(1.0 / 61, within(1e-15));
+        // a beats c by a hair, and b at rank 2 of one ranking loses to d at rank 1 of another
+        assertThat(scores.keySet()).containsExactly("a", "c", "d", "b");
+    }
+
+    @Test
+    void duplicatesWithinARankingCountOnceAtTheirFirstRank() {
+        List<List<String>> rankings = List.of(
+                List.of("a", "a", "b", "a", "c"),
+                List.of("b"));
+
+        Map<String, Double> scores = scores(RankFusion.fuse(rankings, K, 10));
+
+        // Repeats neither add to a nor push b and c further down
+        assertThat(scores.get("a")).isCloseTo(1.0 / 61, within(1e-15));
+        assertThat(scores.get("b")).isCloseTo(1.0 / 62 + 1.0 / 61, within(1e-15));
+        assertThat(scores.get("c")).isCloseTo(1.0 / 63, within(1e-15));
+        assertThat(scores.keySet()).containsExactly("b", "a", "c");
+    }
+
+    @Test
+    void maxSourcesKeepsTheBestPrefixOfTheFullFusion() {
+        Random random = new Random(7);
+        List<List<Integer>> rankings = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            List<Integer> ranking = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                ranking.add(random.nextInt(80));
+            }
+            rankings.add(ranking);
+        }
+        List<Integer> all = items(RankFusion.fuse(rankings, K, Integer.MAX_VALUE));
+
+        for (int limit : new int[] {1, 5, 12, 40}) {
+            assertThat(items(RankFusion.fuse(rankings, K, limit))).containsExactlyElementsOf(all.subList(0, limit));
+        }
+        assertThat(RankFusion.fuse(rankings, K, all.size() + 10)).hasSize(all.size());
+    }
+
+    @Test
+    void tiesKeepTheOrderOfFirstAppearance() {
+        List<List<String>> rankings = List.of(
+                List.of("x", "y"),
+                List.of("y", "x"),
+                List.of("z"),
+                List.of("w"));
+
+        List<RankFusion.Fused<String>> fused = RankFusion.fuse(rankings, K, 3);
+
+        assertThat(items(fused)).containsExactly("x", "y", "z");
+        assertThat(fused.get(0).getScore()).isEqualTo(fused.get(1).getScore());
+    }
+
+    private static <T> Map<T, Double> scores(List<RankFusion.Fused<T>> fused) {
+        Map<T, Double> scores = new LinkedHashMap<>();
+        for (RankFusion.Fused<T> f : fused) {
+            scores.put(f.getItem(), f.getScore());
+        }
+        return scores;
+    }
+
+    private static <T> List<T> items(List<RankFusion.Fused<T>> fused) {
+        return fused.stream().map(RankFusion.Fused::getItem).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,93 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchCursorTest {
+
+    @Test
+    void decodesWhatItEncodes() {
+        for (double score : new double[]{0, -0.0, 1.5, 1e-300, -42.25, Double.MAX_VALUE}) {
+            SearchCursor cursor = SearchCursor.decode(new SearchCursor(score, "team-member", 9_876_543_210L).encode());
+
+            assertThat(Double.doubleToLongBits(cursor.getScore())).isEqualTo(Double.doubleToLongBits(score));
+            assertThat(cursor.getType()).isEqualTo("team-member");
+            assertThat(cursor.getId()).isEqualTo(9_876_543_210L);
+        }
+    }
+
+    @Test
+    void tokensAreUrlSafe() {
+        String token = new SearchCursor(0.123456789, "document", Long.MAX_VALUE).encode();
+
+        assertThat(token).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        String twoParts = Base64.getUrlEncoder().encodeToString("document|3ff0000000000000".getBytes());
+        String badNumber = Base64.getUrlEncoder().encodeToString("document|zz|1".getBytes());
+
+        for (String token : List.of("not base64!", twoParts, badNumber)) {
+            assertThatThrownBy(() -> SearchCursor.decode(token))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("Invalid search cursor");
+        }
+    }
+
+    @Test
+    void boundForTheCursorsTypeIsTheCursorItself() {
+        ScoredDoc bound = new SearchCursor(2.0, "document", 7).boundFor("document");
+
+        assertThat(bound.getId()).isEqualTo(7);
+        assertThat(bound.getScore()).isEqualTo(2.0);
+    }
+
+    @Test
+    void boundForOtherTypesFollowsTheMergedOrder() {
+        SearchCursor cursor = new SearchCursor(2.0, "project", 7);
+        Map<Long, Double> scores = Map.of(1L, 2.0, 7L, 2.0, 9L, 2.0, 3L, 1.0);
+
+        // "document" sorts before "project", so its hits tied at 2.0 all came before the cursor
+        assertThat(ids(TopDocs.select(scores, 10, null, cursor.boundFor("document")))).containsExactly(3L);
+        // "team-member" sorts after it, so they all come after
+        assertThat(ids(TopDocs.select(scores, 10, null, cursor.boundFor("team-member"))))
+                .containsExactly(1L, 7L, 9L, 3L);
+        assertThat(ids(TopDocs.select(scores, 10, null, cursor.boundFor("project")))).containsExactly(9L, 3L);
+    }
+
+    @Test
+    void pagingWithBoundsVisitsEveryTiedHitOnce() {
+        Map<Long, Double> scores = new HashMap<>();
+        for (long id = 1; id <= 23; id++) {
+            scores.put(id, id % 3 == 0 ? 1.0 : 0.5);
+        }
+        List<Long> seen = new ArrayList<>();
+        ScoredDoc after = null;
+        boolean hasMore = true;
+        while (hasMore) {
+            // One hit past the page tells whether there is another
+            List<ScoredDoc> hits = TopDocs.select(scores, 6, null, after).getHits();
+            hasMore = hits.size() > 5;
+            List<ScoredDoc> page = hits.subList(0, Math.min(5, hits.size()));
+            page.forEach(hit -> seen.add(hit.getId()));
+            ScoredDoc last = page.get(page.size() - 1);
+            after = SearchCursor.decode(new SearchCursor(last.getScore(), "document", last.getId()).encode())
+                    .boundFor("document");
+        }
+
+        List<Long> expected = new ArrayList<>(scores.keySet());
+        expected.sort(Comparator.comparingDouble((Long id) -> -scores.get(id)).thenComparingLong(id -> id));
+        assertThat(seen).isEqualTo(expected);
+    }
+
+    private static List<Long> ids(TopDocs topDocs) {
+        List<Long> ids = new ArrayList<>();
+        topDocs.getHits().forEach(hit -> ids.add(hit.getId()));
+        return ids;
+    }
+}
@@ -0,0 +1,101 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SemanticCacheTest {
+
+    private static final long[] V1 = {1, 1, 1, 1};
+    private static final long[] V2 = {1, 2, 1, 1};
+    private static final long NO_TTL = 0;
+
+    private final HashingEmbedder embedder = new HashingEmbedder(384);
+
+    @Test
+    void newerVersionsDropEveryEntry() {
+        SemanticCache<String> cache = new SemanticCache<>(10, NO_TTL, SemanticCache.EXACT_ONLY);
+        cache.put("how many projects", "", V1, null, "answer");
+
+        assertThat(cache.get("how many projects", "", V1)).isEqualTo("answer");
+        assertThat(cache.get("how many projects", "", V2)).isNull();
+        assertThat(cache.getInvalidations()).isEqualTo(1);
+        // A late reader still holding the old versions neither sees nor stores anything
+        cache.put("how many projects", "", V1, null, "stale");
+        assertThat(cache.get("how many projects", "", V2)).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void scopesAreIsolated() {
+        SemanticCache<String> cache = new SemanticCache<>(10, NO_TTL, 0.5);
+        float[] embedding = embedder.embed("who leads the genome project");
+        cache.put("who leads the genome project", "7", V1, embedding, "project 7 answer");
+
+        assertThat(cache.get("who leads the genome project", "8", V1)).isNull();
+        assertThat(cache.get("who leads the genome project", "", V1)).isNull();
+        assertThat(cache.getSimilar(embedding, "8", V1)).isNull();
+        assertThat(cache.get("who leads the genome project", "7", V1)).isEqualTo("project 7 answer");
+        assertThat(cache.getSimilar(embedding, "7", V1)).isEqualTo("project 7 answer");
+    }
+
+    @Test
+    void entriesExpireAfterTheTtl() throws InterruptedException {
+        SemanticCache<String> cache = new SemanticCache<>(10, TimeUnit.MILLISECONDS.toNanos(20), 0.5);
+        float[] embedding = embedder.embed("list active projects");
+        cache.put("list active projects", "", V1, embedding, "answer");
+        assertThat(cache.get("list active projects", "", V1)).isEqualTo("answer");
+
+        Thread.sleep(50);
+
+        assertThat(cache.getSimilar(embedding, "", V1)).isNull();
+        assertThat(cache.get("list active projects", "", V1)).isNull();
+        assertThat(cache.getExpirations()).isEqualTo(1);
+    }
+
+    @Test
+    void leastRecentlyUsedIsEvicted() {
+        SemanticCache<String> cache = new SemanticCache<>(2, NO_TTL, SemanticCache.EXACT_ONLY);
+        cache.put("a", "", V1, null, "A");
+        cache.put("b", "", V1, null, "B");
+        cache.get("a", "", V1);
+        cache.put("c", "", V1, null, "C");
+
+        assertThat(cache.get("b", "", V1)).isNull();
+        assertThat(cache.get("a", "", V1)).isEqualTo("A");
+        assertThat(cache.getEvictions()).isEqualTo(1);
+    }
+
+    @Test
+    void questionsDifferingInTheirKeyTermAreNotShared() {
+        String biology = "how many projects does the biology department run";
+        String chemistry = "how many projects does the chemistry department run";
+        float[] biologyVector = embedder.embed(biology);
+        float[] chemistryVector = embedder.embed(chemistry);
+        // Hashing vectors score the two as near-duplicates
+        assertThat(HnswIndex.similarity(biologyVector, chemistryVector)).isGreaterThan(0.8);
+
+        SemanticCache<String> exactOnly = new SemanticCache<>(10, NO_TTL, SemanticCache.EXACT_ONLY);
+        exactOnly.put(biology, "", V1, biologyVector, "biology answer");
+        assertThat(exactOnly.getSimilar(chemistryVector, "", V1)).isNull();
+        assertThat(exactOnly.getSimilar(biologyVector, "", V1)).isNull();
+        assertThat(exactOnly.get(biology, "", V1)).isEqualTo("biology answer");
+
+        SemanticCache<String> strict = new SemanticCache<>(10, NO_TTL, 0.99);
+        strict.put(biology, "", V1, biologyVector, "biology answer");
+        assertThat(strict.getSimilar(chemistryVector, "", V1)).isNull();
+        assertThat(strict.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void similarQuestionGetsTheClosestAnswer() {
+        SemanticCache<String> cache = new SemanticCache<>(10, NO_TTL, 0.5);
+        cache.put("deep learning papers", "", V1, embedder.embed("deep learning papers"), "learning");
+        cache.put("budget of projects", "", V1, embedder.embed("budget of projects"), "budget");
+
+        assertThat(cache.getSimilar(embedder.embed("papers on deep learning"), "", V1)).isEqualTo("learning");
+        assertThat(cache.getSimilarHits()).isEqualTo(1);
+    }
+}
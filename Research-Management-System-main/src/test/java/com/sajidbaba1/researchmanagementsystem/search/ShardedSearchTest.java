@@ -0,0 +1,102 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A global query over a sharded index is split across fork-join tasks once
+ * the index holds {@code 2 * PARALLEL_GRAIN} entities; it must rank exactly
+ * as the same entities do in an index without shards.
+ */
+class ShardedSearchTest {
+
+    private static final int ENTITIES = 2 * InvertedIndex.PARALLEL_GRAIN + 3000;
+    private static final String[] WORDS = {
+            "quantum", "learning", "machine", "graph", "neural", "protein", "folding", "climate",
+            "model", "sensor", "network", "energy", "battery", "genome", "robot", "vision"};
+    private static final double[] WEIGHTS = {2.0, 1.0};
+    private static final List<Query> QUERIES = List.of(
+            new Query.Term(null, "quantum"),
+            new Query.Term("title", "neural"),
+            new Query.Term(null, "prot"),
+            new Query.Term(null, "battary"),
+            new Query.Phrase(null, List.of("machine", "learning")),
+            Query.anyOf(List.of("graph", "genome", "robot")),
+            new Query.Bool().must(new Query.Term(null, "energy")).mustNot(new Query.Term(null, "battery")),
+            new Query.Bool().mustNot(new Query.Term(null, "model")));
+
+    private static InvertedIndex sharded;
+    private static InvertedIndex unsharded;
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void build() {
+        sharded = new InvertedIndex("title", "description");
+        sharded.setShardFacet("projectId");
+        unsharded = new InvertedIndex("title", "description");
+        Random random = new Random(11);
+        for (long id = 1; id <= ENTITIES; id++) {
+            String title = words(random, 2 + random.nextInt(4));
+            String description = words(random, 5 + random.nextInt(20));
+            // Eight projects of very different sizes, and some entities outside every project
+            int project = Math.min(random.nextInt(12), 8);
+            Map<String, String> facets = project == 8 ? Map.of() : Map.of("projectId", String.valueOf(project * project));
+            sharded.index(id, facets, title, description);
+            unsharded.index(id, facets, title, description);
+        }
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void shutdown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void globalQueryRanksAsAnUnshardedIndex() throws Exception {
+        for (Query query : QUERIES) {
+            Matches expected = unsharded.scoreAll(query, WEIGHTS);
+            // Run from a worker of a four-thread pool, so the query is split whatever this machine has
+            Matches split = pool.submit(() -> sharded.scoreAll(query, WEIGHTS)).get();
+            Matches sequential = sharded.scoreAll(query, WEIGHTS);
+
+            assertThat(expected.getScores()).isNotEmpty();
+            assertThat(split.getScores()).isEqualTo(expected.getScores());
+            assertThat(sequential.getScores()).isEqualTo(expected.getScores());
+            assertThat(split.getOrdinals()).isEqualTo(expected.getOrdinals());
+            assertThat(ids(TopDocs.select(split.getScores(), 50, null)))
+                    .containsExactlyElementsOf(ids(TopDocs.select(expected.getScores(), 50, null)));
+        }
+    }
+
+    @Test
+    void shardScopedQueryScoresWithGlobalStatistics() throws Exception {
+        Query query = Query.anyOf(List.of("quantum", "learning"));
+        Map<Long, Double> global = unsharded.scoreAll(query, WEIGHTS).getScores();
+        Map<Long, Double> shard = pool.submit(() -> sharded.scoreAll(query, WEIGHTS, "9")).get().getScores();
+
+        assertThat(shard).isNotEmpty();
+        assertThat(shard.size()).isLessThan(global.size());
+        shard.forEach((id, score) -> assertThat(global).containsEntry(id, score));
+        assertThat(sharded.scoreAll(query, WEIGHTS, "unknown").isEmpty()).isTrue();
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return text.toString();
+    }
+
+    private static List<Long> ids(TopDocs top) {
+        return top.getHits().stream().map(ScoredDoc::getId).collect(Collectors.toList());
+    }
+}
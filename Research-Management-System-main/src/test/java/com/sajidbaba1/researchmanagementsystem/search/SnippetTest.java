@@ -0,0 +1,131 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnippetTest {
+
+    private static final String[] FIELDS = {"title", "content"};
+    private static final long BUDGET = 1_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void highlightsCoverMultiByteTermsBeforeAndAfterASegmentRoundTrip() throws IOException {
+        String content = "Die Größe des Straßennetzes: 日本語 テキスト 😀 über résumé, naïve café.";
+        InvertedIndex index = new InvertedIndex(FIELDS);
+        index.index(1, "Title", content);
+
+        Query query = Query.anyOf(List.of("größe", "日本語", "résumé", "cafe"));
+        assertHighlights(index.snippet(1, query, new String[] {"content"}, 200, BUDGET),
+                "Größe", "日本語", "résumé", "café");
+
+        Path segment = dir.resolve("segment-1.seg");
+        index.writeSegment(segment);
+        InvertedIndex loaded = new InvertedIndex(FIELDS);
+        loaded.loadSegment(segment);
+        Snippet mapped = loaded.snippet(1, query, new String[] {"content"}, 200, BUDGET);
+        assertHighlights(mapped, "Größe", "日本語", "résumé", "café");
+        assertThat(mapped.getText()).isEqualTo(content);
+        assertThat(mapped.toHtml()).contains("<mark>日本語</mark>", "<mark>Größe</mark>");
+    }
+
+    @Test
+    void storedFieldsRoundTripMultiByteText() throws IOException {
+        TermCounter title = TermCounter.of("Ünïcödé 😀 title");
+        TermCounter content = TermCounter.of("日本語 テキスト");
+        StoredFields stored = StoredFields.of(new TermCounter[] {title, content}, 2);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int written = stored.writeTo(new DataOutputStream(bytes));
+        assertThat(written).isEqualTo(bytes.size());
+
+        StoredFields mapped = StoredFields.mapped(2, ByteBuffer.wrap(bytes.toByteArray()), 0);
+        assertThat(mapped.text(0)).isEqualTo("Ünïcödé 😀 title");
+        assertThat(mapped.tokenStarts(0)).containsExactly(0, 11);
+        assertThat(mapped.text(1)).isEqualTo("日本語 テキスト");
+        assertThat(mapped.tokenStarts(1)).containsExactly(0, 4);
+        assertThat(mapped.text(5)).isEmpty();
+    }
+
+    @Test
+    void windowEdgesFallOnWordBoundaries() {
+        List<String> words = IntStream.range(0, 400).mapToObj(i -> "w" + i + "x").collect(Collectors.toList());
+        words.set(200, "quantum");
+        words.set(203, "sensing");
+        String content = String.join("  ", words);
+        InvertedIndex index = new InvertedIndex(FIELDS);
+        index.index(1, "", content);
+
+        for (int maxChars : new int[] {20, 37, 60, 101}) {
+            Snippet snippet = index.snippet(1, Query.anyOf(List.of("quantum", "sensing")),
+                    new String[] {"content"}, maxChars, BUDGET);
+            String text = snippet.getText();
+            assertThat(text).startsWith("…").endsWith("…");
+            String inner = text.substring(1, text.length() - 1);
+            // Whole words only, with the whitespace between them collapsed
+            assertThat(new HashSet<>(words)).containsAll(Arrays.asList(inner.split(" ")));
+            assertThat(inner).doesNotStartWith(" ").doesNotEndWith(" ").doesNotContain("  ");
+            assertThat(inner.length()).isLessThanOrEqualTo(maxChars);
+            assertHighlights(snippet, maxChars < 37 ? new String[] {"quantum"} : new String[] {"quantum", "sensing"});
+        }
+    }
+
+    @Test
+    void windowNeverSplitsASurrogatePair() {
+        String emoji = "😀";
+        String content = emoji.repeat(60) + " quantum " + emoji.repeat(60);
+        InvertedIndex index = new InvertedIndex(FIELDS);
+        index.index(1, "", content);
+
+        for (int maxChars = 10; maxChars < 60; maxChars++) {
+            Snippet snippet = index.snippet(1, new Query.Term(null, "quantum"), new String[] {"content"}, maxChars,
+                    BUDGET);
+            String text = snippet.getText();
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (Character.isHighSurrogate(c)) {
+                    assertThat(i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1)))
+                            .as("pair at %d of %s", i, text).isTrue();
+                    i++;
+                } else {
+                    assertThat(Character.isLowSurrogate(c)).as("lone low surrogate at %d of %s", i, text).isFalse();
+                }
+            }
+            assertHighlights(snippet, "quantum");
+        }
+    }
+
+    @Test
+    void densestWindowWins() {
+        String content = "quantum alone here. " + "filler ".repeat(30) + "quantum sensing networks together.";
+        InvertedIndex index = new InvertedIndex(FIELDS);
+        index.index(1, "Quantum", content);
+
+        Snippet snippet = index.snippet(1, Query.anyOf(List.of("quantum", "sensing", "networks")),
+                new String[] {"title", "content"}, 40, BUDGET);
+        assertHighlights(snippet, "quantum", "sensing", "networks");
+        assertThat(index.snippet(1, new Query.Term(null, "absent"), FIELDS, 40, BUDGET)).isNull();
+        assertThat(index.snippet(2, new Query.Term(null, "quantum"), FIELDS, 40, BUDGET)).isNull();
+    }
+
+    private static void assertHighlights(Snippet snippet, String... expected) {
+        assertThat(snippet).isNotNull();
+        List<String> highlighted = snippet.getHighlights().stream()
+                .map(range -> snippet.getText().substring(range[0], range[1]))
+                .collect(Collectors.toList());
+        assertThat(highlighted).containsExactly(expected);
+    }
+}
@@ -0,0 +1,127 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SuggestionTrieTest {
+
+    private static final int MAX = SuggestionTrie.MAX_QUERY_SUGGESTIONS;
+
+    @TempDir
+    Path dir;
+
+    private SuggestionTrie trie;
+
+    @BeforeEach
+    void setUp() {
+        trie = new SuggestionTrie();
+    }
+
+    @Test
+    void heaviestCompletionsFirstFromAnyWord() {
+        trie.put("project:1", "Quantum Sensing", 3);
+        trie.put("project:2", "Quantum  networks", 2);
+        trie.put("team-member:1", "John Smith", 1);
+        trie.put("document:1", "quarterly report", 1);
+
+        assertThat(trie.suggest("qua", 10)).containsExactly("Quantum Sensing", "Quantum  networks", "quarterly report");
+        assertThat(trie.suggest("QUANTUM N", 10)).containsExactly("Quantum  networks");
+        assertThat(trie.suggest("smi", 10)).containsExactly("John Smith");
+        assertThat(trie.suggest("qua", 1)).containsExactly("Quantum Sensing");
+        assertThat(trie.suggest("x", 10)).isEmpty();
+
+        // Searching for a suggestion makes it heavier
+        for (int i = 0; i < 5; i++) {
+            trie.recordQuery("quarterly report");
+        }
+        assertThat(trie.suggest("qua", 1)).containsExactly("quarterly report");
+
+        trie.remove("project:1");
+        assertThat(trie.suggest("quantum", 10)).containsExactly("Quantum  networks");
+    }
+
+    @Test
+    void prefixLongerThanTheKeysStillMatches() {
+        String title = ("A very long project title about " + "quantum error correction ".repeat(4)).trim();
+        String firstWords = title.substring(0, SuggestionTrie.MAX_KEY_LENGTH);
+        String sameStart = firstWords + "but a different ending";
+        trie.put("project:1", title, 1);
+        trie.put("project:2", sameStart, 1);
+
+        String longPrefix = title.substring(0, SuggestionTrie.MAX_KEY_LENGTH + 20);
+        assertThat(trie.suggest(longPrefix, 10)).containsExactly(title);
+        assertThat(trie.suggest(title, 10)).containsExactly(title);
+        assertThat(trie.suggest(sameStart, 10)).containsExactly(sameStart);
+        assertThat(trie.suggest(firstWords, 10)).containsExactlyInAnyOrder(title, sameStart);
+        assertThat(trie.suggest(longPrefix + "x", 10)).isEmpty();
+
+        // From a later word, too
+        String fromLaterWord = title.substring(title.indexOf("about"), title.indexOf("about") + 80);
+        assertThat(trie.suggest(fromLaterWord, 10)).containsExactly(title);
+    }
+
+    @Test
+    void leastSearchedQueryMakesRoom() {
+        for (int i = 0; i < MAX; i++) {
+            trie.recordQuery("query " + i);
+        }
+        trie.recordQuery("query 0");
+        trie.recordQuery("query 0");
+        trie.put("document:1", "contributed title", 1);
+        assertThat(trie.size()).isEqualTo(MAX + 1);
+
+        trie.recordQuery("fresh query");
+
+        assertThat(trie.size()).isEqualTo(MAX + 1);
+        assertThat(trie.suggest("fresh", 10)).containsExactly("fresh query");
+        // The oldest of the queries searched once went; the one searched three times stayed
+        assertThat(trie.suggest("query 1", MAX)).doesNotContain("query 1").contains("query 10");
+        assertThat(trie.suggest("query 0", 1)).containsExactly("query 0");
+        assertThat(trie.suggest("query 2", MAX)).contains("query 2");
+        assertThat(trie.suggest("contributed", 10)).containsExactly("contributed title");
+    }
+
+    @Test
+    void contributedSuggestionsAreNeverEvicted() {
+        trie.put("document:1", "contributed title", 1);
+        trie.recordQuery("contributed title");
+        for (int i = 0; i < MAX + 10; i++) {
+            trie.recordQuery("query " + i);
+        }
+
+        assertThat(trie.suggest("contributed", 10)).containsExactly("contributed title");
+        assertThat(trie.size()).isEqualTo(MAX + 1);
+
+        // Once its last source goes, the searched-for text competes like any query
+        trie.remove("document:1");
+        assertThat(trie.size()).isEqualTo(MAX);
+        assertThat(trie.suggest("contributed", 10)).isEmpty();
+    }
+
+    @Test
+    void savedTrieKeepsSearchCountsAndTheLimit() throws IOException {
+        trie.put("project:1", "Quantum Sensing", 1);
+        for (int i = 0; i < MAX; i++) {
+            trie.recordQuery("query " + i);
+        }
+        trie.recordQuery("query 0");
+        Path file = dir.resolve("suggestions.bin");
+        trie.writeTo(file);
+
+        SuggestionTrie restored = new SuggestionTrie();
+        restored.readFrom(file);
+        assertThat(restored.size()).isEqualTo(MAX + 1);
+        assertThat(restored.suggest("qu", 1)).containsExactly("query 0");
+
+        restored.recordQuery("fresh query");
+        assertThat(restored.size()).isEqualTo(MAX + 1);
+        assertThat(restored.suggest("query 0", 1)).containsExactly("query 0");
+        assertThat(restored.suggest("quantum", 1)).containsExactly("Quantum Sensing");
+    }
+}
@@ -0,0 +1,82 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TermCounterTest {
+
+    private static final String LONGEST = "a".repeat(Tokenizer.MAX_TERM_LENGTH);
+    private static final String OVERLONG = "b".repeat(Tokenizer.MAX_TERM_LENGTH + 1);
+
+    @Test
+    void overlongRunsAreSkippedOnBothSides() {
+        String text = "hash " + OVERLONG + " kept " + LONGEST + " " + OVERLONG.toUpperCase() + "x end";
+
+        assertThat(Tokenizer.tokenize(text)).containsExactly("hash", "kept", LONGEST, "end");
+        TermCounter counter = TermCounter.of(text);
+        assertThat(counter.terms()).containsExactlyInAnyOrder("hash", "kept", LONGEST, "end");
+        // A skipped run takes no position
+        assertThat(counter.positions("end")).containsExactly(3);
+        assertThat(counter.getLength()).isEqualTo(4);
+    }
+
+    @Test
+    void agreesWithTheTokenizerWhateverTheWriteBoundaries() {
+        Random random = new Random(3);
+        String alphabet = "abcXYZ019éß -.,\n\t";
+        for (int round = 0; round < 200; round++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = random.nextInt(400); i > 0; i--) {
+                // Occasionally a long run, on either side of the limit
+                if (random.nextInt(40) == 0) {
+                    text.append(' ').append("q".repeat(Tokenizer.MAX_TERM_LENGTH - 1 + random.nextInt(3)));
+                } else {
+                    text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+            }
+            List<String> tokens = Tokenizer.tokenize(text.toString());
+
+            TermCounter counter = new TermCounter(Integer.MAX_VALUE);
+            char[] chars = text.toString().toCharArray();
+            for (int offset = 0; offset < chars.length; ) {
+                int count = Math.min(chars.length - offset, 1 + random.nextInt(10));
+                counter.write(chars, offset, count);
+                offset += count;
+            }
+            counter.close();
+
+            assertThat(counter.getLength()).isEqualTo(tokens.size());
+            for (int position = 0; position < tokens.size(); position++) {
+                assertThat(counter.positions(tokens.get(position))).contains(position);
+            }
+            assertThat(counter.terms()).isEqualTo(new HashSet<>(tokens));
+        }
+    }
+
+    @Test
+    void stopsCountingAtMaxTerms() {
+        TermCounter counter = new TermCounter(3);
+        String text = "one two three four five";
+        counter.write(text.toCharArray(), 0, text.length());
+        counter.close();
+
+        assertThat(counter.isFull()).isTrue();
+        assertThat(counter.terms()).containsExactlyInAnyOrder("one", "two", "three");
+    }
+
+    @Test
+    void storesTheLeadingTextWithTokenOffsets() {
+        TermCounter counter = new TermCounter(Integer.MAX_VALUE, 12);
+        String text = "Über alles, quantum data";
+        counter.write(text.toCharArray(), 0, text.length());
+        counter.close();
+
+        assertThat(counter.getStoredText()).isEqualTo("Über alles, ");
+        // "quantum" starts past the stored text, so only the first two tokens have offsets
+        assertThat(counter.getTokenStarts()).containsExactly(0, 5);
+        assertThat(counter.getLength()).isEqualTo(4);
+    }
+}
@@ -0,0 +1,146 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class TrigramIndexTest {
+
+    @Test
+    void maxEditsGrowsWithTokenLength() {
+        assertThat(InvertedIndex.maxEdits("")).isZero();
+        assertThat(InvertedIndex.maxEdits("dep")).isZero();
+        assertThat(InvertedIndex.maxEdits("lern")).isEqualTo(1);
+        assertThat(InvertedIndex.maxEdits("quantom")).isEqualTo(1);
+        assertThat(InvertedIndex.maxEdits("hadrwaer")).isEqualTo(2);
+        assertThat(InvertedIndex.maxEdits("varaitionl")).isEqualTo(2);
+    }
+
+    @Test
+    void countsEachKindOfEditOnce() {
+        assertThat(TrigramIndex.distance("quantum", "quantum", 2)).isZero();
+        assertThat(TrigramIndex.distance("quantom", "quantum", 2)).isEqualTo(1);
+        assertThat(TrigramIndex.distance("quantm", "quantum", 2)).isEqualTo(1);
+        assertThat(TrigramIndex.distance("quanttum", "quantum", 2)).isEqualTo(1);
+        assertThat(TrigramIndex.distance("qunatum", "quantum", 2)).isEqualTo(1);
+        assertThat(TrigramIndex.distance("hadrwaer", "hardware", 2)).isEqualTo(2);
+        // Gives up past the bound
+        assertThat(TrigramIndex.distance("abcdef", "uvwxyz", 2)).isEqualTo(3);
+    }
+
+    @Test
+    void findsTermsWithinTheEditBound() {
+        TrigramIndex index = new TrigramIndex();
+        List.of("quantum", "quartz", "hardware", "variational", "learn").forEach(index::add);
+
+        assertThat(index.near("quantom", 1)).containsExactly(Map.entry("quantum", 1));
+        assertThat(index.near("quamtom", 1)).isEmpty();
+        assertThat(index.near("quamtom", 2)).containsExactly(Map.entry("quantum", 2));
+        assertThat(index.near("hadrwaer", 2)).containsExactly(Map.entry("hardware", 2));
+        assertThat(index.near("quantom", 0)).isEmpty();
+
+        index.remove("quantum");
+        assertThat(index.near("quantom", 1)).isEmpty();
+        index.clear();
+        assertThat(index.near("lern", 1)).isEmpty();
+    }
+
+    @Test
+    void trigramFilterMissesNothingAnExactScanFinds() {
+        Random random = new Random(7);
+        List<String> vocabulary = new ArrayList<>();
+        TrigramIndex index = new TrigramIndex();
+        for (int i = 0; i < 2000; i++) {
+            String term = randomWord(random, 3 + random.nextInt(10));
+            vocabulary.add(term);
+            index.add(term);
+        }
+        for (int i = 0; i < 300; i++) {
+            // Misspell a known term, so that close candidates exist
+            String token = misspell(vocabulary.get(random.nextInt(vocabulary.size())), random);
+            int maxEdits = InvertedIndex.maxEdits(token);
+            Map<String, Integer> expected = new HashMap<>();
+            for (String term : vocabulary) {
+                int distance = TrigramIndex.distance(token, term, Integer.MAX_VALUE - 1);
+                if (distance <= maxEdits && maxEdits > 0) {
+                    expected.put(term, distance);
+                }
+            }
+            assertThat(index.near(token, maxEdits)).as(token).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void searchAppliesTheThresholdForEachTokenLength() {
+        InvertedIndex index = new InvertedIndex("title");
+        index.index(1, "deep learn");
+        index.index(2, "quantum hardware");
+        index.index(3, "variational circuits");
+
+        // Under four characters: exact or prefix only
+        assertThat(ids(index, "dep")).isEmpty();
+        assertThat(ids(index, "dee")).containsExactly(1L);
+        // Four to seven: one edit
+        assertThat(ids(index, "lern")).containsExactly(1L);
+        assertThat(ids(index, "quantom")).containsExactly(2L);
+        assertThat(ids(index, "quamtom")).isEmpty();
+        // Eight and more: two edits, not three
+        assertThat(ids(index, "hadrwaer")).containsExactly(2L);
+        assertThat(ids(index, "varaitionl")).containsExactly(3L);
+        assertThat(ids(index, "hadrwaez")).isEmpty();
+
+        // A near miss scores the fuzzy share of an exact match, halved per extra edit
+        double exact = score(index, "learn", 1);
+        assertThat(score(index, "lern", 1)).isCloseTo(exact * InvertedIndex.FUZZY_BOOST, within(1e-12));
+        double hardware = score(index, "hardware", 2);
+        assertThat(score(index, "hadrwaer", 2)).isCloseTo(hardware * InvertedIndex.FUZZY_BOOST / 2, within(1e-12));
+    }
+
+    private static Set<Long> ids(InvertedIndex index, String token) {
+        return index.scoreAll(new Query.Term(null, token), new double[] {1.0}).getScores().keySet();
+    }
+
+    private static double score(InvertedIndex index, String token, long id) {
+        return index.scoreAll(new Query.Term(null, token), new double[] {1.0}).getScores().get(id);
+    }
+
+    private static String randomWord(Random random, int length) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            // A small alphabet, so that terms share many trigrams
+            word.append((char) ('a' + random.nextInt(6)));
+        }
+        return word.toString();
+    }
+
+    private static String misspell(String term, Random random) {
+        StringBuilder word = new StringBuilder(term);
+        for (int edit = random.nextInt(3); edit >= 0; edit--) {
+            int at = random.nextInt(word.length());
+            switch (random.nextInt(4)) {
+                case 0:
+                    word.setCharAt(at, (char) ('a' + random.nextInt(6)));
+                    break;
+                case 1:
+                    word.insert(at, (char) ('a' + random.nextInt(6)));
+                    break;
+                case 2:
+                    if (word.length() > 1) {
+                        word.deleteCharAt(at);
+                    }
+                    break;
+                default:
+                    if (at + 1 < word.length()) {
+                        char c = word.charAt(at);
+                        word.setCharAt(at, word.charAt(at + 1));
+                        word.setCharAt(at + 1, c);
+                    }
+                    break;
+            }
+        }
+        return word.toString();
+    }
+}
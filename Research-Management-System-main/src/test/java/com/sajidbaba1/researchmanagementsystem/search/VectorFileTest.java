@@ -0,0 +1,122 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VectorFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackAppendedVectorsBySlot() throws IOException {
+        try (VectorFile file = VectorFile.create(directory, "v", 3)) {
+            assertThat(file.append(new float[]{1, 2, 3})).isEqualTo(0);
+            assertThat(file.append(new float[]{-4, 5.5f, 0})).isEqualTo(1);
+
+            assertThat(file.read(1)).containsExactly(-4, 5.5f, 0);
+            assertThat(file.read(0)).containsExactly(1, 2, 3);
+            assertThat(file.size()).isEqualTo(2);
+            assertThat(file.sizeInBytes()).isEqualTo(24);
+        }
+    }
+
+    @Test
+    void reopenedGenerationKeepsItsVectors() throws IOException {
+        try (VectorFile file = VectorFile.create(directory, "v", 2)) {
+            file.append(new float[]{1, 2});
+            file.append(new float[]{3, 4});
+            file.force();
+        }
+        try (VectorFile file = VectorFile.open(directory, "v", 1, 2)) {
+            assertThat(file.size()).isEqualTo(2);
+            assertThat(file.read(1)).containsExactly(3, 4);
+        }
+        assertThatThrownBy(() -> VectorFile.open(directory, "v", 5, 2)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void truncateDropsVectorsPastTheSnapshot() throws IOException {
+        try (VectorFile file = VectorFile.create(directory, "v", 1)) {
+            for (int i = 0; i < 5; i++) {
+                file.append(new float[]{i});
+            }
+            file.truncate(3);
+
+            assertThat(file.size()).isEqualTo(3);
+            assertThat(file.append(new float[]{9})).isEqualTo(3);
+            assertThat(file.read(3)).containsExactly(9);
+            assertThatThrownBy(() -> file.truncate(10)).isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    void rewriteMovesTheChosenSlotsToTheNextGeneration() throws IOException {
+        try (VectorFile file = VectorFile.create(directory, "v", 1)) {
+            for (int i = 0; i < 6; i++) {
+                file.append(new float[]{i});
+            }
+            VectorFile.Rewrite rewrite = file.startRewrite(new int[]{4, 1});
+            // Appended while the rewrite was going, and carried over when it finishes
+            int late = file.append(new float[]{42});
+            assertThat(file.getGeneration()).isEqualTo(1);
+
+            file.finishRewrite(rewrite, new int[]{late});
+
+            assertThat(file.getGeneration()).isEqualTo(2);
+            assertThat(file.size()).isEqualTo(3);
+            assertThat(file.read(0)).containsExactly(4);
+            assertThat(file.read(1)).containsExactly(1);
+            assertThat(file.read(2)).containsExactly(42);
+            // The previous generation stays until a snapshot of the new one is saved
+            assertThat(Files.exists(directory.resolve("v-1.f32"))).isTrue();
+            file.deleteObsolete();
+            assertThat(Files.exists(directory.resolve("v-1.f32"))).isFalse();
+            assertThat(Files.exists(directory.resolve("v-2.f32"))).isTrue();
+        }
+    }
+
+    @Test
+    void discardedRewriteLeavesTheFileAsItWas() throws IOException {
+        try (VectorFile file = VectorFile.create(directory, "v", 1)) {
+            file.append(new float[]{1});
+            file.startRewrite(new int[]{0}).discard();
+
+            assertThat(file.getGeneration()).isEqualTo(1);
+            assertThat(file.read(0)).containsExactly(1);
+            assertThat(Files.exists(directory.resolve("v-2.f32"))).isFalse();
+        }
+    }
+
+    @Test
+    void openingAGenerationDeletesTheOthers() throws IOException {
+        try (VectorFile file = VectorFile.create(directory, "v", 1)) {
+            file.append(new float[]{1});
+            file.finishRewrite(file.startRewrite(new int[]{0}), new int[0]);
+        }
+        VectorFile.open(directory, "v", 2, 1).close();
+
+        assertThat(Files.exists(directory.resolve("v-1.f32"))).isFalse();
+        assertThat(Files.exists(directory.resolve("v-2.f32"))).isTrue();
+    }
+
+    @Test
+    void deleteOthersKeepsOnlyTheListedBaseNames() throws IOException {
+        VectorFile.create(directory, "project-1", 1).close();
+        VectorFile.create(directory, "project-2", 1).close();
+
+        VectorFile.deleteOthers(directory, Set.of("project-2"));
+
+        try (var files = Files.list(directory)) {
+            assertThat(files.map(path -> path.getFileName().toString())).containsExactly("project-2-1.f32");
+        }
+    }
+}
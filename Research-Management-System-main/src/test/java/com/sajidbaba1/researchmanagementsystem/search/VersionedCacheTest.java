@@ -0,0 +1,60 @@
+package com.sajidbaba1.researchmanagementsystem.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VersionedCacheTest {
+
+    @Test
+    void servesOnlyTheVersionsAValueWasComputedFrom() {
+        VersionedCache<String, String> cache = new VersionedCache<>(10);
+        long[] versions = {3, 7};
+        cache.put("quantum", versions, "response");
+        // The cache keeps its own copy of the versions
+        versions[0] = 4;
+
+        assertThat(cache.get("quantum", new long[] {3, 7})).isEqualTo("response");
+        assertThat(cache.getHits()).isEqualTo(1);
+
+        // One covered entity type changed: a miss that also drops the entry
+        assertThat(cache.get("quantum", new long[] {3, 8})).isNull();
+        assertThat(cache.getInvalidations()).isEqualTo(1);
+        assertThat(cache.size()).isZero();
+        assertThat(cache.get("quantum", new long[] {3, 7})).isNull();
+        assertThat(cache.getMisses()).isEqualTo(2);
+        assertThat(cache.getInvalidations()).isEqualTo(1);
+
+        cache.put("quantum", new long[] {3, 8}, "recomputed");
+        assertThat(cache.get("quantum", new long[] {3, 8})).isEqualTo("recomputed");
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsed() {
+        VersionedCache<String, String> cache = new VersionedCache<>(2);
+        long[] versions = {1};
+        cache.put("a", versions, "A");
+        cache.put("b", versions, "B");
+        cache.get("a", versions);
+        cache.put("c", versions, "C");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getEvictions()).isEqualTo(1);
+        assertThat(cache.get("b", versions)).isNull();
+        assertThat(cache.get("a", versions)).isEqualTo("A");
+        assertThat(cache.get("c", versions)).isEqualTo("C");
+
+        cache.clear();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void zeroEntriesDisablesCaching() {
+        VersionedCache<String, String> cache = new VersionedCache<>(0);
+        cache.put("a", new long[] {1}, "A");
+
+        assertThat(cache.get("a", new long[] {1})).isNull();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getEvictions()).isZero();
+    }
+}
@@ -0,0 +1,196 @@
+package com.sajidbaba1.researchmanagementsystem.service;
+
+import com.sajidbaba1.researchmanagementsystem.controller.RAGController;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AnswerStreamingServiceTest {
+
+    private static final Pattern EVENT = Pattern.compile("event:(\\w+)\n");
+
+    private final RAGService ragService = mock(RAGService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private AnswerStreamingService streamingService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        streamingService = new AnswerStreamingService();
+        ReflectionTestUtils.setField(streamingService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(streamingService, "threads", 1);
+        ReflectionTestUtils.setField(streamingService, "queueCapacity", 1);
+        ReflectionTestUtils.setField(streamingService, "timeoutMs", 60_000L);
+        streamingService.init();
+
+        RAGController controller = new RAGController();
+        ReflectionTestUtils.setField(controller, "ragService", ragService);
+        ReflectionTestUtils.setField(controller, "answerStreamingService", streamingService);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        streamingService.shutdown();
+    }
+
+    @Test
+    void eventsArriveInOrderWithJsonData() throws Exception {
+        doAnswer(invocation -> {
+            AnswerSink sink = invocation.getArgument(2);
+            sink.sources(List.of("Project: Quantum sensing"));
+            sink.section("Found 1 relevant projects:\n");
+            sink.section("- Quantum sensing (Status: ACTIVE)\n");
+            return null;
+        }).when(ragService).streamAnswer(eq("quantum"), eq(7L), any());
+
+        MvcResult result = open("projectId", "7");
+        awaitOutcome("completed", 1);
+
+        String body = result.getResponse().getContentAsString();
+        assertThat(events(body)).containsExactly("start", "sources", "section", "section", "done");
+        assertThat(body).contains("data:[\"Project: Quantum sensing\"]",
+                "data:{\"text\":\"- Quantum sensing (Status: ACTIVE)\\n\"}");
+        assertThat(meterRegistry.get("rag.stream.time-to-content").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void failuresEndTheStreamWithAnErrorEvent() throws Exception {
+        doAnswer(invocation -> {
+            AnswerSink sink = invocation.getArgument(2);
+            sink.sources(List.of());
+            throw new IllegalStateException("index unavailable");
+        }).when(ragService).streamAnswer(anyString(), any(), any());
+
+        MvcResult result = open("global", "true");
+        awaitOutcome("failed", 1);
+
+        String body = result.getResponse().getContentAsString();
+        assertThat(events(body)).containsExactly("start", "sources", "error");
+        assertThat(body).contains("index unavailable");
+    }
+
+    @Test
+    void aDisconnectStopsTheProducer() throws Exception {
+        CountDownLatch sourcesSent = new CountDownLatch(1);
+        List<Boolean> sectionResults = new ArrayList<>();
+        doAnswer(invocation -> {
+            AnswerSink sink = invocation.getArgument(2);
+            sink.sources(List.of("Document: a.txt"));
+            sourcesSent.countDown();
+            release.await();
+            for (int i = 0; i < 3 && sink.isOpen(); i++) {
+                sectionResults.add(sink.section("section " + i));
+            }
+            sectionResults.add(sink.isOpen());
+            return null;
+        }).when(ragService).streamAnswer(anyString(), any(), any());
+
+        MvcResult result = open("projectId", "1");
+        assertThat(sourcesSent.await(5, TimeUnit.SECONDS)).isTrue();
+        // The servlet container reports the broken connection to the async listeners
+        MockAsyncContext context = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : context.getListeners()) {
+            listener.onError(new AsyncEvent(context, new IOException("Broken pipe")));
+        }
+        release.countDown();
+        awaitOutcome("cancelled", 1);
+
+        assertThat(sectionResults).containsExactly(false);
+        assertThat(events(result.getResponse().getContentAsString())).containsExactly("start", "sources");
+        assertThat(counter("completed")).isZero();
+    }
+
+    @Test
+    void aSaturatedPoolRefusesNewStreamsWith429() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        }).when(ragService).streamAnswer(anyString(), any(), any());
+
+        // One stream on the only thread, one waiting in the queue of one
+        MvcResult running = open("projectId", "1");
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        MvcResult queued = open("projectId", "2");
+
+        mockMvc.perform(post("/api/rag/search/stream").param("query", "quantum").param("projectId", "3"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"));
+        assertThat(counter("rejected")).isEqualTo(1);
+
+        release.countDown();
+        awaitOutcome("completed", 2);
+        assertThat(events(running.getResponse().getContentAsString())).containsExactly("start", "done");
+        assertThat(events(queued.getResponse().getContentAsString())).containsExactly("start", "done");
+    }
+
+    @Test
+    void scopeMustBeEitherAProjectOrGlobal() throws Exception {
+        mockMvc.perform(post("/api/rag/search/stream").param("query", "quantum"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/rag/search/stream").param("query", "quantum").param("projectId", "1")
+                        .param("global", "true"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private MvcResult open(String param, String value) throws Exception {
+        return mockMvc.perform(post("/api/rag/search/stream").param("query", "quantum").param(param, value))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    private void awaitOutcome(String outcome, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (counter(outcome) < count) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError(count + " streams not " + outcome + " in time");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private double counter(String outcome) {
+        return meterRegistry.get("rag.stream.requests").tag("outcome", outcome).counter().count();
+    }
+
+    private static List<String> events(String body) {
+        List<String> names = new ArrayList<>();
+        Matcher matcher = EVENT.matcher(body);
+        while (matcher.find()) {
+            names.add(matcher.group(1));
+        }
+        return names;
+    }
+}
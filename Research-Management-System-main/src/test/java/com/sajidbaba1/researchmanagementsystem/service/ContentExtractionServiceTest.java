@@ -0,0 +1,124 @@
+package com.sajidbaba1.researchmanagementsystem.service;
+
+import com.sajidbaba1.researchmanagementsystem.entity.ProjectDocument;
+import com.sajidbaba1.researchmanagementsystem.search.Chunker;
+import com.sajidbaba1.researchmanagementsystem.search.TermCounter;
+import com.sajidbaba1.researchmanagementsystem.search.Tokenizer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentExtractionServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private ContentExtractionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ContentExtractionService();
+        ReflectionTestUtils.setField(service, "maxTerms", 1_000_000);
+        ReflectionTestUtils.setField(service, "storedChars", 10_000);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+    }
+
+    @Test
+    void extractsPlainText() throws IOException {
+        String hash = "f".repeat(Tokenizer.MAX_TERM_LENGTH + 1);
+        TermCounter counter = service.extract(file("notes.txt", "text/plain",
+                "Quantum sensing notes\nChecksum " + hash + " verified"));
+
+        assertThat(counter.terms()).containsExactlyInAnyOrder("quantum", "sensing", "notes", "checksum", "verified");
+        assertThat(counter.getStoredText()).startsWith("Quantum sensing notes");
+    }
+
+    @Test
+    void extractsCsvByExtensionOrContentType() throws IOException {
+        String csv = "sample,temperature\nalpha,21.5\nbeta,19\n";
+
+        assertThat(service.extract(file("readings.csv", null, csv)).terms())
+                .containsExactlyInAnyOrder("sample", "temperature", "alpha", "21", "5", "beta", "19");
+        assertThat(service.extract(file("readings", "text/csv; charset=utf-8", csv)).count("alpha")).isEqualTo(1);
+    }
+
+    @Test
+    void extractsPdfText() throws IOException {
+        Path path = dir.resolve("paper.pdf");
+        try (PDDocument pdf = new PDDocument()) {
+            for (String line : List.of("Variational circuits", "Error correction")) {
+                PDPage page = new PDPage();
+                pdf.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(pdf, page)) {
+                    content.beginText();
+                    content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText(line);
+                    content.endText();
+                }
+            }
+            pdf.save(path.toFile());
+        }
+        ProjectDocument document = document("paper.pdf", "application/pdf", path);
+
+        assertThat(service.extract(document).terms())
+                .containsExactlyInAnyOrder("variational", "circuits", "error", "correction");
+    }
+
+    @Test
+    void unsupportedOrMissingFilesGiveNothing() throws IOException {
+        assertThat(service.extract(file("image.png", "image/png", "not text"))).isNull();
+        assertThat(service.extract(document("gone.txt", "text/plain", dir.resolve("gone.txt")))).isNull();
+        assertThat(service.extract(document("none.txt", "text/plain", null))).isNull();
+        // A broken PDF is logged and skipped
+        assertThat(service.extract(file("broken.pdf", "application/pdf", "%PDF-1.7 truncated"))).isNull();
+    }
+
+    @Test
+    void stopsAtMaxTerms() throws IOException {
+        ReflectionTestUtils.setField(service, "maxTerms", 5);
+        TermCounter counter = service.extract(file("long.txt", "text/plain", "word ".repeat(100_000)));
+
+        assertThat(counter.getLength()).isEqualTo(5);
+        assertThat(counter.isFull()).isTrue();
+    }
+
+    @Test
+    void chunksTheSameText() throws IOException {
+        List<Chunker.Span> spans = new ArrayList<>();
+        ContentExtractionService.ChunkingStats stats = service.chunk(
+                file("notes.txt", "text/plain", "one two three four five six seven"), 3, 1, 100, spans::add);
+
+        assertThat(stats.getChunks()).isEqualTo(spans.size()).isPositive();
+        assertThat(stats.getBytes()).isEqualTo(33);
+    }
+
+    private ProjectDocument file(String name, String type, String content) throws IOException {
+        Path path = Files.writeString(dir.resolve(name), content, StandardCharsets.UTF_8);
+        return document(name, type, path);
+    }
+
+    private static ProjectDocument document(String name, String type, Path path) {
+        ProjectDocument document = new ProjectDocument();
+        document.setFileName(name);
+        document.setFileType(type);
+        document.setFilePath(path == null ? null : path.toString());
+        return document;
+    }
+}
@@ -0,0 +1,363 @@
+package com.sajidbaba1.researchmanagementsystem.service;
+
+import com.sajidbaba1.researchmanagementsystem.entity.ProjectDocument;
+import com.sajidbaba1.researchmanagementsystem.repository.ProjectDocumentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs ingestion jobs against a repository backed by a map, whose rows
+ * are copied on every read and write like a database's.
+ */
+class IngestionServiceTest {
+
+    private final Map<Long, ProjectDocument> table = new ConcurrentHashMap<>();
+    private final Map<Long, List<String>> statusWrites = new ConcurrentHashMap<>();
+    private final List<ProjectDocument> embedded = new CopyOnWriteArrayList<>();
+    private final ProjectDocumentRepository repository = mock(ProjectDocumentRepository.class);
+    private final RAGService ragService = mock(RAGService.class);
+    private final SearchIndexService searchIndexService = mock(SearchIndexService.class);
+    private final VectorIndexService vectorIndexService = mock(VectorIndexService.class);
+
+    private IngestionService ingestionService;
+    private ProjectDocumentService projectDocumentService;
+
+    @BeforeEach
+    void setUp() {
+        when(repository.findById(anyLong())).thenAnswer(invocation ->
+                Optional.ofNullable(table.get(invocation.<Long>getArgument(0))).map(IngestionServiceTest::copy));
+        when(repository.save(any())).thenAnswer(invocation -> {
+            ProjectDocument document = invocation.getArgument(0);
+            table.put(document.getId(), copy(document));
+            return document;
+        });
+        when(repository.updateStatus(anyLong(), any())).thenAnswer(invocation -> {
+            String status = invocation.getArgument(1);
+            ProjectDocument row = table.computeIfPresent(invocation.getArgument(0), (id, current) -> {
+                ProjectDocument updated = copy(current);
+                updated.setStatus(status);
+                return updated;
+            });
+            if (row == null) {
+                return 0;
+            }
+            statusWrites.computeIfAbsent(invocation.getArgument(0), id -> new CopyOnWriteArrayList<>()).add(status);
+            return 1;
+        });
+        when(repository.findIdsByStatusIn(any())).thenAnswer(invocation -> {
+            Collection<String> statuses = invocation.getArgument(0);
+            return table.values().stream()
+                    .filter(document -> statuses.contains(document.getStatus()))
+                    .map(ProjectDocument::getId)
+                    .sorted()
+                    .collect(Collectors.toList());
+        });
+        when(searchIndexService.indexDocumentFields(any())).thenReturn(true);
+        when(searchIndexService.isReady()).thenReturn(true);
+        when(vectorIndexService.isReady()).thenReturn(true);
+        when(ragService.processDocumentForRAG(any())).thenAnswer(invocation -> {
+            embedded.add(copy(invocation.getArgument(0)));
+            return true;
+        });
+
+        ingestionService = new IngestionService();
+        ReflectionTestUtils.setField(ingestionService, "projectDocumentRepository", repository);
+        ReflectionTestUtils.setField(ingestionService, "ragService", ragService);
+        ReflectionTestUtils.setField(ingestionService, "searchIndexService", searchIndexService);
+        ReflectionTestUtils.setField(ingestionService, "vectorIndexService", vectorIndexService);
+        ReflectionTestUtils.setField(ingestionService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(ingestionService, "workers", 1);
+        ReflectionTestUtils.setField(ingestionService, "queueCapacity", 2);
+        ingestionService.init();
+
+        projectDocumentService = new ProjectDocumentService();
+        ReflectionTestUtils.setField(projectDocumentService, "projectDocumentRepository", repository);
+        ReflectionTestUtils.setField(projectDocumentService, "searchIndexService", searchIndexService);
+        ReflectionTestUtils.setField(projectDocumentService, "vectorIndexService", vectorIndexService);
+        ReflectionTestUtils.setField(projectDocumentService, "ingestionService", ingestionService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ingestionService.shutdown();
+    }
+
+    @Test
+    void jobMovesTheDocumentThroughQueuedAndProcessing() throws Exception {
+        table.put(1L, document(1L, "paper.txt", null));
+
+        assertThat(ingestionService.enqueue(copy(table.get(1L)))).isTrue();
+        awaitIdle(1L);
+
+        assertThat(statusWrites.get(1L)).containsExactly(IngestionService.QUEUED, IngestionService.PROCESSING,
+                IngestionService.PROCESSED);
+    }
+
+    @Test
+    void failedEmbeddingMarksTheDocumentFailed() throws Exception {
+        table.put(1L, document(1L, "paper.txt", null));
+        doAnswer(invocation -> false).when(ragService).processDocumentForRAG(any());
+
+        ingestionService.enqueue(copy(table.get(1L)));
+        awaitIdle(1L);
+
+        assertThat(statusWrites.get(1L)).containsExactly(IngestionService.QUEUED, IngestionService.PROCESSING,
+                IngestionService.FAILED);
+    }
+
+    @Test
+    void unreadableFileMarksTheDocumentFailed() throws Exception {
+        table.put(1L, document(1L, "paper.txt", null));
+        doAnswer(invocation -> {
+            throw new IllegalStateException("unreadable");
+        }).when(searchIndexService).indexDocumentContent(any());
+
+        ingestionService.enqueue(copy(table.get(1L)));
+        awaitIdle(1L);
+
+        assertThat(statusWrites.get(1L)).containsExactly(IngestionService.QUEUED, IngestionService.PROCESSING,
+                IngestionService.FAILED);
+        assertThat(embedded).isEmpty();
+    }
+
+    @Test
+    void rejectedJobRollsTheStatusBack() throws Exception {
+        CountDownLatch release = blockJobs();
+        try {
+            for (long id = 1; id <= 4; id++) {
+                ProjectDocument document = document(id, id + ".txt", null);
+                document.setStatus(IngestionService.PROCESSED);
+                table.put(id, document);
+            }
+            assertThat(ingestionService.enqueue(copy(table.get(1L)))).isTrue();
+            awaitProcessing(1L);
+            assertThat(ingestionService.enqueue(copy(table.get(2L)))).isTrue();
+            assertThat(ingestionService.enqueue(copy(table.get(3L)))).isTrue();
+            assertThat(ingestionService.hasCapacity()).isFalse();
+
+            ProjectDocument refused = copy(table.get(4L));
+            assertThat(ingestionService.enqueue(refused)).isFalse();
+
+            assertThat(refused.getStatus()).isEqualTo(IngestionService.PROCESSED);
+            assertThat(table.get(4L).getStatus()).isEqualTo(IngestionService.PROCESSED);
+            assertThat(statusWrites.get(4L)).containsExactly(IngestionService.QUEUED, IngestionService.PROCESSED);
+            assertThat(ingestionService.retryAfterSeconds()).isPositive();
+        } finally {
+            release.countDown();
+        }
+        awaitIdle(3L);
+        // Refused, so it can be queued again once there is room
+        assertThat(ingestionService.enqueue(copy(table.get(4L)))).isTrue();
+        awaitIdle(4L);
+    }
+
+    @Test
+    void documentWaitingInTheQueueIsNotQueuedTwice() throws Exception {
+        table.put(1L, document(1L, "1.txt", null));
+        table.put(2L, document(2L, "2.txt", null));
+        CountDownLatch release = blockJobs();
+        try {
+            ingestionService.enqueue(copy(table.get(1L)));
+            awaitProcessing(1L);
+
+            assertThat(ingestionService.enqueue(copy(table.get(2L)))).isTrue();
+            assertThat(ingestionService.enqueue(copy(table.get(2L)))).isTrue();
+            assertThat(ingestionService.getQueueDepth()).isEqualTo(1);
+            // Left to its job rather than processed a second time alongside it
+            assertThat(ingestionService.processNow(2L).getOutcome()).isEqualTo(IngestionService.Outcome.SKIPPED);
+        } finally {
+            release.countDown();
+        }
+        awaitIdle(2L);
+        assertThat(embedded).extracting(ProjectDocument::getFileName).containsExactly("1.txt", "2.txt");
+    }
+
+    @Test
+    void whileIdleWaitsForTheRunningJob() throws Exception {
+        table.put(1L, document(1L, "1.txt", null));
+        CountDownLatch release = blockJobs();
+        ExecutorService deleter = Executors.newSingleThreadExecutor();
+        try {
+            ingestionService.enqueue(copy(table.get(1L)));
+            awaitProcessing(1L);
+
+            Future<String> statusSeen = deleter.submit(() -> {
+                String[] seen = new String[1];
+                ingestionService.whileIdle(1L, () -> seen[0] = table.get(1L).getStatus());
+                return seen[0];
+            });
+            Thread.sleep(100);
+            assertThat(statusSeen.isDone()).isFalse();
+
+            release.countDown();
+            // The action ran after the job had written its last status
+            assertThat(statusSeen.get(5, TimeUnit.SECONDS)).isEqualTo(IngestionService.PROCESSED);
+        } finally {
+            release.countDown();
+            deleter.shutdownNow();
+        }
+    }
+
+    @Test
+    void processNowReportsMissingDocuments() {
+        assertThat(ingestionService.processNow(99L).getOutcome()).isEqualTo(IngestionService.Outcome.MISSING);
+
+        table.put(1L, document(1L, "1.txt", null));
+        IngestionService.Result result = ingestionService.processNow(1L);
+
+        assertThat(result.getOutcome()).isEqualTo(IngestionService.Outcome.PROCESSED);
+        assertThat(result.getBytes()).isEqualTo(100);
+        assertThat(statusWrites.get(1L)).containsExactly(IngestionService.PROCESSING, IngestionService.PROCESSED);
+    }
+
+    @Test
+    void editSavedDuringAJobIsKeptAndProcessed() throws Exception {
+        table.put(1L, document(1L, "v1.txt", "first"));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        doAnswer(invocation -> {
+            embedded.add(copy(invocation.getArgument(0)));
+            if (calls.incrementAndGet() == 1) {
+                started.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return true;
+        }).when(ragService).processDocumentForRAG(any());
+
+        ingestionService.enqueue(copy(table.get(1L)));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        // A PUT lands while the job embeds the copy it read before
+        ProjectDocument edit = copy(table.get(1L));
+        edit.setFileName("v2.txt");
+        edit.setDescription("second");
+        projectDocumentService.saveDocument(edit);
+        release.countDown();
+
+        awaitIdle(1L);
+        assertThat(table.get(1L).getFileName()).isEqualTo("v2.txt");
+        assertThat(table.get(1L).getDescription()).isEqualTo("second");
+        assertThat(table.get(1L).getStatus()).isEqualTo(IngestionService.PROCESSED);
+        // The edit was processed by a job of its own
+        assertThat(embedded).extracting(ProjectDocument::getFileName).containsExactly("v1.txt", "v2.txt");
+    }
+
+    @Test
+    void saveReportsWhetherTheDocumentWasQueued() throws Exception {
+        CountDownLatch release = blockJobs();
+        try {
+            for (long id = 1; id <= 4; id++) {
+                table.put(id, document(id, id + ".txt", null));
+            }
+            // Not current in the index, so every save needs a job: one runs, two wait, the last is refused
+            when(searchIndexService.indexDocumentFields(any())).thenReturn(false);
+            List<ProjectDocumentService.Processing> outcomes = new ArrayList<>();
+            for (long id = 1; id <= 4; id++) {
+                outcomes.add(projectDocumentService.saveDocument(copy(table.get(id))).getProcessing());
+                if (id == 1) {
+                    awaitProcessing(1L);
+                }
+            }
+
+            assertThat(outcomes).containsExactly(ProjectDocumentService.Processing.QUEUED,
+                    ProjectDocumentService.Processing.QUEUED, ProjectDocumentService.Processing.QUEUED,
+                    ProjectDocumentService.Processing.REJECTED);
+            assertThat(table.get(4L).getStatus()).isEqualTo(IngestionService.UPLOADED);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void unprocessedDocumentsAreQueuedAgain() throws Exception {
+        table.put(5L, document(5L, "uploaded.txt", null));
+        ProjectDocument interrupted = document(6L, "interrupted.txt", null);
+        interrupted.setStatus(IngestionService.PROCESSING);
+        table.put(6L, interrupted);
+        ProjectDocument done = document(7L, "done.txt", null);
+        done.setStatus(IngestionService.PROCESSED);
+        table.put(7L, done);
+
+        when(vectorIndexService.isReady()).thenReturn(false);
+        ingestionService.requeueUnprocessed();
+        assertThat(statusWrites).isEmpty();
+
+        when(vectorIndexService.isReady()).thenReturn(true);
+        ingestionService.requeueUnprocessed();
+        awaitIdle(5L);
+        awaitIdle(6L);
+
+        assertThat(embedded).extracting(ProjectDocument::getFileName)
+                .containsExactlyInAnyOrder("uploaded.txt", "interrupted.txt");
+        assertThat(table.get(7L).getStatus()).isEqualTo(IngestionService.PROCESSED);
+    }
+
+    /** Makes every job wait for the returned latch. */
+    private CountDownLatch blockJobs() {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            embedded.add(copy(invocation.getArgument(0)));
+            release.await(5, TimeUnit.SECONDS);
+            return true;
+        }).when(ragService).processDocumentForRAG(any());
+        return release;
+    }
+
+    private void awaitProcessing(Long id) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!ingestionService.isProcessing(id)) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Document " + id + " was not picked up");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    /** Waits until the document's last job has finished. */
+    private void awaitIdle(Long id) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            String status = table.get(id).getStatus();
+            boolean done = IngestionService.PROCESSED.equals(status) || IngestionService.FAILED.equals(status);
+            if (done && ingestionService.getQueueDepth() == 0 && !ingestionService.isProcessing(id)) {
+                return;
+            }
+            Thread.sleep(5);
+        }
+        throw new AssertionError("Document " + id + " still " + table.get(id).getStatus());
+    }
+
+    private static ProjectDocument document(Long id, String fileName, String description) {
+        ProjectDocument document = new ProjectDocument(fileName, "txt", "uploads/" + fileName, 100L);
+        document.setId(id);
+        document.setDescription(description);
+        return document;
+    }
+
+    private static ProjectDocument copy(ProjectDocument source) {
+        ProjectDocument copy = new ProjectDocument(source.getFileName(), source.getFileType(), source.getFilePath(),
+                source.getFileSize());
+        copy.setId(source.getId());
+        copy.setDescription(source.getDescription());
+        copy.setProjectId(source.getProjectId());
+        copy.setUploadedBy(source.getUploadedBy());
+        copy.setStatus(source.getStatus());
+        copy.setCreatedAt(source.getCreatedAt());
+        return copy;
+    }
+}
@@ -0,0 +1,128 @@
+package com.sajidbaba1.researchmanagementsystem.service;
+
+import com.sajidbaba1.researchmanagementsystem.llm.LlmBackend;
+import com.sajidbaba1.researchmanagementsystem.llm.LlmException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LlmGatewayTest {
+
+    /** Embeds a text as its length; every call takes {@code callMillis}. */
+    private static class SlowBackend implements LlmBackend {
+        final long callMillis;
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+        SlowBackend(long callMillis) {
+            this.callMillis = callMillis;
+        }
+
+        @Override
+        public String name() {
+            return "slow";
+        }
+
+        @Override
+        public List<float[]> embed(List<String> texts) {
+            batchSizes.add(texts.size());
+            try {
+                Thread.sleep(callMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LlmException("interrupted");
+            }
+            List<float[]> vectors = new ArrayList<>();
+            for (String text : texts) {
+                vectors.add(new float[]{text.length()});
+            }
+            return vectors;
+        }
+
+        @Override
+        public String complete(String prompt) {
+            return prompt;
+        }
+    }
+
+    private LlmGateway gateway;
+
+    @AfterEach
+    void tearDown() {
+        gateway.shutdown();
+    }
+
+    @Test
+    void timeoutAppliesToEachBatchNotTheDocument() {
+        SlowBackend backend = new SlowBackend(100);
+        gateway = gateway(backend, 250);
+        List<String> texts = texts(8 * 4);
+
+        // Eight calls of 100 ms on one thread take far longer than one timeout
+        List<float[]> vectors = gateway.embedAll(texts);
+
+        assertThat(vectors).hasSize(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            assertThat(vectors.get(i)).containsExactly(texts.get(i).length());
+        }
+        assertThat(backend.batchSizes).containsOnly(4).hasSize(8);
+    }
+
+    @Test
+    void slowBatchStillTimesOut() {
+        gateway = gateway(new SlowBackend(500), 100);
+
+        assertThatThrownBy(() -> gateway.embedAll(texts(4)))
+                .isInstanceOf(LlmException.class)
+                .hasMessageContaining("timed out");
+    }
+
+    @Test
+    void queriesDoNotWaitBehindABulkEmbedding() throws Exception {
+        gateway = gateway(new SlowBackend(50), 5_000);
+        ExecutorService ingestion = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<float[]>> document = ingestion.submit(() -> gateway.embedAll(texts(40 * 4)));
+            Thread.sleep(100);
+
+            long start = System.nanoTime();
+            float[] query = gateway.embed("query");
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertThat(query).containsExactly(5f);
+            // One call of its own, not the forty of the document
+            assertThat(millis).isLessThan(1_000);
+            assertThat(document.isDone()).isFalse();
+            assertThat(document.get(10, TimeUnit.SECONDS)).hasSize(160);
+        } finally {
+            ingestion.shutdownNow();
+        }
+    }
+
+    private static LlmGateway gateway(LlmBackend backend, long timeoutMs) {
+        LlmGateway gateway = new LlmGateway();
+        ReflectionTestUtils.setField(gateway, "backend", backend);
+        ReflectionTestUtils.setField(gateway, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(gateway, "maxBatchSize", 4);
+        ReflectionTestUtils.setField(gateway, "maxBatchDelayMs", 1L);
+        ReflectionTestUtils.setField(gateway, "maxConcurrentCalls", 1);
+        ReflectionTestUtils.setField(gateway, "bulkConcurrentCalls", 1);
+        ReflectionTestUtils.setField(gateway, "timeoutMs", timeoutMs);
+        gateway.init();
+        return gateway;
+    }
+
+    private static List<String> texts(int count) {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            texts.add("chunk " + i);
+        }
+        return texts;
+    }
+}
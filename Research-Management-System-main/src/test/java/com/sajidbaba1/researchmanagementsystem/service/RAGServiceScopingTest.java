@@ -0,0 +1,212 @@
+package com.sajidbaba1.researchmanagementsystem.service;
+
+import com.sajidbaba1.researchmanagementsystem.entity.ProjectDocument;
+import com.sajidbaba1.researchmanagementsystem.entity.ResearchProject;
+import com.sajidbaba1.researchmanagementsystem.entity.TeamMember;
+import com.sajidbaba1.researchmanagementsystem.repository.ProjectDocumentRepository;
+import com.sajidbaba1.researchmanagementsystem.repository.ResearchProjectRepository;
+import com.sajidbaba1.researchmanagementsystem.repository.TeamMemberRepository;
+import com.sajidbaba1.researchmanagementsystem.search.HashingEmbedder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Answers over real search and vector indexes. Project-scoped answers come
+ * only from that project's shard of the search indexes and its vector
+ * partition; global answers from every project.
+ */
+class RAGServiceScopingTest {
+
+    private static final long[] PROJECTS = {1, 2, 3};
+
+    private final ProjectDocumentRepository documentRepository = mock(ProjectDocumentRepository.class);
+    private final ResearchProjectRepository projectRepository = mock(ResearchProjectRepository.class);
+    private final TeamMemberRepository teamMemberRepository = mock(TeamMemberRepository.class);
+    private final ContentExtractionService contentExtractionService = mock(ContentExtractionService.class);
+
+    private final Map<Long, ResearchProject> projects = new HashMap<>();
+    private final Map<Long, TeamMember> members = new HashMap<>();
+    private final Map<Long, ProjectDocument> documents = new HashMap<>();
+
+    private SearchIndexService searchIndexService;
+    private VectorIndexService vectorIndexService;
+    private RAGService ragService;
+
+    @BeforeEach
+    void setUp() {
+        searchIndexService = new SearchIndexService();
+        ReflectionTestUtils.setField(searchIndexService, "contentExtractionService", contentExtractionService);
+        ReflectionTestUtils.setField(searchIndexService, "segmentsEnabled", false);
+        searchIndexService.init();
+
+        vectorIndexService = new VectorIndexService();
+        ReflectionTestUtils.setField(vectorIndexService, "projectDocumentRepository", documentRepository);
+        ReflectionTestUtils.setField(vectorIndexService, "contentExtractionService", contentExtractionService);
+        ReflectionTestUtils.setField(vectorIndexService, "embedder", new HashingEmbedder(256));
+        ReflectionTestUtils.setField(vectorIndexService, "chunkWords", 200);
+        ReflectionTestUtils.setField(vectorIndexService, "overlapWords", 40);
+        ReflectionTestUtils.setField(vectorIndexService, "maxChunks", 100);
+        ReflectionTestUtils.setField(vectorIndexService, "hnswM", 16);
+        ReflectionTestUtils.setField(vectorIndexService, "efConstruction", 100);
+        ReflectionTestUtils.setField(vectorIndexService, "efSearch", 100);
+        ReflectionTestUtils.setField(vectorIndexService, "persistenceEnabled", false);
+        vectorIndexService.init();
+
+        LatencyMetrics latencyMetrics = new LatencyMetrics();
+        ReflectionTestUtils.setField(latencyMetrics, "meterRegistry", new SimpleMeterRegistry());
+        ragService = new RAGService(documentRepository, projectRepository, teamMemberRepository, searchIndexService,
+                latencyMetrics, vectorIndexService, mock(LlmGateway.class), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(ragService, "answerCacheMaxEntries", 100);
+        ReflectionTestUtils.setField(ragService, "answerCacheTtlSeconds", 600L);
+        ReflectionTestUtils.setField(ragService, "answerCacheSimilarityThreshold", 1.1);
+        ReflectionTestUtils.setField(ragService, "embedderName", "hashing");
+        ReflectionTestUtils.setField(ragService, "maxSources", 50);
+        ReflectionTestUtils.setField(ragService, "retrievalThreads", 2);
+        ragService.init();
+
+        stubFindAllById(projectRepository, projects);
+        stubFindAllById(teamMemberRepository, members);
+        stubFindAllById(documentRepository, documents);
+
+        // Every project has an entity of each kind matching the question, one document per project in the vectors
+        for (long projectId : PROJECTS) {
+            ResearchProject project = new ResearchProject("Quantum sensing " + projectId, "Quantum sensing study",
+                    "ACTIVE");
+            project.setId(projectId);
+            projects.put(projectId, project);
+            searchIndexService.indexProject(project);
+
+            TeamMember member = new TeamMember();
+            member.setId(100 + projectId);
+            member.setName("Member " + projectId);
+            member.setRole("Researcher");
+            member.setExpertise("quantum sensing");
+            member.setProjectId(projectId);
+            members.put(member.getId(), member);
+            searchIndexService.indexTeamMember(member);
+
+            ProjectDocument document = new ProjectDocument("sensing-" + projectId + ".txt", "text/plain", null, 10L);
+            document.setId(200 + projectId);
+            document.setDescription("Quantum sensing notes");
+            document.setProjectId(projectId);
+            documents.put(document.getId(), document);
+            searchIndexService.indexDocumentFields(document);
+            vectorIndexService.indexDocument(document);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        ragService.shutdown();
+    }
+
+    @Test
+    void projectScopedAnswersNeverMentionAnotherProject() {
+        for (long projectId : PROJECTS) {
+            RAGService.AIResponse response = ragService.searchAndAnswer("quantum sensing", projectId);
+
+            assertThat(response.getSources()).containsExactlyInAnyOrder(
+                    "Project: Quantum sensing " + projectId,
+                    "Team Member: Member " + projectId,
+                    "Document: sensing-" + projectId + ".txt");
+            for (long other : PROJECTS) {
+                if (other != projectId) {
+                    assertThat(response.getAnswer()).doesNotContain("sensing " + other, "Member " + other,
+                            "sensing-" + other);
+                }
+            }
+            // The passage section quotes the project's own document chunk
+            assertThat(response.getAnswer()).contains("- sensing-" + projectId + ".txt: \"");
+        }
+    }
+
+    @Test
+    void projectScopedRetrievalReadsOnlyThatProjectsChunks() {
+        float[] question = vectorIndexService.embed("quantum sensing notes");
+        for (long projectId : PROJECTS) {
+            assertThat(vectorIndexService.search(question, 20, projectId))
+                    .isNotEmpty()
+                    .allSatisfy(hit -> assertThat(hit.getChunk().getProjectId()).isEqualTo(projectId));
+        }
+        assertThat(vectorIndexService.search(question, 20, 99L)).isEmpty();
+        assertThat(vectorIndexService.search(question, 20, null))
+                .extracting(hit -> hit.getChunk().getProjectId())
+                .containsExactlyInAnyOrder(1L, 2L, 3L);
+    }
+
+    @Test
+    void globalAnswersDrawOnEveryProject() {
+        RAGService.AIResponse response = ragService.searchAndAnswer("quantum sensing", null);
+
+        List<String> expected = new ArrayList<>();
+        for (long projectId : PROJECTS) {
+            expected.add("Project: Quantum sensing " + projectId);
+            expected.add("Team Member: Member " + projectId);
+            expected.add("Document: sensing-" + projectId + ".txt");
+        }
+        assertThat(response.getSources()).containsExactlyInAnyOrderElementsOf(expected);
+
+        // The scoped answer is cached under its scope and does not leak into the global one, nor the reverse
+        assertThat(ragService.searchAndAnswer("quantum sensing", 2L).getSources())
+                .allSatisfy(source -> assertThat(source).matches(".* (2|sensing-2\\.txt)"));
+        assertThat(ragService.searchAndAnswer("quantum sensing", null).getSources()).hasSize(expected.size());
+    }
+
+    @Test
+    void aProjectWithoutMatchesGetsNothingFromTheOthers() {
+        RAGService.AIResponse response = ragService.searchAndAnswer("quantum sensing", 99L);
+
+        assertThat(response.getSources()).isEmpty();
+        assertThat(response.getAnswer()).startsWith("No specific matches found");
+    }
+
+    @Test
+    void streamedAnswersSendTheSourcesFirstAndStopWhenTheSinkCloses() {
+        List<String> events = new ArrayList<>();
+        ragService.streamAnswer("quantum sensing", 1L, new AnswerSink() {
+            @Override
+            public boolean sources(List<String> sources) {
+                events.add("sources " + sources.size());
+                return true;
+            }
+
+            @Override
+            public boolean section(String text) {
+                events.add("section");
+                // The client goes away after the first section
+                return false;
+            }
+        });
+        assertThat(events).containsExactly("sources 3", "section");
+
+        // An answer cut short is not cached: asking again retrieves and sends all of it
+        RAGService.AIResponse response = ragService.searchAndAnswer("quantum sensing", 1L);
+        assertThat(response.getSources()).hasSize(3);
+        assertThat(response.getAnswer()).contains("relevant projects", "relevant team members",
+                "relevant documents", "Most relevant passages");
+    }
+
+    private static <T> void stubFindAllById(JpaRepository<T, Long> repository, Map<Long, T> rows) {
+        when(repository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            Iterable<Long> ids = invocation.getArgument(0);
+            List<T> found = new ArrayList<>();
+            for (Long id : ids) {
+                if (rows.containsKey(id)) {
+                    found.add(rows.get(id));
+                }
+            }
+            return found;
+        });
+    }
+}
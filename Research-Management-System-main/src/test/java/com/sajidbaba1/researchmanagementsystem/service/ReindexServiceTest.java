@@ -0,0 +1,272 @@
+package com.sajidbaba1.researchmanagementsystem.service;
+
+import com.sajidbaba1.researchmanagementsystem.repository.ProjectDocumentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/** Runs the bulk reindex over document ids 1..40 in ranges of 10. */
+class ReindexServiceTest {
+
+    private static final long LAST_ID = 40;
+    private static final int RANGE_SIZE = 10;
+
+    @TempDir
+    Path indexDir;
+
+    private final ProjectDocumentRepository repository = mock(ProjectDocumentRepository.class);
+    private final List<ReindexService> services = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(repository.findMinId()).thenReturn(1L);
+        when(repository.findMaxId()).thenReturn(LAST_ID);
+        when(repository.findIdsInRange(anyLong(), anyLong())).thenAnswer(invocation -> LongStream
+                .range(Math.max(1, invocation.<Long>getArgument(0)), Math.min(LAST_ID + 1, invocation.<Long>getArgument(1)))
+                .boxed()
+                .collect(Collectors.toList()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        services.forEach(ReindexService::shutdown);
+    }
+
+    @Test
+    void watermarkOnlyPassesContiguousFinishedRanges() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Recorder recorder = new Recorder(id -> {
+            if (id == 1) {
+                await(release);
+            }
+            return 0L;
+        });
+        ReindexService service = service(recorder, 2, 0, 0);
+
+        service.start(false);
+        // One worker holds the first range while the other finishes the three after it
+        awaitCondition(() -> recorder.ids.size() == 31);
+
+        assertThat(service.getProgress().getCheckpointId()).isEqualTo(1);
+        assertThat(checkpoint().getProperty("watermark")).isEqualTo("1");
+        assertThat(service.getProgress().getDocumentsProcessed()).isEqualTo(30);
+
+        release.countDown();
+        awaitState(service, ReindexService.COMPLETED);
+        assertThat(service.getProgress().getCheckpointId()).isEqualTo(LAST_ID + 1);
+        assertThat(checkpoint().getProperty("watermark")).isEqualTo("41");
+        assertThat(checkpoint().getProperty("processed")).isEqualTo("40");
+        assertThat(recorder.ids).containsExactlyInAnyOrderElementsOf(allIds());
+    }
+
+    @Test
+    void interruptedRunResumesFromTheCheckpoint() throws Exception {
+        CountDownLatch never = new CountDownLatch(1);
+        Recorder first = new Recorder(id -> {
+            if (id == 25) {
+                await(never);
+            }
+            return 0L;
+        });
+        ReindexService stopped = service(first, 1, 0, 0);
+        stopped.start(false);
+        awaitCondition(() -> first.ids.contains(25L));
+        // The application stops mid-range: the checkpoint still says RUNNING
+        stopped.shutdown();
+        assertThat(checkpoint().getProperty("state")).isEqualTo(ReindexService.RUNNING);
+        assertThat(checkpoint().getProperty("watermark")).isEqualTo("21");
+
+        Recorder second = new Recorder(id -> 0L);
+        ReindexService restarted = service(second, 1, 0, 0);
+        restarted.resumeInterrupted();
+        awaitState(restarted, ReindexService.COMPLETED);
+
+        // Only the range in flight is done again
+        assertThat(second.ids).containsExactlyElementsOf(LongStream.rangeClosed(21, LAST_ID).boxed()
+                .collect(Collectors.toList()));
+        assertThat(restarted.getProgress().getDocumentsProcessed()).isEqualTo(40);
+    }
+
+    @Test
+    void resumeRightAfterAPauseWaitsForTheWorkers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Recorder recorder = new Recorder(id -> {
+            if (id == 5) {
+                await(release);
+            }
+            return 0L;
+        });
+        ReindexService service = service(recorder, 1, 0, 0);
+        service.start(false);
+        awaitCondition(() -> recorder.ids.contains(5L));
+
+        assertThat(service.pause().getState()).isEqualTo(ReindexService.PAUSING);
+        ExecutorService admin = Executors.newSingleThreadExecutor();
+        try {
+            Future<ReindexService.Progress> resumed = admin.submit(() -> service.start(false));
+            Thread.sleep(100);
+            assertThat(resumed.isDone()).isFalse();
+
+            release.countDown();
+            assertThat(resumed.get(5, TimeUnit.SECONDS).getState()).isEqualTo(ReindexService.RUNNING);
+        } finally {
+            admin.shutdownNow();
+        }
+        awaitState(service, ReindexService.COMPLETED);
+        assertThat(new HashSet<>(recorder.ids)).containsExactlyInAnyOrderElementsOf(allIds());
+    }
+
+    @Test
+    void pausedRunResumesAndCompletedRunRestarts() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Recorder recorder = new Recorder(id -> {
+            if (id == 15) {
+                await(release);
+            }
+            return 0L;
+        });
+        ReindexService service = service(recorder, 1, 0, 0);
+        service.start(false);
+        awaitCondition(() -> recorder.ids.contains(15L));
+        service.pause();
+        release.countDown();
+        awaitState(service, ReindexService.PAUSED);
+        assertThat(checkpoint().getProperty("state")).isEqualTo(ReindexService.PAUSED);
+        int before = recorder.ids.size();
+
+        service.start(false);
+        awaitState(service, ReindexService.COMPLETED);
+        // Resumed from the watermark at 11, not from the first document
+        assertThat(recorder.ids.subList(before, recorder.ids.size()))
+                .containsExactlyElementsOf(LongStream.rangeClosed(11, LAST_ID).boxed().collect(Collectors.toList()));
+
+        recorder.ids.clear();
+        service.start(false);
+        awaitState(service, ReindexService.COMPLETED);
+        assertThat(recorder.ids).containsExactlyElementsOf(allIds());
+    }
+
+    @Test
+    void throttlesDocumentsPerSecond() throws Exception {
+        Recorder recorder = new Recorder(id -> 0L);
+        ReindexService service = service(recorder, 2, 100, 0);
+
+        long start = System.nanoTime();
+        service.start(false);
+        awaitState(service, ReindexService.COMPLETED);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        // 40 documents at 100 a second, shared by both workers
+        assertThat(seconds).isGreaterThanOrEqualTo(0.35);
+        assertThat(service.getProgress().getDocumentsPerSecond()).isLessThanOrEqualTo(115);
+    }
+
+    @Test
+    void throttlesBytesRead() throws Exception {
+        when(repository.findMaxId()).thenReturn(10L);
+        Recorder recorder = new Recorder(id -> 1024L * 1024);
+        ReindexService service = service(recorder, 2, 0, 20);
+
+        long start = System.nanoTime();
+        service.start(false);
+        awaitState(service, ReindexService.COMPLETED);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        // Ten files of 1 MB at 20 MB a second; the first is read before anything is charged
+        assertThat(seconds).isGreaterThanOrEqualTo(0.4);
+        assertThat(service.getProgress().getBytesRead()).isEqualTo(10L * 1024 * 1024);
+    }
+
+    /** Processes documents through {@code bytes}, which may block, and records the ids in order. */
+    private static class Recorder {
+        final List<Long> ids = new CopyOnWriteArrayList<>();
+        final Function<Long, Long> bytes;
+
+        Recorder(Function<Long, Long> bytes) {
+            this.bytes = bytes;
+        }
+
+        IngestionService.Result process(Long id) {
+            ids.add(id);
+            return new IngestionService.Result(IngestionService.Outcome.PROCESSED, bytes.apply(id));
+        }
+    }
+
+    private ReindexService service(Recorder recorder, int threads, double documentsPerSecond, double megabytesPerSecond) {
+        IngestionService ingestionService = mock(IngestionService.class);
+        when(ingestionService.processNow(anyLong())).thenAnswer(invocation -> recorder.process(invocation.getArgument(0)));
+
+        ReindexService service = new ReindexService();
+        ReflectionTestUtils.setField(service, "projectDocumentRepository", repository);
+        ReflectionTestUtils.setField(service, "ingestionService", ingestionService);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "threads", threads);
+        ReflectionTestUtils.setField(service, "rangeSize", RANGE_SIZE);
+        ReflectionTestUtils.setField(service, "maxDocumentsPerSecond", documentsPerSecond);
+        ReflectionTestUtils.setField(service, "maxMegabytesPerSecond", megabytesPerSecond);
+        ReflectionTestUtils.setField(service, "persistenceEnabled", true);
+        ReflectionTestUtils.setField(service, "indexDir", indexDir.toString());
+        service.init();
+        services.add(service);
+        return service;
+    }
+
+    private Properties checkpoint() throws Exception {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(indexDir.resolve("reindex.checkpoint"))) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    private static List<Long> allIds() {
+        return LongStream.rangeClosed(1, LAST_ID).boxed().collect(Collectors.toList());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted");
+        }
+    }
+
+    private static void awaitState(ReindexService service, String state) throws InterruptedException {
+        awaitCondition(() -> state.equals(service.getProgress().getState())
+                && service.getProgress().getActiveWorkers() == 0);
+    }
+
+    private static void awaitCondition(Callable<Boolean> condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        try {
+            while (!condition.call()) {
+                if (System.nanoTime() > deadline) {
+                    throw new AssertionError("Timed out waiting");
+                }
+                Thread.sleep(5);
+            }
+        } catch (InterruptedException | AssertionError e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
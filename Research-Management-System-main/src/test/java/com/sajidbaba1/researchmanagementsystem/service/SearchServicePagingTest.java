@@ -0,0 +1,277 @@
+package com.sajidbaba1.researchmanagementsystem.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sajidbaba1.researchmanagementsystem.dto.SearchRequest;
+import com.sajidbaba1.researchmanagementsystem.dto.SearchResponse;
+import com.sajidbaba1.researchmanagementsystem.entity.ProjectDocument;
+import com.sajidbaba1.researchmanagementsystem.entity.ResearchProject;
+import com.sajidbaba1.researchmanagementsystem.entity.TeamMember;
+import com.sajidbaba1.researchmanagementsystem.repository.ProjectDocumentRepository;
+import com.sajidbaba1.researchmanagementsystem.repository.ResearchProjectRepository;
+import com.sajidbaba1.researchmanagementsystem.repository.TeamMemberRepository;
+import com.sajidbaba1.researchmanagementsystem.search.InvertedIndex;
+import com.sajidbaba1.researchmanagementsystem.search.Matches;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pages through universal search results whose scores tie within and
+ * across entity types, whose ids repeat across types, and checks that
+ * following the cursors, or asking for pages by number, visits every hit
+ * exactly once in the merged order.
+ */
+class SearchServicePagingTest {
+
+    private static final String QUERY = "tied";
+
+    private final Map<Long, Double> documentScores = new HashMap<>();
+    private final Map<Long, Double> memberScores = new HashMap<>();
+    private final Map<Long, Double> projectScores = new HashMap<>();
+
+    private final AtomicLong documentVersion = new AtomicLong();
+
+    private SearchService searchService;
+    private SearchIndexService searchIndexService;
+
+    @BeforeEach
+    void setUp() {
+        for (long id = 1; id <= 12; id++) {
+            documentScores.put(id, id % 4 == 0 ? 2.0 : 1.0);
+        }
+        for (long id = 1; id <= 7; id++) {
+            memberScores.put(id, id % 2 == 0 ? 2.0 : 1.0);
+        }
+        for (long id = 3; id <= 7; id++) {
+            projectScores.put(id, 1.0);
+        }
+
+        searchIndexService = mock(SearchIndexService.class);
+        InvertedIndex index = mock(InvertedIndex.class);
+        when(searchIndexService.getDocumentIndex()).thenReturn(index);
+        when(searchIndexService.getTeamMemberIndex()).thenReturn(index);
+        when(searchIndexService.getProjectIndex()).thenReturn(index);
+        when(searchIndexService.scoreDocuments(anyString(), any())).thenReturn(matches(documentScores));
+        when(searchIndexService.scoreTeamMembers(anyString(), any())).thenReturn(matches(memberScores));
+        when(searchIndexService.scoreProjects(anyString(), any())).thenReturn(matches(projectScores));
+        when(searchIndexService.getDocumentVersion()).thenAnswer(invocation -> documentVersion.get());
+
+        ProjectDocumentRepository documents = mock(ProjectDocumentRepository.class);
+        answerFindAllById(documents, id -> {
+            ProjectDocument document = new ProjectDocument();
+            document.setId(id);
+            document.setFileName("document " + id);
+            return document;
+        });
+        TeamMemberRepository members = mock(TeamMemberRepository.class);
+        answerFindAllById(members, id -> {
+            TeamMember member = new TeamMember();
+            member.setId(id);
+            member.setName("member " + id);
+            return member;
+        });
+        ResearchProjectRepository projects = mock(ResearchProjectRepository.class);
+        answerFindAllById(projects, id -> {
+            ResearchProject project = new ResearchProject();
+            project.setId(id);
+            project.setTitle("project " + id);
+            return project;
+        });
+
+        searchService = new SearchService();
+        ReflectionTestUtils.setField(searchService, "searchIndexService", searchIndexService);
+        ReflectionTestUtils.setField(searchService, "projectDocumentRepository", documents);
+        ReflectionTestUtils.setField(searchService, "teamMemberRepository", members);
+        ReflectionTestUtils.setField(searchService, "researchProjectRepository", projects);
+        ReflectionTestUtils.setField(searchService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(searchService, "latencyMetrics", mock(LatencyMetrics.class));
+        ReflectionTestUtils.setField(searchService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(searchService, "sourceTimeoutMs", 10_000L);
+        ReflectionTestUtils.setField(searchService, "fanOutThreads", 3);
+        ReflectionTestUtils.setField(searchService, "cacheMaxEntries", 100);
+        searchService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        searchService.shutdown();
+    }
+
+    @Test
+    void cursorsVisitEveryHitOnceInMergedOrder() {
+        for (int size : new int[]{1, 4, 5, 24, 30}) {
+            assertThat(followCursors(size)).as("page size %d", size).isEqualTo(expectedOrder());
+        }
+    }
+
+    @Test
+    void lastPageHasNoNextWhenTheHitsFillItExactly() {
+        // 24 hits in pages of 4: the lookahead must not promise a seventh page
+        SearchResponse page = null;
+        String cursor = null;
+        for (int i = 0; i < 6; i++) {
+            page = search(4, 0, cursor);
+            cursor = page.getNextCursor();
+        }
+        assertThat(page.getResults()).hasSize(4);
+        assertThat(page.isHasNext()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+        assertThat(page.getTotalElements()).isEqualTo(24);
+    }
+
+    @Test
+    void numberedPagesAgreeWithCursorPages() {
+        List<String> numbered = new ArrayList<>();
+        for (int number = 0; number < 5; number++) {
+            SearchResponse page = search(5, number, null);
+            numbered.addAll(keys(page));
+            assertThat(page.isHasNext()).isEqualTo(number < 4);
+        }
+        assertThat(numbered).isEqualTo(expectedOrder());
+    }
+
+    @Test
+    void cachedPagesAreCopiesWithTheirOwnTiming() {
+        SearchResponse first = search(4, 0, null);
+        first.getResults().get(0).setTitle("changed by the caller");
+        first.setSearchTimeMs(-1);
+
+        SearchResponse second = search(4, 0, null);
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getResults().get(0).getTitle()).isNotEqualTo("changed by the caller");
+        assertThat(second.getSearchTimeMs()).isGreaterThanOrEqualTo(0);
+        assertThat(keys(second)).isEqualTo(keys(first));
+
+        // A hit's metadata tree is its own too
+        ObjectNode metadata = (ObjectNode) second.getResults().get(0).getMetadata();
+        String fileName = metadata.get("fileName").asText();
+        metadata.put("fileName", "changed by the caller");
+        second.getResults().clear();
+
+        SearchResponse third = search(4, 0, null);
+        assertThat(keys(third)).isEqualTo(keys(first));
+        assertThat(((JsonNode) third.getResults().get(0).getMetadata()).get("fileName").asText()).isEqualTo(fileName);
+        verify(searchIndexService, times(1)).scoreDocuments(anyString(), any());
+    }
+
+    @Test
+    void writesInvalidateCachedPages() {
+        SearchResponse before = search(4, 0, null);
+        search(4, 0, null);
+        verify(searchIndexService, times(1)).scoreDocuments(anyString(), any());
+
+        documentScores.put(100L, 10.0);
+        when(searchIndexService.scoreDocuments(anyString(), any())).thenReturn(matches(documentScores));
+        documentVersion.incrementAndGet();
+        SearchResponse after = search(4, 0, null);
+
+        verify(searchIndexService, times(2)).scoreDocuments(anyString(), any());
+        assertThat(keys(after).get(0)).isEqualTo("document:100");
+        assertThat(keys(before)).doesNotContain("document:100");
+        // Then cached again under the new version
+        search(4, 0, null);
+        verify(searchIndexService, times(2)).scoreDocuments(anyString(), any());
+    }
+
+    @Test
+    void pageSizeIsClamped() {
+        SearchResponse page = search(2_000_000_000, 0, null);
+
+        assertThat(page.getPageSize()).isEqualTo(100);
+        assertThat(keys(page)).isEqualTo(expectedOrder());
+    }
+
+    @Test
+    void numberedPagesStopAtTheResultWindow() {
+        assertThat(search(100, 99, null).getResults()).isEmpty();
+
+        for (int page : new int[]{100, 21_474_837, Integer.MAX_VALUE}) {
+            // page * size overflows int for the larger pages
+            assertThatThrownBy(() -> search(100, page, null))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("nextCursor");
+        }
+    }
+
+    @Test
+    void cursorPagesIgnoreThePageNumber() {
+        String cursor = search(5, 0, null).getNextCursor();
+
+        SearchResponse next = search(5, Integer.MAX_VALUE, cursor);
+
+        assertThat(keys(next)).isEqualTo(expectedOrder().subList(5, 10));
+    }
+
+    private List<String> followCursors(int size) {
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            SearchResponse page = search(size, 0, cursor);
+            seen.addAll(keys(page));
+            assertThat(page.isHasNext()).isEqualTo(page.getNextCursor() != null);
+            cursor = page.getNextCursor();
+        } while (cursor != null && seen.size() <= 100);
+        return seen;
+    }
+
+    private SearchResponse search(int size, int page, String cursor) {
+        SearchRequest request = new SearchRequest();
+        request.setQuery(QUERY);
+        request.setSize(size);
+        request.setPage(page);
+        request.setCursor(cursor);
+        return searchService.universalSearch(request);
+    }
+
+    /** Score descending, then type, then id. */
+    private List<String> expectedOrder() {
+        List<Object[]> hits = new ArrayList<>();
+        documentScores.forEach((id, score) -> hits.add(new Object[]{score, "document", id}));
+        memberScores.forEach((id, score) -> hits.add(new Object[]{score, "team-member", id}));
+        projectScores.forEach((id, score) -> hits.add(new Object[]{score, "project", id}));
+        hits.sort(Comparator.comparingDouble((Object[] hit) -> -(Double) hit[0])
+                .thenComparing(hit -> (String) hit[1])
+                .thenComparingLong(hit -> (Long) hit[2]));
+        return hits.stream().map(hit -> hit[1] + ":" + hit[2]).collect(Collectors.toList());
+    }
+
+    private static List<String> keys(SearchResponse response) {
+        return response.getResults().stream()
+                .map(result -> result.getType() + ":" + result.getId())
+                .collect(Collectors.toList());
+    }
+
+    private static Matches matches(Map<Long, Double> scores) {
+        return new Matches(scores, new RoaringBitmap());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void answerFindAllById(JpaRepository<T, Long> repository, Function<Long, T> entity) {
+        when(repository.findAllById(any())).thenAnswer(invocation -> StreamSupport
+                .stream(((Iterable<Long>) invocation.getArgument(0)).spliterator(), false)
+                .map(entity)
+                .collect(Collectors.toList()));
+    }
+}